@@ -114,19 +114,38 @@ public class ClassReader {
     /**
      * The start index of each constant pool item in {@link #b b}, plus one.
      * The one byte offset skips the constant pool item tag that indicates its
-     * type.
+     * type. This array can be larger than the number of constant pool items
+     * if it is shared with other class readers, see
+     * {@link ReusableClassReader}.
      */
     private final int[] items;
 
+    /**
+     * The number of constant pool items of the class, plus one.
+     */
+    private final int itemCount;
+
+    /**
+     * The object that provided the internal tables of this class reader, or
+     * <tt>null</tt>.
+     */
+    private final ReusableClassReader owner;
+
     /**
      * The String objects corresponding to the CONSTANT_Utf8 items. This cache
      * avoids multiple parsing of a given CONSTANT_Utf8 constant pool item,
      * which GREATLY improves performances (by a factor 2 to 3). This caching
      * strategy could be extended to all constant pool items, but its benefit
      * would not be so great for these items (because they are much less
-     * expensive to parse than CONSTANT_Utf8 items).
+     * expensive to parse than CONSTANT_Utf8 items). This array is only
+     * allocated when a string is first read through {@link #readUTF8 readUTF8},
+     * so that readers used only to get the class header information, with
+     * {@link #getClassName getClassName} and the like, do not allocate it.
+     * Note that only the string decoding is deferred: the constructor still
+     * computes the offsets of all the constant pool items, because the class
+     * header can only be located by walking the whole constant pool.
      */
-    private final String[] strings;
+    private String[] strings;
 
     /**
      * Maximum length of the strings contained in the constant pool of the
@@ -161,15 +180,34 @@ public class ClassReader {
      * @param len the length of the class data.
      */
     public ClassReader(final byte[] b, final int off, final int len) {
+        this(b, off, null);
+    }
+
+    /**
+     * Constructs a new {@link ClassReader} object.
+     *
+     * @param b the bytecode of the class to be read.
+     * @param off the start offset of the class data.
+     * @param owner the object providing the internal tables of this class
+     *        reader, or <tt>null</tt> to allocate new tables.
+     */
+    ClassReader(final byte[] b, final int off, final ReusableClassReader owner)
+    {
         this.b = b;
+        this.owner = owner;
         // checks the class version
-        if (readShort(6) > Opcodes.V1_7) {
+        if (readShort(off + 6) > Opcodes.V1_7) {
             throw new IllegalArgumentException();
         }
         // parses the constant pool
-        items = new int[readUnsignedShort(off + 8)];
-        int n = items.length;
-        strings = new String[n];
+        int n = readUnsignedShort(off + 8);
+        if (owner == null) {
+            items = new int[n];
+        } else {
+            items = owner.getItems(n);
+            strings = owner.getStrings(n);
+        }
+        itemCount = n;
         int max = 0;
         int index = off + 10;
         for (int i = 1; i < n; ++i) {
@@ -213,6 +251,16 @@ public class ClassReader {
         header = index;
     }
 
+    /**
+     * Allocates the string cache of this class reader.
+     */
+    private void newStrings() {
+        strings = new String[itemCount];
+        if (owner != null) {
+            owner.setStrings(strings);
+        }
+    }
+
     /**
      * Returns the class's access flags (see {@link Opcodes}). This value may
      * not reflect Deprecated and Synthetic flags when bytecode is before 1.5
@@ -235,7 +283,7 @@ public class ClassReader {
      * @see ClassVisitor#visit(int, int, String, String, String, String[])
      */
     public String getClassName() {
-        return readClass(header + 2, new char[maxStringLength]);
+        return readHeaderUTF8(items[readUnsignedShort(header + 2)]);
     }
 
     /**
@@ -250,7 +298,7 @@ public class ClassReader {
      */
     public String getSuperName() {
         int n = items[readUnsignedShort(header + 4)];
-        return n == 0 ? null : readUTF8(n, new char[maxStringLength]);
+        return n == 0 ? null : readHeaderUTF8(n);
     }
 
     /**
@@ -266,16 +314,39 @@ public class ClassReader {
         int index = header + 6;
         int n = readUnsignedShort(index);
         String[] interfaces = new String[n];
-        if (n > 0) {
-            char[] buf = new char[maxStringLength];
-            for (int i = 0; i < n; ++i) {
-                index += 2;
-                interfaces[i] = readClass(index, buf);
-            }
+        for (int i = 0; i < n; ++i) {
+            index += 2;
+            interfaces[i] = readHeaderUTF8(items[readUnsignedShort(index)]);
         }
         return interfaces;
     }
 
+    /**
+     * Reads an UTF8 string constant pool item of the class header. Unlike
+     * {@link #readUTF8 readUTF8}, this method does not allocate the string
+     * cache nor a buffer of {@link #getMaxStringLength getMaxStringLength}
+     * chars, so that getting the header information of a class only decodes
+     * the strings that are actually needed. The constant pool has already
+     * been indexed by the constructor.
+     *
+     * @param index the start index of an unsigned short value in {@link #b b},
+     *        whose value is the index of an UTF8 constant pool item.
+     * @return the String corresponding to the specified UTF8 item.
+     */
+    private String readHeaderUTF8(final int index) {
+        int item = readUnsignedShort(index);
+        String s = strings == null ? null : strings[item];
+        if (s == null) {
+            int utf = items[item];
+            int len = readUnsignedShort(utf);
+            s = readUTF(utf + 2, len, new char[len]);
+            if (strings != null) {
+                strings[item] = s;
+            }
+        }
+        return s;
+    }
+
     /**
      * Copies the constant pool data into the given {@link ClassWriter}. Should
      * be called before the {@link #accept(ClassVisitor,int)} method.
@@ -284,7 +355,10 @@ public class ClassReader {
      */
     void copyPool(final ClassWriter classWriter) {
         char[] buf = new char[maxStringLength];
-        int ll = items.length;
+        int ll = itemCount;
+        if (strings == null) {
+            newStrings();
+        }
         Item[] items2 = new Item[ll];
         for (int i = 1; i < ll; i++) {
             int index = items[i];
@@ -502,7 +576,7 @@ public class ClassReader {
                     if (last < 0) {
                         return b;
                     }
-                    byte[] c = new byte[b.length + 1000];
+                    byte[] c = new byte[Math.max(2 * b.length, b.length + 1000)];
                     System.arraycopy(b, 0, c, 0, len);
                     c[len++] = (byte) last;
                     b = c;
@@ -672,7 +746,9 @@ public class ClassReader {
             v += 6 + readInt(v + 2);
         }
         // calls the visit method
-        classVisitor.visit(readInt(4),
+        // the version is 6 bytes before the first constant pool item, whose
+        // offset is items[1] - 1 (the class does not always start at 0)
+        classVisitor.visit(readInt(items[1] - 7),
                 access,
                 name,
                 signature,
@@ -1992,7 +2068,7 @@ public class ClassReader {
      *  @return the number of constant pool items in {@link #b b}.
      */
     public int getItemCount() {
-        return items.length;
+        return itemCount;
     }
 
     /**
@@ -2098,6 +2174,9 @@ public class ClassReader {
      */
     public String readUTF8(int index, final char[] buf) {
         int item = readUnsignedShort(index);
+        if (strings == null) {
+            newStrings();
+        }
         String s = strings[item];
         if (s != null) {
             return s;
@@ -489,6 +489,32 @@ public class ClassWriter extends ClassVisitor {
      */
     boolean invalidFrames;
 
+    /**
+     * The items of this class writer that can be recycled, after a call to
+     * {@link #reset}. These items are linked to each other by their
+     * {@link Item#next} field.
+     */
+    private Item freeItems;
+
+    /**
+     * The type hierarchy used to compute common super classes, or
+     * <tt>null</tt> to load classes with <tt>Class.forName</tt>.
+     */
+    private final TypeHierarchy hierarchy;
+
+    /**
+     * The class writers from which the stack map frames of the methods of
+     * this class must be copied, or <tt>null</tt>. See
+     * {@link #setFrameSources}.
+     */
+    private ClassWriter[] frameSources;
+
+    /**
+     * The number of methods visited since the last call to
+     * {@link #setFrameSources}.
+     */
+    private int frameSourceIndex;
+
     // ------------------------------------------------------------------------
     // Static initializer
     // ------------------------------------------------------------------------
@@ -588,6 +614,20 @@ public class ClassWriter extends ClassVisitor {
      *        of this class. See {@link #COMPUTE_MAXS}, {@link #COMPUTE_FRAMES}.
      */
     public ClassWriter(final int flags) {
+        this(flags, null);
+    }
+
+    /**
+     * Constructs a new {@link ClassWriter} object that uses the given type
+     * hierarchy to compute common super classes, instead of loading classes.
+     *
+     * @param flags option flags that can be used to modify the default behavior
+     *        of this class. See {@link #COMPUTE_MAXS}, {@link #COMPUTE_FRAMES}.
+     * @param hierarchy the type hierarchy used by
+     *        {@link #getCommonSuperClass}, or <tt>null</tt> to use the default
+     *        class loading based implementation.
+     */
+    public ClassWriter(final int flags, final TypeHierarchy hierarchy) {
         super(Opcodes.ASM4);
         index = 1;
         pool = new ByteVector();
@@ -599,6 +639,7 @@ public class ClassWriter extends ClassVisitor {
         key4 = new Item();
         this.computeMaxs = (flags & COMPUTE_MAXS) != 0;
         this.computeFrames = (flags & COMPUTE_FRAMES) != 0;
+        this.hierarchy = hierarchy;
     }
 
     /**
@@ -628,7 +669,28 @@ public class ClassWriter extends ClassVisitor {
      *        methods</i>. See {@link #COMPUTE_MAXS}, {@link #COMPUTE_FRAMES}.
      */
     public ClassWriter(final ClassReader classReader, final int flags) {
-        this(flags);
+        this(classReader, flags, null);
+    }
+
+    /**
+     * Constructs a new {@link ClassWriter} object, with the "mostly add"
+     * optimizations described in {@link #ClassWriter(ClassReader, int)}, that
+     * uses the given type hierarchy to compute common super classes.
+     *
+     * @param classReader the {@link ClassReader} used to read the original
+     *        class.
+     * @param flags option flags that can be used to modify the default behavior
+     *        of this class. See {@link #COMPUTE_MAXS}, {@link #COMPUTE_FRAMES}.
+     * @param hierarchy the type hierarchy used by
+     *        {@link #getCommonSuperClass}, or <tt>null</tt> to use the default
+     *        class loading based implementation.
+     */
+    public ClassWriter(
+        final ClassReader classReader,
+        final int flags,
+        final TypeHierarchy hierarchy)
+    {
+        this(flags, hierarchy);
         classReader.copyPool(this);
         this.cr = classReader;
     }
@@ -749,7 +811,7 @@ public class ClassWriter extends ClassVisitor {
         final String signature,
         final String[] exceptions)
     {
-        return new MethodWriter(this,
+        MethodWriter mw = new MethodWriter(this,
                 access,
                 name,
                 desc,
@@ -757,6 +819,13 @@ public class ClassWriter extends ClassVisitor {
                 exceptions,
                 computeMaxs,
                 computeFrames);
+        if (frameSources != null && frameSourceIndex < frameSources.length) {
+            ClassWriter source = frameSources[frameSourceIndex++];
+            if (computeFrames && source != null) {
+                mw.frameSource = source.firstMethod;
+            }
+        }
+        return mw;
     }
 
     @Override
@@ -922,13 +991,95 @@ public class ClassWriter extends ClassVisitor {
             attrs.put(this, null, 0, -1, -1, out);
         }
         if (invalidFrames) {
-            ClassWriter cw = new ClassWriter(COMPUTE_FRAMES);
+            ClassWriter cw = new ClassWriter(COMPUTE_FRAMES, hierarchy);
             new ClassReader(out.data).accept(cw, ClassReader.SKIP_FRAMES);
             return cw.toByteArray();
         }
         return out.data;
     }
 
+    /**
+     * Resets this class writer to its initial state, so that it can be used to
+     * build another class. The constant pool buffer, the constant pool hash
+     * table and its items are kept and reused, which avoids most of the
+     * allocations done by the constructor and by the constant pool methods
+     * when many classes are written in sequence. The classes built after a
+     * reset are identical to those built with a new {@link ClassWriter} with
+     * the same flags and type hierarchy. <i>The field and method visitors
+     * returned by this class writer before the reset must not be used
+     * anymore.</i>
+     */
+    public void reset() {
+        for (int i = 0; i < items.length; ++i) {
+            Item item = items[i];
+            while (item != null) {
+                Item next = item.next;
+                item.next = freeItems;
+                freeItems = item;
+                item = next;
+            }
+            items[i] = null;
+        }
+        if (typeTable != null) {
+            for (int i = 0; i <= typeCount; ++i) {
+                typeTable[i] = null;
+            }
+        }
+        typeCount = 0;
+        cr = null;
+        version = 0;
+        index = 1;
+        pool.length = 0;
+        threshold = (int) (0.75d * items.length);
+        access = 0;
+        name = 0;
+        thisName = null;
+        signature = 0;
+        superName = 0;
+        interfaceCount = 0;
+        interfaces = null;
+        sourceFile = 0;
+        sourceDebug = null;
+        enclosingMethodOwner = 0;
+        enclosingMethod = 0;
+        anns = null;
+        ianns = null;
+        attrs = null;
+        innerClassesCount = 0;
+        innerClasses = null;
+        bootstrapMethodsCount = 0;
+        bootstrapMethods = null;
+        firstField = null;
+        lastField = null;
+        firstMethod = null;
+        lastMethod = null;
+        invalidFrames = false;
+        frameSources = null;
+        frameSourceIndex = 0;
+    }
+
+    /**
+     * Makes this class writer copy the stack map frames and the maximum stack
+     * sizes of its methods from other class writers, instead of computing
+     * them. This is only useful with the {@link #COMPUTE_FRAMES} option, in
+     * order to compute the frames of several methods in parallel, each in its
+     * own class writer, and to then write the whole class with a single class
+     * writer. The result is identical to the one obtained without this
+     * method. More precisely, the i-th method visited after this call copies
+     * its frames from the first method of the i-th given class writer, which
+     * must have been visited in exactly the same way, with the
+     * {@link #COMPUTE_FRAMES} option. The frames of a method are computed as
+     * usual if the corresponding class writer is <tt>null</tt>, or if it does
+     * not contain the same method.
+     *
+     * @param sources the class writers from which the stack map frames of the
+     *        next visited methods must be copied, or <tt>null</tt>.
+     */
+    public void setFrameSources(final ClassWriter[] sources) {
+        frameSources = sources;
+        frameSourceIndex = 0;
+    }
+
     // ------------------------------------------------------------------------
     // Utility methods: constant pool management
     // ------------------------------------------------------------------------
@@ -1018,7 +1169,7 @@ public class ClassWriter extends ClassVisitor {
         Item result = get(key);
         if (result == null) {
             pool.putByte(UTF8).putUTF8(value);
-            result = new Item(index++, key);
+            result = newItem(index++, key);
             put(result);
         }
         return result.index;
@@ -1038,7 +1189,7 @@ public class ClassWriter extends ClassVisitor {
         Item result = get(key2);
         if (result == null) {
             pool.put12(CLASS, newUTF8(value));
-            result = new Item(index++, key2);
+            result = newItem(index++, key2);
             put(result);
         }
         return result;
@@ -1071,7 +1222,7 @@ public class ClassWriter extends ClassVisitor {
         Item result = get(key2);
         if (result == null) {
             pool.put12(MTYPE, newUTF8(methodDesc));
-            result = new Item(index++, key2);
+            result = newItem(index++, key2);
             put(result);
         }
         return result;
@@ -1125,7 +1276,7 @@ public class ClassWriter extends ClassVisitor {
                         desc,
                         tag == Opcodes.H_INVOKEINTERFACE));
             }
-            result = new Item(index++, key4);
+            result = newItem(index++, key4);
             put(result);
         }
         return result;
@@ -1238,7 +1389,7 @@ public class ClassWriter extends ClassVisitor {
         result = get(key3);
         if (result == null) {
             put122(INDY, bootstrapMethodIndex, newNameType(name, desc));
-            result = new Item(index++, key3);
+            result = newItem(index++, key3);
             put(result);
         }
         return result;
@@ -1282,7 +1433,7 @@ public class ClassWriter extends ClassVisitor {
         Item result = get(key3);
         if (result == null) {
             put122(FIELD, newClass(owner), newNameType(name, desc));
-            result = new Item(index++, key3);
+            result = newItem(index++, key3);
             put(result);
         }
         return result;
@@ -1325,7 +1476,7 @@ public class ClassWriter extends ClassVisitor {
         Item result = get(key3);
         if (result == null) {
             put122(type, newClass(owner), newNameType(name, desc));
-            result = new Item(index++, key3);
+            result = newItem(index++, key3);
             put(result);
         }
         return result;
@@ -1364,7 +1515,7 @@ public class ClassWriter extends ClassVisitor {
         Item result = get(key);
         if (result == null) {
             pool.putByte(INT).putInt(value);
-            result = new Item(index++, key);
+            result = newItem(index++, key);
             put(result);
         }
         return result;
@@ -1382,7 +1533,7 @@ public class ClassWriter extends ClassVisitor {
         Item result = get(key);
         if (result == null) {
             pool.putByte(FLOAT).putInt(key.intVal);
-            result = new Item(index++, key);
+            result = newItem(index++, key);
             put(result);
         }
         return result;
@@ -1400,7 +1551,7 @@ public class ClassWriter extends ClassVisitor {
         Item result = get(key);
         if (result == null) {
             pool.putByte(LONG).putLong(value);
-            result = new Item(index, key);
+            result = newItem(index, key);
             index += 2;
             put(result);
         }
@@ -1419,7 +1570,7 @@ public class ClassWriter extends ClassVisitor {
         Item result = get(key);
         if (result == null) {
             pool.putByte(DOUBLE).putLong(key.longVal);
-            result = new Item(index, key);
+            result = newItem(index, key);
             index += 2;
             put(result);
         }
@@ -1438,7 +1589,7 @@ public class ClassWriter extends ClassVisitor {
         Item result = get(key2);
         if (result == null) {
             pool.put12(STR, newUTF8(value));
-            result = new Item(index++, key2);
+            result = newItem(index++, key2);
             put(result);
         }
         return result;
@@ -1471,7 +1622,7 @@ public class ClassWriter extends ClassVisitor {
         Item result = get(key2);
         if (result == null) {
             put122(NAME_TYPE, newUTF8(name), newUTF8(desc));
-            result = new Item(index++, key2);
+            result = newItem(index++, key2);
             put(result);
         }
         return result;
@@ -1524,7 +1675,7 @@ public class ClassWriter extends ClassVisitor {
      */
     private Item addType(final Item item) {
         ++typeCount;
-        Item result = new Item(typeCount, key);
+        Item result = newItem(typeCount, key);
         put(result);
         if (typeTable == null) {
             typeTable = new Item[16];
@@ -1557,20 +1708,23 @@ public class ClassWriter extends ClassVisitor {
             String t = typeTable[type1].strVal1;
             String u = typeTable[type2].strVal1;
             key2.intVal = addType(getCommonSuperClass(t, u));
-            result = new Item((short) 0, key2);
+            result = newItem((short) 0, key2);
             put(result);
         }
         return result.intVal;
     }
 
     /**
-     * Returns the common super type of the two given types. The default
-     * implementation of this method <i>loads<i> the two given classes and uses
-     * the java.lang.Class methods to find the common super class. It can be
-     * overridden to compute this common super type in other ways, in particular
-     * without actually loading any class, or to take into account the class
-     * that is currently being generated by this ClassWriter, which can of
-     * course not be loaded since it is under construction.
+     * Returns the common super type of the two given types. If this class
+     * writer was constructed with a {@link TypeHierarchy}, the default
+     * implementation of this method delegates to
+     * {@link TypeHierarchy#getCommonSuperClass}. Otherwise it <i>loads<i> the
+     * two given classes and uses the java.lang.Class methods to find the common
+     * super class. It can be overridden to compute this common super type in
+     * other ways, in particular without actually loading any class, or to take
+     * into account the class that is currently being generated by this
+     * ClassWriter, which can of course not be loaded since it is under
+     * construction.
      *
      * @param type1 the internal name of a class.
      * @param type2 the internal name of another class.
@@ -1579,6 +1733,9 @@ public class ClassWriter extends ClassVisitor {
      */
     protected String getCommonSuperClass(final String type1, final String type2)
     {
+        if (hierarchy != null) {
+            return hierarchy.getCommonSuperClass(type1, type2);
+        }
         Class<?> c, d;
         ClassLoader classLoader = getClass().getClassLoader();
         try {
@@ -1603,6 +1760,24 @@ public class ClassWriter extends ClassVisitor {
         }
     }
 
+    /**
+     * Returns a copy of the given item, recycling an item of
+     * {@link #freeItems} if possible.
+     *
+     * @param index the index of the item to be returned.
+     * @param key the item to be copied.
+     * @return a copy of the given item, with the given index.
+     */
+    private Item newItem(final int index, final Item key) {
+        Item result = freeItems;
+        if (result == null) {
+            return new Item(index, key);
+        }
+        freeItems = result.next;
+        result.set(index, key);
+        return result;
+    }
+
     /**
      * Returns the constant pool's hash table item which is equal to the given
      * item.
@@ -128,6 +128,17 @@ final class Item {
      * @param i the item that must be copied into the item to be constructed.
      */
     Item(final int index, final Item i) {
+        set(index, i);
+    }
+
+    /**
+     * Sets this item to a copy of the given item. This is used to recycle the
+     * items of a {@link ClassWriter} that has been reset.
+     *
+     * @param index the new index of this item.
+     * @param i the item that must be copied into this item.
+     */
+    void set(final int index, final Item i) {
         this.index = index;
         type = i.type;
         intVal = i.intVal;
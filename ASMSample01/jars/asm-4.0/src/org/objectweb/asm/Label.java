@@ -141,24 +141,19 @@ public class Label {
     int position;
 
     /**
-     * Number of forward references to this label, times two.
+     * Index of the last forward reference to this label in the
+     * {@link MethodWriter#forwardReferences} table of the method writer that
+     * contains this label, plus one, or 0 if there is no forward reference to
+     * this label. The other forward references to this label are linked to this
+     * one in this table.
      */
-    private int referenceCount;
+    private int lastReference;
 
     /**
-     * Informations about forward references. Each forward reference is
-     * described by two consecutive integers in this array: the first one is the
-     * position of the first byte of the bytecode instruction that contains the
-     * forward reference, while the second is the position of the first byte of
-     * the forward reference itself. In fact the sign of the first integer
-     * indicates if this reference uses 2 or 4 bytes, and its absolute value
-     * gives the position of the bytecode instruction. This array is also used
-     * as a bitset to store the subroutines to which a basic block belongs. This
-     * information is needed in {@linked  MethodWriter#visitMaxs}, after all
-     * forward references have been resolved. Hence the same array can be used
-     * for both purposes without problems.
+     * The subroutines to which a basic block belongs, as a bitset. This
+     * information is needed in {@link MethodWriter#visitMaxs}.
      */
-    private int[] srcAndRefPositions;
+    private int[] subroutines;
 
     // ------------------------------------------------------------------------
 
@@ -298,10 +293,10 @@ public class Label {
     {
         if ((status & RESOLVED) == 0) {
             if (wideOffset) {
-                addReference(-1 - source, out.length);
+                addReference(owner, -1 - source, out.length);
                 out.putInt(-1);
             } else {
-                addReference(source, out.length);
+                addReference(owner, source, out.length);
                 out.putShort(-1);
             }
         } else {
@@ -317,8 +312,12 @@ public class Label {
      * Adds a forward reference to this label. This method must be called only
      * for a true forward reference, i.e. only if this label is not resolved
      * yet. For backward references, the offset of the reference can be, and
-     * must be, computed and stored directly.
+     * must be, computed and stored directly. The forward references of all the
+     * labels of a method are stored in a single table of the method writer,
+     * whose size is doubled when it is full (see
+     * {@link MethodWriter#forwardReferences}).
      *
+     * @param owner the code writer that calls this method.
      * @param sourcePosition the position of the referencing instruction. This
      *        position will be used to compute the offset of this forward
      *        reference.
@@ -326,23 +325,25 @@ public class Label {
      *        reference must be stored.
      */
     private void addReference(
+        final MethodWriter owner,
         final int sourcePosition,
         final int referencePosition)
     {
-        if (srcAndRefPositions == null) {
-            srcAndRefPositions = new int[6];
-        }
-        if (referenceCount >= srcAndRefPositions.length) {
-            int[] a = new int[srcAndRefPositions.length + 6];
-            System.arraycopy(srcAndRefPositions,
-                    0,
-                    a,
-                    0,
-                    srcAndRefPositions.length);
-            srcAndRefPositions = a;
+        int[] references = owner.forwardReferences;
+        int n = owner.forwardReferenceCount;
+        if (references == null) {
+            references = new int[48];
+            owner.forwardReferences = references;
+        } else if (n + 3 > references.length) {
+            references = new int[2 * references.length];
+            System.arraycopy(owner.forwardReferences, 0, references, 0, n);
+            owner.forwardReferences = references;
         }
-        srcAndRefPositions[referenceCount++] = sourcePosition;
-        srcAndRefPositions[referenceCount++] = referencePosition;
+        references[n] = sourcePosition;
+        references[n + 1] = referencePosition;
+        references[n + 2] = lastReference;
+        lastReference = n + 1;
+        owner.forwardReferenceCount = n + 3;
     }
 
     /**
@@ -372,10 +373,13 @@ public class Label {
         boolean needUpdate = false;
         this.status |= RESOLVED;
         this.position = position;
-        int i = 0;
-        while (i < referenceCount) {
-            int source = srcAndRefPositions[i++];
-            int reference = srcAndRefPositions[i++];
+        int[] references = owner.forwardReferences;
+        int i = lastReference;
+        lastReference = 0;
+        while (i != 0) {
+            int source = references[i - 1];
+            int reference = references[i];
+            i = references[i + 1];
             int offset;
             if (source >= 0) {
                 offset = position - source;
@@ -436,7 +440,7 @@ public class Label {
      */
     boolean inSubroutine(final long id) {
         if ((status & Label.VISITED) != 0) {
-            return (srcAndRefPositions[(int) (id >>> 32)] & (int) id) != 0;
+            return (subroutines[(int) (id >>> 32)] & (int) id) != 0;
         }
         return false;
     }
@@ -453,8 +457,8 @@ public class Label {
         if ((status & VISITED) == 0 || (block.status & VISITED) == 0) {
             return false;
         }
-        for (int i = 0; i < srcAndRefPositions.length; ++i) {
-            if ((srcAndRefPositions[i] & block.srcAndRefPositions[i]) != 0) {
+        for (int i = 0; i < subroutines.length; ++i) {
+            if ((subroutines[i] & block.subroutines[i]) != 0) {
                 return true;
             }
         }
@@ -470,9 +474,9 @@ public class Label {
     void addToSubroutine(final long id, final int nbSubroutines) {
         if ((status & VISITED) == 0) {
             status |= VISITED;
-            srcAndRefPositions = new int[(nbSubroutines - 1) / 32 + 1];
+            subroutines = new int[(nbSubroutines - 1) / 32 + 1];
         }
-        srcAndRefPositions[(int) (id >>> 32)] |= (int) id;
+        subroutines[(int) (id >>> 32)] |= (int) id;
     }
 
     /**
@@ -327,6 +327,24 @@ class MethodWriter extends MethodVisitor {
      */
     private boolean resize;
 
+    /**
+     * The forward references of the labels of this method. Each forward
+     * reference is described by three consecutive integers in this table: the
+     * position of the bytecode instruction that contains the reference (or
+     * -1 minus this position, if the reference uses 4 bytes), the position of
+     * the reference itself, and the index of the previous forward reference to
+     * the same label, plus one (or 0 if there is none). The last forward
+     * reference of each label is stored in this label. This table is shared by
+     * all the labels of the method, and grows by doubling, so that adding a
+     * forward reference does not allocate in most cases.
+     */
+    int[] forwardReferences;
+
+    /**
+     * Number of integers used in {@link #forwardReferences}.
+     */
+    int forwardReferenceCount;
+
     /**
      * The number of subroutines in this method.
      */
@@ -389,6 +407,26 @@ class MethodWriter extends MethodVisitor {
      */
     private int maxStackSize;
 
+    /**
+     * The method from which the stack map frames and the maximum stack size
+     * of this method must be copied, instead of being computed, or
+     * <tt>null</tt>. See {@link ClassWriter#setFrameSources}.
+     */
+    MethodWriter frameSource;
+
+    /**
+     * The offsets of the NEW instructions of this method, in the order in
+     * which they have been visited. Only used with {@link #FRAMES}, to copy
+     * UNINITIALIZED types from the {@link #frameSource frameSource} method,
+     * whose NEW instructions can be at different offsets.
+     */
+    private int[] newOffsets;
+
+    /**
+     * The number of elements in {@link #newOffsets}.
+     */
+    private int newCount;
+
     // ------------------------------------------------------------------------
     // Constructor
     // ------------------------------------------------------------------------
@@ -768,6 +806,16 @@ class MethodWriter extends MethodVisitor {
         // Label currentBlock = this.currentBlock;
         if (currentBlock != null) {
             if (compute == FRAMES) {
+                if (opcode == Opcodes.NEW) {
+                    if (newOffsets == null) {
+                        newOffsets = new int[4];
+                    } else if (newCount == newOffsets.length) {
+                        int[] offsets = new int[2 * newCount];
+                        System.arraycopy(newOffsets, 0, offsets, 0, newCount);
+                        newOffsets = offsets;
+                    }
+                    newOffsets[newCount++] = code.length;
+                }
                 currentBlock.frame.execute(opcode, code.length, cw, i);
             } else if (opcode == Opcodes.NEW) {
                 // updates current and max stack sizes only if opcode == NEW
@@ -1325,10 +1373,19 @@ class MethodWriter extends MethodVisitor {
              * fix point algorithm: mark the first basic block as 'changed'
              * (i.e. put it in the 'changed' list) and, while there are changed
              * basic blocks, choose one, mark it as unchanged, and update its
-             * successors (which can be changed in the process).
+             * successors (which can be changed in the process). This is not
+             * needed if the result of this algorithm can be copied from an
+             * identical method.
              */
             int max = 0;
             Label changed = labels;
+            if (frameSource != null) {
+                if (copyFrames(frameSource)) {
+                    max = frameSource.maxStack;
+                    changed = null;
+                }
+                frameSource = null;
+            }
             while (changed != null) {
                 // removes a basic block from the list of changed basic blocks
                 Label l = changed;
@@ -1566,6 +1623,79 @@ class MethodWriter extends MethodVisitor {
         currentBlock = null;
     }
 
+    /**
+     * Copies the input frames of the basic blocks of the given method, as
+     * computed by the fix point algorithm, into the basic blocks of this
+     * method. The given method must have been visited in the same way as this
+     * method, but can belong to another class writer.
+     *
+     * @param mw a method whose stack map frames have been computed.
+     * @return <tt>true</tt> if the frames have been copied, or <tt>false</tt>
+     *         if the given method does not have the same basic blocks as this
+     *         method.
+     */
+    private boolean copyFrames(final MethodWriter mw) {
+        if (mw.compute != FRAMES || mw.newCount != newCount
+                || !descriptor.equals(mw.descriptor))
+        {
+            return false;
+        }
+        Label l = labels;
+        Label k = mw.labels;
+        while (l != null && k != null) {
+            l = l.successor;
+            k = k.successor;
+        }
+        if (l != k) {
+            return false;
+        }
+        l = labels;
+        k = mw.labels;
+        while (l != null) {
+            l.status |= k.status
+                    & (Label.TARGET | Label.STORE | Label.REACHABLE);
+            l.frame.inputLocals = copyFrameTypes(mw, k.frame.inputLocals);
+            l.frame.inputStack = copyFrameTypes(mw, k.frame.inputStack);
+            l = l.successor;
+            k = k.successor;
+        }
+        return true;
+    }
+
+    /**
+     * Copies the given input frame types of the given method. The OBJECT and
+     * UNINITIALIZED types are converted from the type table of the class
+     * writer of the given method to the type table of this class writer.
+     *
+     * @param mw the method to which the given frame types belong.
+     * @param types input frame types of the given method. May be <tt>null</tt>.
+     * @return the corresponding frame types for this method.
+     */
+    private int[] copyFrameTypes(final MethodWriter mw, final int[] types) {
+        if (types == null) {
+            return null;
+        }
+        int[] copy = new int[types.length];
+        for (int i = 0; i < types.length; ++i) {
+            int t = types[i];
+            int kind = t & Frame.BASE_KIND;
+            if (kind == Frame.OBJECT) {
+                Item item = mw.cw.typeTable[t & Frame.BASE_VALUE];
+                t = (t & Frame.DIM) | Frame.OBJECT | cw.addType(item.strVal1);
+            } else if (kind == Frame.UNINITIALIZED) {
+                Item item = mw.cw.typeTable[t & Frame.BASE_VALUE];
+                int j = 0;
+                while (mw.newOffsets[j] != item.intVal) {
+                    ++j;
+                }
+                t = Frame.UNINITIALIZED
+                        | cw.addUninitializedType(item.strVal1, newOffsets[j]);
+            }
+            copy[i] = t;
+        }
+        return copy;
+    }
+
     // ------------------------------------------------------------------------
     // Utility methods: stack map frames
     // ------------------------------------------------------------------------
@@ -2137,177 +2267,220 @@ class MethodWriter extends MethodVisitor {
          * resize another one, which may require to resize yet another one, and
          * so on. The first step of the algorithm consists in finding all the
          * instructions that need to be resized, without modifying the code.
-         * This is done by the following "fix point" algorithm:
-         *
-         * Parse the code to find the jump instructions whose offset will need
-         * more than 2 bytes to be stored (the future offset is computed from
-         * the current offset and from the number of bytes that will be inserted
-         * or removed between the source and target instructions). For each such
-         * instruction, adds an entry in (a copy of) the indexes and sizes
-         * arrays (if this has not already been done in a previous iteration!).
+         * This is done with the following worklist algorithm:
          *
-         * If at least one entry has been added during the previous step, go
-         * back to the beginning, otherwise stop.
+         * The code is parsed once, to find the jump instructions with a 2
+         * bytes offset, and the TABLESWITCH and LOOKUPSWITCH instructions. The
+         * number of bytes inserted before each position of the code is stored
+         * in a binary indexed tree (see addShift and getShift), so that the
+         * future offset of a jump instruction can be computed in logarithmic
+         * time, from its current offset and from the number of bytes that will
+         * be inserted between its source and target instructions.
          *
-         * In fact the real algorithm is complicated by the fact that the size
-         * of TABLESWITCH and LOOKUPSWITCH instructions depends on their
-         * position in the bytecode (because of padding). In order to ensure the
-         * convergence of the algorithm, the number of bytes to be added or
-         * removed from these instructions is over estimated during the previous
-         * loop, and computed exactly only after the loop is finished (this
-         * requires another pass to parse the bytecode of the method).
+         * Since the offset of a jump instruction can only grow by the total
+         * number of inserted bytes, only the jumps whose current offset is
+         * larger than 32767 minus this number can need to be resized. The jump
+         * instructions are therefore sorted by decreasing offset, and only the
+         * first ones are added to a worklist, as bytes are inserted. Each time
+         * a jump instruction of the worklist is resized, it is removed from
+         * the worklist, and the padding of the following TABLESWITCH and
+         * LOOKUPSWITCH instructions (whose size depends on their position in
+         * the bytecode) is updated. The remaining jumps of the worklist are
+         * checked again until none of them needs to be resized.
          */
-        int[] allIndexes = new int[0]; // copy of indexes
-        int[] allSizes = new int[0]; // copy of sizes
-        boolean[] resize; // instructions to be resized
+        int[] jumps = new int[code.length / 3 + 1]; // jump instructions
+        int[] targets = new int[jumps.length]; // targets of these jumps
+        int[] sizes = new int[jumps.length]; // bytes to be added to them
+        int jumpCount = 0;
+        int[] switches = new int[code.length / 9 + 1]; // switch instructions
+        int[] switchEnds = new int[switches.length]; // end of these switches
+        int switchCount = 0;
         int newOffset; // future offset of a jump instruction
 
-        resize = new boolean[code.length];
-
-        // 3 = loop again, 2 = loop ended, 1 = last pass, 0 = done
-        int state = 3;
-        do {
-            if (state == 3) {
-                state = 2;
+        u = 0;
+        while (u < b.length) {
+            int opcode = b[u] & 0xFF; // opcode of current instruction
+            switch (ClassWriter.TYPE[opcode]) {
+                case ClassWriter.NOARG_INSN:
+                case ClassWriter.IMPLVAR_INSN:
+                    u += 1;
+                    break;
+                case ClassWriter.LABEL_INSN:
+                    if (opcode > 201) {
+                        // converts temporary opcodes 202 to 217, 218 and 219
+                        // to IFEQ ... JSR (inclusive), IFNULL and IFNONNULL
+                        opcode = opcode < 218 ? opcode - 49 : opcode - 20;
+                        label = u + readUnsignedShort(b, u + 1);
+                    } else {
+                        label = u + readShort(b, u + 1);
+                    }
+                    jumps[jumpCount] = u;
+                    targets[jumpCount] = label;
+                    if (opcode == Opcodes.GOTO || opcode == Opcodes.JSR) {
+                        // two additional bytes will be required to replace
+                        // this GOTO or JSR instruction with a GOTO_W or a JSR_W
+                        sizes[jumpCount++] = 2;
+                    } else {
+                        // five additional bytes will be required to replace
+                        // this IFxxx <l> instruction with IFNOTxxx <l'> GOTO_W
+                        // <l>, where IFNOTxxx is the "opposite" opcode of IFxxx
+                        // (i.e., IFNE for IFEQ) and where <l'> designates the
+                        // instruction just after the GOTO_W.
+                        sizes[jumpCount++] = 5;
+                    }
+                    u += 3;
+                    break;
+                case ClassWriter.LABELW_INSN:
+                    u += 5;
+                    break;
+                case ClassWriter.TABL_INSN:
+                    switches[switchCount] = u;
+                    // skips instruction
+                    u = u + 4 - (u & 3);
+                    u += 4 * (readInt(b, u + 8) - readInt(b, u + 4) + 1) + 12;
+                    switchEnds[switchCount++] = u;
+                    break;
+                case ClassWriter.LOOK_INSN:
+                    switches[switchCount] = u;
+                    // skips instruction
+                    u = u + 4 - (u & 3);
+                    u += 8 * readInt(b, u + 4) + 8;
+                    switchEnds[switchCount++] = u;
+                    break;
+                case ClassWriter.WIDE_INSN:
+                    opcode = b[u + 1] & 0xFF;
+                    if (opcode == Opcodes.IINC) {
+                        u += 6;
+                    } else {
+                        u += 4;
+                    }
+                    break;
+                case ClassWriter.VAR_INSN:
+                case ClassWriter.SBYTE_INSN:
+                case ClassWriter.LDC_INSN:
+                    u += 2;
+                    break;
+                case ClassWriter.SHORT_INSN:
+                case ClassWriter.LDCW_INSN:
+                case ClassWriter.FIELDORMETH_INSN:
+                case ClassWriter.TYPE_INSN:
+                case ClassWriter.IINC_INSN:
+                    u += 3;
+                    break;
+                case ClassWriter.ITFMETH_INSN:
+                case ClassWriter.INDYMETH_INSN:
+                    u += 5;
+                    break;
+                // case ClassWriter.MANA_INSN:
+                default:
+                    u += 4;
+                    break;
             }
-            u = 0;
-            while (u < b.length) {
-                int opcode = b[u] & 0xFF; // opcode of current instruction
-                int insert = 0; // bytes to be added after this instruction
-
-                switch (ClassWriter.TYPE[opcode]) {
-                    case ClassWriter.NOARG_INSN:
-                    case ClassWriter.IMPLVAR_INSN:
-                        u += 1;
-                        break;
-                    case ClassWriter.LABEL_INSN:
-                        if (opcode > 201) {
-                            // converts temporary opcodes 202 to 217, 218 and
-                            // 219 to IFEQ ... JSR (inclusive), IFNULL and
-                            // IFNONNULL
-                            opcode = opcode < 218 ? opcode - 49 : opcode - 20;
-                            label = u + readUnsignedShort(b, u + 1);
-                        } else {
-                            label = u + readShort(b, u + 1);
-                        }
-                        newOffset = getNewOffset(allIndexes, allSizes, u, label);
-                        if (newOffset < Short.MIN_VALUE
-                                || newOffset > Short.MAX_VALUE)
-                        {
-                            if (!resize[u]) {
-                                if (opcode == Opcodes.GOTO
-                                        || opcode == Opcodes.JSR)
-                                {
-                                    // two additional bytes will be required to
-                                    // replace this GOTO or JSR instruction with
-                                    // a GOTO_W or a JSR_W
-                                    insert = 2;
-                                } else {
-                                    // five additional bytes will be required to
-                                    // replace this IFxxx <l> instruction with
-                                    // IFNOTxxx <l'> GOTO_W <l>, where IFNOTxxx
-                                    // is the "opposite" opcode of IFxxx (i.e.,
-                                    // IFNE for IFEQ) and where <l'> designates
-                                    // the instruction just after the GOTO_W.
-                                    insert = 5;
-                                }
-                                resize[u] = true;
-                            }
-                        }
-                        u += 3;
-                        break;
-                    case ClassWriter.LABELW_INSN:
-                        u += 5;
-                        break;
-                    case ClassWriter.TABL_INSN:
-                        if (state == 1) {
-                            // true number of bytes to be added (or removed)
-                            // from this instruction = (future number of padding
-                            // bytes - current number of padding byte) -
-                            // previously over estimated variation =
-                            // = ((3 - newOffset%4) - (3 - u%4)) - u%4
-                            // = (-newOffset%4 + u%4) - u%4
-                            // = -(newOffset & 3)
-                            newOffset = getNewOffset(allIndexes, allSizes, 0, u);
-                            insert = -(newOffset & 3);
-                        } else if (!resize[u]) {
-                            // over estimation of the number of bytes to be
-                            // added to this instruction = 3 - current number
-                            // of padding bytes = 3 - (3 - u%4) = u%4 = u & 3
-                            insert = u & 3;
-                            resize[u] = true;
-                        }
-                        // skips instruction
-                        u = u + 4 - (u & 3);
-                        u += 4 * (readInt(b, u + 8) - readInt(b, u + 4) + 1) + 12;
-                        break;
-                    case ClassWriter.LOOK_INSN:
-                        if (state == 1) {
-                            // like TABL_INSN
-                            newOffset = getNewOffset(allIndexes, allSizes, 0, u);
-                            insert = -(newOffset & 3);
-                        } else if (!resize[u]) {
-                            // like TABL_INSN
-                            insert = u & 3;
-                            resize[u] = true;
-                        }
-                        // skips instruction
-                        u = u + 4 - (u & 3);
-                        u += 8 * readInt(b, u + 4) + 8;
-                        break;
-                    case ClassWriter.WIDE_INSN:
-                        opcode = b[u + 1] & 0xFF;
-                        if (opcode == Opcodes.IINC) {
-                            u += 6;
-                        } else {
-                            u += 4;
+        }
+
+        // sorts the jump instructions by decreasing offset, with a counting
+        // sort on the 8 most significant bits of their offset (offsets are
+        // less than 65536, and the order inside each group does not matter)
+        int[] order = new int[jumpCount];
+        int[] counts = new int[257];
+        for (i = 0; i < jumpCount; ++i) {
+            ++counts[256 - (Math.abs(targets[i] - jumps[i]) >> 8)];
+        }
+        for (i = 1; i < counts.length; ++i) {
+            counts[i] += counts[i - 1];
+        }
+        for (i = 0; i < jumpCount; ++i) {
+            order[counts[255 - (Math.abs(targets[i] - jumps[i]) >> 8)]++] = i;
+        }
+
+        int[] shifts = new int[code.length + 2]; // the binary indexed tree
+        int[] paddings = new int[switchCount]; // bytes added to the switches
+        boolean[] resized = new boolean[jumpCount]; // resized jumps
+        int[] worklist = new int[jumpCount]; // jumps that can need resizing
+        int worklistSize = 0;
+        int candidates = 0; // jumps (in 'order') added to the worklist
+        int inserted = 0; // total number of inserted bytes
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            // adds the jumps that can now need to be resized to the worklist
+            while (candidates < jumpCount) {
+                j = order[candidates];
+                int d = Math.abs(targets[j] - jumps[j]) | 0xFF;
+                if (d + inserted <= Short.MAX_VALUE) {
+                    break;
+                }
+                worklist[worklistSize++] = j;
+                ++candidates;
+            }
+            // checks the jumps of the worklist, and removes the resized ones
+            int n = 0;
+            for (int k = 0; k < worklistSize; ++k) {
+                j = worklist[k];
+                u = jumps[j];
+                label = targets[j];
+                newOffset = label - u + getShift(shifts, label)
+                        - getShift(shifts, u);
+                if (newOffset >= Short.MIN_VALUE && newOffset <= Short.MAX_VALUE)
+                {
+                    worklist[n++] = j;
+                    continue;
+                }
+                resized[j] = true;
+                changed = true;
+                // inserts sizes[j] bytes after the jump instruction, and then
+                // updates the padding of the following switch instructions,
+                // which inserts or removes bytes after these instructions
+                v = u + 3;
+                int size = sizes[j];
+                int s = 0;
+                while (s < switchCount && switches[s] < v) {
+                    ++s;
+                }
+                while (true) {
+                    addShift(shifts, v, size);
+                    if (size > 0) {
+                        inserted += size;
+                    }
+                    // finds the next switch instruction whose padding changes.
+                    // Its future padding minus its current padding is
+                    // (3 - newOffset%4) - (3 - u%4) = u%4 - newOffset%4
+                    int padding = 0;
+                    for (; s < switchCount; ++s) {
+                        newOffset = switches[s] + getShift(shifts, switches[s]);
+                        padding = (switches[s] & 3) - (newOffset & 3);
+                        if (padding != paddings[s]) {
+                            break;
                         }
+                    }
+                    if (s == switchCount) {
                         break;
-                    case ClassWriter.VAR_INSN:
-                    case ClassWriter.SBYTE_INSN:
-                    case ClassWriter.LDC_INSN:
-                        u += 2;
-                        break;
-                    case ClassWriter.SHORT_INSN:
-                    case ClassWriter.LDCW_INSN:
-                    case ClassWriter.FIELDORMETH_INSN:
-                    case ClassWriter.TYPE_INSN:
-                    case ClassWriter.IINC_INSN:
-                        u += 3;
-                        break;
-                    case ClassWriter.ITFMETH_INSN:
-                    case ClassWriter.INDYMETH_INSN:
-                        u += 5;
-                        break;
-                    // case ClassWriter.MANA_INSN:
-                    default:
-                        u += 4;
-                        break;
-                }
-                if (insert != 0) {
-                    // adds a new (u, insert) entry in the allIndexes and
-                    // allSizes arrays
-                    int[] newIndexes = new int[allIndexes.length + 1];
-                    int[] newSizes = new int[allSizes.length + 1];
-                    System.arraycopy(allIndexes,
-                            0,
-                            newIndexes,
-                            0,
-                            allIndexes.length);
-                    System.arraycopy(allSizes, 0, newSizes, 0, allSizes.length);
-                    newIndexes[allIndexes.length] = u;
-                    newSizes[allSizes.length] = insert;
-                    allIndexes = newIndexes;
-                    allSizes = newSizes;
-                    if (insert > 0) {
-                        state = 3;
                     }
+                    v = switchEnds[s];
+                    size = padding - paddings[s];
+                    paddings[s++] = padding;
                 }
             }
-            if (state < 3) {
-                --state;
+            worklistSize = n;
+        }
+
+        // computes the number of bytes inserted before each position, i.e. at
+        // or before the end of the instruction which precedes this position
+        // instructions to be resized
+        boolean[] resize = new boolean[code.length];
+        int[] allShifts = new int[code.length + 1];
+        for (i = 0; i < jumpCount; ++i) {
+            if (resized[i]) {
+                resize[jumps[i]] = true;
+                allShifts[jumps[i] + 3] += sizes[i];
             }
-        } while (state != 0);
+        }
+        for (i = 0; i < switchCount; ++i) {
+            allShifts[switchEnds[i]] += paddings[i];
+        }
+        for (i = 1; i < allShifts.length; ++i) {
+            allShifts[i] += allShifts[i - 1];
+        }
 
         // 2nd step:
         // copies the bytecode of the method into a new bytevector, updates the
@@ -2334,7 +2507,7 @@ class MethodWriter extends MethodVisitor {
                     } else {
                         label = u + readShort(b, u + 1);
                     }
-                    newOffset = getNewOffset(allIndexes, allSizes, u, label);
+                    newOffset = getNewOffset(allShifts, u, label);
                     if (resize[u]) {
                         // replaces GOTO with GOTO_W, JSR with JSR_W and IFxxx
                         // <l> with IFNOTxxx <l'> GOTO_W <l>, where IFNOTxxx is
@@ -2363,7 +2536,7 @@ class MethodWriter extends MethodVisitor {
                     break;
                 case ClassWriter.LABELW_INSN:
                     label = u + readInt(b, u + 1);
-                    newOffset = getNewOffset(allIndexes, allSizes, u, label);
+                    newOffset = getNewOffset(allShifts, u, label);
                     newCode.putByte(opcode);
                     newCode.putInt(newOffset);
                     u += 5;
@@ -2377,7 +2550,7 @@ class MethodWriter extends MethodVisitor {
                     newCode.putByteArray(null, 0, (4 - newCode.length % 4) % 4);
                     label = v + readInt(b, u);
                     u += 4;
-                    newOffset = getNewOffset(allIndexes, allSizes, v, label);
+                    newOffset = getNewOffset(allShifts, v, label);
                     newCode.putInt(newOffset);
                     j = readInt(b, u);
                     u += 4;
@@ -2388,7 +2561,7 @@ class MethodWriter extends MethodVisitor {
                     for (; j > 0; --j) {
                         label = v + readInt(b, u);
                         u += 4;
-                        newOffset = getNewOffset(allIndexes, allSizes, v, label);
+                        newOffset = getNewOffset(allShifts, v, label);
                         newCode.putInt(newOffset);
                     }
                     break;
@@ -2401,7 +2574,7 @@ class MethodWriter extends MethodVisitor {
                     newCode.putByteArray(null, 0, (4 - newCode.length % 4) % 4);
                     label = v + readInt(b, u);
                     u += 4;
-                    newOffset = getNewOffset(allIndexes, allSizes, v, label);
+                    newOffset = getNewOffset(allShifts, v, label);
                     newCode.putInt(newOffset);
                     j = readInt(b, u);
                     u += 4;
@@ -2411,7 +2584,7 @@ class MethodWriter extends MethodVisitor {
                         u += 4;
                         label = v + readInt(b, u);
                         u += 4;
-                        newOffset = getNewOffset(allIndexes, allSizes, v, label);
+                        newOffset = getNewOffset(allShifts, v, label);
                         newCode.putInt(newOffset);
                     }
                     break;
@@ -2471,9 +2644,24 @@ class MethodWriter extends MethodVisitor {
                      * must therefore never have been called for this label.
                      */
                     u = l.position - 3;
-                    if ((l.status & Label.STORE) != 0 || (u >= 0 && resize[u]))
+                    if ((l.status & Label.REACHABLE) == 0) {
+                        // emits a frame for this unreachable block, if it is
+                        // not empty (its code has already been replaced with
+                        // NOP ... NOP ATHROW in visitMaxs)
+                        v = l.successor == null
+                                ? code.length
+                                : l.successor.position;
+                        if (v > l.position) {
+                            getNewOffset(allShifts, l);
+                            startFrame(l.position, 0, 1);
+                            frame[frameIndex++] = Frame.OBJECT
+                                    | cw.addType("java/lang/Throwable");
+                            endFrame();
+                        }
+                    } else if ((l.status & Label.STORE) != 0
+                            || (u >= 0 && resize[u]))
                     {
-                        getNewOffset(allIndexes, allSizes, l);
+                        getNewOffset(allShifts, l);
                         // TODO update offsets in UNINITIALIZED values
                         visitFrame(l.frame);
                     }
@@ -2500,9 +2688,9 @@ class MethodWriter extends MethodVisitor {
         // updates the exception handler block labels
         Handler h = firstHandler;
         while (h != null) {
-            getNewOffset(allIndexes, allSizes, h.start);
-            getNewOffset(allIndexes, allSizes, h.end);
-            getNewOffset(allIndexes, allSizes, h.handler);
+            getNewOffset(allShifts, h.start);
+            getNewOffset(allShifts, h.end);
+            getNewOffset(allShifts, h.handler);
             h = h.next;
         }
         // updates the instructions addresses in the
@@ -2514,10 +2702,10 @@ class MethodWriter extends MethodVisitor {
                 u = 0;
                 while (u < bv.length) {
                     label = readUnsignedShort(b, u);
-                    newOffset = getNewOffset(allIndexes, allSizes, 0, label);
+                    newOffset = getNewOffset(allShifts, 0, label);
                     writeShort(b, u, newOffset);
                     label += readUnsignedShort(b, u + 2);
-                    newOffset = getNewOffset(allIndexes, allSizes, 0, label)
+                    newOffset = getNewOffset(allShifts, 0, label)
                             - newOffset;
                     writeShort(b, u + 2, newOffset);
                     u += 10;
@@ -2528,8 +2716,7 @@ class MethodWriter extends MethodVisitor {
             b = lineNumber.data;
             u = 0;
             while (u < lineNumber.length) {
-                writeShort(b, u, getNewOffset(allIndexes,
-                        allSizes,
+                writeShort(b, u, getNewOffset(allShifts,
                         0,
                         readUnsignedShort(b, u)));
                 u += 4;
@@ -2541,7 +2728,7 @@ class MethodWriter extends MethodVisitor {
             Label[] labels = attr.getLabels();
             if (labels != null) {
                 for (i = labels.length - 1; i >= 0; --i) {
-                    getNewOffset(allIndexes, allSizes, labels[i]);
+                    getNewOffset(allShifts, labels[i]);
                 }
             }
             attr = attr.next;
@@ -2598,68 +2785,65 @@ class MethodWriter extends MethodVisitor {
     }
 
     /**
-     * Computes the future value of a bytecode offset. <p> Note: it is possible
-     * to have several entries for the same instruction in the <tt>indexes</tt>
-     * and <tt>sizes</tt>: two entries (index=a,size=b) and (index=a,size=b')
-     * are equivalent to a single entry (index=a,size=b+b').
+     * Adds a number of bytes to be inserted at the given position, in a binary
+     * indexed tree.
      *
-     * @param indexes current positions of the instructions to be resized. Each
-     *        instruction must be designated by the index of its <i>last</i>
-     *        byte, plus one (or, in other words, by the index of the <i>first</i>
-     *        byte of the <i>next</i> instruction).
-     * @param sizes the number of bytes to be <i>added</i> to the above
-     *        instructions. More precisely, for each i < <tt>len</tt>,
-     *        <tt>sizes</tt>[i] bytes will be added at the end of the
-     *        instruction designated by <tt>indexes</tt>[i] or, if
-     *        <tt>sizes</tt>[i] is negative, the <i>last</i> |<tt>sizes[i]</tt>|
-     *        bytes of the instruction will be removed (the instruction size
-     *        <i>must not</i> become negative or null).
+     * @param shifts a binary indexed tree of size <i>n</i>+2, where <i>n</i>
+     *        is the code length.
+     * @param index the index of the first byte of the instruction that will
+     *        follow the inserted bytes.
+     * @param size the number of bytes to be inserted, or removed if negative.
+     */
+    static void addShift(final int[] shifts, final int index, final int size)
+    {
+        for (int i = index + 1; i < shifts.length; i += i & -i) {
+            shifts[i] += size;
+        }
+    }
+
+    /**
+     * Returns the number of bytes inserted at or before the given position, in
+     * a binary indexed tree.
+     *
+     * @param shifts a binary indexed tree of size <i>n</i>+2, where <i>n</i>
+     *        is the code length.
+     * @param index an index in the bytecode of the method.
+     * @return the number of bytes inserted at or before the given position.
+     */
+    static int getShift(final int[] shifts, final int index) {
+        int shift = 0;
+        for (int i = index + 1; i > 0; i -= i & -i) {
+            shift += shifts[i];
+        }
+        return shift;
+    }
+
+    /**
+     * Computes the future value of a bytecode offset.
+     *
+     * @param shifts the number of bytes inserted (or removed, if negative) at
+     *        or before each position of the bytecode. Bytes inserted at a
+     *        given position are inserted at the end of the instruction that
+     *        precedes this position.
      * @param begin index of the first byte of the source instruction.
      * @param end index of the first byte of the target instruction.
      * @return the future value of the given bytecode offset.
      */
-    static int getNewOffset(
-        final int[] indexes,
-        final int[] sizes,
-        final int begin,
-        final int end)
+    static int getNewOffset(final int[] shifts, final int begin, final int end)
     {
-        int offset = end - begin;
-        for (int i = 0; i < indexes.length; ++i) {
-            if (begin < indexes[i] && indexes[i] <= end) {
-                // forward jump
-                offset += sizes[i];
-            } else if (end < indexes[i] && indexes[i] <= begin) {
-                // backward jump
-                offset -= sizes[i];
-            }
-        }
-        return offset;
+        return end - begin + shifts[end] - shifts[begin];
     }
 
     /**
      * Updates the offset of the given label.
      *
-     * @param indexes current positions of the instructions to be resized. Each
-     *        instruction must be designated by the index of its <i>last</i>
-     *        byte, plus one (or, in other words, by the index of the <i>first</i>
-     *        byte of the <i>next</i> instruction).
-     * @param sizes the number of bytes to be <i>added</i> to the above
-     *        instructions. More precisely, for each i < <tt>len</tt>,
-     *        <tt>sizes</tt>[i] bytes will be added at the end of the
-     *        instruction designated by <tt>indexes</tt>[i] or, if
-     *        <tt>sizes</tt>[i] is negative, the <i>last</i> |<tt>sizes[i]</tt>|
-     *        bytes of the instruction will be removed (the instruction size
-     *        <i>must not</i> become negative or null).
+     * @param shifts the number of bytes inserted (or removed, if negative) at
+     *        or before each position of the bytecode.
      * @param label the label whose offset must be updated.
      */
-    static void getNewOffset(
-        final int[] indexes,
-        final int[] sizes,
-        final Label label)
-    {
+    static void getNewOffset(final int[] shifts, final Label label) {
         if ((label.status & Label.RESIZED) == 0) {
-            label.position = getNewOffset(indexes, sizes, 0, label.position);
+            label.position += shifts[label.position];
             label.status |= Label.RESIZED;
         }
     }
@@ -0,0 +1,172 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.objectweb.asm;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Creates {@link ClassReader}s that share their internal tables. Each
+ * {@link ClassReader} returned by the <tt>read</tt> methods reuses the
+ * constant pool offset table, the string cache and, for classes read from
+ * {@link ByteBuffer}s without an accessible array, the copy buffer of the
+ * previous ones, when they are large enough. This avoids the allocations
+ * done by the {@link ClassReader} constructors when many classes are read in
+ * sequence, one after the other. The result of
+ * {@link ClassReader#accept accept} is the same as with a new
+ * {@link ClassReader}.
+ * <p>
+ * <i>A {@link ClassReader} returned by this object must no longer be used,
+ * in particular by a {@link ClassWriter} constructed with it, once another
+ * class has been read with this object. This class is not thread safe: each
+ * thread must use its own instance.</i>
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class ReusableClassReader {
+
+    /**
+     * The constant pool offset table shared by the class readers.
+     */
+    private int[] items;
+
+    /**
+     * The string cache shared by the class readers, or <tt>null</tt>.
+     */
+    private String[] strings;
+
+    /**
+     * The array into which the classes read from {@link ByteBuffer}s without
+     * an accessible array are copied, or <tt>null</tt>.
+     */
+    private byte[] buffer;
+
+    /**
+     * Returns a class reader to read the given class. The class reader
+     * returned by the previous call must no longer be used.
+     *
+     * @param b the bytecode of the class to be read.
+     * @return a class reader to read the given class.
+     */
+    public ClassReader read(final byte[] b) {
+        return new ClassReader(b, 0, this);
+    }
+
+    /**
+     * Returns a class reader to read the given class. The class reader
+     * returned by the previous call must no longer be used.
+     *
+     * @param b the bytecode of the class to be read.
+     * @param off the start offset of the class data.
+     * @param len the length of the class data.
+     * @return a class reader to read the given class.
+     */
+    public ClassReader read(final byte[] b, final int off, final int len) {
+        return new ClassReader(b, off, this);
+    }
+
+    /**
+     * Returns a class reader to read the given class. The class reader
+     * returned by the previous call must no longer be used. A class reader
+     * always reads its class from the {@link ClassReader#b b} array. If the
+     * buffer is backed by an accessible array, as heap buffers are, this
+     * array is used as is. Otherwise, as for read-only, direct or
+     * memory-mapped buffers, the remaining bytes of the buffer are copied,
+     * with a bulk copy, into an array that is reused by the next calls.
+     *
+     * @param buffer the bytecode of the class to be read, starting at the
+     *        position of the buffer, which is not modified.
+     * @return a class reader to read the given class.
+     */
+    public ClassReader read(final ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            return new ClassReader(buffer.array(), buffer.arrayOffset()
+                    + buffer.position(), this);
+        }
+        int len = buffer.remaining();
+        byte[] b = getBuffer(len);
+        buffer.duplicate().get(b, 0, len);
+        return new ClassReader(b, 0, this);
+    }
+
+    /**
+     * Returns the constant pool offset table for a class.
+     *
+     * @param n the number of constant pool items of the class, plus one.
+     * @return an array of at least <tt>n</tt> elements.
+     */
+    int[] getItems(final int n) {
+        if (items == null || items.length < n) {
+            items = new int[n];
+        }
+        return items;
+    }
+
+    /**
+     * Returns the string cache for a class.
+     *
+     * @param n the number of constant pool items of the class, plus one.
+     * @return an array of at least <tt>n</tt> <tt>null</tt> elements, or
+     *         <tt>null</tt> if the string cache of the previous class reader
+     *         is too small or has not been allocated.
+     */
+    String[] getStrings(final int n) {
+        String[] strings = this.strings;
+        if (strings == null || strings.length < n) {
+            return null;
+        }
+        for (int i = 0; i < n; ++i) {
+            strings[i] = null;
+        }
+        return strings;
+    }
+
+    /**
+     * Sets the string cache to be reused by the next class readers.
+     *
+     * @param strings the string cache allocated by a class reader.
+     */
+    void setStrings(final String[] strings) {
+        this.strings = strings;
+    }
+
+    /**
+     * Returns the array into which a class must be copied.
+     *
+     * @param len the length of the class data.
+     * @return an array of at least <tt>len</tt> bytes.
+     */
+    private byte[] getBuffer(final int len) {
+        if (buffer == null || buffer.length < len) {
+            buffer = new byte[len];
+        }
+        return buffer;
+    }
+}
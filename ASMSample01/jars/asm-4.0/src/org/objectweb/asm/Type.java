@@ -31,10 +31,14 @@ package org.objectweb.asm;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A Java field or method type. This class can be used to make it easier to
- * manipulate type and method descriptors.
+ * manipulate type and method descriptors. The types returned by the static
+ * factory methods are interned in bounded, concurrent caches, so that each
+ * distinct descriptor is parsed only once, and the argument types, return
+ * type and sizes of each distinct method descriptor are computed only once.
  *
  * @author Eric Bruneton
  * @author Chris Nokleberg
@@ -155,6 +159,30 @@ public class Type {
     public static final Type DOUBLE_TYPE = new Type(DOUBLE, null, ('D' << 24)
             | (3 << 16) | (3 << 8) | 2, 1);
 
+    /**
+     * The maximum number of entries of each cache. A cache is cleared when it
+     * is full.
+     */
+    private static final int CACHE_SIZE = 16384;
+
+    /**
+     * The interned field types, indexed by descriptor.
+     */
+    private static final ConcurrentHashMap<String, Type> TYPES =
+            new ConcurrentHashMap<String, Type>();
+
+    /**
+     * The interned object and array types, indexed by internal name.
+     */
+    private static final ConcurrentHashMap<String, Type> OBJECT_TYPES =
+            new ConcurrentHashMap<String, Type>();
+
+    /**
+     * The parsed method descriptors, indexed by descriptor.
+     */
+    private static final ConcurrentHashMap<String, MethodInfo> METHODS =
+            new ConcurrentHashMap<String, MethodInfo>();
+
     // ------------------------------------------------------------------------
     // Fields
     // ------------------------------------------------------------------------
@@ -210,7 +238,19 @@ public class Type {
      * @return the Java type corresponding to the given type descriptor.
      */
     public static Type getType(final String typeDescriptor) {
-        return getType(typeDescriptor.toCharArray(), 0);
+        Type t = TYPES.get(typeDescriptor);
+        if (t == null) {
+            if (typeDescriptor.length() > 0 && typeDescriptor.charAt(0) == '(')
+            {
+                MethodInfo info = getMethodInfo(typeDescriptor);
+                return info == null
+                        ? getType(typeDescriptor.toCharArray(), 0)
+                        : info.type;
+            }
+            t = intern(TYPES, typeDescriptor,
+                    getType(typeDescriptor.toCharArray(), 0));
+        }
+        return t;
     }
 
     /**
@@ -220,8 +260,14 @@ public class Type {
      * @return the Java type corresponding to the given internal name.
      */
     public static Type getObjectType(final String internalName) {
-        char[] buf = internalName.toCharArray();
-        return new Type(buf[0] == '[' ? ARRAY : OBJECT, buf, 0, buf.length);
+        Type t = OBJECT_TYPES.get(internalName);
+        if (t == null) {
+            char[] buf = internalName.toCharArray();
+            t = intern(OBJECT_TYPES, internalName, new Type(buf[0] == '['
+                    ? ARRAY
+                    : OBJECT, buf, 0, buf.length));
+        }
+        return t;
     }
 
     /**
@@ -232,7 +278,7 @@ public class Type {
      * @return the Java type corresponding to the given method descriptor.
      */
     public static Type getMethodType(final String methodDescriptor) {
-        return getType(methodDescriptor.toCharArray(), 0);
+        return getType(methodDescriptor);
     }
 
     /**
@@ -308,7 +354,21 @@ public class Type {
      *         method descriptor.
      */
     public static Type[] getArgumentTypes(final String methodDescriptor) {
-        char[] buf = methodDescriptor.toCharArray();
+        MethodInfo info = getMethodInfo(methodDescriptor);
+        return info == null
+                ? getArgumentTypes(methodDescriptor.toCharArray())
+                : info.argumentTypes.clone();
+    }
+
+    /**
+     * Returns the Java types corresponding to the argument types of the given
+     * method descriptor.
+     *
+     * @param buf a buffer containing a method descriptor.
+     * @return the Java types corresponding to the argument types of the given
+     *         method descriptor.
+     */
+    private static Type[] getArgumentTypes(final char[] buf) {
         int off = 1;
         int size = 0;
         while (true) {
@@ -360,8 +420,11 @@ public class Type {
      *         method descriptor.
      */
     public static Type getReturnType(final String methodDescriptor) {
-        char[] buf = methodDescriptor.toCharArray();
-        return getType(buf, methodDescriptor.indexOf(')') + 1);
+        MethodInfo info = getMethodInfo(methodDescriptor);
+        return info == null
+                ? getType(methodDescriptor.toCharArray(),
+                        methodDescriptor.indexOf(')') + 1)
+                : info.returnType;
     }
 
     /**
@@ -387,6 +450,22 @@ public class Type {
      *         to <tt>i >> 2</tt>, and retSize to <tt>i & 0x03</tt>).
      */
     public static int getArgumentsAndReturnSizes(final String desc) {
+        MethodInfo info = getMethodInfo(desc);
+        return info == null
+                ? computeArgumentsAndReturnSizes(desc)
+                : info.sizes;
+    }
+
+    /**
+     * Computes the size of the arguments and of the return value of a method.
+     *
+     * @param desc the descriptor of a method.
+     * @return the size of the arguments of the method (plus one for the
+     *         implicit this argument), argSize, and the size of its return
+     *         value, retSize, packed into a single int i =
+     *         <tt>(argSize << 2) | retSize</tt>.
+     */
+    private static int computeArgumentsAndReturnSizes(final String desc) {
         int n = 1;
         int c = 1;
         while (true) {
@@ -468,6 +547,50 @@ public class Type {
         }
     }
 
+    /**
+     * Returns the parsed form of the given method descriptor.
+     *
+     * @param desc a method descriptor.
+     * @return the parsed form of the given method descriptor, or <tt>null</tt>
+     *         if it cannot be parsed. In this case the callers parse the
+     *         descriptor without caching the result, so that they keep
+     *         accepting the same malformed descriptors as before, such as a
+     *         return type without arguments.
+     */
+    private static MethodInfo getMethodInfo(final String desc) {
+        MethodInfo info = METHODS.get(desc);
+        if (info == null) {
+            try {
+                info = new MethodInfo(desc);
+            } catch (IndexOutOfBoundsException e) {
+                return null;
+            }
+            info = intern(METHODS, desc, info);
+        }
+        return info;
+    }
+
+    /**
+     * Adds a value to a cache, unless the cache already contains a value for
+     * the same key. The cache is cleared first if it is full.
+     *
+     * @param cache a cache.
+     * @param key the key of the value.
+     * @param value the value to be added.
+     * @return the value associated with the key in the cache.
+     */
+    private static <V> V intern(
+        final ConcurrentHashMap<String, V> cache,
+        final String key,
+        final V value)
+    {
+        if (cache.size() >= CACHE_SIZE) {
+            cache.clear();
+        }
+        V v = cache.putIfAbsent(key, value);
+        return v == null ? value : v;
+    }
+
     // ------------------------------------------------------------------------
     // Accessors
     // ------------------------------------------------------------------------
@@ -862,4 +985,44 @@ public class Type {
     public String toString() {
         return getDescriptor();
     }
+
+    // ------------------------------------------------------------------------
+    // Parsed method descriptors
+    // ------------------------------------------------------------------------
+
+    /**
+     * A parsed method descriptor. All the fields are final, so instances can
+     * be shared between threads without synchronization.
+     */
+    private static final class MethodInfo {
+
+        /**
+         * The method type.
+         */
+        final Type type;
+
+        /**
+         * The argument types. This array must not be modified.
+         */
+        final Type[] argumentTypes;
+
+        /**
+         * The return type.
+         */
+        final Type returnType;
+
+        /**
+         * The size of the arguments and of the return value, see
+         * {@link Type#getArgumentsAndReturnSizes(String)}.
+         */
+        final int sizes;
+
+        MethodInfo(final String desc) {
+            char[] buf = desc.toCharArray();
+            this.type = new Type(METHOD, buf, 0, buf.length);
+            this.argumentTypes = getArgumentTypes(buf);
+            this.returnType = getType(buf, desc.indexOf(')') + 1);
+            this.sizes = computeArgumentsAndReturnSizes(desc);
+        }
+    }
 }
@@ -0,0 +1,134 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.objectweb.asm;
+
+/**
+ * Provides information about the class hierarchy without loading classes. A
+ * {@link ClassWriter} constructed with a type hierarchy uses it to compute the
+ * common super class of two types when it computes stack map frames, instead
+ * of loading these types with <tt>Class.forName</tt>.
+ * <p>
+ * Implementations must be thread safe if they are shared between class
+ * writers used in different threads.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public abstract class TypeHierarchy {
+
+    /**
+     * Returns <tt>true</tt> if the given type is an interface.
+     *
+     * @param type the internal name of a class or interface.
+     * @return <tt>true</tt> if the given type is an interface.
+     */
+    public abstract boolean isInterface(String type);
+
+    /**
+     * Returns the super class of the given type.
+     *
+     * @param type the internal name of a class or interface.
+     * @return the internal name of the super class of the given type, or
+     *         <tt>null</tt> if <tt>type</tt> is <tt>java/lang/Object</tt>.
+     */
+    public abstract String getSuperClass(String type);
+
+    /**
+     * Returns the interfaces directly implemented or extended by the given
+     * type.
+     *
+     * @param type the internal name of a class or interface.
+     * @return the internal names of the interfaces directly implemented or
+     *         extended by the given type. Must not be <tt>null</tt>.
+     */
+    public abstract String[] getInterfaces(String type);
+
+    /**
+     * Returns <tt>true</tt> if a value of the second type can be assigned to a
+     * variable of the first type, i.e. if <tt>type1</tt> is <tt>type2</tt> or
+     * one of its super types.
+     *
+     * @param type1 the internal name of a class or interface.
+     * @param type2 the internal name of another class or interface.
+     * @return <tt>true</tt> if <tt>type1</tt> is assignable from
+     *         <tt>type2</tt>.
+     */
+    public boolean isAssignableFrom(final String type1, final String type2) {
+        if (type1.equals(type2) || "java/lang/Object".equals(type1)) {
+            return true;
+        }
+        boolean itf = isInterface(type1);
+        String t = type2;
+        while (t != null) {
+            if (t.equals(type1)) {
+                return true;
+            }
+            if (itf) {
+                String[] interfaces = getInterfaces(t);
+                for (int i = 0; i < interfaces.length; ++i) {
+                    if (isAssignableFrom(type1, interfaces[i])) {
+                        return true;
+                    }
+                }
+            }
+            t = getSuperClass(t);
+        }
+        return false;
+    }
+
+    /**
+     * Returns the common super type of the two given types. This method
+     * follows the same algorithm as {@link ClassWriter#getCommonSuperClass},
+     * i.e. it returns <tt>java/lang/Object</tt> if one of the types is an
+     * interface not assignable from the other.
+     *
+     * @param type1 the internal name of a class.
+     * @param type2 the internal name of another class.
+     * @return the internal name of the common super class of the two given
+     *         classes.
+     */
+    public String getCommonSuperClass(final String type1, final String type2)
+    {
+        if (isAssignableFrom(type1, type2)) {
+            return type1;
+        }
+        if (isAssignableFrom(type2, type1)) {
+            return type2;
+        }
+        if (isInterface(type1) || isInterface(type2)) {
+            return "java/lang/Object";
+        }
+        String t = type1;
+        do {
+            t = getSuperClass(t);
+        } while (t != null && !isAssignableFrom(t, type2));
+        return t == null ? "java/lang/Object" : t;
+    }
+}
@@ -0,0 +1,262 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.objectweb.asm.commons;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.TypeHierarchy;
+
+/**
+ * A {@link TypeHierarchy} that reads the class headers (access flags, super
+ * class and interfaces) from the class files, without loading any class. The
+ * class files are found with {@link ClassLoader#getResourceAsStream}. The
+ * super class chain of each type is computed once and kept in a concurrent
+ * cache, so that a single instance can be shared between many
+ * {@link org.objectweb.asm.ClassWriter}s, in many threads.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class BytecodeTypeHierarchy extends TypeHierarchy {
+
+    /**
+     * The class loader used to find class files.
+     */
+    private final ClassLoader loader;
+
+    /**
+     * The already read types, indexed by internal name.
+     */
+    private final ConcurrentMap<String, Node> nodes;
+
+    /**
+     * Constructs a new {@link BytecodeTypeHierarchy} that finds class files
+     * with the class loader of this class.
+     */
+    public BytecodeTypeHierarchy() {
+        this(BytecodeTypeHierarchy.class.getClassLoader());
+    }
+
+    /**
+     * Constructs a new {@link BytecodeTypeHierarchy}.
+     *
+     * @param loader the class loader used to find class files. Classes are
+     *        never loaded with this class loader, only class file resources.
+     */
+    public BytecodeTypeHierarchy(final ClassLoader loader) {
+        this.loader = loader;
+        this.nodes = new ConcurrentHashMap<String, Node>();
+        nodes.put("java/lang/Object", new Node("java/lang/Object",
+                false,
+                null,
+                new String[0]));
+    }
+
+    @Override
+    public boolean isInterface(final String type) {
+        return getNode(type).itf;
+    }
+
+    @Override
+    public String getSuperClass(final String type) {
+        return getNode(type).superName;
+    }
+
+    @Override
+    public String[] getInterfaces(final String type) {
+        return getNode(type).interfaces.clone();
+    }
+
+    @Override
+    public boolean isAssignableFrom(final String type1, final String type2) {
+        if (type1.equals(type2)) {
+            return true;
+        }
+        if (getNode(type1).itf) {
+            return super.isAssignableFrom(type1, type2);
+        }
+        String[] chain = getSuperClasses(getNode(type2));
+        for (int i = 1; i < chain.length; ++i) {
+            if (chain[i].equals(type1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String getCommonSuperClass(final String type1, final String type2)
+    {
+        if (isAssignableFrom(type1, type2)) {
+            return type1;
+        }
+        if (isAssignableFrom(type2, type1)) {
+            return type2;
+        }
+        Node n1 = getNode(type1);
+        Node n2 = getNode(type2);
+        if (n1.itf || n2.itf) {
+            return "java/lang/Object";
+        }
+        // both chains end with java/lang/Object: compares them from the end
+        String[] c1 = getSuperClasses(n1);
+        String[] c2 = getSuperClasses(n2);
+        int i = c1.length - 1;
+        int j = c2.length - 1;
+        while (i > 0 && j > 0 && c1[i - 1].equals(c2[j - 1])) {
+            --i;
+            --j;
+        }
+        return c1[i];
+    }
+
+    /**
+     * Returns an input stream to read the class file of the given type. The
+     * default implementation uses {@link ClassLoader#getResourceAsStream}.
+     * This method can be overridden to find class files in other ways.
+     *
+     * @param type the internal name of a class or interface.
+     * @return an input stream to read the class file of the given type, or
+     *         <tt>null</tt> if it cannot be found.
+     * @throws IOException if the class file cannot be opened.
+     */
+    protected InputStream getClassFile(final String type) throws IOException {
+        String name = type + ".class";
+        return loader == null
+                ? ClassLoader.getSystemResourceAsStream(name)
+                : loader.getResourceAsStream(name);
+    }
+
+    /**
+     * Returns the node of the given type, reading its class file if needed.
+     *
+     * @param type the internal name of a class or interface.
+     * @return the node of the given type.
+     */
+    private Node getNode(final String type) {
+        Node n = nodes.get(type);
+        if (n == null) {
+            n = readNode(type);
+            Node m = nodes.putIfAbsent(type, n);
+            if (m != null) {
+                n = m;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Reads the header of the class file of the given type.
+     *
+     * @param type the internal name of a class or interface.
+     * @return a new node for the given type.
+     */
+    private Node readNode(final String type) {
+        ClassReader cr;
+        try {
+            InputStream is = getClassFile(type);
+            if (is == null) {
+                throw new RuntimeException("Class not found: " + type);
+            }
+            try {
+                cr = new ClassReader(is);
+            } finally {
+                is.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e.toString());
+        }
+        return new Node(type,
+                (cr.getAccess() & Opcodes.ACC_INTERFACE) != 0,
+                cr.getSuperName(),
+                cr.getInterfaces());
+    }
+
+    /**
+     * Returns the super class chain of the given node, computing and caching
+     * it if needed.
+     *
+     * @param n a node.
+     * @return the internal names of the type of <tt>n</tt> and of all its super
+     *         classes, up to <tt>java/lang/Object</tt> inclusive.
+     */
+    private String[] getSuperClasses(final Node n) {
+        String[] chain = n.superClasses;
+        if (chain == null) {
+            if (n.superName == null) {
+                chain = new String[] { n.name };
+            } else {
+                String[] c = getSuperClasses(getNode(n.superName));
+                chain = new String[c.length + 1];
+                chain[0] = n.name;
+                System.arraycopy(c, 0, chain, 1, c.length);
+            }
+            n.superClasses = chain;
+        }
+        return chain;
+    }
+
+    /**
+     * The header information of a class or interface.
+     */
+    private static final class Node {
+
+        final String name;
+
+        final boolean itf;
+
+        final String superName;
+
+        final String[] interfaces;
+
+        /**
+         * The super class chain of this type, computed lazily. Concurrent
+         * computations of this chain are harmless, since they all give the
+         * same result.
+         */
+        volatile String[] superClasses;
+
+        Node(final String name,
+            final boolean itf,
+            final String superName,
+            final String[] interfaces)
+        {
+            this.name = name;
+            this.itf = itf;
+            this.superName = superName;
+            this.interfaces = interfaces;
+        }
+    }
+}
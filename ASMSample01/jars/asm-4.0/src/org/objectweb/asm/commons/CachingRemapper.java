@@ -0,0 +1,280 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.commons;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.objectweb.asm.signature.SignatureVisitor;
+
+/**
+ * A {@link Remapper} that memoizes the results of another remapper. The type
+ * names, internal names, descriptors, method descriptors and signatures are
+ * remapped only once by the other remapper, and the results are then found in
+ * concurrent memo tables. This is useful when the same descriptors occur many
+ * times, e.g., when shading or obfuscating jars, and avoids in particular
+ * creating a signature reader and writer for each signature. All the other
+ * methods, e.g., for field and method names or constant values, are directly
+ * delegated to the other remapper, so that its overridden methods are always
+ * used.
+ * <p>
+ * The remapped values must only depend on their arguments, i.e., the other
+ * remapper must not change while it is used through this class. This class
+ * can be used concurrently if the other remapper can.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class CachingRemapper extends Remapper {
+
+    /**
+     * The default maximum number of entries of each memo table.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 65536;
+
+    /**
+     * The value stored in {@link #types} for the type names that are not
+     * remapped, i.e., for which {@link Remapper#map} returns <tt>null</tt>.
+     */
+    private static final String NULL = new String();
+
+    /**
+     * The remapper whose results are memoized.
+     */
+    private final Remapper remapper;
+
+    /**
+     * The maximum number of entries of each memo table. A table is cleared
+     * when it is full.
+     */
+    private final int cacheSize;
+
+    /**
+     * The remapped type names.
+     */
+    private final ConcurrentHashMap<String, String> types;
+
+    /**
+     * The remapped internal names, as returned by {@link Remapper#mapType}.
+     */
+    private final ConcurrentHashMap<String, String> internalNames;
+
+    /**
+     * The remapped type descriptors.
+     */
+    private final ConcurrentHashMap<String, String> descs;
+
+    /**
+     * The remapped method descriptors.
+     */
+    private final ConcurrentHashMap<String, String> methodDescs;
+
+    /**
+     * The remapped class and method signatures.
+     */
+    private final ConcurrentHashMap<String, String> signatures;
+
+    /**
+     * The remapped field type signatures.
+     */
+    private final ConcurrentHashMap<String, String> typeSignatures;
+
+    /**
+     * Constructs a new {@link CachingRemapper}.
+     *
+     * @param remapper the remapper whose results must be memoized.
+     */
+    public CachingRemapper(final Remapper remapper) {
+        this(remapper, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Constructs a new {@link CachingRemapper}.
+     *
+     * @param remapper the remapper whose results must be memoized.
+     * @param cacheSize the maximum number of entries of each memo table.
+     */
+    public CachingRemapper(final Remapper remapper, final int cacheSize) {
+        if (cacheSize < 1) {
+            throw new IllegalArgumentException("cacheSize " + cacheSize);
+        }
+        this.remapper = remapper;
+        this.cacheSize = cacheSize;
+        this.types = new ConcurrentHashMap<String, String>();
+        this.internalNames = new ConcurrentHashMap<String, String>();
+        this.descs = new ConcurrentHashMap<String, String>();
+        this.methodDescs = new ConcurrentHashMap<String, String>();
+        this.signatures = new ConcurrentHashMap<String, String>();
+        this.typeSignatures = new ConcurrentHashMap<String, String>();
+    }
+
+    /**
+     * Returns the remapper whose results are memoized.
+     *
+     * @return the remapper whose results are memoized.
+     */
+    public Remapper getRemapper() {
+        return remapper;
+    }
+
+    /**
+     * Clears the memo tables.
+     */
+    public void clear() {
+        types.clear();
+        internalNames.clear();
+        descs.clear();
+        methodDescs.clear();
+        signatures.clear();
+        typeSignatures.clear();
+    }
+
+    @Override
+    public String map(final String typeName) {
+        String s = types.get(typeName);
+        if (s == null) {
+            s = remapper.map(typeName);
+            put(types, typeName, s == null ? NULL : s);
+        }
+        return s == NULL ? null : s;
+    }
+
+    @Override
+    public String mapDesc(final String desc) {
+        String s = descs.get(desc);
+        if (s == null) {
+            s = remapper.mapDesc(desc);
+            put(descs, desc, s);
+        }
+        return s;
+    }
+
+    @Override
+    public String mapType(final String type) {
+        if (type == null) {
+            return null;
+        }
+        String s = internalNames.get(type);
+        if (s == null) {
+            s = remapper.mapType(type);
+            put(internalNames, type, s);
+        }
+        return s;
+    }
+
+    @Override
+    public String[] mapTypes(final String[] types) {
+        return remapper.mapTypes(types);
+    }
+
+    @Override
+    public String mapMethodDesc(final String desc) {
+        String s = methodDescs.get(desc);
+        if (s == null) {
+            s = remapper.mapMethodDesc(desc);
+            put(methodDescs, desc, s);
+        }
+        return s;
+    }
+
+    @Override
+    public String mapSignature(
+        final String signature,
+        final boolean typeSignature)
+    {
+        if (signature == null) {
+            return null;
+        }
+        ConcurrentHashMap<String, String> table = typeSignature
+                ? typeSignatures
+                : signatures;
+        String s = table.get(signature);
+        if (s == null) {
+            s = remapper.mapSignature(signature, typeSignature);
+            put(table, signature, s);
+        }
+        return s;
+    }
+
+    @Override
+    public Object mapValue(final Object value) {
+        return remapper.mapValue(value);
+    }
+
+    @Override
+    protected SignatureVisitor createRemappingSignatureAdapter(
+        final SignatureVisitor v)
+    {
+        return remapper.createRemappingSignatureAdapter(v);
+    }
+
+    @Override
+    public String mapMethodName(
+        final String owner,
+        final String name,
+        final String desc)
+    {
+        return remapper.mapMethodName(owner, name, desc);
+    }
+
+    @Override
+    public String mapInvokeDynamicMethodName(
+        final String name,
+        final String desc)
+    {
+        return remapper.mapInvokeDynamicMethodName(name, desc);
+    }
+
+    @Override
+    public String mapFieldName(
+        final String owner,
+        final String name,
+        final String desc)
+    {
+        return remapper.mapFieldName(owner, name, desc);
+    }
+
+    /**
+     * Adds an entry to a memo table. The table is cleared first if it is
+     * full.
+     *
+     * @param table a memo table.
+     * @param key the key of the entry.
+     * @param value the value of the entry.
+     */
+    private void put(
+        final ConcurrentHashMap<String, String> table,
+        final String key,
+        final String value)
+    {
+        if (table.size() >= cacheSize) {
+            table.clear();
+        }
+        table.put(key, value);
+    }
+}
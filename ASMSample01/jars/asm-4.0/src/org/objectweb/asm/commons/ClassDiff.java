@@ -0,0 +1,393 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.commons;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.zip.Adler32;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+
+/**
+ * Computes the differences between two versions of a class. The result is a
+ * binary patch that can be applied to the old version of the class with a
+ * {@link ClassPatcher}, in order to reproduce the new version. This patch
+ * contains the header and the attributes of the new class, and only the
+ * fields and methods that changed between the two versions, encoded as a
+ * class file whose constant pool only contains the constants of these
+ * members. The unchanged members are referenced by their index in the old
+ * class.
+ * <p>
+ * Two members are compared with the raw bytes of their field_info or
+ * method_info structures when the constant pools of the two classes are
+ * identical (which is often the case when only method bodies changed).
+ * Otherwise they are compared independently of the constant pool indexes
+ * they use, by writing each of them in a class containing only this member.
+ * The unchanged members whose relative order is not the same in the two
+ * versions are included in the patch, so that the members of the patched
+ * class are in the same order as in the new class.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class ClassDiff {
+
+    /**
+     * The magic number of the patches.
+     */
+    static final int MAGIC = 0x41534D50;
+
+    /**
+     * The index used in patches to designate a field or method of the patch,
+     * instead of a field or method of the old class.
+     */
+    static final int NEW = 0xFFFF;
+
+    private ClassDiff() {
+    }
+
+    /**
+     * Computes the differences between two versions of a class.
+     *
+     * @param oldClass the bytecode of the old version of the class.
+     * @param newClass the bytecode of the new version of the class.
+     * @return a patch that transforms <tt>oldClass</tt> into
+     *         <tt>newClass</tt>. See {@link ClassPatcher}.
+     */
+    public static byte[] diff(final byte[] oldClass, final byte[] newClass) {
+        Members o = new Members(new ClassReader(oldClass));
+        Members n = new Members(new ClassReader(newClass));
+        boolean samePool = o.hasSamePool(n);
+        final boolean[] newFields = new boolean[n.fields.length - 1];
+        final boolean[] newMethods = new boolean[n.methods.length - 1];
+        int[] fields = diff(o, n, true, samePool, newFields);
+        int[] methods = diff(o, n, false, samePool, newMethods);
+
+        // writes the new class without its unchanged members
+        ClassWriter cw = new ClassWriter(0);
+        n.cr.accept(new ClassVisitor(Opcodes.ASM4, cw) {
+
+            private int field;
+
+            private int method;
+
+            @Override
+            public FieldVisitor visitField(
+                final int access,
+                final String name,
+                final String desc,
+                final String signature,
+                final Object value)
+            {
+                if (!newFields[field++]) {
+                    return null;
+                }
+                return super.visitField(access, name, desc, signature, value);
+            }
+
+            @Override
+            public MethodVisitor visitMethod(
+                final int access,
+                final String name,
+                final String desc,
+                final String signature,
+                final String[] exceptions)
+            {
+                if (!newMethods[method++]) {
+                    return null;
+                }
+                return super.visitMethod(access,
+                        name,
+                        desc,
+                        signature,
+                        exceptions);
+            }
+        }, 0);
+        byte[] b = cw.toByteArray();
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(b.length + 2
+                * (fields.length + methods.length) + 16);
+        DataOutputStream out = new DataOutputStream(bos);
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(checksum(oldClass));
+            out.writeShort(o.fields.length - 1);
+            out.writeShort(o.methods.length - 1);
+            writeIndexes(out, fields);
+            writeIndexes(out, methods);
+            out.write(b);
+            out.flush();
+        } catch (IOException e) {
+            // cannot happen with a ByteArrayOutputStream
+            throw new RuntimeException(e);
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * Returns the checksum of a class, used to check that a patch is applied
+     * to the class from which it was computed.
+     *
+     * @param b the bytecode of a class.
+     * @return the checksum of the given class.
+     */
+    static int checksum(final byte[] b) {
+        Adler32 adler = new Adler32();
+        adler.update(b, 0, b.length);
+        return (int) adler.getValue();
+    }
+
+    private static void writeIndexes(
+        final DataOutputStream out,
+        final int[] indexes) throws IOException
+    {
+        out.writeShort(indexes.length);
+        for (int i = 0; i < indexes.length; ++i) {
+            out.writeShort(indexes[i]);
+        }
+    }
+
+    /**
+     * Compares the fields or methods of two classes.
+     *
+     * @param o the old class.
+     * @param n the new class.
+     * @param fields <tt>true</tt> to compare the fields, <tt>false</tt> to
+     *        compare the methods.
+     * @param samePool if the two classes have the same constant pool.
+     * @param changed where to mark the members of the new class that must be
+     *        included in the patch.
+     * @return for each member of the new class, the index of the identical
+     *         member in the old class, or {@link #NEW}.
+     */
+    private static int[] diff(
+        final Members o,
+        final Members n,
+        final boolean fields,
+        final boolean samePool,
+        final boolean[] changed)
+    {
+        int[] oldOffsets = fields ? o.fields : o.methods;
+        int[] newOffsets = fields ? n.fields : n.methods;
+        char[] buf = new char[Math.max(o.cr.getMaxStringLength(),
+                n.cr.getMaxStringLength())];
+        HashMap<String, Integer> oldMembers = new HashMap<String, Integer>();
+        for (int i = 0; i < oldOffsets.length - 1; ++i) {
+            oldMembers.put(getKey(o.cr, oldOffsets[i], buf), new Integer(i));
+        }
+        int[] indexes = new int[newOffsets.length - 1];
+        int last = -1;
+        for (int j = 0; j < indexes.length; ++j) {
+            Integer i = oldMembers.get(getKey(n.cr, newOffsets[j], buf));
+            if (i != null && i.intValue() > last) {
+                int k = i.intValue();
+                boolean equal;
+                if (samePool) {
+                    equal = regionEquals(o.cr.b,
+                            oldOffsets[k],
+                            oldOffsets[k + 1],
+                            n.cr.b,
+                            newOffsets[j],
+                            newOffsets[j + 1]);
+                } else {
+                    equal = Arrays.equals(o.getMember(fields, k),
+                            n.getMember(fields, j));
+                }
+                if (equal) {
+                    indexes[j] = k;
+                    last = k;
+                    continue;
+                }
+            }
+            indexes[j] = NEW;
+            changed[j] = true;
+        }
+        return indexes;
+    }
+
+    /**
+     * Returns a key identifying a field or method in its class.
+     *
+     * @param cr a class reader.
+     * @param u the start offset of a field_info or method_info structure.
+     * @param buf a buffer used to read strings.
+     * @return the name and descriptor of the member, separated with ';' (which
+     *         cannot appear in member names).
+     */
+    private static String getKey(
+        final ClassReader cr,
+        final int u,
+        final char[] buf)
+    {
+        return cr.readUTF8(u + 2, buf) + ';' + cr.readUTF8(u + 4, buf);
+    }
+
+    private static boolean regionEquals(
+        final byte[] b1,
+        final int begin1,
+        final int end1,
+        final byte[] b2,
+        final int begin2,
+        final int end2)
+    {
+        if (end1 - begin1 != end2 - begin2) {
+            return false;
+        }
+        for (int i = begin1, j = begin2; i < end1; ++i, ++j) {
+            if (b1[i] != b2[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The location of the fields and methods of a class in its bytecode.
+     */
+    private static final class Members {
+
+        /**
+         * The class reader of the class.
+         */
+        final ClassReader cr;
+
+        /**
+         * The start offsets of the field_info structures of the class, plus
+         * the end offset of the last one.
+         */
+        final int[] fields;
+
+        /**
+         * The start offsets of the method_info structures of the class, plus
+         * the end offset of the last one.
+         */
+        final int[] methods;
+
+        /**
+         * The start offset of the BootstrapMethods attribute of the class, or
+         * 0.
+         */
+        int bootstrapMethods;
+
+        /**
+         * The class, read lazily, when its members must be compared
+         * independently of its constant pool.
+         */
+        private ClassNode cn;
+
+        Members(final ClassReader cr) {
+            this.cr = cr;
+            int u = cr.header + 8 + 2 * cr.readUnsignedShort(cr.header + 6);
+            fields = new int[cr.readUnsignedShort(u) + 1];
+            u = readMembers(u + 2, fields);
+            methods = new int[cr.readUnsignedShort(u) + 1];
+            u = readMembers(u + 2, methods);
+            char[] buf = new char[cr.getMaxStringLength()];
+            for (int i = cr.readUnsignedShort(u); i > 0; --i) {
+                if ("BootstrapMethods".equals(cr.readUTF8(u + 2, buf))) {
+                    bootstrapMethods = u + 2;
+                }
+                u += 6 + cr.readInt(u + 4);
+            }
+        }
+
+        private int readMembers(int u, final int[] offsets) {
+            for (int i = 0; i < offsets.length - 1; ++i) {
+                offsets[i] = u;
+                int n = cr.readUnsignedShort(u + 6);
+                u += 8;
+                for (; n > 0; --n) {
+                    u += 6 + cr.readInt(u + 2);
+                }
+            }
+            offsets[offsets.length - 1] = u;
+            return u;
+        }
+
+        /**
+         * Returns <tt>true</tt> if the constant indexes used in the members
+         * of this class have the same meaning in the given class.
+         *
+         * @param m the location of the members of another class.
+         * @return <tt>true</tt> if the two classes have the same constant
+         *         pool and the same bootstrap methods.
+         */
+        boolean hasSamePool(final Members m) {
+            // the constant pools start at offset 10, and end at header
+            if (!regionEquals(cr.b, 10, cr.header, m.cr.b, 10, m.cr.header)) {
+                return false;
+            }
+            if (bootstrapMethods == 0 || m.bootstrapMethods == 0) {
+                return bootstrapMethods == m.bootstrapMethods;
+            }
+            int end = bootstrapMethods + 6 + cr.readInt(bootstrapMethods + 2);
+            int mEnd = m.bootstrapMethods + 6
+                    + m.cr.readInt(m.bootstrapMethods + 2);
+            return regionEquals(cr.b,
+                    bootstrapMethods,
+                    end,
+                    m.cr.b,
+                    m.bootstrapMethods,
+                    mEnd);
+        }
+
+        /**
+         * Returns the bytecode of a class containing only the given member of
+         * this class. This bytecode does not depend on the other members of
+         * this class, nor on the order of its constant pool.
+         *
+         * @param field <tt>true</tt> for a field, <tt>false</tt> for a method.
+         * @param i the index of a field or method of this class.
+         * @return the bytecode of a class containing only the given member.
+         */
+        byte[] getMember(final boolean field, final int i) {
+            if (cn == null) {
+                cn = new ClassNode();
+                cr.accept(cn, 0);
+            }
+            ClassWriter cw = new ClassWriter(0);
+            cw.visit(cn.version, 0, "C", null, null, null);
+            if (field) {
+                cn.fields.get(i).accept(cw);
+            } else {
+                cn.methods.get(i).accept(cw);
+            }
+            return cw.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,360 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.commons;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.Attribute;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+
+/**
+ * A {@link ClassVisitor} that applies a patch computed by {@link ClassDiff} to
+ * the old version of a class, in order to reproduce its new version. This
+ * class visitor must directly receive the events generated by a
+ * {@link ClassReader} for the old class, since the unchanged fields and
+ * methods are identified by their index in this class. It replaces the
+ * header and the attributes of the old class with those of the new class,
+ * removes the fields and methods that changed, and inserts the new fields and
+ * methods, stored in the patch, at their position in the new class.
+ * <p>
+ * The unchanged members are passed unmodified to the next visitor. If this
+ * visitor is a {@link ClassWriter} created with the {@link ClassReader} of
+ * the old class, their bytecode is therefore copied as is, without being
+ * parsed. The constant pool of the patched class then starts with the one of
+ * the old class (see {@link #patch patch}).
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class ClassPatcher extends ClassVisitor {
+
+    /**
+     * The checksum of the class from which the patch was computed.
+     */
+    private final int checksum;
+
+    /**
+     * The number of fields of the old class.
+     */
+    private final int fieldCount;
+
+    /**
+     * The number of methods of the old class.
+     */
+    private final int methodCount;
+
+    /**
+     * The index in the old class of each field of the new class, or
+     * {@link ClassDiff#NEW} for the fields stored in the patch.
+     */
+    private final int[] fields;
+
+    /**
+     * The index in the old class of each method of the new class, or
+     * {@link ClassDiff#NEW} for the methods stored in the patch.
+     */
+    private final int[] methods;
+
+    /**
+     * The header and attributes of the new class, and its fields and methods
+     * that are stored in the patch.
+     */
+    private final ClassNode cn;
+
+    /**
+     * The number of fields of the old class visited so far.
+     */
+    private int field;
+
+    /**
+     * The number of methods of the old class visited so far.
+     */
+    private int method;
+
+    /**
+     * The number of fields of the new class visited so far.
+     */
+    private int newField;
+
+    /**
+     * The number of methods of the new class visited so far.
+     */
+    private int newMethod;
+
+    /**
+     * The number of fields of the patch visited so far.
+     */
+    private int patchField;
+
+    /**
+     * The number of methods of the patch visited so far.
+     */
+    private int patchMethod;
+
+    /**
+     * Constructs a new {@link ClassPatcher}.
+     *
+     * @param cv the class visitor to which this adapter must delegate calls.
+     * @param patch a patch computed by {@link ClassDiff#diff ClassDiff.diff}.
+     * @throws IllegalArgumentException if the given patch is invalid.
+     */
+    public ClassPatcher(final ClassVisitor cv, final byte[] patch) {
+        this(Opcodes.ASM4, cv, patch);
+    }
+
+    /**
+     * Constructs a new {@link ClassPatcher}.
+     *
+     * @param api the ASM API version implemented by this visitor. Must be one
+     *        of {@link Opcodes#ASM4}.
+     * @param cv the class visitor to which this adapter must delegate calls.
+     * @param patch a patch computed by {@link ClassDiff#diff ClassDiff.diff}.
+     * @throws IllegalArgumentException if the given patch is invalid.
+     */
+    protected ClassPatcher(
+        final int api,
+        final ClassVisitor cv,
+        final byte[] patch)
+    {
+        super(api, cv);
+        if (patch.length < 16 || readInt(patch, 0) != ClassDiff.MAGIC) {
+            throw new IllegalArgumentException("Invalid class patch");
+        }
+        checksum = readInt(patch, 4);
+        fieldCount = readUnsignedShort(patch, 8);
+        methodCount = readUnsignedShort(patch, 10);
+        fields = new int[readUnsignedShort(patch, 12)];
+        int u = readIndexes(patch, 14, fields);
+        methods = new int[readUnsignedShort(patch, u)];
+        u = readIndexes(patch, u + 2, methods);
+        cn = new ClassNode();
+        new ClassReader(patch, u, patch.length - u).accept(cn, 0);
+    }
+
+    /**
+     * Applies a patch to a class.
+     *
+     * @param b the bytecode of the old version of a class.
+     * @param patch a patch computed by {@link ClassDiff#diff ClassDiff.diff}
+     *        from this old version.
+     * @return the bytecode of the new version of the class. Its constant pool
+     *         starts with the one of the old version, and can therefore
+     *         contain unused constants.
+     * @throws IllegalArgumentException if the given patch is invalid, or was
+     *         not computed from the given class.
+     */
+    public static byte[] patch(final byte[] b, final byte[] patch) {
+        ClassReader cr = new ClassReader(b);
+        ClassWriter cw = new ClassWriter(cr, 0);
+        ClassPatcher cp = new ClassPatcher(cw, patch);
+        if (cp.checksum != ClassDiff.checksum(b)) {
+            throw new IllegalArgumentException("The patch was not computed "
+                    + "from " + cr.getClassName());
+        }
+        cr.accept(cp, 0);
+        return cw.toByteArray();
+    }
+
+    private static int readInt(final byte[] b, final int index) {
+        return ((b[index] & 0xFF) << 24) | ((b[index + 1] & 0xFF) << 16)
+                | ((b[index + 2] & 0xFF) << 8) | (b[index + 3] & 0xFF);
+    }
+
+    private static int readUnsignedShort(final byte[] b, final int index) {
+        return ((b[index] & 0xFF) << 8) | (b[index + 1] & 0xFF);
+    }
+
+    private static int readIndexes(
+        final byte[] b,
+        int index,
+        final int[] indexes)
+    {
+        for (int i = 0; i < indexes.length; ++i) {
+            indexes[i] = readUnsignedShort(b, index);
+            index += 2;
+        }
+        return index;
+    }
+
+    // ------------------------------------------------------------------------
+    // Implementation of the ClassVisitor interface
+    // ------------------------------------------------------------------------
+
+    @Override
+    public void visit(
+        final int version,
+        final int access,
+        final String name,
+        final String signature,
+        final String superName,
+        final String[] interfaces)
+    {
+        // visits the header and attributes of the new class, but not its
+        // fields and methods
+        cn.accept(new ClassVisitor(Opcodes.ASM4, cv) {
+
+            @Override
+            public FieldVisitor visitField(
+                final int access,
+                final String name,
+                final String desc,
+                final String signature,
+                final Object value)
+            {
+                return null;
+            }
+
+            @Override
+            public MethodVisitor visitMethod(
+                final int access,
+                final String name,
+                final String desc,
+                final String signature,
+                final String[] exceptions)
+            {
+                return null;
+            }
+
+            @Override
+            public void visitEnd() {
+            }
+        });
+    }
+
+    @Override
+    public void visitSource(final String source, final String debug) {
+    }
+
+    @Override
+    public void visitOuterClass(
+        final String owner,
+        final String name,
+        final String desc)
+    {
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(
+        final String desc,
+        final boolean visible)
+    {
+        return null;
+    }
+
+    @Override
+    public void visitAttribute(final Attribute attr) {
+    }
+
+    @Override
+    public void visitInnerClass(
+        final String name,
+        final String outerName,
+        final String innerName,
+        final int access)
+    {
+    }
+
+    @Override
+    public FieldVisitor visitField(
+        final int access,
+        final String name,
+        final String desc,
+        final String signature,
+        final Object value)
+    {
+        int i = field++;
+        visitPatchFields();
+        if (newField < fields.length && fields[newField] == i) {
+            ++newField;
+            return cv.visitField(access, name, desc, signature, value);
+        }
+        return null;
+    }
+
+    @Override
+    public MethodVisitor visitMethod(
+        final int access,
+        final String name,
+        final String desc,
+        final String signature,
+        final String[] exceptions)
+    {
+        visitPatchFields();
+        int i = method++;
+        visitPatchMethods();
+        if (newMethod < methods.length && methods[newMethod] == i) {
+            ++newMethod;
+            return cv.visitMethod(access, name, desc, signature, exceptions);
+        }
+        return null;
+    }
+
+    @Override
+    public void visitEnd() {
+        visitPatchFields();
+        visitPatchMethods();
+        if (field != fieldCount || method != methodCount
+                || newField != fields.length || newMethod != methods.length)
+        {
+            throw new IllegalArgumentException("The patch does not apply to "
+                    + cn.name);
+        }
+        cv.visitEnd();
+    }
+
+    /**
+     * Visits the fields of the patch that precede the next unchanged field
+     * in the new class.
+     */
+    private void visitPatchFields() {
+        while (newField < fields.length && fields[newField] == ClassDiff.NEW)
+        {
+            cn.fields.get(patchField++).accept(cv);
+            ++newField;
+        }
+    }
+
+    /**
+     * Visits the methods of the patch that precede the next unchanged method
+     * in the new class.
+     */
+    private void visitPatchMethods() {
+        while (newMethod < methods.length
+                && methods[newMethod] == ClassDiff.NEW)
+        {
+            cn.methods.get(patchMethod++).accept(cv);
+            ++newMethod;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.commons;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * A {@link BytecodeTypeHierarchy} that reads the class files from a class
+ * path made of jar files and directories, without any class loader. Classes
+ * that are not found in this class path are searched in a parent class
+ * loader, or in the bootstrap class path by default. The jar files are opened
+ * once, when this object is constructed, and must be closed with
+ * {@link #close close}. Like {@link BytecodeTypeHierarchy}, this class is
+ * thread safe, and reads each class file at most once.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class ClasspathTypeHierarchy extends BytecodeTypeHierarchy {
+
+    /**
+     * The directories of the class path, or <tt>null</tt> for its jar files.
+     */
+    private final File[] dirs;
+
+    /**
+     * The jar files of the class path, or <tt>null</tt> for its directories.
+     */
+    private final ZipFile[] jars;
+
+    /**
+     * The class loader used to find the class files which are not in the class
+     * path, or <tt>null</tt> to use the bootstrap class path.
+     */
+    private final ClassLoader parent;
+
+    /**
+     * Constructs a new {@link ClasspathTypeHierarchy} which searches the
+     * classes that are not in the given class path in the bootstrap class
+     * path.
+     *
+     * @param classpath the jar files and directories where class files must be
+     *        searched, in search order.
+     * @throws IOException if a jar file cannot be opened.
+     */
+    public ClasspathTypeHierarchy(final File[] classpath) throws IOException {
+        this(classpath, null);
+    }
+
+    /**
+     * Constructs a new {@link ClasspathTypeHierarchy}.
+     *
+     * @param classpath the jar files and directories where class files must be
+     *        searched, in search order. The files that do not exist are
+     *        ignored.
+     * @param parent the class loader used to find the class files that are
+     *        not in the given class path, or <tt>null</tt> to use the
+     *        bootstrap class path. Classes are never loaded with this class
+     *        loader, only class file resources.
+     * @throws IOException if a jar file cannot be opened.
+     */
+    public ClasspathTypeHierarchy(final File[] classpath, final ClassLoader parent)
+            throws IOException
+    {
+        super(parent);
+        this.dirs = new File[classpath.length];
+        this.jars = new ZipFile[classpath.length];
+        this.parent = parent;
+        try {
+            for (int i = 0; i < classpath.length; ++i) {
+                if (classpath[i].isDirectory()) {
+                    dirs[i] = classpath[i];
+                } else if (classpath[i].isFile()) {
+                    jars[i] = new ZipFile(classpath[i]);
+                }
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Parses a class path string, such as the value of the
+     * <tt>java.class.path</tt> system property.
+     *
+     * @param classpath a list of jar files and directories, separated with
+     *        {@link File#pathSeparator}.
+     * @return the jar files and directories of the given class path, in the
+     *         same order.
+     */
+    public static File[] parse(final String classpath) {
+        String[] paths = classpath.split(File.pathSeparator);
+        int n = 0;
+        File[] files = new File[paths.length];
+        for (int i = 0; i < paths.length; ++i) {
+            if (paths[i].length() > 0) {
+                files[n++] = new File(paths[i]);
+            }
+        }
+        File[] result = new File[n];
+        System.arraycopy(files, 0, result, 0, n);
+        return result;
+    }
+
+    /**
+     * Closes the jar files of the class path. The class files which have
+     * already been read remain available, but the other ones can no longer be
+     * found in these jar files.
+     *
+     * @throws IOException if a jar file cannot be closed.
+     */
+    public void close() throws IOException {
+        IOException exception = null;
+        for (int i = 0; i < jars.length; ++i) {
+            if (jars[i] != null) {
+                try {
+                    jars[i].close();
+                } catch (IOException e) {
+                    exception = e;
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    @Override
+    protected InputStream getClassFile(final String type) throws IOException {
+        String name = type + ".class";
+        for (int i = 0; i < dirs.length; ++i) {
+            if (dirs[i] != null) {
+                File f = new File(dirs[i], name);
+                if (f.isFile()) {
+                    return new FileInputStream(f);
+                }
+            } else if (jars[i] != null) {
+                ZipEntry e = jars[i].getEntry(name);
+                if (e != null) {
+                    return jars[i].getInputStream(e);
+                }
+            }
+        }
+        if (parent == null) {
+            return Object.class.getResourceAsStream('/' + name);
+        }
+        return parent.getResourceAsStream(name);
+    }
+}
@@ -0,0 +1,147 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.commons;
+
+import org.objectweb.asm.ClassVisitor;
+
+/**
+ * Remaps all the classes of a jar file in parallel, e.g., to shade or to
+ * obfuscate a jar. Each class is transformed with a
+ * {@link RemappingClassAdapter}, and the class entries are renamed according
+ * to the new names of their classes. The other entries are copied as is. See
+ * {@link JarTransformer} for the threading model.
+ * <p>
+ * All the transformation threads share the same {@link CachingRemapper}, so
+ * that each distinct descriptor and signature is remapped only once for the
+ * whole jar, and for all the jars transformed by this object. The remapper
+ * must therefore be usable concurrently, which is the case of a
+ * {@link SimpleRemapper} whose map is not modified.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class JarRemapper extends JarTransformer {
+
+    /**
+     * The remapper used to transform the classes.
+     */
+    private final CachingRemapper remapper;
+
+    /**
+     * Constructs a new {@link JarRemapper}, which keeps at most four entries
+     * per available processor in memory.
+     *
+     * @param remapper the remapper used to transform the classes. If it is
+     *        not a {@link CachingRemapper}, it is wrapped in one.
+     * @param readerFlags the flags used to read the classes. See
+     *        {@link org.objectweb.asm.ClassReader#accept}.
+     * @param writerFlags the flags used to write the classes. See
+     *        {@link org.objectweb.asm.ClassWriter}.
+     */
+    public JarRemapper(
+        final Remapper remapper,
+        final int readerFlags,
+        final int writerFlags)
+    {
+        this(remapper,
+                readerFlags,
+                writerFlags,
+                4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a new {@link JarRemapper}.
+     *
+     * @param remapper the remapper used to transform the classes. If it is
+     *        not a {@link CachingRemapper}, it is wrapped in one.
+     * @param readerFlags the flags used to read the classes. See
+     *        {@link org.objectweb.asm.ClassReader#accept}.
+     * @param writerFlags the flags used to write the classes. See
+     *        {@link org.objectweb.asm.ClassWriter}.
+     * @param maxPending the maximum number of entries that can be read but not
+     *        yet written.
+     */
+    public JarRemapper(
+        final Remapper remapper,
+        final int readerFlags,
+        final int writerFlags,
+        final int maxPending)
+    {
+        this(remapper instanceof CachingRemapper
+                ? (CachingRemapper) remapper
+                : new CachingRemapper(remapper),
+                readerFlags,
+                writerFlags,
+                maxPending);
+    }
+
+    private JarRemapper(
+        final CachingRemapper remapper,
+        final int readerFlags,
+        final int writerFlags,
+        final int maxPending)
+    {
+        super(new ClassVisitorFactory() {
+            public ClassVisitor newClassVisitor(
+                final String name,
+                final ClassVisitor cv)
+            {
+                return new RemappingClassAdapter(cv, remapper);
+            }
+        }, readerFlags, writerFlags, maxPending);
+        this.remapper = remapper;
+    }
+
+    /**
+     * Returns the remapper used to transform the classes.
+     *
+     * @return the remapper used to transform the classes.
+     */
+    public CachingRemapper getRemapper() {
+        return remapper;
+    }
+
+    /**
+     * Returns the name of a transformed jar entry. The entries whose name
+     * ends with <tt>.class</tt> are renamed according to the new name of
+     * their class. The other entries are not renamed.
+     *
+     * @param name the name of a jar entry.
+     * @return the name of the transformed jar entry.
+     */
+    @Override
+    protected String transformName(final String name) {
+        if (!name.endsWith(".class")) {
+            return name;
+        }
+        String className = name.substring(0, name.length() - 6);
+        String newName = remapper.map(className);
+        return newName == null ? name : newName + ".class";
+    }
+}
@@ -0,0 +1,573 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.objectweb.asm.commons;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.ReusableClassReader;
+
+/**
+ * Transforms all the classes of a jar file in parallel. Each class entry is
+ * transformed with a ClassReader -> ClassVisitor chain -> ClassWriter
+ * pipeline, where the class visitor chain is created by a user supplied
+ * {@link ClassVisitorFactory}. The other entries, and the class entries that
+ * are not valid class files, are copied as is. The entries are read and
+ * written sequentially, in their original order, but are transformed
+ * concurrently by an {@link ExecutorService}, which can be a work-stealing
+ * pool provided by the caller. The number of entries that have been read but
+ * not yet written is bounded, which bounds the memory used by the
+ * transformation.
+ * <p>
+ * This class also measures the time spent in each stage of the pipeline. The
+ * times are accumulated over all the {@link #transform transform} calls.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class JarTransformer {
+
+    /**
+     * A factory of class visitor chains.
+     */
+    public interface ClassVisitorFactory {
+
+        /**
+         * Returns a new class visitor chain to transform the given class. This
+         * method is called concurrently, from several threads.
+         *
+         * @param name the name of the jar entry containing the class to be
+         *        transformed.
+         * @param cv the class visitor to which the returned class visitor must
+         *        delegate. This is the class writer of the transformed class.
+         * @return the first class visitor of the chain.
+         */
+        ClassVisitor newClassVisitor(String name, ClassVisitor cv);
+    }
+
+    /**
+     * The factory used to create the class visitor chains.
+     */
+    private final ClassVisitorFactory factory;
+
+    /**
+     * The flags used to read the classes. See {@link ClassReader#accept}.
+     */
+    private final int readerFlags;
+
+    /**
+     * The flags used to write the classes. See {@link ClassWriter}.
+     */
+    private final int writerFlags;
+
+    /**
+     * The maximum number of entries that can be read but not yet written.
+     */
+    private final int maxPending;
+
+    /**
+     * The cache of transformed classes, or <tt>null</tt>.
+     */
+    private TransformationCache cache;
+
+    /**
+     * The class reader and class writer lent to the current transformation
+     * task. This thread local is only set while a task is running, so that
+     * the pool threads do not keep these objects after a
+     * {@link #transform transform} call.
+     */
+    private final ThreadLocal<Buffers> buffers = new ThreadLocal<Buffers>();
+
+    /**
+     * Total time spent reading and inflating the input entries, in
+     * nanoseconds.
+     */
+    private final AtomicLong readTime = new AtomicLong();
+
+    /**
+     * Total time spent transforming the entries, in nanoseconds. This is the
+     * sum of the times spent in each thread.
+     */
+    private final AtomicLong transformTime = new AtomicLong();
+
+    /**
+     * Total time spent waiting for transformed entries, in nanoseconds.
+     */
+    private final AtomicLong waitTime = new AtomicLong();
+
+    /**
+     * Total time spent deflating and writing the output entries, in
+     * nanoseconds.
+     */
+    private final AtomicLong writeTime = new AtomicLong();
+
+    /**
+     * Total number of processed entries.
+     */
+    private final AtomicLong entryCount = new AtomicLong();
+
+    /**
+     * Total number of transformed classes.
+     */
+    private final AtomicLong classCount = new AtomicLong();
+
+    /**
+     * Constructs a new {@link JarTransformer}, which keeps at most four
+     * entries per available processor in memory.
+     *
+     * @param factory the factory used to create the class visitor chains.
+     * @param readerFlags the flags used to read the classes. See
+     *        {@link ClassReader#accept}.
+     * @param writerFlags the flags used to write the classes. See
+     *        {@link ClassWriter}.
+     */
+    public JarTransformer(
+        final ClassVisitorFactory factory,
+        final int readerFlags,
+        final int writerFlags)
+    {
+        this(factory,
+                readerFlags,
+                writerFlags,
+                4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a new {@link JarTransformer}.
+     *
+     * @param factory the factory used to create the class visitor chains.
+     * @param readerFlags the flags used to read the classes. See
+     *        {@link ClassReader#accept}.
+     * @param writerFlags the flags used to write the classes. See
+     *        {@link ClassWriter}.
+     * @param maxPending the maximum number of entries that can be read but not
+     *        yet written.
+     */
+    public JarTransformer(
+        final ClassVisitorFactory factory,
+        final int readerFlags,
+        final int writerFlags,
+        final int maxPending)
+    {
+        if (maxPending < 1) {
+            throw new IllegalArgumentException("maxPending " + maxPending);
+        }
+        this.factory = factory;
+        this.readerFlags = readerFlags;
+        this.writerFlags = writerFlags;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Sets the cache of transformed classes used by this transformer. The
+     * classes found in this cache are not transformed again, and the other
+     * ones are added to it once transformed. The version identifier of the
+     * cache must identify the class visitor chains created by the
+     * {@link ClassVisitorFactory} and the reader and writer flags. This method
+     * must not be called during a {@link #transform transform} call.
+     *
+     * @param cache a cache of transformed classes, or <tt>null</tt> to
+     *        transform all the classes.
+     */
+    public void setCache(final TransformationCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Returns the cache of transformed classes used by this transformer.
+     *
+     * @return the cache of transformed classes used by this transformer, or
+     *         <tt>null</tt>.
+     */
+    public TransformationCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Transforms the given jar file, with one thread per available processor.
+     *
+     * @param in the jar file to be transformed.
+     * @param out the jar file where the result must be written.
+     * @throws IOException if a problem occurs while reading or writing the jar
+     *         files.
+     */
+    public void transform(final File in, final File out) throws IOException {
+        InputStream is = new BufferedInputStream(new FileInputStream(in));
+        try {
+            OutputStream os = new BufferedOutputStream(new FileOutputStream(out));
+            try {
+                transform(is, os);
+            } finally {
+                os.close();
+            }
+        } finally {
+            is.close();
+        }
+    }
+
+    /**
+     * Transforms the given jar, with one thread per available processor.
+     *
+     * @param in the jar to be transformed. This stream is not closed by this
+     *        method.
+     * @param out the stream where the transformed jar must be written. This
+     *        stream is finished, but not closed, by this method.
+     * @throws IOException if a problem occurs while reading or writing the jar
+     *         files.
+     */
+    public void transform(final InputStream in, final OutputStream out)
+            throws IOException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime()
+                .availableProcessors());
+        try {
+            transform(in, out, executor);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Transforms the given jar, with the given executor.
+     *
+     * @param in the jar to be transformed. This stream is not closed by this
+     *        method.
+     * @param out the stream where the transformed jar must be written. This
+     *        stream is finished, but not closed, by this method.
+     * @param executor the executor used to transform the entries. This
+     *        executor is not shut down by this method.
+     * @throws IOException if a problem occurs while reading or writing the jar
+     *         files.
+     */
+    public void transform(
+        final InputStream in,
+        final OutputStream out,
+        final ExecutorService executor) throws IOException
+    {
+        ZipInputStream zis = new ZipInputStream(in);
+        ZipOutputStream zos = new ZipOutputStream(out);
+        LinkedList<Future<Entry>> pending = new LinkedList<Future<Entry>>();
+        final Queue<Buffers> pool = new ConcurrentLinkedQueue<Buffers>();
+        try {
+            while (true) {
+                long t = System.nanoTime();
+                final ZipEntry ze = zis.getNextEntry();
+                final byte[] b = ze == null || ze.isDirectory()
+                        ? null
+                        : readEntry(zis);
+                readTime.addAndGet(System.nanoTime() - t);
+                if (ze == null) {
+                    break;
+                }
+                pending.addLast(executor.submit(new Callable<Entry>() {
+                    public Entry call() throws Exception {
+                        long t = System.nanoTime();
+                        Buffers bufs = pool.poll();
+                        buffers.set(bufs == null ? new Buffers() : bufs);
+                        try {
+                            return new Entry(ze,
+                                    transformName(ze.getName()),
+                                    b == null
+                                            ? null
+                                            : transform(ze.getName(), b));
+                        } finally {
+                            pool.offer(buffers.get());
+                            buffers.remove();
+                            transformTime.addAndGet(System.nanoTime() - t);
+                        }
+                    }
+                }));
+                if (pending.size() >= maxPending) {
+                    write(zos, pending.removeFirst());
+                }
+            }
+            while (!pending.isEmpty()) {
+                write(zos, pending.removeFirst());
+            }
+            zos.finish();
+        } finally {
+            for (int i = 0; i < pending.size(); ++i) {
+                pending.get(i).cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Transforms the content of a jar entry. The default implementation
+     * transforms the entries whose name ends with <tt>.class</tt> with a class
+     * visitor chain created by the {@link ClassVisitorFactory}, and returns the
+     * other entries, as well as the <tt>.class</tt> entries that cannot be
+     * parsed as class files (e.g., empty files), unchanged. Classes found in the {@link #setCache cache} are
+     * not transformed again. During a {@link #transform transform} call, the
+     * class reader and class writer used for this transformation are reused
+     * from one class to the next, see {@link ReusableClassReader} and
+     * {@link ClassWriter#reset}. They are released at the end of the call.
+     * This method is called concurrently, from several threads.
+     *
+     * @param name the name of the jar entry.
+     * @param b the content of the jar entry.
+     * @return the transformed content of the jar entry.
+     * @throws IOException if a problem occurs during the transformation.
+     */
+    protected byte[] transform(final String name, final byte[] b)
+            throws IOException
+    {
+        if (!name.endsWith(".class") || !isClassFile(b)) {
+            return b;
+        }
+        TransformationCache cache = this.cache;
+        if (cache != null) {
+            byte[] data = cache.get(b);
+            if (data != null) {
+                return data;
+            }
+        }
+        Buffers bufs = buffers.get();
+        if (bufs == null) {
+            bufs = new Buffers();
+        }
+        ClassReader cr;
+        try {
+            cr = bufs.reader.read(b);
+        } catch (RuntimeException e) {
+            // truncated class, or unsupported class version
+            return b;
+        }
+        ClassWriter cw = bufs.writer;
+        if (cw == null) {
+            cw = new ClassWriter(writerFlags);
+            bufs.writer = cw;
+        } else {
+            cw.reset();
+        }
+        cr.accept(factory.newClassVisitor(name, cw), readerFlags);
+        classCount.incrementAndGet();
+        byte[] data = cw.toByteArray();
+        if (cache != null) {
+            cache.put(b, data);
+        }
+        return data;
+    }
+
+    /**
+     * Returns the name of a transformed jar entry. The default implementation
+     * returns the name unchanged. This method is called concurrently, from
+     * several threads.
+     *
+     * @param name the name of a jar entry.
+     * @return the name of the transformed jar entry.
+     */
+    protected String transformName(final String name) {
+        return name;
+    }
+
+    /**
+     * Returns the total time spent reading and inflating the input entries.
+     *
+     * @return the total time spent reading the input entries, in nanoseconds.
+     */
+    public long getReadTime() {
+        return readTime.get();
+    }
+
+    /**
+     * Returns the total time spent transforming the entries. This time is
+     * summed over all the transformation threads, and can therefore be larger
+     * than the elapsed time.
+     *
+     * @return the total time spent transforming the entries, in nanoseconds.
+     */
+    public long getTransformTime() {
+        return transformTime.get();
+    }
+
+    /**
+     * Returns the total time spent waiting for the transformation of the
+     * entries to be written. A large value indicates that the transformation
+     * stage is the bottleneck.
+     *
+     * @return the total time spent waiting for transformed entries, in
+     *         nanoseconds.
+     */
+    public long getWaitTime() {
+        return waitTime.get();
+    }
+
+    /**
+     * Returns the total time spent deflating and writing the output entries.
+     *
+     * @return the total time spent writing the output entries, in
+     *         nanoseconds.
+     */
+    public long getWriteTime() {
+        return writeTime.get();
+    }
+
+    /**
+     * Returns the total number of processed jar entries.
+     *
+     * @return the total number of processed jar entries.
+     */
+    public long getEntryCount() {
+        return entryCount.get();
+    }
+
+    /**
+     * Returns the total number of transformed classes. The classes found in
+     * the {@link #setCache cache} are not counted.
+     *
+     * @return the total number of transformed classes.
+     */
+    public long getClassCount() {
+        return classCount.get();
+    }
+
+    /**
+     * Waits for the transformation of an entry and writes the result.
+     *
+     * @param zos the stream where the entry must be written.
+     * @param f the pending transformation of the entry.
+     * @throws IOException if the transformation failed or if the entry cannot
+     *         be written.
+     */
+    private void write(final ZipOutputStream zos, final Future<Entry> f)
+            throws IOException
+    {
+        long t = System.nanoTime();
+        Entry e;
+        try {
+            e = f.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted");
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            IOException ioe = new IOException(cause.toString());
+            ioe.initCause(cause);
+            throw ioe;
+        }
+        long u = System.nanoTime();
+        waitTime.addAndGet(u - t);
+        ZipEntry ze = new ZipEntry(e.name);
+        ze.setTime(e.entry.getTime());
+        ze.setComment(e.entry.getComment());
+        ze.setExtra(e.entry.getExtra());
+        zos.putNextEntry(ze);
+        if (e.data != null) {
+            zos.write(e.data);
+        }
+        zos.closeEntry();
+        entryCount.incrementAndGet();
+        writeTime.addAndGet(System.nanoTime() - u);
+    }
+
+    /**
+     * Returns <tt>true</tt> if the given content starts like a class file.
+     *
+     * @param b the content of a jar entry.
+     * @return <tt>true</tt> if the given content starts with the magic number
+     *         of class files.
+     */
+    private static boolean isClassFile(final byte[] b) {
+        return b.length >= 4 && (b[0] & 0xFF) == 0xCA && (b[1] & 0xFF) == 0xFE
+                && (b[2] & 0xFF) == 0xBA && (b[3] & 0xFF) == 0xBE;
+    }
+
+    private static byte[] readEntry(final InputStream zis) throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buff = new byte[4096];
+        int i;
+        while ((i = zis.read(buff)) != -1) {
+            bos.write(buff, 0, i);
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * A transformed jar entry.
+     */
+    private static final class Entry {
+
+        final ZipEntry entry;
+
+        final String name;
+
+        final byte[] data;
+
+        Entry(final ZipEntry entry, final String name, final byte[] data) {
+            this.entry = entry;
+            this.name = name;
+            this.data = data;
+        }
+    }
+
+    /**
+     * A class reader and a class writer reused to transform several classes.
+     * An instance is used by at most one task at a time.
+     */
+    private static final class Buffers {
+
+        final ReusableClassReader reader = new ReusableClassReader();
+
+        ClassWriter writer;
+    }
+}
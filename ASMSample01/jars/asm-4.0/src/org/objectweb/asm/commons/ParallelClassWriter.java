@@ -0,0 +1,187 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.commons;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * A {@link ClassVisitor} that generates classes in bytecode form, like a
+ * {@link ClassWriter}, but which computes the stack map frames of the methods
+ * in parallel. The visited class is buffered in a {@link ClassNode}. When
+ * {@link #toByteArray toByteArray} is called, the frames of each method are
+ * computed concurrently, in a separate {@link ClassWriter} per method, and the
+ * class is then written with a single {@link ClassWriter}, which copies these
+ * frames instead of computing them (see {@link ClassWriter#setFrameSources}).
+ * The result is identical to the one obtained by visiting the buffered
+ * {@link ClassNode} with a {@link ClassWriter} created with the same flags.
+ * <p>
+ * This is only useful with the {@link ClassWriter#COMPUTE_FRAMES} option, for
+ * classes with many or large methods. Without this option the class is simply
+ * written sequentially. The {@link ClassWriter#getCommonSuperClass
+ * getCommonSuperClass} method of the class writers created by
+ * {@link #newClassWriter newClassWriter} is called concurrently, from several
+ * threads, and must therefore be thread safe.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class ParallelClassWriter extends ClassVisitor {
+
+    /**
+     * The flags of the class writers created by this class.
+     */
+    private final int flags;
+
+    /**
+     * The executor used to compute the frames of the methods.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Constructs a new {@link ParallelClassWriter}.
+     *
+     * @param flags option flags that can be used to modify the default
+     *        behavior of this class. See {@link ClassWriter#COMPUTE_MAXS},
+     *        {@link ClassWriter#COMPUTE_FRAMES}.
+     * @param executor the executor used to compute the stack map frames of the
+     *        methods. This executor is not shut down by this class.
+     */
+    public ParallelClassWriter(final int flags, final ExecutorService executor)
+    {
+        super(Opcodes.ASM4, new ClassNode());
+        this.flags = flags;
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the bytecode of the class that was build with this class writer.
+     * This method waits until the frames of all the methods have been
+     * computed.
+     *
+     * @return the bytecode of the class that was build with this class writer.
+     */
+    public byte[] toByteArray() {
+        ClassNode cn = (ClassNode) cv;
+        ClassWriter cw = newClassWriter(flags);
+        if ((flags & ClassWriter.COMPUTE_FRAMES) != 0) {
+            cw.setFrameSources(computeFrames(cn));
+        }
+        cn.accept(cw);
+        return cw.toByteArray();
+    }
+
+    /**
+     * Creates the class writers used to compute the frames of the methods and
+     * to write the class. The default implementation returns a new
+     * {@link ClassWriter}. This method can be overridden to return a class
+     * writer with a specific {@link ClassWriter#getCommonSuperClass
+     * getCommonSuperClass} method or type hierarchy.
+     *
+     * @param flags the flags of the class writer.
+     * @return a new class writer.
+     */
+    protected ClassWriter newClassWriter(final int flags) {
+        return new ClassWriter(flags);
+    }
+
+    /**
+     * Computes the stack map frames of the methods of the given class in
+     * parallel.
+     *
+     * @param cn a class.
+     * @return a class writer for each method of the given class, containing
+     *         this method and its frames, or <tt>null</tt> for the methods
+     *         without code.
+     */
+    private ClassWriter[] computeFrames(final ClassNode cn) {
+        final String[] interfaces = cn.interfaces.toArray(new String[cn.interfaces.size()]);
+        List<MethodNode> methods = cn.methods;
+        List<Future<ClassWriter>> futures = new ArrayList<Future<ClassWriter>>(methods.size());
+        try {
+            for (int i = 0; i < methods.size(); ++i) {
+                final MethodNode mn = methods.get(i);
+                if (mn.instructions.size() == 0) {
+                    futures.add(null);
+                    continue;
+                }
+                futures.add(executor.submit(new Callable<ClassWriter>() {
+                    public ClassWriter call() {
+                        ClassWriter cw = newClassWriter(flags);
+                        cw.visit(cn.version,
+                                cn.access,
+                                cn.name,
+                                cn.signature,
+                                cn.superName,
+                                interfaces);
+                        mn.accept(cw);
+                        return cw;
+                    }
+                }));
+            }
+            ClassWriter[] sources = new ClassWriter[futures.size()];
+            for (int i = 0; i < sources.length; ++i) {
+                Future<ClassWriter> future = futures.get(i);
+                if (future != null) {
+                    sources[i] = future.get();
+                }
+            }
+            return sources;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        } finally {
+            for (int i = 0; i < futures.size(); ++i) {
+                Future<ClassWriter> future = futures.get(i);
+                if (future != null) {
+                    future.cancel(true);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,385 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.commons;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An on-disk cache of transformed classes. The transformed form of a class is
+ * stored under a key computed from the original bytecode of the class and
+ * from a version identifier of the transformation, so that a class that has
+ * not changed since it was last transformed can be retrieved without being
+ * parsed nor written again. The transformation must therefore only depend on
+ * the original bytecode, and its version identifier must be changed each time
+ * the transformation itself changes.
+ * <p>
+ * The total size of the cached classes is bounded. When this bound is
+ * exceeded the least recently used classes are evicted. Each cached class is
+ * stored in its own file, whose last modification time records its last use,
+ * so that the cache content and its usage order are preserved between runs.
+ * The file names start with a prefix derived from the version identifier, so
+ * that caches of different transformations can share a directory: the size
+ * bound only applies to the classes of the version of each cache. This class
+ * is thread safe.
+ *
+ * @see JarTransformer#setCache
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class TransformationCache {
+
+    /**
+     * The length of the cache file names, i.e. of the hexadecimal form of the
+     * SHA-1 keys.
+     */
+    private static final int KEY_LENGTH = 40;
+
+    /**
+     * The length of the prefix derived from the version identifier, which is
+     * followed by a '-' in the cache file names.
+     */
+    private static final int PREFIX_LENGTH = 8;
+
+    /**
+     * The prefix of the temporary files in which the classes are written
+     * before being renamed to their cache file name.
+     */
+    private static final String TMP_PREFIX = "tmp";
+
+    /**
+     * The age after which a temporary file is considered as a leftover of an
+     * interrupted {@link #put put}, in milliseconds.
+     */
+    private static final long TMP_MAX_AGE = 60 * 60 * 1000L;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * The directory containing the cached classes.
+     */
+    private final File dir;
+
+    /**
+     * The prefix of the cache file names of this cache, derived from the
+     * version identifier of the transformation.
+     */
+    private final String prefix;
+
+    /**
+     * The maximum total size of the cached classes, in bytes.
+     */
+    private final long maxSize;
+
+    /**
+     * A message digest initialized with the version identifier of the
+     * transformation. It is cloned to compute the key of each class.
+     */
+    private final MessageDigest digest;
+
+    /**
+     * The sizes of the cached classes, indexed by their key, in least recently
+     * used first order. Guarded by this object.
+     */
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<String, Long>(16,
+            0.75f,
+            true);
+
+    /**
+     * The total size of the cached classes. Guarded by this object.
+     */
+    private long size;
+
+    /**
+     * Number of {@link #get get} calls that found a cached class.
+     */
+    private final AtomicLong hitCount = new AtomicLong();
+
+    /**
+     * Number of {@link #get get} calls that did not find a cached class.
+     */
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Constructs a new {@link TransformationCache}. The classes of the same
+     * version that are already in the given directory are reused, if the size
+     * bound allows it. Temporary files left by interrupted writes are deleted.
+     *
+     * @param dir the directory containing the cached classes. It is created
+     *        if it does not exist.
+     * @param version the version identifier of the transformation.
+     * @param maxSize the maximum total size of the cached classes, in bytes.
+     * @throws IOException if the directory cannot be created or read.
+     */
+    public TransformationCache(
+        final File dir,
+        final String version,
+        final long maxSize) throws IOException
+    {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create directory " + dir);
+        }
+        this.dir = dir;
+        this.maxSize = maxSize;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        digest.update(version.getBytes("UTF-8"));
+        digest.update((byte) 0);
+        prefix = getKey(new byte[0]).substring(0, PREFIX_LENGTH) + '-';
+
+        File[] files = dir.listFiles();
+        if (files == null) {
+            throw new IOException("Cannot read directory " + dir);
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            public int compare(final File f1, final File f2) {
+                long t1 = f1.lastModified();
+                long t2 = f2.lastModified();
+                return t1 < t2 ? -1 : (t1 == t2 ? 0 : 1);
+            }
+        });
+        long stale = System.currentTimeMillis() - TMP_MAX_AGE;
+        for (int i = 0; i < files.length; ++i) {
+            String name = files[i].getName();
+            if (!files[i].isFile()) {
+                continue;
+            }
+            if (name.startsWith(TMP_PREFIX)) {
+                if (files[i].lastModified() < stale) {
+                    files[i].delete();
+                }
+            } else if (name.length() == prefix.length() + KEY_LENGTH
+                    && name.startsWith(prefix))
+            {
+                long length = files[i].length();
+                entries.put(name.substring(prefix.length()), new Long(length));
+                size += length;
+            }
+        }
+        synchronized (this) {
+            evict(null);
+        }
+    }
+
+    /**
+     * Returns the transformed form of the given class, if it is cached.
+     *
+     * @param b the original bytecode of a class.
+     * @return the transformed bytecode of this class, or <tt>null</tt> if it
+     *         is not cached. A cached class that cannot be read, e.g.,
+     *         because its file is truncated or corrupted, is removed from the
+     *         cache and <tt>null</tt> is returned, so that it can be put again.
+     * @throws IOException if the cache cannot be accessed.
+     */
+    public byte[] get(final byte[] b) throws IOException {
+        String key = getKey(b);
+        Long length;
+        synchronized (this) {
+            length = entries.get(key);
+        }
+        if (length != null) {
+            File f = getFile(key);
+            try {
+                byte[] data = read(f, (int) length.longValue());
+                f.setLastModified(System.currentTimeMillis());
+                hitCount.incrementAndGet();
+                return data;
+            } catch (IOException e) {
+                // evicted concurrently, deleted by someone else, or truncated
+                // or corrupted (e.g. by an interrupted copy of the directory)
+                f.delete();
+                remove(key);
+            }
+        }
+        missCount.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Stores the transformed form of the given class in this cache. This may
+     * evict the least recently used classes.
+     *
+     * @param b the original bytecode of a class.
+     * @param data the transformed bytecode of this class.
+     * @throws IOException if the transformed class cannot be written.
+     */
+    public void put(final byte[] b, final byte[] data) throws IOException {
+        if (data.length > maxSize) {
+            return;
+        }
+        String key = getKey(b);
+        File tmp = File.createTempFile(TMP_PREFIX, null, dir);
+        OutputStream os = new FileOutputStream(tmp);
+        try {
+            os.write(data);
+        } finally {
+            os.close();
+        }
+        File f = getFile(key);
+        synchronized (this) {
+            // on some platforms a file cannot be renamed to an existing file
+            if (!tmp.renameTo(f) && (!f.delete() || !tmp.renameTo(f))) {
+                tmp.delete();
+                throw new IOException("Cannot write " + f);
+            }
+            Long length = entries.put(key, new Long(data.length));
+            if (length != null) {
+                size -= length.longValue();
+            }
+            size += data.length;
+            evict(key);
+        }
+    }
+
+    /**
+     * Returns the number of {@link #get get} calls that found a cached class.
+     *
+     * @return the number of cache hits.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Returns the number of {@link #get get} calls that did not find a cached
+     * class.
+     *
+     * @return the number of cache misses.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Returns the total size of the cached classes.
+     *
+     * @return the total size of the cached classes, in bytes.
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Removes the least recently used classes until the total size of the
+     * cached classes is below the bound. Must be called with the lock held.
+     *
+     * @param keep the key of a class that must not be evicted, or
+     *        <tt>null</tt>.
+     */
+    private void evict(final String keep) {
+        Iterator<Map.Entry<String, Long>> i = entries.entrySet().iterator();
+        while (size > maxSize && i.hasNext()) {
+            Map.Entry<String, Long> e = i.next();
+            if (!e.getKey().equals(keep)) {
+                i.remove();
+                size -= e.getValue().longValue();
+                getFile(e.getKey()).delete();
+            }
+        }
+    }
+
+    /**
+     * Returns the file containing the cached class of the given key.
+     *
+     * @param key the key of a class.
+     * @return the file containing the cached class of the given key.
+     */
+    private File getFile(final String key) {
+        return new File(dir, prefix + key);
+    }
+
+    private synchronized void remove(final String key) {
+        Long length = entries.remove(key);
+        if (length != null) {
+            size -= length.longValue();
+        }
+    }
+
+    /**
+     * Computes the key of the given class.
+     *
+     * @param b the original bytecode of a class.
+     * @return the hexadecimal form of the SHA-1 hash of the transformation
+     *         version identifier and of the given bytecode.
+     */
+    private String getKey(final byte[] b) {
+        MessageDigest md;
+        try {
+            md = (MessageDigest) digest.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new RuntimeException(e);
+        }
+        byte[] hash = md.digest(b);
+        char[] key = new char[2 * hash.length];
+        for (int i = 0; i < hash.length; ++i) {
+            key[2 * i] = HEX[(hash[i] >> 4) & 0xF];
+            key[2 * i + 1] = HEX[hash[i] & 0xF];
+        }
+        return new String(key);
+    }
+
+    private static byte[] read(final File f, final int length)
+            throws IOException
+    {
+        InputStream is = new FileInputStream(f);
+        try {
+            byte[] b = new byte[length];
+            int n = 0;
+            while (n < length) {
+                int i = is.read(b, n, length - n);
+                if (i == -1) {
+                    throw new IOException("Truncated file " + f);
+                }
+                n += i;
+            }
+            if (is.read() != -1) {
+                throw new IOException("Unexpected file length " + f);
+            }
+            return b;
+        } finally {
+            is.close();
+        }
+    }
+}
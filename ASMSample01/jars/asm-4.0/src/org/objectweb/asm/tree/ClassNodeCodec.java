@@ -0,0 +1,1352 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.tree;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.objectweb.asm.Attribute;
+import org.objectweb.asm.ByteVector;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * A compact binary form of {@link ClassNode} trees. This form is faster to
+ * load than the bytecode of the class, since it directly describes the tree
+ * nodes: the strings are decoded only once, from a table of distinct strings,
+ * and do not need to be resolved through a constant pool, the labels are
+ * numbered and do not need to be computed from bytecode offsets, and the
+ * integer operands use a variable length encoding. This form is versioned (see
+ * {@link #VERSION}), so that trees that were serialized with an older version
+ * of this class can be detected and discarded.
+ * <p>
+ * Unknown attributes (see {@link Attribute#isUnknown}) are stored with their
+ * raw content, which is copied as is, in the same way as {@link ClassWriter}
+ * copies them. They are loaded as unknown attributes. The other non standard
+ * attributes can contain constant pool indexes, which are only valid in the
+ * class where they were written. They are therefore stored with the constant
+ * pool of a class containing only this attribute, and must be loaded with
+ * {@link #decode(byte[], Attribute[]) decode} and a prototype of their
+ * attribute class, which reads them from this class.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class ClassNodeCodec {
+
+    /**
+     * The version of the binary form produced by this class. It is changed
+     * each time this binary form changes.
+     */
+    public static final int VERSION = 2;
+
+    /**
+     * The magic number of the binary form produced by this class.
+     */
+    private static final int MAGIC = 0x41534D54;
+
+    /**
+     * The instruction codes of the label, line number and frame pseudo
+     * instructions. The other instructions are encoded with their opcode.
+     */
+    private static final int LABEL = 255, LINE = 254, FRAME = 253;
+
+    /**
+     * The kinds of the encoded non standard attributes: an unknown attribute
+     * stored with its raw content, or another attribute stored in a class
+     * containing only this attribute.
+     */
+    private static final int RAW_ATTRIBUTE = 0, CLASS_ATTRIBUTE = 1;
+
+    /**
+     * The tags of the constant and annotation values.
+     */
+    private static final int NULL = 0, INT = 1, FLOAT = 2, LONG = 3,
+            DOUBLE = 4, STRING = 5, TYPE = 6, HANDLE = 7, BYTE = 8,
+            BOOLEAN = 9, CHAR = 10, SHORT = 11, ENUM = 12, ANNOTATION = 13,
+            LIST = 14, BYTE_ARRAY = 15, BOOLEAN_ARRAY = 16, CHAR_ARRAY = 17,
+            SHORT_ARRAY = 18, INT_ARRAY = 19, LONG_ARRAY = 20,
+            FLOAT_ARRAY = 21, DOUBLE_ARRAY = 22;
+
+    /**
+     * The primitive types of stack map frames, indexed by their value.
+     */
+    private static final Object[] FRAME_TYPES = {
+        Opcodes.TOP,
+        Opcodes.INTEGER,
+        Opcodes.FLOAT,
+        Opcodes.DOUBLE,
+        Opcodes.LONG,
+        Opcodes.NULL,
+        Opcodes.UNINITIALIZED_THIS };
+
+    /**
+     * The type of the instruction nodes, indexed by opcode (see
+     * {@link AbstractInsnNode#getType}).
+     */
+    private static final byte[] TYPES;
+
+    static {
+        byte[] b = new byte[256];
+        int i;
+        b[Opcodes.BIPUSH] = AbstractInsnNode.INT_INSN;
+        b[Opcodes.SIPUSH] = AbstractInsnNode.INT_INSN;
+        b[Opcodes.NEWARRAY] = AbstractInsnNode.INT_INSN;
+        b[Opcodes.LDC] = AbstractInsnNode.LDC_INSN;
+        for (i = Opcodes.ILOAD; i <= Opcodes.ALOAD; ++i) {
+            b[i] = AbstractInsnNode.VAR_INSN;
+        }
+        for (i = Opcodes.ISTORE; i <= Opcodes.ASTORE; ++i) {
+            b[i] = AbstractInsnNode.VAR_INSN;
+        }
+        b[Opcodes.RET] = AbstractInsnNode.VAR_INSN;
+        b[Opcodes.IINC] = AbstractInsnNode.IINC_INSN;
+        for (i = Opcodes.IFEQ; i <= Opcodes.JSR; ++i) {
+            b[i] = AbstractInsnNode.JUMP_INSN;
+        }
+        b[Opcodes.IFNULL] = AbstractInsnNode.JUMP_INSN;
+        b[Opcodes.IFNONNULL] = AbstractInsnNode.JUMP_INSN;
+        b[Opcodes.TABLESWITCH] = AbstractInsnNode.TABLESWITCH_INSN;
+        b[Opcodes.LOOKUPSWITCH] = AbstractInsnNode.LOOKUPSWITCH_INSN;
+        for (i = Opcodes.GETSTATIC; i <= Opcodes.PUTFIELD; ++i) {
+            b[i] = AbstractInsnNode.FIELD_INSN;
+        }
+        for (i = Opcodes.INVOKEVIRTUAL; i <= Opcodes.INVOKEINTERFACE; ++i) {
+            b[i] = AbstractInsnNode.METHOD_INSN;
+        }
+        b[Opcodes.INVOKEDYNAMIC] = AbstractInsnNode.INVOKE_DYNAMIC_INSN;
+        b[Opcodes.NEW] = AbstractInsnNode.TYPE_INSN;
+        b[Opcodes.ANEWARRAY] = AbstractInsnNode.TYPE_INSN;
+        b[Opcodes.CHECKCAST] = AbstractInsnNode.TYPE_INSN;
+        b[Opcodes.INSTANCEOF] = AbstractInsnNode.TYPE_INSN;
+        b[Opcodes.MULTIANEWARRAY] = AbstractInsnNode.MULTIANEWARRAY_INSN;
+        b[LABEL] = AbstractInsnNode.LABEL;
+        b[LINE] = AbstractInsnNode.LINE;
+        b[FRAME] = AbstractInsnNode.FRAME;
+        TYPES = b;
+    }
+
+    /**
+     * The buffer containing the encoded tree, or the tree to be decoded.
+     */
+    private byte[] b;
+
+    /**
+     * The current position in {@link #b b}.
+     */
+    private int u;
+
+    /**
+     * The strings encoded so far, associated with their index plus one.
+     */
+    private HashMap<String, Integer> stringIndexes;
+
+    /**
+     * The strings encoded so far, or the strings to be decoded, in index
+     * order.
+     */
+    private String[] strings;
+
+    /**
+     * The number of strings encoded so far.
+     */
+    private int stringCount;
+
+    /**
+     * The labels of the method being encoded, associated with their index.
+     */
+    private HashMap<LabelNode, Integer> labelIndexes;
+
+    /**
+     * The labels of the method being decoded, indexed by their index.
+     */
+    private LabelNode[] labels;
+
+    /**
+     * The prototypes of the non standard attributes that can be decoded, or
+     * <tt>null</tt>.
+     */
+    private Attribute[] attrs;
+
+    private ClassNodeCodec(final byte[] b) {
+        this.b = b;
+    }
+
+    /**
+     * Encodes the given class node.
+     *
+     * @param cn a class node.
+     * @return the binary form of the given class node.
+     * @throws IllegalArgumentException if the given class node contains an
+     *         unsupported value or a label that is not in the instruction list
+     *         of its method.
+     */
+    public static byte[] encode(final ClassNode cn) {
+        ClassNodeCodec c = new ClassNodeCodec(new byte[4096]);
+        c.stringIndexes = new HashMap<String, Integer>();
+        c.strings = new String[256];
+        c.labelIndexes = new HashMap<LabelNode, Integer>();
+        c.writeClass(cn);
+        byte[] body = c.b;
+        int length = c.u;
+
+        // writes the header and the string table, followed by the body
+        c.b = new byte[length + 16 * c.stringCount + 16];
+        c.u = 0;
+        c.putInt(MAGIC);
+        c.putByte(VERSION);
+        c.putVarInt(c.stringCount);
+        for (int i = 0; i < c.stringCount; ++i) {
+            String s = c.strings[i];
+            int n = s.length();
+            c.putVarInt(n);
+            for (int j = 0; j < n; ++j) {
+                c.putVarInt(s.charAt(j));
+            }
+        }
+        c.enlarge(length);
+        System.arraycopy(body, 0, c.b, c.u, length);
+        byte[] result = new byte[c.u + length];
+        System.arraycopy(c.b, 0, result, 0, result.length);
+        return result;
+    }
+
+    /**
+     * Decodes a class node.
+     *
+     * @param b the binary form of a class node, produced by
+     *        {@link #encode encode}.
+     * @return the decoded class node.
+     * @throws IllegalArgumentException if the given binary form is not valid,
+     *         was produced by another version of this class, or contains non
+     *         standard attributes that are not unknown attributes.
+     */
+    public static ClassNode decode(final byte[] b) {
+        return decode(b, null);
+    }
+
+    /**
+     * Decodes a class node.
+     *
+     * @param b the binary form of a class node, produced by
+     *        {@link #encode encode}.
+     * @param attrs prototypes of the attributes that must be decoded. The
+     *        non standard attributes that are not unknown attributes (see
+     *        {@link Attribute#isUnknown}) are decoded with the prototype of
+     *        the same type, as {@link ClassReader#accept(
+     *        org.objectweb.asm.ClassVisitor, Attribute[], int) ClassReader}
+     *        does. May be <tt>null</tt>.
+     * @return the decoded class node.
+     * @throws IllegalArgumentException if the given binary form is not valid,
+     *         was produced by another version of this class, or contains a
+     *         non standard attribute that is not an unknown attribute and has
+     *         no prototype in <tt>attrs</tt>.
+     */
+    public static ClassNode decode(final byte[] b, final Attribute[] attrs) {
+        ClassNodeCodec c = new ClassNodeCodec(b);
+        c.attrs = attrs == null ? new Attribute[0] : attrs;
+        if (b.length < 5 || c.readInt() != MAGIC) {
+            throw new IllegalArgumentException("Not an encoded class node");
+        }
+        int version = c.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported version "
+                    + version);
+        }
+        try {
+            int n = c.readLength();
+            String[] strings = new String[n];
+            char[] buf = new char[64];
+            for (int i = 0; i < n; ++i) {
+                int len = c.readLength();
+                if (len > buf.length) {
+                    buf = new char[len];
+                }
+                for (int j = 0; j < len; ++j) {
+                    buf[j] = (char) c.readVarInt();
+                }
+                strings[i] = new String(buf, 0, len);
+            }
+            c.strings = strings;
+            return c.readClass();
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            // truncated or corrupted data: index out of bounds, invalid
+            // string index, unexpected node type, etc
+            throw new IllegalArgumentException("Invalid class node");
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Encoding
+    // ------------------------------------------------------------------------
+
+    private void writeClass(final ClassNode cn) {
+        putVarInt(cn.version);
+        putVarInt(cn.access);
+        putString(cn.name);
+        putString(cn.signature);
+        putString(cn.superName);
+        putStrings(cn.interfaces);
+        putString(cn.sourceFile);
+        putString(cn.sourceDebug);
+        putString(cn.outerClass);
+        putString(cn.outerMethod);
+        putString(cn.outerMethodDesc);
+        putAnnotations(cn.visibleAnnotations);
+        putAnnotations(cn.invisibleAnnotations);
+        putAttributes(cn.attrs);
+        int i, n;
+        n = cn.innerClasses.size();
+        putVarInt(n);
+        for (i = 0; i < n; ++i) {
+            InnerClassNode icn = cn.innerClasses.get(i);
+            putString(icn.name);
+            putString(icn.outerName);
+            putString(icn.innerName);
+            putVarInt(icn.access);
+        }
+        n = cn.fields.size();
+        putVarInt(n);
+        for (i = 0; i < n; ++i) {
+            FieldNode fn = cn.fields.get(i);
+            putVarInt(fn.access);
+            putString(fn.name);
+            putString(fn.desc);
+            putString(fn.signature);
+            putValue(fn.value);
+            putAnnotations(fn.visibleAnnotations);
+            putAnnotations(fn.invisibleAnnotations);
+            putAttributes(fn.attrs);
+        }
+        n = cn.methods.size();
+        putVarInt(n);
+        for (i = 0; i < n; ++i) {
+            writeMethod(cn.methods.get(i));
+        }
+    }
+
+    private void writeMethod(final MethodNode mn) {
+        putVarInt(mn.access);
+        putString(mn.name);
+        putString(mn.desc);
+        putString(mn.signature);
+        putStrings(mn.exceptions);
+        putAnnotations(mn.visibleAnnotations);
+        putAnnotations(mn.invisibleAnnotations);
+        putAttributes(mn.attrs);
+        if (mn.annotationDefault == null) {
+            putByte(0);
+        } else {
+            putByte(1);
+            putValue(mn.annotationDefault);
+        }
+        putParameterAnnotations(mn.visibleParameterAnnotations);
+        putParameterAnnotations(mn.invisibleParameterAnnotations);
+        putVarInt(mn.maxStack);
+        putVarInt(mn.maxLocals);
+
+        // numbers the labels
+        labelIndexes.clear();
+        AbstractInsnNode insn = mn.instructions.getFirst();
+        while (insn != null) {
+            if (insn instanceof LabelNode) {
+                labelIndexes.put((LabelNode) insn,
+                        new Integer(labelIndexes.size()));
+            }
+            insn = insn.getNext();
+        }
+        putVarInt(mn.instructions.size());
+        putVarInt(labelIndexes.size());
+        insn = mn.instructions.getFirst();
+        while (insn != null) {
+            writeInsn(insn);
+            insn = insn.getNext();
+        }
+
+        int i, n;
+        n = mn.tryCatchBlocks == null ? 0 : mn.tryCatchBlocks.size();
+        putVarInt(n);
+        for (i = 0; i < n; ++i) {
+            TryCatchBlockNode tcb = mn.tryCatchBlocks.get(i);
+            putLabel(tcb.start);
+            putLabel(tcb.end);
+            putLabel(tcb.handler);
+            putString(tcb.type);
+        }
+        n = mn.localVariables == null ? 0 : mn.localVariables.size();
+        putVarInt(n);
+        for (i = 0; i < n; ++i) {
+            LocalVariableNode lv = mn.localVariables.get(i);
+            putString(lv.name);
+            putString(lv.desc);
+            putString(lv.signature);
+            putLabel(lv.start);
+            putLabel(lv.end);
+            putVarInt(lv.index);
+        }
+    }
+
+    private void writeInsn(final AbstractInsnNode insn) {
+        int i, n;
+        switch (insn.getType()) {
+            case AbstractInsnNode.INSN:
+                putByte(insn.getOpcode());
+                break;
+            case AbstractInsnNode.INT_INSN:
+                putByte(insn.getOpcode());
+                putSignedVarInt(((IntInsnNode) insn).operand);
+                break;
+            case AbstractInsnNode.VAR_INSN:
+                putByte(insn.getOpcode());
+                putVarInt(((VarInsnNode) insn).var);
+                break;
+            case AbstractInsnNode.TYPE_INSN:
+                putByte(insn.getOpcode());
+                putString(((TypeInsnNode) insn).desc);
+                break;
+            case AbstractInsnNode.FIELD_INSN: {
+                FieldInsnNode fi = (FieldInsnNode) insn;
+                putByte(insn.getOpcode());
+                putString(fi.owner);
+                putString(fi.name);
+                putString(fi.desc);
+                break;
+            }
+            case AbstractInsnNode.METHOD_INSN: {
+                MethodInsnNode mi = (MethodInsnNode) insn;
+                putByte(insn.getOpcode());
+                putString(mi.owner);
+                putString(mi.name);
+                putString(mi.desc);
+                break;
+            }
+            case AbstractInsnNode.INVOKE_DYNAMIC_INSN: {
+                InvokeDynamicInsnNode idi = (InvokeDynamicInsnNode) insn;
+                putByte(Opcodes.INVOKEDYNAMIC);
+                putString(idi.name);
+                putString(idi.desc);
+                putHandle(idi.bsm);
+                n = idi.bsmArgs == null ? 0 : idi.bsmArgs.length;
+                putVarInt(n);
+                for (i = 0; i < n; ++i) {
+                    putValue(idi.bsmArgs[i]);
+                }
+                break;
+            }
+            case AbstractInsnNode.JUMP_INSN:
+                putByte(insn.getOpcode());
+                putLabel(((JumpInsnNode) insn).label);
+                break;
+            case AbstractInsnNode.LABEL:
+                putByte(LABEL);
+                break;
+            case AbstractInsnNode.LDC_INSN:
+                putByte(Opcodes.LDC);
+                putValue(((LdcInsnNode) insn).cst);
+                break;
+            case AbstractInsnNode.IINC_INSN:
+                putByte(Opcodes.IINC);
+                putVarInt(((IincInsnNode) insn).var);
+                putSignedVarInt(((IincInsnNode) insn).incr);
+                break;
+            case AbstractInsnNode.TABLESWITCH_INSN: {
+                TableSwitchInsnNode tsi = (TableSwitchInsnNode) insn;
+                putByte(Opcodes.TABLESWITCH);
+                putSignedVarInt(tsi.min);
+                putSignedVarInt(tsi.max);
+                putLabel(tsi.dflt);
+                n = tsi.labels.size();
+                putVarInt(n);
+                for (i = 0; i < n; ++i) {
+                    putLabel(tsi.labels.get(i));
+                }
+                break;
+            }
+            case AbstractInsnNode.LOOKUPSWITCH_INSN: {
+                LookupSwitchInsnNode lsi = (LookupSwitchInsnNode) insn;
+                putByte(Opcodes.LOOKUPSWITCH);
+                putLabel(lsi.dflt);
+                n = lsi.labels.size();
+                putVarInt(n);
+                for (i = 0; i < n; ++i) {
+                    putSignedVarInt(lsi.keys.get(i).intValue());
+                    putLabel(lsi.labels.get(i));
+                }
+                break;
+            }
+            case AbstractInsnNode.MULTIANEWARRAY_INSN:
+                putByte(Opcodes.MULTIANEWARRAY);
+                putString(((MultiANewArrayInsnNode) insn).desc);
+                putVarInt(((MultiANewArrayInsnNode) insn).dims);
+                break;
+            case AbstractInsnNode.FRAME: {
+                FrameNode fn = (FrameNode) insn;
+                putByte(FRAME);
+                putVarInt(fn.type + 1);
+                putFrameTypes(fn.local);
+                putFrameTypes(fn.stack);
+                break;
+            }
+            case AbstractInsnNode.LINE:
+                putByte(LINE);
+                putVarInt(((LineNumberNode) insn).line);
+                putLabel(((LineNumberNode) insn).start);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported instruction "
+                        + insn.getClass().getName());
+        }
+    }
+
+    private void putFrameTypes(final List<Object> types) {
+        if (types == null) {
+            putVarInt(0);
+            return;
+        }
+        int n = types.size();
+        putVarInt(n + 1);
+        for (int i = 0; i < n; ++i) {
+            Object type = types.get(i);
+            if (type == null) {
+                putVarInt(0);
+            } else if (type instanceof Integer) {
+                putVarInt(1 + ((Integer) type).intValue());
+            } else if (type instanceof String) {
+                putVarInt(1 + FRAME_TYPES.length);
+                putString((String) type);
+            } else {
+                putVarInt(2 + FRAME_TYPES.length);
+                putLabel((LabelNode) type);
+            }
+        }
+    }
+
+    private void putLabel(final LabelNode label) {
+        Integer index = labelIndexes.get(label);
+        if (index == null) {
+            throw new IllegalArgumentException("Label not found in the "
+                    + "instruction list");
+        }
+        putVarInt(index.intValue());
+    }
+
+    private void putStrings(final List<String> list) {
+        int n = list == null ? 0 : list.size();
+        putVarInt(n);
+        for (int i = 0; i < n; ++i) {
+            putString(list.get(i));
+        }
+    }
+
+    private void putAnnotations(final List<AnnotationNode> annotations) {
+        int n = annotations == null ? 0 : annotations.size();
+        putVarInt(n);
+        for (int i = 0; i < n; ++i) {
+            putAnnotation(annotations.get(i));
+        }
+    }
+
+    private void putAnnotation(final AnnotationNode an) {
+        putString(an.desc);
+        int n = an.values == null ? 0 : an.values.size();
+        putVarInt(n / 2);
+        for (int i = 0; i < n; i += 2) {
+            putString((String) an.values.get(i));
+            putValue(an.values.get(i + 1));
+        }
+    }
+
+    private void putParameterAnnotations(
+        final List<AnnotationNode>[] annotations)
+    {
+        if (annotations == null) {
+            putVarInt(0);
+            return;
+        }
+        putVarInt(annotations.length + 1);
+        for (int i = 0; i < annotations.length; ++i) {
+            if (annotations[i] == null) {
+                putVarInt(0);
+            } else {
+                putVarInt(1);
+                putAnnotations(annotations[i]);
+            }
+        }
+    }
+
+    private void putAttributes(final List<Attribute> attrs) {
+        int n = attrs == null ? 0 : attrs.size();
+        putVarInt(n);
+        for (int i = 0; i < n; ++i) {
+            Attribute attr = attrs.get(i);
+            // gets the content of the attribute by writing it in an empty
+            // class, where it is the last attribute
+            ClassWriter cw = new ClassWriter(0);
+            cw.visit(Opcodes.V1_1, 0, "C", null, null, null);
+            cw.visitAttribute(attr);
+            cw.visitEnd();
+            byte[] b = cw.toByteArray();
+            int off, len;
+            putString(attr.type);
+            if (attr.isUnknown()) {
+                // the content is copied as is, like ClassWriter does
+                ClassReader cr = new ClassReader(b);
+                putByte(RAW_ATTRIBUTE);
+                off = cr.header + 20;
+                len = cr.readInt(cr.header + 16);
+            } else {
+                // the content can refer to the constant pool of this class
+                putByte(CLASS_ATTRIBUTE);
+                off = 0;
+                len = b.length;
+            }
+            putVarInt(len);
+            enlarge(len);
+            System.arraycopy(b, off, this.b, u, len);
+            u += len;
+        }
+    }
+
+    private void putHandle(final Handle h) {
+        putByte(h.getTag());
+        putString(h.getOwner());
+        putString(h.getName());
+        putString(h.getDesc());
+    }
+
+    private void putValue(final Object value) {
+        int i;
+        if (value == null) {
+            putByte(NULL);
+        } else if (value instanceof Integer) {
+            putByte(INT);
+            putSignedVarInt(((Integer) value).intValue());
+        } else if (value instanceof Float) {
+            putByte(FLOAT);
+            putInt(Float.floatToRawIntBits(((Float) value).floatValue()));
+        } else if (value instanceof Long) {
+            putByte(LONG);
+            putSignedVarLong(((Long) value).longValue());
+        } else if (value instanceof Double) {
+            long v = Double.doubleToRawLongBits(((Double) value).doubleValue());
+            putByte(DOUBLE);
+            putInt((int) (v >>> 32));
+            putInt((int) v);
+        } else if (value instanceof String) {
+            putByte(STRING);
+            putString((String) value);
+        } else if (value instanceof Type) {
+            putByte(TYPE);
+            putString(((Type) value).getDescriptor());
+        } else if (value instanceof Handle) {
+            putByte(HANDLE);
+            putHandle((Handle) value);
+        } else if (value instanceof Byte) {
+            putByte(BYTE);
+            putByte(((Byte) value).byteValue());
+        } else if (value instanceof Boolean) {
+            putByte(BOOLEAN);
+            putByte(((Boolean) value).booleanValue() ? 1 : 0);
+        } else if (value instanceof Character) {
+            putByte(CHAR);
+            putVarInt(((Character) value).charValue());
+        } else if (value instanceof Short) {
+            putByte(SHORT);
+            putSignedVarInt(((Short) value).shortValue());
+        } else if (value instanceof String[]) {
+            putByte(ENUM);
+            putString(((String[]) value)[0]);
+            putString(((String[]) value)[1]);
+        } else if (value instanceof AnnotationNode) {
+            putByte(ANNOTATION);
+            putAnnotation((AnnotationNode) value);
+        } else if (value instanceof List) {
+            List<?> l = (List<?>) value;
+            putByte(LIST);
+            putVarInt(l.size());
+            for (i = 0; i < l.size(); ++i) {
+                putValue(l.get(i));
+            }
+        } else if (value instanceof byte[]) {
+            byte[] v = (byte[]) value;
+            putByte(BYTE_ARRAY);
+            putVarInt(v.length);
+            for (i = 0; i < v.length; ++i) {
+                putByte(v[i]);
+            }
+        } else if (value instanceof boolean[]) {
+            boolean[] v = (boolean[]) value;
+            putByte(BOOLEAN_ARRAY);
+            putVarInt(v.length);
+            for (i = 0; i < v.length; ++i) {
+                putByte(v[i] ? 1 : 0);
+            }
+        } else if (value instanceof char[]) {
+            char[] v = (char[]) value;
+            putByte(CHAR_ARRAY);
+            putVarInt(v.length);
+            for (i = 0; i < v.length; ++i) {
+                putVarInt(v[i]);
+            }
+        } else if (value instanceof short[]) {
+            short[] v = (short[]) value;
+            putByte(SHORT_ARRAY);
+            putVarInt(v.length);
+            for (i = 0; i < v.length; ++i) {
+                putSignedVarInt(v[i]);
+            }
+        } else if (value instanceof int[]) {
+            int[] v = (int[]) value;
+            putByte(INT_ARRAY);
+            putVarInt(v.length);
+            for (i = 0; i < v.length; ++i) {
+                putSignedVarInt(v[i]);
+            }
+        } else if (value instanceof long[]) {
+            long[] v = (long[]) value;
+            putByte(LONG_ARRAY);
+            putVarInt(v.length);
+            for (i = 0; i < v.length; ++i) {
+                putSignedVarLong(v[i]);
+            }
+        } else if (value instanceof float[]) {
+            float[] v = (float[]) value;
+            putByte(FLOAT_ARRAY);
+            putVarInt(v.length);
+            for (i = 0; i < v.length; ++i) {
+                putInt(Float.floatToRawIntBits(v[i]));
+            }
+        } else if (value instanceof double[]) {
+            double[] v = (double[]) value;
+            putByte(DOUBLE_ARRAY);
+            putVarInt(v.length);
+            for (i = 0; i < v.length; ++i) {
+                long l = Double.doubleToRawLongBits(v[i]);
+                putInt((int) (l >>> 32));
+                putInt((int) l);
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported value " + value);
+        }
+    }
+
+    private void putString(final String s) {
+        if (s == null) {
+            putVarInt(0);
+            return;
+        }
+        Integer index = stringIndexes.get(s);
+        if (index == null) {
+            if (stringCount == strings.length) {
+                String[] newStrings = new String[2 * stringCount];
+                System.arraycopy(strings, 0, newStrings, 0, stringCount);
+                strings = newStrings;
+            }
+            strings[stringCount++] = s;
+            index = new Integer(stringCount);
+            stringIndexes.put(s, index);
+        }
+        putVarInt(index.intValue());
+    }
+
+    private void putByte(final int v) {
+        enlarge(1);
+        b[u++] = (byte) v;
+    }
+
+    private void putInt(final int v) {
+        enlarge(4);
+        b[u++] = (byte) (v >>> 24);
+        b[u++] = (byte) (v >>> 16);
+        b[u++] = (byte) (v >>> 8);
+        b[u++] = (byte) v;
+    }
+
+    /**
+     * Puts an unsigned int, using 7 bits per byte, with the high bit of each
+     * byte set if more bytes follow.
+     */
+    private void putVarInt(int v) {
+        enlarge(5);
+        while ((v & ~0x7F) != 0) {
+            b[u++] = (byte) (v | 0x80);
+            v >>>= 7;
+        }
+        b[u++] = (byte) v;
+    }
+
+    /**
+     * Puts a signed int, with a zigzag encoding so that small negative values
+     * use few bytes.
+     */
+    private void putSignedVarInt(final int v) {
+        putVarInt((v << 1) ^ (v >> 31));
+    }
+
+    private void putSignedVarLong(final long l) {
+        long v = (l << 1) ^ (l >> 63);
+        enlarge(10);
+        while ((v & ~0x7FL) != 0) {
+            b[u++] = (byte) (v | 0x80);
+            v >>>= 7;
+        }
+        b[u++] = (byte) v;
+    }
+
+    private void enlarge(final int size) {
+        if (u + size > b.length) {
+            byte[] newBuffer = new byte[Math.max(2 * b.length, u + size)];
+            System.arraycopy(b, 0, newBuffer, 0, u);
+            b = newBuffer;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Decoding
+    // ------------------------------------------------------------------------
+
+    private ClassNode readClass() {
+        ClassNode cn = new ClassNode();
+        cn.version = readVarInt();
+        cn.access = readVarInt();
+        cn.name = readString();
+        cn.signature = readString();
+        cn.superName = readString();
+        readStrings(cn.interfaces);
+        cn.sourceFile = readString();
+        cn.sourceDebug = readString();
+        cn.outerClass = readString();
+        cn.outerMethod = readString();
+        cn.outerMethodDesc = readString();
+        cn.visibleAnnotations = readAnnotations();
+        cn.invisibleAnnotations = readAnnotations();
+        cn.attrs = readAttributes();
+        int i, n;
+        n = readVarInt();
+        for (i = 0; i < n; ++i) {
+            cn.innerClasses.add(new InnerClassNode(readString(),
+                    readString(),
+                    readString(),
+                    readVarInt()));
+        }
+        n = readVarInt();
+        for (i = 0; i < n; ++i) {
+            FieldNode fn = new FieldNode(readVarInt(),
+                    readString(),
+                    readString(),
+                    readString(),
+                    readValue());
+            fn.visibleAnnotations = readAnnotations();
+            fn.invisibleAnnotations = readAnnotations();
+            fn.attrs = readAttributes();
+            cn.fields.add(fn);
+        }
+        n = readVarInt();
+        for (i = 0; i < n; ++i) {
+            cn.methods.add(readMethod());
+        }
+        return cn;
+    }
+
+    private MethodNode readMethod() {
+        int access = readVarInt();
+        MethodNode mn = new MethodNode(access,
+                readString(),
+                readString(),
+                readString(),
+                null);
+        readStrings(mn.exceptions);
+        mn.visibleAnnotations = readAnnotations();
+        mn.invisibleAnnotations = readAnnotations();
+        mn.attrs = readAttributes();
+        if (readByte() != 0) {
+            mn.annotationDefault = readValue();
+        }
+        mn.visibleParameterAnnotations = readParameterAnnotations();
+        mn.invisibleParameterAnnotations = readParameterAnnotations();
+        mn.maxStack = readVarInt();
+        mn.maxLocals = readVarInt();
+
+        int i, n;
+        n = readVarInt();
+        labels = new LabelNode[readLength()];
+        for (i = 0; i < labels.length; ++i) {
+            labels[i] = new LabelNode();
+        }
+        int label = 0;
+        InsnList insns = mn.instructions;
+        for (i = 0; i < n; ++i) {
+            int opcode = readByte();
+            switch (TYPES[opcode]) {
+                case AbstractInsnNode.INSN:
+                    insns.add(new InsnNode(opcode));
+                    break;
+                case AbstractInsnNode.INT_INSN:
+                    insns.add(new IntInsnNode(opcode, readSignedVarInt()));
+                    break;
+                case AbstractInsnNode.VAR_INSN:
+                    insns.add(new VarInsnNode(opcode, readVarInt()));
+                    break;
+                case AbstractInsnNode.TYPE_INSN:
+                    insns.add(new TypeInsnNode(opcode, readString()));
+                    break;
+                case AbstractInsnNode.FIELD_INSN:
+                    insns.add(new FieldInsnNode(opcode,
+                            readString(),
+                            readString(),
+                            readString()));
+                    break;
+                case AbstractInsnNode.METHOD_INSN:
+                    insns.add(new MethodInsnNode(opcode,
+                            readString(),
+                            readString(),
+                            readString()));
+                    break;
+                case AbstractInsnNode.INVOKE_DYNAMIC_INSN: {
+                    String name = readString();
+                    String desc = readString();
+                    Handle bsm = readHandle();
+                    Object[] bsmArgs = new Object[readLength()];
+                    for (int j = 0; j < bsmArgs.length; ++j) {
+                        bsmArgs[j] = readValue();
+                    }
+                    insns.add(new InvokeDynamicInsnNode(name,
+                            desc,
+                            bsm,
+                            bsmArgs));
+                    break;
+                }
+                case AbstractInsnNode.JUMP_INSN:
+                    insns.add(new JumpInsnNode(opcode, readLabel()));
+                    break;
+                case AbstractInsnNode.LABEL:
+                    insns.add(labels[label++]);
+                    break;
+                case AbstractInsnNode.LDC_INSN:
+                    insns.add(new LdcInsnNode(readValue()));
+                    break;
+                case AbstractInsnNode.IINC_INSN:
+                    insns.add(new IincInsnNode(readVarInt(),
+                            readSignedVarInt()));
+                    break;
+                case AbstractInsnNode.TABLESWITCH_INSN: {
+                    int min = readSignedVarInt();
+                    int max = readSignedVarInt();
+                    LabelNode dflt = readLabel();
+                    LabelNode[] targets = new LabelNode[readLength()];
+                    for (int j = 0; j < targets.length; ++j) {
+                        targets[j] = readLabel();
+                    }
+                    insns.add(new TableSwitchInsnNode(min, max, dflt, targets));
+                    break;
+                }
+                case AbstractInsnNode.LOOKUPSWITCH_INSN: {
+                    LabelNode dflt = readLabel();
+                    int[] keys = new int[readLength()];
+                    LabelNode[] targets = new LabelNode[keys.length];
+                    for (int j = 0; j < keys.length; ++j) {
+                        keys[j] = readSignedVarInt();
+                        targets[j] = readLabel();
+                    }
+                    insns.add(new LookupSwitchInsnNode(dflt, keys, targets));
+                    break;
+                }
+                case AbstractInsnNode.MULTIANEWARRAY_INSN:
+                    insns.add(new MultiANewArrayInsnNode(readString(),
+                            readVarInt()));
+                    break;
+                case AbstractInsnNode.FRAME: {
+                    int type = readVarInt() - 1;
+                    Object[] local = readFrameTypes();
+                    Object[] stack = readFrameTypes();
+                    insns.add(new FrameNode(type,
+                            local == null ? 0 : local.length,
+                            local,
+                            stack == null ? 0 : stack.length,
+                            stack));
+                    break;
+                }
+                default:
+                    insns.add(new LineNumberNode(readVarInt(), readLabel()));
+                    break;
+            }
+        }
+
+        n = readVarInt();
+        for (i = 0; i < n; ++i) {
+            mn.tryCatchBlocks.add(new TryCatchBlockNode(readLabel(),
+                    readLabel(),
+                    readLabel(),
+                    readString()));
+        }
+        n = readLength();
+        if (n > 0 && mn.localVariables == null) {
+            mn.localVariables = new ArrayList<LocalVariableNode>(n);
+        }
+        for (i = 0; i < n; ++i) {
+            mn.localVariables.add(new LocalVariableNode(readString(),
+                    readString(),
+                    readString(),
+                    readLabel(),
+                    readLabel(),
+                    readVarInt()));
+        }
+        return mn;
+    }
+
+    private Object[] readFrameTypes() {
+        int n = readVarInt() - 1;
+        if (n < 0) {
+            return null;
+        }
+        Object[] types = new Object[checkLength(n)];
+        for (int i = 0; i < n; ++i) {
+            int type = readVarInt();
+            if (type == 0) {
+                types[i] = null;
+            } else if (type <= FRAME_TYPES.length) {
+                types[i] = FRAME_TYPES[type - 1];
+            } else if (type == 1 + FRAME_TYPES.length) {
+                types[i] = readString();
+            } else {
+                types[i] = readLabel();
+            }
+        }
+        return types;
+    }
+
+    private LabelNode readLabel() {
+        return labels[readVarInt()];
+    }
+
+    private void readStrings(final List<String> list) {
+        for (int n = readVarInt(); n > 0; --n) {
+            list.add(readString());
+        }
+    }
+
+    private List<AnnotationNode> readAnnotations() {
+        int n = readLength();
+        if (n == 0) {
+            return null;
+        }
+        List<AnnotationNode> annotations = new ArrayList<AnnotationNode>(n);
+        for (int i = 0; i < n; ++i) {
+            annotations.add(readAnnotation());
+        }
+        return annotations;
+    }
+
+    private AnnotationNode readAnnotation() {
+        AnnotationNode an = new AnnotationNode(readString());
+        int n = readLength();
+        if (n > 0) {
+            an.values = new ArrayList<Object>(2 * n);
+            for (int i = 0; i < n; ++i) {
+                an.values.add(readString());
+                an.values.add(readValue());
+            }
+        }
+        return an;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<AnnotationNode>[] readParameterAnnotations() {
+        int n = readVarInt() - 1;
+        if (n < 0) {
+            return null;
+        }
+        List<AnnotationNode>[] annotations = (List<AnnotationNode>[]) new List<?>[checkLength(n)];
+        for (int i = 0; i < n; ++i) {
+            if (readVarInt() != 0) {
+                annotations[i] = readAnnotations();
+                if (annotations[i] == null) {
+                    annotations[i] = new ArrayList<AnnotationNode>(0);
+                }
+            }
+        }
+        return annotations;
+    }
+
+    private List<Attribute> readAttributes() {
+        int n = readLength();
+        if (n == 0) {
+            return null;
+        }
+        List<Attribute> attrs = new ArrayList<Attribute>(n);
+        for (int i = 0; i < n; ++i) {
+            String type = readString();
+            int kind = readByte();
+            byte[] value = new byte[readLength()];
+            System.arraycopy(b, u, value, 0, value.length);
+            u += value.length;
+            if (kind == RAW_ATTRIBUTE) {
+                attrs.add(new RawAttribute(type, value));
+            } else {
+                attrs.add(readClassAttribute(type, value));
+            }
+        }
+        return attrs;
+    }
+
+    /**
+     * Reads a non standard attribute that is not an unknown attribute.
+     *
+     * @param type the type of the attribute.
+     * @param b a class containing only this attribute.
+     * @return the attribute read by its prototype.
+     */
+    private Attribute readClassAttribute(final String type, final byte[] b) {
+        for (int i = 0; i < attrs.length; ++i) {
+            if (attrs[i].type.equals(type)) {
+                final Attribute[] attr = new Attribute[1];
+                new ClassReader(b).accept(new ClassVisitor(Opcodes.ASM4) {
+                    @Override
+                    public void visitAttribute(final Attribute a) {
+                        attr[0] = a;
+                    }
+                }, attrs, ClassReader.SKIP_CODE);
+                return attr[0];
+            }
+        }
+        throw new IllegalArgumentException("No prototype for attribute "
+                + type);
+    }
+
+    private Handle readHandle() {
+        return new Handle(readByte(), readString(), readString(), readString());
+    }
+
+    private Object readValue() {
+        int i, n;
+        switch (readByte()) {
+            case NULL:
+                return null;
+            case INT:
+                return new Integer(readSignedVarInt());
+            case FLOAT:
+                return new Float(Float.intBitsToFloat(readInt()));
+            case LONG:
+                return new Long(readSignedVarLong());
+            case DOUBLE:
+                return new Double(Double.longBitsToDouble(readLong()));
+            case STRING:
+                return readString();
+            case TYPE:
+                return Type.getType(readString());
+            case HANDLE:
+                return readHandle();
+            case BYTE:
+                return new Byte((byte) readByte());
+            case BOOLEAN:
+                return readByte() == 0 ? Boolean.FALSE : Boolean.TRUE;
+            case CHAR:
+                return new Character((char) readVarInt());
+            case SHORT:
+                return new Short((short) readSignedVarInt());
+            case ENUM:
+                return new String[] { readString(), readString() };
+            case ANNOTATION:
+                return readAnnotation();
+            case LIST: {
+                n = readLength();
+                List<Object> l = new ArrayList<Object>(n);
+                for (i = 0; i < n; ++i) {
+                    l.add(readValue());
+                }
+                return l;
+            }
+            case BYTE_ARRAY: {
+                byte[] v = new byte[readLength()];
+                for (i = 0; i < v.length; ++i) {
+                    v[i] = (byte) readByte();
+                }
+                return v;
+            }
+            case BOOLEAN_ARRAY: {
+                boolean[] v = new boolean[readLength()];
+                for (i = 0; i < v.length; ++i) {
+                    v[i] = readByte() != 0;
+                }
+                return v;
+            }
+            case CHAR_ARRAY: {
+                char[] v = new char[readLength()];
+                for (i = 0; i < v.length; ++i) {
+                    v[i] = (char) readVarInt();
+                }
+                return v;
+            }
+            case SHORT_ARRAY: {
+                short[] v = new short[readLength()];
+                for (i = 0; i < v.length; ++i) {
+                    v[i] = (short) readSignedVarInt();
+                }
+                return v;
+            }
+            case INT_ARRAY: {
+                int[] v = new int[readLength()];
+                for (i = 0; i < v.length; ++i) {
+                    v[i] = readSignedVarInt();
+                }
+                return v;
+            }
+            case LONG_ARRAY: {
+                long[] v = new long[readLength()];
+                for (i = 0; i < v.length; ++i) {
+                    v[i] = readSignedVarLong();
+                }
+                return v;
+            }
+            case FLOAT_ARRAY: {
+                float[] v = new float[readLength()];
+                for (i = 0; i < v.length; ++i) {
+                    v[i] = Float.intBitsToFloat(readInt());
+                }
+                return v;
+            }
+            case DOUBLE_ARRAY: {
+                double[] v = new double[readLength()];
+                for (i = 0; i < v.length; ++i) {
+                    v[i] = Double.longBitsToDouble(readLong());
+                }
+                return v;
+            }
+            default:
+                throw new IllegalArgumentException("Invalid value tag");
+        }
+    }
+
+    private String readString() {
+        int index = readVarInt();
+        return index == 0 ? null : strings[index - 1];
+    }
+
+    private int readByte() {
+        return b[u++] & 0xFF;
+    }
+
+    private int readInt() {
+        byte[] b = this.b;
+        int u = this.u;
+        this.u = u + 4;
+        return ((b[u] & 0xFF) << 24) | ((b[u + 1] & 0xFF) << 16)
+                | ((b[u + 2] & 0xFF) << 8) | (b[u + 3] & 0xFF);
+    }
+
+    private long readLong() {
+        long l1 = readInt();
+        long l0 = readInt() & 0xFFFFFFFFL;
+        return (l1 << 32) | l0;
+    }
+
+    private int readVarInt() {
+        byte[] b = this.b;
+        int u = this.u;
+        int v = b[u++];
+        if (v < 0) {
+            v &= 0x7F;
+            int shift = 7;
+            int c;
+            do {
+                c = b[u++];
+                v |= (c & 0x7F) << shift;
+                shift += 7;
+            } while (c < 0);
+        }
+        this.u = u;
+        return v;
+    }
+
+    /**
+     * Reads the length of an array or list. Each element takes at least one
+     * byte, so a valid length is at most the number of remaining bytes. This
+     * check prevents a corrupted length from allocating a huge array.
+     */
+    private int readLength() {
+        return checkLength(readVarInt());
+    }
+
+    private int checkLength(final int n) {
+        if (n < 0 || n > b.length - u) {
+            throw new IllegalArgumentException("Invalid length " + n);
+        }
+        return n;
+    }
+
+    private int readSignedVarInt() {
+        int v = readVarInt();
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private long readSignedVarLong() {
+        long v = 0;
+        int shift = 0;
+        int c;
+        do {
+            c = b[u++];
+            v |= (long) (c & 0x7F) << shift;
+            shift += 7;
+        } while (c < 0);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /**
+     * A non standard attribute, with its raw content.
+     */
+    private static class RawAttribute extends Attribute {
+
+        private final byte[] value;
+
+        RawAttribute(final String type, final byte[] value) {
+            super(type);
+            this.value = value;
+        }
+
+        @Override
+        protected ByteVector write(
+            final ClassWriter cw,
+            final byte[] code,
+            final int len,
+            final int maxStack,
+            final int maxLocals)
+        {
+            return new ByteVector(value.length).putByteArray(value,
+                    0,
+                    value.length);
+        }
+    }
+}
@@ -29,6 +29,7 @@
  */
 package org.objectweb.asm.tree;
 
+import java.util.Arrays;
 import java.util.ListIterator;
 import java.util.NoSuchElementException;
 
@@ -57,10 +58,19 @@ public class InsnList {
 
     /**
      * A cache of the instructions of this list. This cache is used to improve
-     * the performance of the {@link #get} method.
+     * the performance of the {@link #get} and {@link #indexOf} methods. Only
+     * its first {@link #cacheSize} elements are valid.
      */
     AbstractInsnNode[] cache;
 
+    /**
+     * The number of valid elements at the beginning of {@link #cache}. When
+     * this list is modified, only the elements after the first instruction
+     * whose index changes are invalidated, so that the cache can be updated
+     * incrementally, and the cache array itself is reused.
+     */
+    int cacheSize;
+
     /**
      * Returns the number of instructions in this list.
      *
@@ -94,7 +104,8 @@ public class InsnList {
      * Returns the instruction whose index is given. This method builds a cache
      * of the instructions in this list to avoid scanning the whole list each
      * time it is called. Once the cache is built, this method run in constant
-     * time. This cache is invalidated by all the methods that modify the list.
+     * time. The methods that modify the list only invalidate the part of this
+     * cache after the modified instructions.
      *
      * @param index the index of the instruction that must be returned.
      * @return the instruction whose index is given.
@@ -104,8 +115,8 @@ public class InsnList {
         if (index < 0 || index >= size) {
             throw new IndexOutOfBoundsException();
         }
-        if (cache == null) {
-            cache = toArray();
+        if (index >= cacheSize) {
+            updateCache(index);
         }
         return cache[index];
     }
@@ -130,8 +141,8 @@ public class InsnList {
      * Returns the index of the given instruction in this list. This method
      * builds a cache of the instruction indexes to avoid scanning the whole
      * list each time it is called. Once the cache is built, this method run in
-     * constant time. The cache is invalidated by all the methods that modify
-     * the list.
+     * constant time. The methods that modify the list only invalidate the part
+     * of this cache after the modified instructions.
      *
      * @param insn an instruction <i>of this list</i>.
      * @return the index of the given instruction in this list. <i>The result of
@@ -140,12 +151,62 @@ public class InsnList {
      *         instruction belongs to an instruction list or not.
      */
     public int indexOf(final AbstractInsnNode insn) {
-        if (cache == null) {
-            cache = toArray();
+        if (!isCached(insn)) {
+            updateCache(size - 1);
         }
         return insn.index;
     }
 
+    /**
+     * Returns <tt>true</tt> if the given instruction is in the valid part of
+     * the cache.
+     *
+     * @param insn an instruction.
+     * @return <tt>true</tt> if the given instruction is in the valid part of
+     *         the cache, i.e., if its index is up to date.
+     */
+    private boolean isCached(final AbstractInsnNode insn) {
+        int index = insn.index;
+        return index >= 0 && index < cacheSize && cache[index] == insn;
+    }
+
+    /**
+     * Extends the valid part of the cache up to the given index.
+     *
+     * @param index the index of an instruction of this list.
+     */
+    private void updateCache(final int index) {
+        if (cache == null || cache.length < size) {
+            AbstractInsnNode[] c = new AbstractInsnNode[cache == null
+                    ? size
+                    : Math.max(size, 2 * cache.length)];
+            if (cacheSize > 0) {
+                System.arraycopy(cache, 0, c, 0, cacheSize);
+            }
+            cache = c;
+        }
+        int i = cacheSize;
+        AbstractInsnNode insn = i == 0 ? first : cache[i - 1].next;
+        while (i <= index && insn != null) {
+            cache[i] = insn;
+            insn.index = i++;
+            insn = insn.next;
+        }
+        cacheSize = i;
+    }
+
+    /**
+     * Invalidates the part of the cache that starts at the given instruction,
+     * whose index has changed or will change.
+     *
+     * @param insn an instruction of this list.
+     */
+    private void invalidate(final AbstractInsnNode insn) {
+        if (isCached(insn)) {
+            cacheSize = insn.index;
+        }
+    }
+
     /**
      * Makes the given visitor visit all of the instructions in this list.
      *
@@ -217,7 +278,7 @@ public class InsnList {
         } else {
             first = insn;
         }
-        if (cache != null) {
+        if (isCached(location)) {
             int index = location.index;
             cache[index] = insn;
             insn.index = index;
@@ -245,7 +306,6 @@ public class InsnList {
             insn.prev = last;
         }
         last = insn;
-        cache = null;
         insn.index = 0; // insn now belongs to an InsnList
     }
 
@@ -269,7 +329,6 @@ public class InsnList {
             elem.prev = last;
             last = insns.last;
         }
-        cache = null;
         insns.removeAll(false);
     }
 
@@ -289,7 +348,7 @@ public class InsnList {
             insn.next = first;
         }
         first = insn;
-        cache = null;
+        cacheSize = 0;
         insn.index = 0; // insn now belongs to an InsnList
     }
 
@@ -313,7 +372,7 @@ public class InsnList {
             elem.next = first;
             first = insns.first;
         }
-        cache = null;
+        cacheSize = 0;
         insns.removeAll(false);
     }
 
@@ -327,6 +386,9 @@ public class InsnList {
      */
     public void insert(final AbstractInsnNode location, final AbstractInsnNode insn) {
         ++size;
+        if (isCached(location)) {
+            cacheSize = location.index + 1;
+        }
         AbstractInsnNode next = location.next;
         if (next == null) {
             last = insn;
@@ -336,7 +398,6 @@ public class InsnList {
         location.next = insn;
         insn.next = next;
         insn.prev = location;
-        cache = null;
         insn.index = 0; // insn now belongs to an InsnList
     }
 
@@ -353,6 +414,9 @@ public class InsnList {
             return;
         }
         size += insns.size;
+        if (isCached(location)) {
+            cacheSize = location.index + 1;
+        }
         AbstractInsnNode ifirst = insns.first;
         AbstractInsnNode ilast = insns.last;
         AbstractInsnNode next = location.next;
@@ -364,7 +428,6 @@ public class InsnList {
         location.next = ifirst;
         ilast.next = next;
         ifirst.prev = location;
-        cache = null;
         insns.removeAll(false);
     }
 
@@ -378,6 +441,7 @@ public class InsnList {
      */
     public void insertBefore(final AbstractInsnNode location, final AbstractInsnNode insn) {
         ++size;
+        invalidate(location);
         AbstractInsnNode prev = location.prev;
         if (prev == null) {
             first = insn;
@@ -387,7 +451,6 @@ public class InsnList {
         location.prev = insn;
         insn.next = location;
         insn.prev = prev;
-        cache = null;
         insn.index = 0; // insn now belongs to an InsnList
     }
 
@@ -404,6 +467,7 @@ public class InsnList {
             return;
         }
         size += insns.size;
+        invalidate(location);
         AbstractInsnNode ifirst = insns.first;
         AbstractInsnNode ilast = insns.last;
         AbstractInsnNode prev = location .prev;
@@ -415,7 +479,6 @@ public class InsnList {
         location .prev = ilast;
         ilast.next = location ;
         ifirst.prev = prev;
-        cache = null;
         insns.removeAll(false);
     }
 
@@ -428,6 +491,7 @@ public class InsnList {
      */
     public void remove(final AbstractInsnNode insn) {
         --size;
+        invalidate(insn);
         AbstractInsnNode next = insn.next;
         AbstractInsnNode prev = insn.prev;
         if (next == null) {
@@ -447,7 +511,6 @@ public class InsnList {
                 next.prev = prev;
             }
         }
-        cache = null;
         insn.index = -1; // insn no longer belongs to an InsnList
         insn.prev = null;
         insn.next = null;
@@ -473,7 +536,11 @@ public class InsnList {
         size = 0;
         first = null;
         last = null;
-        cache = null;
+        if (cache != null) {
+            // keeps the cache array, but not the removed instructions
+            Arrays.fill(cache, null);
+        }
+        cacheSize = 0;
     }
 
     /**
@@ -549,20 +616,14 @@ public class InsnList {
             if (next == null) {
                 return size();
             }
-            if (cache == null) {
-                cache = toArray();
-            }
-            return next.index;
+            return indexOf(next);
         }
 
         public int previousIndex() {
             if (prev == null) {
                 return -1;
             }
-            if (cache == null) {
-                cache = toArray();
-            }
-            return prev.index;
+            return indexOf(prev);
         }
 
         public void add(Object o) {
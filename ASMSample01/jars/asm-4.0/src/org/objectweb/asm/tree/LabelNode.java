@@ -39,7 +39,7 @@ import org.objectweb.asm.MethodVisitor;
  */
 public class LabelNode extends AbstractInsnNode {
 
-    private Label label;
+    Label label;
 
     public LabelNode() {
         super(-1);
@@ -170,7 +170,7 @@ public class MethodNode extends MethodVisitor {
     /**
      * If the accept method has been called on this object.
      */
-    private boolean visited;
+    boolean visited;
     
     /**
      * Constructs an uninitialized {@link MethodNode}. <i>Subclasses must not
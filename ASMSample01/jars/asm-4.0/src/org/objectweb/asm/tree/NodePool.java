@@ -0,0 +1,479 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.tree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * A pool of reusable {@link ClassNode}, {@link MethodNode} and instruction
+ * nodes. The class nodes returned by {@link #newClassNode newClassNode} take
+ * their method nodes and their most common instruction nodes from this pool,
+ * instead of allocating new ones. When a class has been processed, it can be
+ * given back to the pool with {@link #release release}, so that its nodes,
+ * and the internal arrays of their lists, are reused for the next classes.
+ * This reduces the garbage produced by tree based transformations that process
+ * many classes, one at a time.
+ * <p>
+ * A released class node, and all its method and instruction nodes, must no
+ * longer be used, nor referenced from other nodes. Likewise, the {@link Label}
+ * objects that were used to build a released class node must no longer be
+ * used, since their {@link Label#info} field references pooled label nodes.
+ * Field nodes, annotation nodes, try catch block nodes, local variable nodes
+ * and the less common instruction nodes are not pooled. <i>This class is not
+ * thread safe</i>: each thread must use its own pool.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class NodePool {
+
+    /**
+     * The maximum number of nodes of each kind kept in this pool.
+     */
+    private final int maxSize;
+
+    private final List<PooledClassNode> classNodes;
+
+    private final List<PooledMethodNode> methodNodes;
+
+    private final List<InsnNode> insns;
+
+    private final List<IntInsnNode> intInsns;
+
+    private final List<VarInsnNode> varInsns;
+
+    private final List<TypeInsnNode> typeInsns;
+
+    private final List<FieldInsnNode> fieldInsns;
+
+    private final List<MethodInsnNode> methodInsns;
+
+    private final List<JumpInsnNode> jumpInsns;
+
+    private final List<LabelNode> labels;
+
+    private final List<LdcInsnNode> ldcInsns;
+
+    private final List<IincInsnNode> iincInsns;
+
+    private final List<LineNumberNode> lineNumbers;
+
+    /**
+     * Constructs a new {@link NodePool} without size limit.
+     */
+    public NodePool() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Constructs a new {@link NodePool}.
+     *
+     * @param maxSize the maximum number of nodes of each kind kept in this
+     *        pool. The nodes released when this limit is reached are left to
+     *        the garbage collector.
+     */
+    public NodePool(final int maxSize) {
+        this.maxSize = maxSize;
+        this.classNodes = new ArrayList<PooledClassNode>();
+        this.methodNodes = new ArrayList<PooledMethodNode>();
+        this.insns = new ArrayList<InsnNode>();
+        this.intInsns = new ArrayList<IntInsnNode>();
+        this.varInsns = new ArrayList<VarInsnNode>();
+        this.typeInsns = new ArrayList<TypeInsnNode>();
+        this.fieldInsns = new ArrayList<FieldInsnNode>();
+        this.methodInsns = new ArrayList<MethodInsnNode>();
+        this.jumpInsns = new ArrayList<JumpInsnNode>();
+        this.labels = new ArrayList<LabelNode>();
+        this.ldcInsns = new ArrayList<LdcInsnNode>();
+        this.iincInsns = new ArrayList<IincInsnNode>();
+        this.lineNumbers = new ArrayList<LineNumberNode>();
+    }
+
+    /**
+     * Returns an empty class node, reused from this pool if possible.
+     *
+     * @return an empty class node, whose method and instruction nodes are
+     *         taken from this pool.
+     */
+    public ClassNode newClassNode() {
+        int n = classNodes.size();
+        return n == 0 ? new PooledClassNode() : classNodes.remove(n - 1);
+    }
+
+    /**
+     * Gives the given class node back to this pool, with its method and
+     * instruction nodes. The class and method nodes are reused only if they
+     * were created by this pool. The instruction nodes of these methods are
+     * all reused, except the less common ones.
+     *
+     * @param cn a class node that is no longer used.
+     */
+    public void release(final ClassNode cn) {
+        List<MethodNode> ms = cn.methods;
+        for (int i = 0; i < ms.size(); ++i) {
+            MethodNode mn = ms.get(i);
+            if (mn instanceof PooledMethodNode
+                    && ((PooledMethodNode) mn).getPool() == this)
+            {
+                release((PooledMethodNode) mn);
+            }
+        }
+        if (!(cn instanceof PooledClassNode
+                && ((PooledClassNode) cn).getPool() == this))
+        {
+            return;
+        }
+        cn.version = 0;
+        cn.access = 0;
+        cn.name = null;
+        cn.signature = null;
+        cn.superName = null;
+        cn.interfaces.clear();
+        cn.sourceFile = null;
+        cn.sourceDebug = null;
+        cn.outerClass = null;
+        cn.outerMethod = null;
+        cn.outerMethodDesc = null;
+        cn.visibleAnnotations = null;
+        cn.invisibleAnnotations = null;
+        cn.attrs = null;
+        cn.innerClasses.clear();
+        cn.fields.clear();
+        cn.methods.clear();
+        add(classNodes, (PooledClassNode) cn);
+    }
+
+    /**
+     * Gives the given method node back to this pool, with its instruction
+     * nodes.
+     *
+     * @param mn a method node created by this pool.
+     */
+    private void release(final PooledMethodNode mn) {
+        AbstractInsnNode insn = mn.instructions.getFirst();
+        while (insn != null) {
+            AbstractInsnNode next = insn.next;
+            insn.prev = null;
+            insn.next = null;
+            insn.index = -1; // insn no longer belongs to an InsnList
+            recycle(insn);
+            insn = next;
+        }
+        mn.instructions.removeAll(false);
+        mn.exceptions.clear();
+        mn.annotationDefault = null;
+        mn.visibleAnnotations = null;
+        mn.invisibleAnnotations = null;
+        mn.visibleParameterAnnotations = null;
+        mn.invisibleParameterAnnotations = null;
+        mn.attrs = null;
+        mn.tryCatchBlocks.clear();
+        mn.localVariableList.clear();
+        mn.localVariables = null;
+        add(methodNodes, mn);
+    }
+
+    /**
+     * Gives the given instruction node back to this pool, if it is of a pooled
+     * kind.
+     *
+     * @param insn an instruction node that no longer belongs to a list.
+     */
+    private void recycle(final AbstractInsnNode insn) {
+        Class<?> c = insn.getClass();
+        if (c == InsnNode.class) {
+            add(insns, (InsnNode) insn);
+        } else if (c == IntInsnNode.class) {
+            add(intInsns, (IntInsnNode) insn);
+        } else if (c == VarInsnNode.class) {
+            add(varInsns, (VarInsnNode) insn);
+        } else if (c == TypeInsnNode.class) {
+            TypeInsnNode n = (TypeInsnNode) insn;
+            n.desc = null;
+            add(typeInsns, n);
+        } else if (c == FieldInsnNode.class) {
+            FieldInsnNode n = (FieldInsnNode) insn;
+            n.owner = null;
+            n.name = null;
+            n.desc = null;
+            add(fieldInsns, n);
+        } else if (c == MethodInsnNode.class) {
+            MethodInsnNode n = (MethodInsnNode) insn;
+            n.owner = null;
+            n.name = null;
+            n.desc = null;
+            add(methodInsns, n);
+        } else if (c == JumpInsnNode.class) {
+            JumpInsnNode n = (JumpInsnNode) insn;
+            n.label = null;
+            add(jumpInsns, n);
+        } else if (c == LabelNode.class) {
+            LabelNode n = (LabelNode) insn;
+            n.label = null;
+            add(labels, n);
+        } else if (c == LdcInsnNode.class) {
+            LdcInsnNode n = (LdcInsnNode) insn;
+            n.cst = null;
+            add(ldcInsns, n);
+        } else if (c == IincInsnNode.class) {
+            add(iincInsns, (IincInsnNode) insn);
+        } else if (c == LineNumberNode.class) {
+            LineNumberNode n = (LineNumberNode) insn;
+            n.start = null;
+            add(lineNumbers, n);
+        }
+    }
+
+    private <T> void add(final List<T> pool, final T node) {
+        if (pool.size() < maxSize) {
+            pool.add(node);
+        }
+    }
+
+    private static <T> T remove(final List<T> pool) {
+        int n = pool.size();
+        return n == 0 ? null : pool.remove(n - 1);
+    }
+
+    /**
+     * A class node whose method nodes are taken from the enclosing pool.
+     */
+    private final class PooledClassNode extends ClassNode {
+
+        PooledClassNode() {
+            super(Opcodes.ASM4);
+        }
+
+        NodePool getPool() {
+            return NodePool.this;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(
+            final int access,
+            final String name,
+            final String desc,
+            final String signature,
+            final String[] exceptions)
+        {
+            PooledMethodNode mn = NodePool.remove(methodNodes);
+            if (mn == null) {
+                mn = new PooledMethodNode();
+            }
+            mn.access = access;
+            mn.name = name;
+            mn.desc = desc;
+            mn.signature = signature;
+            if (exceptions != null) {
+                mn.exceptions.addAll(Arrays.asList(exceptions));
+            }
+            mn.localVariables = (access & Opcodes.ACC_ABSTRACT) == 0
+                    ? mn.localVariableList
+                    : null;
+            mn.maxStack = 0;
+            mn.maxLocals = 0;
+            mn.visited = false;
+            methods.add(mn);
+            return mn;
+        }
+    }
+
+    /**
+     * A method node whose instruction nodes are taken from the enclosing pool.
+     */
+    private final class PooledMethodNode extends MethodNode {
+
+        /**
+         * The list used for {@link #localVariables}, kept when this node is
+         * reused for an abstract method.
+         */
+        final List<LocalVariableNode> localVariableList;
+
+        PooledMethodNode() {
+            super(Opcodes.ASM4, 0, null, null, null, null);
+            localVariableList = localVariables;
+        }
+
+        NodePool getPool() {
+            return NodePool.this;
+        }
+
+        @Override
+        public void visitInsn(final int opcode) {
+            InsnNode n = NodePool.remove(insns);
+            if (n == null) {
+                n = new InsnNode(opcode);
+            } else {
+                n.opcode = opcode;
+            }
+            instructions.add(n);
+        }
+
+        @Override
+        public void visitIntInsn(final int opcode, final int operand) {
+            IntInsnNode n = NodePool.remove(intInsns);
+            if (n == null) {
+                n = new IntInsnNode(opcode, operand);
+            } else {
+                n.opcode = opcode;
+                n.operand = operand;
+            }
+            instructions.add(n);
+        }
+
+        @Override
+        public void visitVarInsn(final int opcode, final int var) {
+            VarInsnNode n = NodePool.remove(varInsns);
+            if (n == null) {
+                n = new VarInsnNode(opcode, var);
+            } else {
+                n.opcode = opcode;
+                n.var = var;
+            }
+            instructions.add(n);
+        }
+
+        @Override
+        public void visitTypeInsn(final int opcode, final String type) {
+            TypeInsnNode n = NodePool.remove(typeInsns);
+            if (n == null) {
+                n = new TypeInsnNode(opcode, type);
+            } else {
+                n.opcode = opcode;
+                n.desc = type;
+            }
+            instructions.add(n);
+        }
+
+        @Override
+        public void visitFieldInsn(
+            final int opcode,
+            final String owner,
+            final String name,
+            final String desc)
+        {
+            FieldInsnNode n = NodePool.remove(fieldInsns);
+            if (n == null) {
+                n = new FieldInsnNode(opcode, owner, name, desc);
+            } else {
+                n.opcode = opcode;
+                n.owner = owner;
+                n.name = name;
+                n.desc = desc;
+            }
+            instructions.add(n);
+        }
+
+        @Override
+        public void visitMethodInsn(
+            final int opcode,
+            final String owner,
+            final String name,
+            final String desc)
+        {
+            MethodInsnNode n = NodePool.remove(methodInsns);
+            if (n == null) {
+                n = new MethodInsnNode(opcode, owner, name, desc);
+            } else {
+                n.opcode = opcode;
+                n.owner = owner;
+                n.name = name;
+                n.desc = desc;
+            }
+            instructions.add(n);
+        }
+
+        @Override
+        public void visitJumpInsn(final int opcode, final Label label) {
+            JumpInsnNode n = NodePool.remove(jumpInsns);
+            if (n == null) {
+                n = new JumpInsnNode(opcode, getLabelNode(label));
+            } else {
+                n.opcode = opcode;
+                n.label = getLabelNode(label);
+            }
+            instructions.add(n);
+        }
+
+        @Override
+        public void visitLdcInsn(final Object cst) {
+            LdcInsnNode n = NodePool.remove(ldcInsns);
+            if (n == null) {
+                n = new LdcInsnNode(cst);
+            } else {
+                n.cst = cst;
+            }
+            instructions.add(n);
+        }
+
+        @Override
+        public void visitIincInsn(final int var, final int increment) {
+            IincInsnNode n = NodePool.remove(iincInsns);
+            if (n == null) {
+                n = new IincInsnNode(var, increment);
+            } else {
+                n.var = var;
+                n.incr = increment;
+            }
+            instructions.add(n);
+        }
+
+        @Override
+        public void visitLineNumber(final int line, final Label start) {
+            LineNumberNode n = NodePool.remove(lineNumbers);
+            if (n == null) {
+                n = new LineNumberNode(line, getLabelNode(start));
+            } else {
+                n.line = line;
+                n.start = getLabelNode(start);
+            }
+            instructions.add(n);
+        }
+
+        @Override
+        protected LabelNode getLabelNode(final Label l) {
+            if (!(l.info instanceof LabelNode)) {
+                LabelNode n = NodePool.remove(labels);
+                if (n == null) {
+                    n = new LabelNode(l);
+                } else {
+                    n.label = l;
+                }
+                l.info = n;
+            }
+            return (LabelNode) l.info;
+        }
+    }
+}
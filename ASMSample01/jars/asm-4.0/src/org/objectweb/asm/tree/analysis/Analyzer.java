@@ -76,6 +76,13 @@ public class Analyzer<V extends Value> implements Opcodes {
 
     private int top;
 
+    /**
+     * The index of the first instruction of the basic block of each
+     * instruction, if the last analyzed method was analyzed with
+     * {@link #analyzeBlocks analyzeBlocks}, or <tt>null</tt> otherwise.
+     */
+    private int[] blocks;
+
     /**
      * Constructs a new {@link Analyzer}.
      *
@@ -107,27 +114,15 @@ public class Analyzer<V extends Value> implements Opcodes {
         }
         n = m.instructions.size();
         insns = m.instructions;
-        handlers = (List<TryCatchBlockNode>[])new List<?>[n];
         frames = (Frame<V>[])new Frame<?>[n];
         subroutines = new Subroutine[n];
         queued = new boolean[n];
         queue = new int[n];
         top = 0;
+        blocks = null;
 
         // computes exception handlers for each instruction
-        for (int i = 0; i < m.tryCatchBlocks.size(); ++i) {
-            TryCatchBlockNode tcb = m.tryCatchBlocks.get(i);
-            int begin = insns.indexOf(tcb.start);
-            int end = insns.indexOf(tcb.end);
-            for (int j = begin; j < end; ++j) {
-                List<TryCatchBlockNode> insnHandlers = handlers[j];
-                if (insnHandlers == null) {
-                    insnHandlers = new ArrayList<TryCatchBlockNode>();
-                    handlers[j] = insnHandlers;
-                }
-                insnHandlers.add(tcb);
-            }
-        }
+        findHandlers(m);
 
         // computes the subroutine for each instruction:
         Subroutine main = new Subroutine(null, m.maxLocals, null);
@@ -152,24 +147,8 @@ public class Analyzer<V extends Value> implements Opcodes {
         }
 
         // initializes the data structures for the control flow analysis
-        Frame<V> current = newFrame(m.maxLocals, m.maxStack);
+        Frame<V> current = newInitialFrame(owner, m);
         Frame<V> handler = newFrame(m.maxLocals, m.maxStack);
-        current.setReturn(interpreter.newValue(Type.getReturnType(m.desc)));
-        Type[] args = Type.getArgumentTypes(m.desc);
-        int local = 0;
-        if ((m.access & ACC_STATIC) == 0) {
-            Type ctype = Type.getObjectType(owner);
-            current.setLocal(local++, interpreter.newValue(ctype));
-        }
-        for (int i = 0; i < args.length; ++i) {
-            current.setLocal(local++, interpreter.newValue(args[i]));
-            if (args[i].getSize() == 2) {
-                current.setLocal(local++, interpreter.newValue(null));
-            }
-        }
-        while (local < m.maxLocals) {
-            current.setLocal(local++, interpreter.newValue(null));
-        }
         merge(0, current, null);
 
         init(owner, m);
@@ -304,6 +283,375 @@ public class Analyzer<V extends Value> implements Opcodes {
         return frames;
     }
 
+    /**
+     * Analyzes the given method, but only keeps the frames at the beginning of
+     * its basic blocks. This is equivalent to {@link #analyze analyze}, but
+     * uses much less memory for large methods, since only one frame per basic
+     * block is allocated, instead of one per instruction. The basic blocks
+     * are processed in reverse postorder, which also reduces the number of
+     * times each block is analyzed before the fix point is reached. The frame
+     * of any instruction can then be recomputed from the frame at the
+     * beginning of its basic block with {@link #getFrame getFrame}. <i>Methods
+     * containing JSR or RET instructions are analyzed with
+     * {@link #analyze analyze}, and all their frames are kept.</i>
+     *
+     * @param owner the internal name of the class to which the method belongs.
+     * @param m the method to be analyzed.
+     * @return the symbolic state of the execution stack frame at the beginning
+     *         of each basic block of the method. The size of the returned
+     *         array is equal to the number of instructions (and labels) of the
+     *         method. A given frame is <tt>null</tt> if the corresponding
+     *         instruction is not the first instruction of a basic block, or if
+     *         it cannot be reached (dead code).
+     * @throws AnalyzerException if a problem occurs during the analysis.
+     */
+    @SuppressWarnings("unchecked")
+    public Frame<V>[] analyzeBlocks(final String owner, final MethodNode m)
+            throws AnalyzerException
+    {
+        if ((m.access & (ACC_ABSTRACT | ACC_NATIVE)) != 0) {
+            return analyze(owner, m);
+        }
+        n = m.instructions.size();
+        insns = m.instructions;
+        for (int i = 0; i < n; ++i) {
+            int opcode = insns.get(i).getOpcode();
+            if (opcode == JSR || opcode == RET) {
+                return analyze(owner, m);
+            }
+        }
+        frames = (Frame<V>[])new Frame<?>[n];
+        subroutines = null;
+        findHandlers(m);
+
+        // finds the first instruction of each basic block
+        boolean[] starts = new boolean[n + 1];
+        starts[0] = true;
+        for (int i = 0; i < m.tryCatchBlocks.size(); ++i) {
+            TryCatchBlockNode tcb = m.tryCatchBlocks.get(i);
+            starts[insns.indexOf(tcb.start)] = true;
+            starts[insns.indexOf(tcb.end)] = true;
+            starts[insns.indexOf(tcb.handler)] = true;
+        }
+        for (int i = 0; i < n; ++i) {
+            AbstractInsnNode insnNode = insns.get(i);
+            int opcode = insnNode.getOpcode();
+            if (insnNode instanceof JumpInsnNode) {
+                starts[insns.indexOf(((JumpInsnNode) insnNode).label)] = true;
+            } else if (insnNode instanceof TableSwitchInsnNode) {
+                TableSwitchInsnNode tsi = (TableSwitchInsnNode) insnNode;
+                starts[insns.indexOf(tsi.dflt)] = true;
+                for (int j = 0; j < tsi.labels.size(); ++j) {
+                    starts[insns.indexOf(tsi.labels.get(j))] = true;
+                }
+            } else if (insnNode instanceof LookupSwitchInsnNode) {
+                LookupSwitchInsnNode lsi = (LookupSwitchInsnNode) insnNode;
+                starts[insns.indexOf(lsi.dflt)] = true;
+                for (int j = 0; j < lsi.labels.size(); ++j) {
+                    starts[insns.indexOf(lsi.labels.get(j))] = true;
+                }
+            } else if (opcode != ATHROW
+                    && (opcode < IRETURN || opcode > RETURN))
+            {
+                continue;
+            }
+            starts[i + 1] = true;
+        }
+        blocks = new int[n];
+        int[] ends = new int[n];
+        int blockCount = 0;
+        for (int i = 0; i < n; ++i) {
+            if (starts[i]) {
+                ++blockCount;
+                blocks[i] = i;
+            } else {
+                blocks[i] = blocks[i - 1];
+            }
+            ends[blocks[i]] = i;
+        }
+
+        // computes the successors of each basic block, once and for all: the
+        // successors of the block starting at instruction i are stored in
+        // successors[offsets[i]] to successors[offsets[ends[i] + 1] - 1]
+        int[] offsets = new int[n + 1];
+        int[] successors = new int[n + m.tryCatchBlocks.size()];
+        int size = 0;
+        for (int i = 0; i < n; ++i) {
+            if (starts[i]) {
+                offsets[i] = size;
+                List<TryCatchBlockNode> insnHandlers = handlers[i];
+                if (insnHandlers != null) {
+                    for (int j = 0; j < insnHandlers.size(); ++j) {
+                        successors = addSuccessor(successors, size++,
+                                insns.indexOf(insnHandlers.get(j).handler));
+                    }
+                }
+            }
+            if (i != ends[blocks[i]]) {
+                continue;
+            }
+            AbstractInsnNode insnNode = insns.get(i);
+            int opcode = insnNode.getOpcode();
+            if (insnNode instanceof JumpInsnNode) {
+                successors = addSuccessor(successors, size++,
+                        insns.indexOf(((JumpInsnNode) insnNode).label));
+                if (opcode == GOTO) {
+                    continue;
+                }
+            } else if (insnNode instanceof TableSwitchInsnNode) {
+                TableSwitchInsnNode tsi = (TableSwitchInsnNode) insnNode;
+                successors = addSuccessor(successors, size++,
+                        insns.indexOf(tsi.dflt));
+                for (int j = 0; j < tsi.labels.size(); ++j) {
+                    successors = addSuccessor(successors, size++,
+                            insns.indexOf(tsi.labels.get(j)));
+                }
+                continue;
+            } else if (insnNode instanceof LookupSwitchInsnNode) {
+                LookupSwitchInsnNode lsi = (LookupSwitchInsnNode) insnNode;
+                successors = addSuccessor(successors, size++,
+                        insns.indexOf(lsi.dflt));
+                for (int j = 0; j < lsi.labels.size(); ++j) {
+                    successors = addSuccessor(successors, size++,
+                            insns.indexOf(lsi.labels.get(j)));
+                }
+                continue;
+            } else if (opcode == ATHROW
+                    || (opcode >= IRETURN && opcode <= RETURN))
+            {
+                continue;
+            }
+            if (i + 1 < n) {
+                successors = addSuccessor(successors, size++, i + 1);
+            }
+        }
+        offsets[n] = size;
+
+        // sorts the reachable basic blocks in reverse postorder
+        int[] order = new int[blockCount];
+        int[] rank = new int[n];
+        int count = sortBlocks(order, rank, ends, offsets, successors);
+
+        // control flow analysis
+        Frame<V> current = newInitialFrame(owner, m);
+        Frame<V> handler = newFrame(m.maxLocals, m.maxStack);
+        boolean[] changed = new boolean[count];
+        frames[0] = newFrame(current);
+        changed[0] = true;
+        init(owner, m);
+        int next = 0;
+        while (next < count) {
+            if (!changed[next]) {
+                ++next;
+                continue;
+            }
+            changed[next] = false;
+            int insn = order[next];
+            current.init(frames[insn]);
+            while (true) {
+                AbstractInsnNode insnNode = insns.get(insn);
+                try {
+                    List<TryCatchBlockNode> insnHandlers = handlers[insn];
+                    if (insnHandlers != null) {
+                        for (int i = 0; i < insnHandlers.size(); ++i) {
+                            TryCatchBlockNode tcb = insnHandlers.get(i);
+                            Type type;
+                            if (tcb.type == null) {
+                                type = Type.getObjectType("java/lang/Throwable");
+                            } else {
+                                type = Type.getObjectType(tcb.type);
+                            }
+                            int jump = insns.indexOf(tcb.handler);
+                            if (newControlFlowExceptionEdge(insn, tcb)) {
+                                handler.init(current);
+                                handler.clearStack();
+                                handler.push(interpreter.newValue(type));
+                                next = mergeBlock(jump, handler, rank, changed, next);
+                            }
+                        }
+                    }
+
+                    int insnOpcode = insnNode.getOpcode();
+                    if (insnOpcode != -1) {
+                        current.execute(insnNode, interpreter);
+                    }
+                    if (insnNode instanceof JumpInsnNode) {
+                        JumpInsnNode j = (JumpInsnNode) insnNode;
+                        if (insnOpcode != GOTO) {
+                            next = mergeBlock(insn + 1, current, rank, changed, next);
+                            newControlFlowEdge(insn, insn + 1);
+                        }
+                        int jump = insns.indexOf(j.label);
+                        next = mergeBlock(jump, current, rank, changed, next);
+                        newControlFlowEdge(insn, jump);
+                    } else if (insnNode instanceof LookupSwitchInsnNode) {
+                        LookupSwitchInsnNode lsi = (LookupSwitchInsnNode) insnNode;
+                        int jump = insns.indexOf(lsi.dflt);
+                        next = mergeBlock(jump, current, rank, changed, next);
+                        newControlFlowEdge(insn, jump);
+                        for (int j = 0; j < lsi.labels.size(); ++j) {
+                            jump = insns.indexOf(lsi.labels.get(j));
+                            next = mergeBlock(jump, current, rank, changed, next);
+                            newControlFlowEdge(insn, jump);
+                        }
+                    } else if (insnNode instanceof TableSwitchInsnNode) {
+                        TableSwitchInsnNode tsi = (TableSwitchInsnNode) insnNode;
+                        int jump = insns.indexOf(tsi.dflt);
+                        next = mergeBlock(jump, current, rank, changed, next);
+                        newControlFlowEdge(insn, jump);
+                        for (int j = 0; j < tsi.labels.size(); ++j) {
+                            jump = insns.indexOf(tsi.labels.get(j));
+                            next = mergeBlock(jump, current, rank, changed, next);
+                            newControlFlowEdge(insn, jump);
+                        }
+                    } else if (insnOpcode != ATHROW
+                            && (insnOpcode < IRETURN || insnOpcode > RETURN))
+                    {
+                        if (insn + 1 == n) {
+                            throw new AnalyzerException(insnNode,
+                                    "Execution can fall off end of the code");
+                        }
+                        if (starts[insn + 1]) {
+                            next = mergeBlock(insn + 1, current, rank, changed, next);
+                        }
+                        newControlFlowEdge(insn, insn + 1);
+                    }
+                } catch (AnalyzerException e) {
+                    throw new AnalyzerException(e.node, "Error at instruction "
+                            + insn + ": " + e.getMessage(), e);
+                } catch (Exception e) {
+                    throw new AnalyzerException(insnNode, "Error at instruction "
+                            + insn + ": " + e.getMessage(), e);
+                }
+                if (starts[++insn]) {
+                    break;
+                }
+            }
+        }
+
+        return frames;
+    }
+
+    /**
+     * Stores a successor in the given array, growing it if needed.
+     *
+     * @param successors an array of basic block successors.
+     * @param index where the successor must be stored.
+     * @param successor the index of the first instruction of a basic block.
+     * @return the given array, or a larger copy of it if it was full.
+     */
+    private static int[] addSuccessor(
+        int[] successors,
+        final int index,
+        final int successor)
+    {
+        if (index == successors.length) {
+            int[] newSuccessors = new int[2 * index + 1];
+            System.arraycopy(successors, 0, newSuccessors, 0, index);
+            successors = newSuccessors;
+        }
+        successors[index] = successor;
+        return successors;
+    }
+
+    /**
+     * Sorts the basic blocks that are reachable from the first instruction,
+     * through normal or exceptional control flow edges, in reverse postorder.
+     *
+     * @param order where the index of the first instruction of the reachable
+     *        basic blocks must be stored, in reverse postorder.
+     * @param rank where the position of each reachable basic block in
+     *        'order' must be stored, at the index of its first instruction.
+     * @param ends the index of the last instruction of each basic block, at
+     *        the index of its first instruction.
+     * @param offsets the offset in 'successors' of the successors of each
+     *        basic block, at the index of its first instruction, followed by
+     *        the total number of successors.
+     * @param successors the index of the first instruction of the successors
+     *        of each basic block.
+     * @return the number of reachable basic blocks.
+     */
+    private int sortBlocks(
+        final int[] order,
+        final int[] rank,
+        final int[] ends,
+        final int[] offsets,
+        final int[] successors)
+    {
+        // iterative depth first search, with an explicit stack of blocks and
+        // of the offset of their next successor to be visited
+        int[] stack = new int[order.length];
+        int[] edge = new int[order.length];
+        boolean[] visited = new boolean[n];
+        int postorder = order.length;
+        int top = 0;
+        stack[top] = 0;
+        edge[top++] = offsets[0];
+        visited[0] = true;
+        while (top > 0) {
+            int block = stack[top - 1];
+            int e = edge[top - 1];
+            if (e < offsets[ends[block] + 1]) {
+                edge[top - 1] = e + 1;
+                int successor = successors[e];
+                if (!visited[successor]) {
+                    visited[successor] = true;
+                    stack[top] = successor;
+                    edge[top++] = offsets[successor];
+                }
+            } else {
+                order[--postorder] = block;
+                --top;
+            }
+        }
+        // moves the reachable blocks at the beginning of 'order'
+        int count = order.length - postorder;
+        System.arraycopy(order, postorder, order, 0, count);
+        for (int i = 0; i < count; ++i) {
+            rank[order[i]] = i;
+        }
+        return count;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void findHandlers(final MethodNode m) {
+        handlers = (List<TryCatchBlockNode>[])new List<?>[n];
+        for (int i = 0; i < m.tryCatchBlocks.size(); ++i) {
+            TryCatchBlockNode tcb = m.tryCatchBlocks.get(i);
+            int begin = insns.indexOf(tcb.start);
+            int end = insns.indexOf(tcb.end);
+            for (int j = begin; j < end; ++j) {
+                List<TryCatchBlockNode> insnHandlers = handlers[j];
+                if (insnHandlers == null) {
+                    insnHandlers = new ArrayList<TryCatchBlockNode>();
+                    handlers[j] = insnHandlers;
+                }
+                insnHandlers.add(tcb);
+            }
+        }
+    }
+
+    private Frame<V> newInitialFrame(final String owner, final MethodNode m) {
+        Frame<V> current = newFrame(m.maxLocals, m.maxStack);
+        current.setReturn(interpreter.newValue(Type.getReturnType(m.desc)));
+        Type[] args = Type.getArgumentTypes(m.desc);
+        int local = 0;
+        if ((m.access & ACC_STATIC) == 0) {
+            Type ctype = Type.getObjectType(owner);
+            current.setLocal(local++, interpreter.newValue(ctype));
+        }
+        for (int i = 0; i < args.length; ++i) {
+            current.setLocal(local++, interpreter.newValue(args[i]));
+            if (args[i].getSize() == 2) {
+                current.setLocal(local++, interpreter.newValue(null));
+            }
+        }
+        while (local < m.maxLocals) {
+            current.setLocal(local++, interpreter.newValue(null));
+        }
+        return current;
+    }
+
     private void findSubroutine(int insn, final Subroutine sub, final List<AbstractInsnNode> calls)
             throws AnalyzerException
     {
@@ -379,12 +727,57 @@ public class Analyzer<V extends Value> implements Opcodes {
      *         equal to the number of instructions (and labels) of the method. A
      *         given frame is <tt>null</tt> if the corresponding instruction
      *         cannot be reached, or if an error occured during the analysis of
-     *         the method.
+     *         the method. If the method was analyzed with
+     *         {@link #analyzeBlocks analyzeBlocks}, only the frames at the
+     *         beginning of basic blocks are non <tt>null</tt> (see
+     *         {@link #getFrame getFrame}).
      */
     public Frame<V>[] getFrames() {
         return frames;
     }
 
+    /**
+     * Returns the symbolic stack frame of the given instruction of the last
+     * recently analyzed method. If this method was analyzed with
+     * {@link #analyzeBlocks analyzeBlocks}, and if the given instruction is
+     * not the first instruction of a basic block, its frame is recomputed from
+     * the frame at the beginning of its basic block. The returned frame is
+     * then not stored in the {@link #getFrames getFrames} array.
+     *
+     * @param insn the index of an instruction of the last recently analyzed
+     *        method.
+     * @return the symbolic state of the execution stack frame at the given
+     *         instruction, or <tt>null</tt> if this instruction cannot be
+     *         reached.
+     * @throws AnalyzerException if a problem occurs while the frame is
+     *         recomputed.
+     */
+    public Frame<V> getFrame(final int insn) throws AnalyzerException {
+        if (frames[insn] != null || blocks == null) {
+            return frames[insn];
+        }
+        int i = blocks[insn];
+        if (frames[i] == null) {
+            return null;
+        }
+        Frame<V> f = newFrame(frames[i]);
+        for (; i < insn; ++i) {
+            AbstractInsnNode insnNode = insns.get(i);
+            if (insnNode.getOpcode() != -1) {
+                try {
+                    f.execute(insnNode, interpreter);
+                } catch (AnalyzerException e) {
+                    throw new AnalyzerException(e.node, "Error at instruction "
+                            + i + ": " + e.getMessage(), e);
+                } catch (Exception e) {
+                    throw new AnalyzerException(insnNode, "Error at instruction "
+                            + i + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        return f;
+    }
+
     /**
      * Returns the exception handlers for the given instruction.
      *
@@ -519,6 +912,29 @@ public class Analyzer<V extends Value> implements Opcodes {
         }
     }
 
+    private int mergeBlock(
+        final int insn,
+        final Frame<V> frame,
+        final int[] rank,
+        final boolean[] changed,
+        final int next) throws AnalyzerException
+    {
+        Frame<V> oldFrame = frames[insn];
+        boolean changes;
+
+        if (oldFrame == null) {
+            frames[insn] = newFrame(frame);
+            changes = true;
+        } else {
+            changes = oldFrame.merge(frame, interpreter);
+        }
+        if (changes) {
+            changed[rank[insn]] = true;
+            return Math.min(rank[insn], next);
+        }
+        return next;
+    }
+
     private void merge(
         final int insn,
         final Frame<V> beforeJSR,
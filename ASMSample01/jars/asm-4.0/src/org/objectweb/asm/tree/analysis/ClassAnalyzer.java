@@ -0,0 +1,186 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.tree.analysis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * Analyzes all the methods of one or more classes in parallel. Each method is
+ * analyzed in a separate task of an {@link ExecutorService}, with its own
+ * {@link Analyzer} and its own {@link Interpreter}, created with
+ * {@link #newAnalyzer newAnalyzer} and {@link #newInterpreter newInterpreter}.
+ * Since no analyzer or interpreter is shared between threads, the same
+ * {@link ClassAnalyzer} can be used concurrently by several threads, provided
+ * the analyzed {@link ClassNode}s are not modified during the analysis.
+ *
+ * @param <V> type of the Value used for the analysis.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public abstract class ClassAnalyzer<V extends Value> {
+
+    /**
+     * The executor used to analyze the methods.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Constructs a new {@link ClassAnalyzer}.
+     *
+     * @param executor the executor used to analyze the methods. This executor
+     *        is not shut down by this class.
+     */
+    public ClassAnalyzer(final ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Analyzes all the methods of the given class.
+     *
+     * @param cn the class to be analyzed.
+     * @return an unmodifiable map associating to each method of the given class
+     *         the frames computed by {@link Analyzer#analyze analyze} for this
+     *         method. The keys of this map are the {@link MethodNode} objects
+     *         of the class, in their declaration order.
+     * @throws AnalyzerException if a problem occurs during the analysis of a
+     *         method. If several methods cannot be analyzed, the exception of
+     *         the first one is thrown.
+     */
+    public Map<MethodNode, Frame<V>[]> analyze(final ClassNode cn)
+            throws AnalyzerException
+    {
+        return analyze(Collections.singletonList(cn)).get(cn);
+    }
+
+    /**
+     * Analyzes all the methods of the given classes. All the methods are
+     * analyzed concurrently, regardless of the class to which they belong.
+     *
+     * @param classes the classes to be analyzed.
+     * @return an unmodifiable map associating to each given class the result
+     *         of its analysis (see {@link #analyze(ClassNode)}). The keys of
+     *         this map are the given {@link ClassNode} objects, in their
+     *         original order.
+     * @throws AnalyzerException if a problem occurs during the analysis of a
+     *         method. If several methods cannot be analyzed, the exception of
+     *         the first one is thrown.
+     */
+    public Map<ClassNode, Map<MethodNode, Frame<V>[]>> analyze(
+        final List<ClassNode> classes) throws AnalyzerException
+    {
+        List<Future<Frame<V>[]>> futures = new ArrayList<Future<Frame<V>[]>>();
+        try {
+            for (int i = 0; i < classes.size(); ++i) {
+                final ClassNode cn = classes.get(i);
+                List<MethodNode> methods = cn.methods;
+                for (int j = 0; j < methods.size(); ++j) {
+                    final MethodNode mn = methods.get(j);
+                    futures.add(executor.submit(new Callable<Frame<V>[]>() {
+                        public Frame<V>[] call() throws AnalyzerException {
+                            Analyzer<V> a = newAnalyzer(newInterpreter(cn));
+                            return a.analyze(cn.name, mn);
+                        }
+                    }));
+                }
+            }
+            Map<ClassNode, Map<MethodNode, Frame<V>[]>> result = new LinkedHashMap<ClassNode, Map<MethodNode, Frame<V>[]>>();
+            int k = 0;
+            for (int i = 0; i < classes.size(); ++i) {
+                ClassNode cn = classes.get(i);
+                List<MethodNode> methods = cn.methods;
+                Map<MethodNode, Frame<V>[]> frames = new LinkedHashMap<MethodNode, Frame<V>[]>();
+                for (int j = 0; j < methods.size(); ++j) {
+                    MethodNode mn = methods.get(j);
+                    try {
+                        frames.put(mn, futures.get(k++).get());
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        if (cause instanceof AnalyzerException) {
+                            AnalyzerException ae = (AnalyzerException) cause;
+                            throw new AnalyzerException(ae.node, cn.name + '.'
+                                    + mn.name + mn.desc + ": "
+                                    + ae.getMessage(), ae);
+                        }
+                        if (cause instanceof RuntimeException) {
+                            throw (RuntimeException) cause;
+                        }
+                        if (cause instanceof Error) {
+                            throw (Error) cause;
+                        }
+                        throw new RuntimeException(cause);
+                    }
+                }
+                result.put(cn, Collections.unmodifiableMap(frames));
+            }
+            return Collections.unmodifiableMap(result);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted");
+        } finally {
+            for (int i = 0; i < futures.size(); ++i) {
+                futures.get(i).cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Creates the interpreter used to analyze a method of the given class.
+     * This method is called concurrently, from several threads, and a new
+     * interpreter is created for each analyzed method.
+     *
+     * @param cn the class to which the analyzed method belongs.
+     * @return a new interpreter.
+     */
+    protected abstract Interpreter<V> newInterpreter(ClassNode cn);
+
+    /**
+     * Creates the analyzer used to analyze a method. The default
+     * implementation returns a new {@link Analyzer}. This method is called
+     * concurrently, from several threads, and a new analyzer is created for
+     * each analyzed method.
+     *
+     * @param interpreter the interpreter to be used by the analyzer.
+     * @return a new analyzer.
+     */
+    protected Analyzer<V> newAnalyzer(final Interpreter<V> interpreter) {
+        return new Analyzer<V>(interpreter);
+    }
+}
@@ -32,6 +32,7 @@ package org.objectweb.asm.tree.analysis;
 import java.util.List;
 
 import org.objectweb.asm.Type;
+import org.objectweb.asm.TypeHierarchy;
 
 /**
  * An extended {@link BasicVerifier} that performs more precise verifications.
@@ -68,6 +69,12 @@ public class SimpleVerifier extends BasicVerifier {
      */
     private ClassLoader loader = getClass().getClassLoader();
 
+    /**
+     * The type hierarchy to use for referenced classes, or <tt>null</tt> to
+     * load them with {@link #loader}.
+     */
+    private TypeHierarchy hierarchy;
+
     /**
      * Constructs a new {@link SimpleVerifier}.
      */
@@ -139,6 +146,21 @@ public class SimpleVerifier extends BasicVerifier {
         this.loader = loader;
     }
 
+    /**
+     * Set the {@link TypeHierarchy} which will be used to get the super class
+     * and the interfaces of referenced classes, instead of loading them with a
+     * <code>ClassLoader</code>. Array types are handled by this verifier, and
+     * are never passed to the type hierarchy. A type hierarchy such as
+     * {@link org.objectweb.asm.commons.ClasspathTypeHierarchy} can be shared
+     * between the verifiers of many classes, in many threads.
+     *
+     * @param hierarchy a <code>TypeHierarchy</code> to use, or <tt>null</tt>
+     *        to load referenced classes with a <code>ClassLoader</code>.
+     */
+    public void setTypeHierarchy(final TypeHierarchy hierarchy) {
+        this.hierarchy = hierarchy;
+    }
+
     @Override
     public BasicValue newValue(final Type type) {
         if (type == null) {
@@ -268,6 +290,10 @@ public class SimpleVerifier extends BasicVerifier {
         if (currentClass != null && t.equals(currentClass)) {
             return isInterface;
         }
+        if (hierarchy != null) {
+            return t.getSort() != Type.ARRAY
+                    && hierarchy.isInterface(t.getInternalName());
+        }
         return getClass(t).isInterface();
     }
 
@@ -275,6 +301,13 @@ public class SimpleVerifier extends BasicVerifier {
         if (currentClass != null && t.equals(currentClass)) {
             return currentSuperClass;
         }
+        if (hierarchy != null) {
+            if (t.getSort() == Type.ARRAY) {
+                return Type.getObjectType("java/lang/Object");
+            }
+            String s = hierarchy.getSuperClass(t.getInternalName());
+            return s == null ? null : Type.getObjectType(s);
+        }
         Class<?> c = getClass(t).getSuperclass();
         return c == null ? null : Type.getType(c);
     }
@@ -307,6 +340,18 @@ public class SimpleVerifier extends BasicVerifier {
             }
             return false;
         }
+        if (hierarchy != null) {
+            if (t.getSort() == Type.ARRAY) {
+                return u.getSort() == Type.ARRAY
+                        && isArrayAssignableFrom(t, u);
+            }
+            String tn = t.getInternalName();
+            if ("java/lang/Object".equals(tn) || hierarchy.isInterface(tn)) {
+                return true;
+            }
+            return u.getSort() != Type.ARRAY
+                    && hierarchy.isAssignableFrom(tn, u.getInternalName());
+        }
         Class<?> tc = getClass(t);
         if (tc.isInterface()) {
             tc = Object.class;
@@ -314,6 +359,21 @@ public class SimpleVerifier extends BasicVerifier {
         return tc.isAssignableFrom(getClass(u));
     }
 
+    /**
+     * Returns <tt>true</tt> if the array type u can be assigned to the array
+     * type t. This method is only used with a {@link TypeHierarchy}.
+     */
+    private boolean isArrayAssignableFrom(final Type t, final Type u) {
+        Type te = Type.getType(t.getDescriptor().substring(1));
+        Type ue = Type.getType(u.getDescriptor().substring(1));
+        boolean tref = te.getSort() == Type.OBJECT || te.getSort() == Type.ARRAY;
+        boolean uref = ue.getSort() == Type.OBJECT || ue.getSort() == Type.ARRAY;
+        if (tref && uref) {
+            return isAssignableFrom(te, ue);
+        }
+        return te.equals(ue);
+    }
+
     protected Class<?> getClass(final Type t) {
         try {
             if (t.getSort() == Type.ARRAY) {
@@ -145,7 +145,7 @@ public class ASMifier extends Printer {
         }
         cr.accept(new TraceClassVisitor(null,
                 new ASMifier(),
-                new PrintWriter(System.out)), flags);
+                new PrintWriter(System.out), true), flags);
     }
 
     // ------------------------------------------------------------------------
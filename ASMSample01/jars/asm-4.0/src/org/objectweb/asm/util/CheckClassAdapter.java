@@ -62,6 +62,12 @@ import org.objectweb.asm.tree.analysis.SimpleVerifier;
  * "i", "D", null)</tt>
  * will <i>not</i> be detected by this class adapter.
  *
+ * <p>The checks that are performed can be selected with a
+ * {@link CheckPolicy}, e.g., to check the structure of the visit calls only,
+ * or to check the code of the methods in a sample of the classes only.
+ * Sharing a policy between the adapters also avoids parsing the same
+ * descriptors and signatures again for each class.
+ *
  * <p><code>CheckClassAdapter</code> can be also used to verify bytecode
  * transformations in order to make sure transformed bytecode is sane. For
  * example:
@@ -153,6 +159,11 @@ public class CheckClassAdapter extends ClassVisitor {
      */
     private Map<Label, Integer> labels;
 
+    /**
+     * The checks to be performed.
+     */
+    private final CheckPolicy policy;
+
     /**
      * <tt>true</tt> if the method code must be checked with a BasicVerifier.
      */
@@ -347,10 +358,45 @@ public class CheckClassAdapter extends ClassVisitor {
         final int api,
         final ClassVisitor cv,
         final boolean checkDataFlow)
+    {
+        this(api, cv, checkDataFlow
+                ? new CheckPolicy(CheckPolicy.DATA_FLOW, 1, 0)
+                : CheckPolicy.DEFAULT);
+    }
+
+    /**
+     * Constructs a new {@link CheckClassAdapter}. <i>Subclasses must not use
+     * this constructor</i>. Instead, they must use the
+     * {@link #CheckClassAdapter(int, ClassVisitor, CheckPolicy)} version.
+     *
+     * @param cv the class visitor to which this adapter must delegate calls.
+     * @param policy the checks to be performed. The same policy should be
+     *        used for all the classes of a transformation pipeline (see
+     *        {@link CheckPolicy}).
+     */
+    public CheckClassAdapter(final ClassVisitor cv, final CheckPolicy policy)
+    {
+        this(Opcodes.ASM4, cv, policy);
+    }
+
+    /**
+     * Constructs a new {@link CheckClassAdapter}.
+     *
+     * @param api the ASM API version implemented by this visitor. Must be one
+     *        of {@link Opcodes#ASM4}.
+     * @param cv the class visitor to which this adapter must delegate calls.
+     * @param policy the checks to be performed. The same policy should be
+     *        used for all the classes of a transformation pipeline (see
+     *        {@link CheckPolicy}).
+     */
+    protected CheckClassAdapter(
+        final int api,
+        final ClassVisitor cv,
+        final CheckPolicy policy)
     {
         super(api, cv);
         this.labels = new HashMap<Label, Integer>();
-        this.checkDataFlow = checkDataFlow;
+        this.policy = policy;
     }
 
     // ------------------------------------------------------------------------
@@ -370,6 +416,7 @@ public class CheckClassAdapter extends ClassVisitor {
             throw new IllegalStateException("visit must be called only once");
         }
         start = true;
+        checkDataFlow = policy.nextClass();
         checkState();
         checkAccess(access, Opcodes.ACC_PUBLIC + Opcodes.ACC_FINAL
                 + Opcodes.ACC_SUPER + Opcodes.ACC_INTERFACE
@@ -378,17 +425,17 @@ public class CheckClassAdapter extends ClassVisitor {
                 + Opcodes.ACC_DEPRECATED
                 + 0x40000); // ClassWriter.ACC_SYNTHETIC_ATTRIBUTE
         if (name == null || !name.endsWith("package-info")) {
-            CheckMethodAdapter.checkInternalName(name, "class name");
+            policy.checkInternalName(name, "class name");
         }
         if ("java/lang/Object".equals(name)) {
             if (superName != null) {
                 throw new IllegalArgumentException("The super class name of the Object class must be 'null'");
             }
         } else {
-            CheckMethodAdapter.checkInternalName(superName, "super class name");
+            policy.checkInternalName(superName, "super class name");
         }
         if (signature != null) {
-            CheckMethodAdapter.checkClassSignature(signature);
+            policy.checkClassSignature(signature);
         }
         if ((access & Opcodes.ACC_INTERFACE) != 0) {
             if (!"java/lang/Object".equals(superName)) {
@@ -397,7 +444,7 @@ public class CheckClassAdapter extends ClassVisitor {
         }
         if (interfaces != null) {
             for (int i = 0; i < interfaces.length; ++i) {
-                CheckMethodAdapter.checkInternalName(interfaces[i],
+                policy.checkInternalName(interfaces[i],
                         "interface name at index " + i);
             }
         }
@@ -430,7 +477,7 @@ public class CheckClassAdapter extends ClassVisitor {
             throw new IllegalArgumentException("Illegal outer class owner");
         }
         if (desc != null) {
-            CheckMethodAdapter.checkMethodDesc(desc);
+            policy.checkMethodDesc(desc);
         }
         super.visitOuterClass(owner, name, desc);
     }
@@ -443,12 +490,12 @@ public class CheckClassAdapter extends ClassVisitor {
         final int access)
     {
         checkState();
-        CheckMethodAdapter.checkInternalName(name, "class name");
+        policy.checkInternalName(name, "class name");
         if (outerName != null) {
-            CheckMethodAdapter.checkInternalName(outerName, "outer class name");
+            policy.checkInternalName(outerName, "outer class name");
         }
         if (innerName != null) {
-            CheckMethodAdapter.checkIdentifier(innerName, "inner class name");
+            policy.checkIdentifier(innerName, "inner class name");
         }
         checkAccess(access, Opcodes.ACC_PUBLIC + Opcodes.ACC_PRIVATE
                 + Opcodes.ACC_PROTECTED + Opcodes.ACC_STATIC
@@ -473,10 +520,10 @@ public class CheckClassAdapter extends ClassVisitor {
                 + Opcodes.ACC_TRANSIENT + Opcodes.ACC_SYNTHETIC
                 + Opcodes.ACC_ENUM + Opcodes.ACC_DEPRECATED
                 + 0x40000); // ClassWriter.ACC_SYNTHETIC_ATTRIBUTE
-        CheckMethodAdapter.checkUnqualifiedName(version, name, "field name");
-        CheckMethodAdapter.checkDesc(desc, false);
+        policy.checkUnqualifiedName(version, name, "field name");
+        policy.checkDesc(desc, false);
         if (signature != null) {
-            CheckMethodAdapter.checkFieldSignature(signature);
+            policy.checkFieldSignature(signature);
         }
         if (value != null) {
             CheckMethodAdapter.checkConstant(value);
@@ -501,14 +548,14 @@ public class CheckClassAdapter extends ClassVisitor {
                 + Opcodes.ACC_ABSTRACT + Opcodes.ACC_STRICT
                 + Opcodes.ACC_SYNTHETIC + Opcodes.ACC_DEPRECATED
                 + 0x40000); // ClassWriter.ACC_SYNTHETIC_ATTRIBUTE
-        CheckMethodAdapter.checkMethodIdentifier(version, name, "method name");
-        CheckMethodAdapter.checkMethodDesc(desc);
+        policy.checkMethodIdentifier(version, name, "method name");
+        policy.checkMethodDesc(desc);
         if (signature != null) {
-            CheckMethodAdapter.checkMethodSignature(signature);
+            policy.checkMethodSignature(signature);
         }
         if (exceptions != null) {
             for (int i = 0; i < exceptions.length; ++i) {
-                CheckMethodAdapter.checkInternalName(exceptions[i],
+                policy.checkInternalName(exceptions[i],
                         "exception name at index " + i);
             }
         }
@@ -527,6 +574,7 @@ public class CheckClassAdapter extends ClassVisitor {
                     exceptions), labels);
         }
         cma.version = version;
+        cma.policy = policy;
         return cma;
     }
 
@@ -536,7 +584,7 @@ public class CheckClassAdapter extends ClassVisitor {
         final boolean visible)
     {
         checkState();
-        CheckMethodAdapter.checkDesc(desc, false);
+        policy.checkDesc(desc, false);
         return new CheckAnnotationAdapter(super.visitAnnotation(desc, visible));
     }
 
@@ -74,6 +74,11 @@ public class CheckMethodAdapter extends MethodVisitor {
      */
     public int version;
 
+    /**
+     * The checks to be performed on names, descriptors and signatures.
+     */
+    CheckPolicy policy = CheckPolicy.DEFAULT;
+
     /**
      * <tt>true</tt> if the visitCode method has been called.
      */
@@ -445,7 +450,7 @@ public class CheckMethodAdapter extends MethodVisitor {
         final boolean visible)
     {
         checkEndMethod();
-        checkDesc(desc, false);
+        policy.checkDesc(desc, false);
         return new CheckAnnotationAdapter(super.visitAnnotation(desc, visible));
     }
 
@@ -462,7 +467,7 @@ public class CheckMethodAdapter extends MethodVisitor {
         final boolean visible)
     {
         checkEndMethod();
-        checkDesc(desc, false);
+        policy.checkDesc(desc, false);
         return new CheckAnnotationAdapter(super.visitParameterAnnotation(parameter,
                 desc,
                 visible));
@@ -594,7 +599,7 @@ public class CheckMethodAdapter extends MethodVisitor {
         checkStartCode();
         checkEndCode();
         checkOpcode(opcode, 3);
-        checkInternalName(type, "type");
+        policy.checkInternalName(type, "type");
         if (opcode == Opcodes.NEW && type.charAt(0) == '[') {
             throw new IllegalArgumentException("NEW cannot be used to create arrays: "
                     + type);
@@ -613,9 +618,9 @@ public class CheckMethodAdapter extends MethodVisitor {
         checkStartCode();
         checkEndCode();
         checkOpcode(opcode, 4);
-        checkInternalName(owner, "owner");
-        checkUnqualifiedName(version, name, "name");
-        checkDesc(desc, false);
+        policy.checkInternalName(owner, "owner");
+        policy.checkUnqualifiedName(version, name, "name");
+        policy.checkDesc(desc, false);
         super.visitFieldInsn(opcode, owner, name, desc);
         ++insnCount;
     }
@@ -630,9 +635,9 @@ public class CheckMethodAdapter extends MethodVisitor {
         checkStartCode();
         checkEndCode();
         checkOpcode(opcode, 5);
-        checkMethodIdentifier(version, name, "name");
-        checkInternalName(owner, "owner");
-        checkMethodDesc(desc);
+        policy.checkMethodIdentifier(version, name, "name");
+        policy.checkInternalName(owner, "owner");
+        policy.checkMethodDesc(desc);
         super.visitMethodInsn(opcode, owner, name, desc);
         ++insnCount;
     }
@@ -646,8 +651,8 @@ public class CheckMethodAdapter extends MethodVisitor {
     {
         checkStartCode();
         checkEndCode();
-        checkMethodIdentifier(version, name, "name");
-        checkMethodDesc(desc);
+        policy.checkMethodIdentifier(version, name, "name");
+        policy.checkMethodDesc(desc);
         if (bsm.getTag() != Opcodes.H_INVOKESTATIC
                 && bsm.getTag() != Opcodes.H_NEWINVOKESPECIAL)
         {
@@ -762,7 +767,7 @@ public class CheckMethodAdapter extends MethodVisitor {
     public void visitMultiANewArrayInsn(final String desc, final int dims) {
         checkStartCode();
         checkEndCode();
-        checkDesc(desc, false);
+        policy.checkDesc(desc, false);
         if (desc.charAt(0) != '[') {
             throw new IllegalArgumentException("Invalid descriptor (must be an array type descriptor): "
                     + desc);
@@ -800,7 +805,7 @@ public class CheckMethodAdapter extends MethodVisitor {
             throw new IllegalStateException("Try catch blocks must be visited before their labels");
         }
         if (type != null) {
-            checkInternalName(type, "type");
+            policy.checkInternalName(type, "type");
         }
         super.visitTryCatchBlock(start, end, handler, type);
         handlers.add(start);
@@ -818,8 +823,8 @@ public class CheckMethodAdapter extends MethodVisitor {
     {
         checkStartCode();
         checkEndCode();
-        checkUnqualifiedName(version, name, "name");
-        checkDesc(desc, false);
+        policy.checkUnqualifiedName(version, name, "name");
+        policy.checkDesc(desc, false);
         checkLabel(start, true, "start label");
         checkLabel(end, true, "end label");
         checkUnsignedShort(index, "Invalid variable index");
@@ -915,7 +920,8 @@ public class CheckMethodAdapter extends MethodVisitor {
             return;
         }
         if (value instanceof String) {
-            checkInternalName((String) value, "Invalid stack frame value");
+            policy.checkInternalName((String) value,
+                    "Invalid stack frame value");
             return;
         }
         if (!(value instanceof Label)) {
@@ -0,0 +1,350 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The checks performed by a {@link CheckClassAdapter}. A policy selects one
+ * of three verification levels:
+ * <ul>
+ * <li>{@link #STRUCTURE}: checks the order of the visit calls, the access
+ * flags, the opcodes, the labels and the numeric operands, but only checks
+ * that names, descriptors and signatures are not <tt>null</tt> or
+ * empty.</li>
+ * <li>{@link #DESCRIPTORS}: also parses and checks the names, descriptors
+ * and signatures. Validated descriptors, internal names and signatures are
+ * remembered, so that each one is parsed only once.</li>
+ * <li>{@link #DATA_FLOW}: also checks the code of the methods with a
+ * {@link org.objectweb.asm.tree.analysis.BasicVerifier}, in one class out of
+ * a given number of classes.</li>
+ * </ul>
+ * A policy can, and should, be shared between all the
+ * {@link CheckClassAdapter}s of a transformation pipeline, including across
+ * threads, so that the validated descriptors are shared and the data flow
+ * checks are sampled over all the classes.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class CheckPolicy {
+
+    /**
+     * Level at which only the structure of the visit calls is checked.
+     */
+    public static final int STRUCTURE = 0;
+
+    /**
+     * Level at which the names, descriptors and signatures are also checked.
+     */
+    public static final int DESCRIPTORS = 1;
+
+    /**
+     * Level at which the code of the methods is also checked with a data flow
+     * analysis.
+     */
+    public static final int DATA_FLOW = 2;
+
+    /**
+     * The default maximum number of validated strings that are remembered.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 16384;
+
+    /**
+     * The policy used when no policy is given: all the names, descriptors
+     * and signatures are checked, and nothing is remembered.
+     */
+    static final CheckPolicy DEFAULT = new CheckPolicy(DESCRIPTORS, 1, 0);
+
+    private static final int DESC = 1;
+
+    private static final int METHOD_DESC = 2;
+
+    private static final int INTERNAL_NAME = 4;
+
+    private static final int CLASS_SIGNATURE = 8;
+
+    private static final int METHOD_SIGNATURE = 16;
+
+    private static final int FIELD_SIGNATURE = 32;
+
+    /**
+     * The verification level.
+     */
+    private final int level;
+
+    /**
+     * The number of classes per data flow checked class.
+     */
+    private final int dataFlowPeriod;
+
+    /**
+     * The maximum number of validated strings that are remembered.
+     */
+    private final int cacheSize;
+
+    /**
+     * The validated strings. The value associated with each string indicates
+     * as what it has been validated (a combination of {@link #DESC},
+     * {@link #METHOD_DESC}, etc).
+     */
+    private final ConcurrentHashMap<String, Integer> validated;
+
+    /**
+     * The number of classes that have been checked with this policy.
+     */
+    private final AtomicLong classCount;
+
+    /**
+     * Constructs a new {@link CheckPolicy}. At the {@link #DATA_FLOW} level,
+     * the code of all the classes is checked.
+     *
+     * @param level the verification level. Must be one of {@link #STRUCTURE},
+     *        {@link #DESCRIPTORS} or {@link #DATA_FLOW}.
+     */
+    public CheckPolicy(final int level) {
+        this(level, 1, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Constructs a new {@link CheckPolicy}.
+     *
+     * @param level the verification level. Must be one of {@link #STRUCTURE},
+     *        {@link #DESCRIPTORS} or {@link #DATA_FLOW}.
+     * @param dataFlowPeriod the code of one class out of
+     *        <tt>dataFlowPeriod</tt> classes is checked with a data flow
+     *        analysis, at the {@link #DATA_FLOW} level. The first class is
+     *        always checked.
+     * @param cacheSize the maximum number of validated descriptors, internal
+     *        names and signatures that are remembered. 0 disables the
+     *        memoization.
+     */
+    public CheckPolicy(
+        final int level,
+        final int dataFlowPeriod,
+        final int cacheSize)
+    {
+        if (level < STRUCTURE || level > DATA_FLOW) {
+            throw new IllegalArgumentException("Invalid level: " + level);
+        }
+        if (dataFlowPeriod < 1) {
+            throw new IllegalArgumentException("Invalid data flow period: "
+                    + dataFlowPeriod);
+        }
+        this.level = level;
+        this.dataFlowPeriod = dataFlowPeriod;
+        this.cacheSize = cacheSize;
+        this.validated = new ConcurrentHashMap<String, Integer>();
+        this.classCount = new AtomicLong();
+    }
+
+    /**
+     * Returns the verification level of this policy.
+     *
+     * @return {@link #STRUCTURE}, {@link #DESCRIPTORS} or {@link #DATA_FLOW}.
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Returns the number of classes per data flow checked class.
+     *
+     * @return the number of classes per data flow checked class.
+     */
+    public int getDataFlowPeriod() {
+        return dataFlowPeriod;
+    }
+
+    /**
+     * Returns the number of classes that have been checked with this policy.
+     *
+     * @return the number of classes that have been checked with this policy.
+     */
+    public long getClassCount() {
+        return classCount.get();
+    }
+
+    /**
+     * Returns the number of validated strings that are remembered.
+     *
+     * @return the number of validated strings that are remembered.
+     */
+    public int getCachedCount() {
+        return validated.size();
+    }
+
+    /**
+     * Starts the checks of a new class.
+     *
+     * @return <tt>true</tt> if the code of this class must be checked with a
+     *         data flow analysis.
+     */
+    boolean nextClass() {
+        long n = classCount.getAndIncrement();
+        return level == DATA_FLOW && n % dataFlowPeriod == 0;
+    }
+
+    // ------------------------------------------------------------------------
+    // Checks, see the corresponding methods in CheckMethodAdapter
+    // ------------------------------------------------------------------------
+
+    void checkUnqualifiedName(
+        final int version,
+        final String name,
+        final String msg)
+    {
+        if (level == STRUCTURE) {
+            checkNotEmpty(name, msg);
+        } else {
+            CheckMethodAdapter.checkUnqualifiedName(version, name, msg);
+        }
+    }
+
+    void checkIdentifier(final String name, final String msg) {
+        if (level == STRUCTURE) {
+            checkNotEmpty(name, msg);
+        } else {
+            CheckMethodAdapter.checkIdentifier(name, msg);
+        }
+    }
+
+    void checkMethodIdentifier(
+        final int version,
+        final String name,
+        final String msg)
+    {
+        if (level == STRUCTURE) {
+            checkNotEmpty(name, msg);
+        } else {
+            CheckMethodAdapter.checkMethodIdentifier(version, name, msg);
+        }
+    }
+
+    void checkInternalName(final String name, final String msg) {
+        if (level == STRUCTURE) {
+            checkNotEmpty(name, msg);
+        } else if (!isValidated(name, INTERNAL_NAME)) {
+            CheckMethodAdapter.checkInternalName(name, msg);
+            setValidated(name, INTERNAL_NAME);
+        }
+    }
+
+    void checkDesc(final String desc, final boolean canBeVoid) {
+        if (level == STRUCTURE) {
+            checkNotEmpty(desc, "type descriptor");
+        } else if (!isValidated(desc, DESC)) {
+            CheckMethodAdapter.checkDesc(desc, canBeVoid);
+            if (!canBeVoid) {
+                setValidated(desc, DESC);
+            }
+        }
+    }
+
+    void checkMethodDesc(final String desc) {
+        if (level == STRUCTURE) {
+            checkNotEmpty(desc, "method descriptor");
+        } else if (!isValidated(desc, METHOD_DESC)) {
+            CheckMethodAdapter.checkMethodDesc(desc);
+            setValidated(desc, METHOD_DESC);
+        }
+    }
+
+    void checkClassSignature(final String signature) {
+        if (level != STRUCTURE && !isValidated(signature, CLASS_SIGNATURE)) {
+            CheckMethodAdapter.checkClassSignature(signature);
+            setValidated(signature, CLASS_SIGNATURE);
+        }
+    }
+
+    void checkMethodSignature(final String signature) {
+        if (level != STRUCTURE && !isValidated(signature, METHOD_SIGNATURE)) {
+            CheckMethodAdapter.checkMethodSignature(signature);
+            setValidated(signature, METHOD_SIGNATURE);
+        }
+    }
+
+    void checkFieldSignature(final String signature) {
+        if (level != STRUCTURE && !isValidated(signature, FIELD_SIGNATURE)) {
+            CheckMethodAdapter.checkFieldSignature(signature);
+            setValidated(signature, FIELD_SIGNATURE);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Utility methods
+    // ------------------------------------------------------------------------
+
+    /**
+     * Checks that the given string is not <tt>null</tt> or empty.
+     *
+     * @param s the string to be checked.
+     * @param msg a message to be used in case of error.
+     */
+    private static void checkNotEmpty(final String s, final String msg) {
+        if (s == null || s.length() == 0) {
+            throw new IllegalArgumentException("Invalid " + msg
+                    + " (must not be null or empty)");
+        }
+    }
+
+    /**
+     * Returns <tt>true</tt> if the given string has already been validated
+     * as the given kind of string.
+     *
+     * @param s a string.
+     * @param kind {@link #DESC}, {@link #METHOD_DESC}, etc.
+     * @return <tt>true</tt> if the given string has already been validated.
+     */
+    private boolean isValidated(final String s, final int kind) {
+        if (s == null) {
+            return false;
+        }
+        Integer kinds = validated.get(s);
+        return kinds != null && (kinds.intValue() & kind) != 0;
+    }
+
+    /**
+     * Remembers that the given string is a valid string of the given kind.
+     * Concurrent updates of the same string can lose one of the kinds, which
+     * is harmless: the string is then simply validated again.
+     *
+     * @param s a valid string.
+     * @param kind {@link #DESC}, {@link #METHOD_DESC}, etc.
+     */
+    private void setValidated(final String s, final int kind) {
+        Integer kinds = validated.get(s);
+        if (kinds != null) {
+            validated.put(s, new Integer(kinds.intValue() | kind));
+        } else if (validated.size() < cacheSize) {
+            validated.put(s, new Integer(kind));
+        }
+    }
+}
@@ -0,0 +1,467 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.util;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.objectweb.asm.ClassReader;
+
+/**
+ * Disassembles all the classes of a jar file in parallel, with a
+ * {@link Textifier} or an {@link ASMifier}. The classes can be printed in a
+ * single stream, in the order of the jar entries, or in one file per class.
+ * The entries are read sequentially, but are disassembled concurrently by an
+ * {@link ExecutorService}, each one with a {@link TraceClassVisitor} in
+ * streaming mode. The number of entries that have been read but not yet
+ * printed is bounded, which bounds the memory used by the disassembly. The
+ * output does not depend on the number of threads.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class JarPrinter {
+
+    /**
+     * If the classes must be printed with an {@link ASMifier} instead of a
+     * {@link Textifier}.
+     */
+    private final boolean asmifier;
+
+    /**
+     * The flags used to read the classes.
+     */
+    private final int readerFlags;
+
+    /**
+     * The maximum number of entries that can be read but not yet printed.
+     */
+    private final int maxPending;
+
+    /**
+     * The total number of disassembled classes.
+     */
+    private final AtomicLong classCount = new AtomicLong();
+
+    /**
+     * The total size of the disassembled classes, in bytes.
+     */
+    private final AtomicLong classSize = new AtomicLong();
+
+    /**
+     * The total number of printed characters.
+     */
+    private final AtomicLong textSize = new AtomicLong();
+
+    /**
+     * The total elapsed time of the {@link #print print} calls.
+     */
+    private final AtomicLong time = new AtomicLong();
+
+    /**
+     * Constructs a new {@link JarPrinter}, which keeps at most four entries
+     * per available processor in memory.
+     *
+     * @param asmifier <tt>true</tt> to print the classes with an
+     *        {@link ASMifier}, <tt>false</tt> to print them with a
+     *        {@link Textifier}.
+     * @param readerFlags the flags used to read the classes. See
+     *        {@link ClassReader#accept}.
+     */
+    public JarPrinter(final boolean asmifier, final int readerFlags) {
+        this(asmifier,
+                readerFlags,
+                4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a new {@link JarPrinter}.
+     *
+     * @param asmifier <tt>true</tt> to print the classes with an
+     *        {@link ASMifier}, <tt>false</tt> to print them with a
+     *        {@link Textifier}.
+     * @param readerFlags the flags used to read the classes. See
+     *        {@link ClassReader#accept}.
+     * @param maxPending the maximum number of entries that can be read but not
+     *        yet printed.
+     */
+    public JarPrinter(
+        final boolean asmifier,
+        final int readerFlags,
+        final int maxPending)
+    {
+        if (maxPending < 1) {
+            throw new IllegalArgumentException("maxPending " + maxPending);
+        }
+        this.asmifier = asmifier;
+        this.readerFlags = readerFlags;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Prints the classes of the given jar in a single stream, in the order of
+     * the jar entries. Each class is preceded with a comment line containing
+     * the name of its jar entry.
+     *
+     * @param in the jar to be disassembled. This stream is not closed by this
+     *        method.
+     * @param out the writer where the classes must be printed. This writer is
+     *        flushed, but not closed, by this method.
+     * @param executor the executor used to disassemble the classes. This
+     *        executor is not shut down by this method.
+     * @throws IOException if a problem occurs while reading the jar or
+     *         writing the result.
+     */
+    public void print(
+        final InputStream in,
+        final Writer out,
+        final ExecutorService executor) throws IOException
+    {
+        print(in, null, out, executor);
+    }
+
+    /**
+     * Prints the classes of the given jar in one file per class. The file of a
+     * class is named after its jar entry, with a <tt>.txt</tt> extension, or a
+     * <tt>.java</tt> extension for an {@link ASMifier}.
+     *
+     * @param in the jar to be disassembled. This stream is not closed by this
+     *        method.
+     * @param dir the directory where the files must be created.
+     * @param executor the executor used to disassemble the classes. This
+     *        executor is not shut down by this method.
+     * @throws IOException if a problem occurs while reading the jar or
+     *         writing the files, or if the name of a jar entry designates a
+     *         file outside of <tt>dir</tt>, such as <tt>../C.class</tt>.
+     */
+    public void print(
+        final InputStream in,
+        final File dir,
+        final ExecutorService executor) throws IOException
+    {
+        print(in, dir, null, executor);
+    }
+
+    /**
+     * Prints the classes of the given jar in a directory or in a writer.
+     *
+     * @param in the jar to be disassembled.
+     * @param dir the directory where the files must be created, or
+     *        <tt>null</tt>.
+     * @param out the writer where the classes must be printed, if <tt>dir</tt>
+     *        is <tt>null</tt>.
+     * @param executor the executor used to disassemble the classes.
+     * @throws IOException if a problem occurs while reading the jar or
+     *         writing the result.
+     */
+    private void print(
+        final InputStream in,
+        final File dir,
+        final Writer out,
+        final ExecutorService executor) throws IOException
+    {
+        long t = System.nanoTime();
+        final File root = dir == null ? null : dir.getCanonicalFile();
+        ZipInputStream zis = new ZipInputStream(in);
+        LinkedList<Future<String>> pending = new LinkedList<Future<String>>();
+        try {
+            ZipEntry ze;
+            while ((ze = zis.getNextEntry()) != null) {
+                final String name = ze.getName();
+                if (ze.isDirectory() || !name.endsWith(".class")) {
+                    continue;
+                }
+                final byte[] b = readEntry(zis);
+                pending.addLast(executor.submit(new Callable<String>() {
+                    public String call() throws Exception {
+                        if (root == null) {
+                            return disassemble(name, b);
+                        }
+                        disassemble(name, b, root);
+                        return null;
+                    }
+                }));
+                if (pending.size() >= maxPending) {
+                    write(out, pending.removeFirst());
+                }
+            }
+            while (!pending.isEmpty()) {
+                write(out, pending.removeFirst());
+            }
+            if (out != null) {
+                out.flush();
+            }
+        } finally {
+            for (int i = 0; i < pending.size(); ++i) {
+                pending.get(i).cancel(true);
+            }
+            time.addAndGet(System.nanoTime() - t);
+        }
+    }
+
+    /**
+     * Creates the printer used to disassemble a class. The default
+     * implementation returns a new {@link Textifier} or {@link ASMifier}. This
+     * method is called concurrently, from several threads.
+     *
+     * @param name the name of the jar entry of the class.
+     * @return a new printer.
+     */
+    protected Printer newPrinter(final String name) {
+        return asmifier ? new ASMifier() : new Textifier();
+    }
+
+    /**
+     * Disassembles a class in a string.
+     *
+     * @param name the name of the jar entry of the class.
+     * @param b the content of the jar entry.
+     * @return the disassembled class, preceded with a comment line.
+     */
+    private String disassemble(final String name, final byte[] b) {
+        StringWriter sw = new StringWriter(16 * b.length);
+        sw.write("// " + name + "\n");
+        disassemble(name, b, new PrintWriter(sw));
+        return sw.toString();
+    }
+
+    /**
+     * Disassembles a class in a file of the given directory.
+     *
+     * @param name the name of the jar entry of the class.
+     * @param b the content of the jar entry.
+     * @param dir the canonical form of the output directory.
+     * @throws IOException if the file cannot be written, or if it is not in
+     *         the output directory.
+     */
+    private void disassemble(final String name, final byte[] b, final File dir)
+            throws IOException
+    {
+        String base = name.substring(0, name.length() - ".class".length());
+        File f = new File(dir, base + (asmifier ? ".java" : ".txt"));
+        f = f.getCanonicalFile();
+        if (!f.getPath().startsWith(dir.getPath() + File.separator)) {
+            throw new IOException("Entry outside of the output directory: "
+                    + name);
+        }
+        File parent = f.getParentFile();
+        if (!parent.mkdirs() && !parent.isDirectory()) {
+            throw new IOException("Cannot create directory " + parent);
+        }
+        OutputStreamWriter w = new OutputStreamWriter(new FileOutputStream(f),
+                "UTF-8");
+        PrintWriter pw = new PrintWriter(w);
+        try {
+            disassemble(name, b, pw);
+            if (pw.checkError()) {
+                throw new IOException("Cannot write " + f);
+            }
+        } finally {
+            pw.close();
+        }
+    }
+
+    /**
+     * Disassembles a class.
+     *
+     * @param name the name of the jar entry of the class.
+     * @param b the content of the jar entry.
+     * @param pw where the class must be printed.
+     */
+    private void disassemble(
+        final String name,
+        final byte[] b,
+        final PrintWriter pw)
+    {
+        ClassReader cr = new ClassReader(b);
+        cr.accept(new TraceClassVisitor(null, newPrinter(name), pw, true),
+                readerFlags);
+        classCount.incrementAndGet();
+        classSize.addAndGet(b.length);
+    }
+
+    /**
+     * Waits for the disassembly of a class and writes the result.
+     *
+     * @param out the writer where the result must be written, or
+     *        <tt>null</tt> if the result is written in a file.
+     * @param f the pending disassembly of the class.
+     * @throws IOException if the disassembly failed or if the result cannot be
+     *         written.
+     */
+    private void write(final Writer out, final Future<String> f)
+            throws IOException
+    {
+        String s;
+        try {
+            s = f.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted");
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            IOException ioe = new IOException(cause.toString());
+            ioe.initCause(cause);
+            throw ioe;
+        }
+        if (s != null) {
+            out.write(s);
+            textSize.addAndGet(s.length());
+        }
+    }
+
+    /**
+     * Returns the total number of disassembled classes.
+     *
+     * @return the total number of disassembled classes.
+     */
+    public long getClassCount() {
+        return classCount.get();
+    }
+
+    /**
+     * Returns the total size of the disassembled classes.
+     *
+     * @return the total size of the disassembled classes, in bytes.
+     */
+    public long getClassSize() {
+        return classSize.get();
+    }
+
+    /**
+     * Returns the total number of characters printed in a single stream. The
+     * characters printed in files are not counted.
+     *
+     * @return the total number of characters printed in a single stream.
+     */
+    public long getTextSize() {
+        return textSize.get();
+    }
+
+    /**
+     * Returns the total elapsed time of the {@link #print print} calls.
+     *
+     * @return the total elapsed time of the {@link #print print} calls, in
+     *         nanoseconds.
+     */
+    public long getTime() {
+        return time.get();
+    }
+
+    private static byte[] readEntry(final InputStream zis) throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buff = new byte[4096];
+        int i;
+        while ((i = zis.read(buff)) != -1) {
+            bos.write(buff, 0, i);
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * Disassembles a jar file. Usage: JarPrinter [-debug] [-asm] [-threads
+     * &lt;n&gt;] &lt;jar file&gt; [&lt;output directory&gt;]
+     *
+     * @param args the command line arguments.
+     *
+     * @throws Exception if the jar file cannot be read or disassembled.
+     */
+    public static void main(final String[] args) throws Exception {
+        int flags = ClassReader.SKIP_DEBUG;
+        boolean asm = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int i = 0;
+        for (; i < args.length && args[i].startsWith("-"); ++i) {
+            if ("-debug".equals(args[i])) {
+                flags = 0;
+            } else if ("-asm".equals(args[i])) {
+                asm = true;
+            } else if ("-threads".equals(args[i]) && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else {
+                i = args.length;
+            }
+        }
+        if (i != args.length - 1 && i != args.length - 2) {
+            System.err.println("Prints a disassembled view of the classes of "
+                    + "the given jar file.");
+            System.err.println("Usage: JarPrinter [-debug] [-asm] "
+                    + "[-threads <n>] <jar file> [<output directory>]");
+            return;
+        }
+        JarPrinter p = new JarPrinter(asm, flags);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        InputStream is = new BufferedInputStream(new FileInputStream(args[i]));
+        try {
+            if (i == args.length - 2) {
+                p.print(is, new File(args[i + 1]), executor);
+            } else {
+                p.print(is, new PrintWriter(System.out), executor);
+            }
+        } finally {
+            is.close();
+            executor.shutdownNow();
+        }
+        double s = p.getTime() / 1e9;
+        System.err.println(p.getClassCount() + " classes ("
+                + p.getClassSize() / 1024 + " KB) disassembled in "
+                + Math.round(s * 1000) + " ms: "
+                + Math.round(p.getClassCount() / s) + " classes/s, "
+                + Math.round(p.getClassSize() / 1024 / s) + " KB/s, "
+                + threads + " threads");
+    }
+}
@@ -0,0 +1,336 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.util;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.Attribute;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * A {@link ClassVisitor} that measures the class visitor to which it
+ * delegates calls, and the following class visitors in the chain, up to the
+ * next {@link MetricsClassVisitor}. The time spent and the bytes allocated in
+ * the visitors returned by the measured visitors (such as method visitors) are
+ * included, except for annotation visitors, which are not measured. The
+ * metrics of each class are added to a {@link StageMetrics} when the class
+ * has been completely visited.
+ *
+ * @see VisitorMetrics#wrap
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public final class MetricsClassVisitor extends ClassVisitor {
+
+    /**
+     * The metrics of the measured stage.
+     */
+    private final StageMetrics stage;
+
+    /**
+     * If the current class is measured.
+     */
+    boolean measuring;
+
+    /**
+     * If the bytes allocated for the current class are measured.
+     */
+    private boolean allocation;
+
+    /**
+     * The time and allocated bytes already attributed to a stage in the
+     * current thread (see {@link VisitorMetrics#clock}).
+     */
+    private long[] clock;
+
+    /**
+     * The number of fields visited so far in the current class.
+     */
+    private long fields;
+
+    /**
+     * The number of methods visited so far in the current class.
+     */
+    private long methods;
+
+    /**
+     * The number of instructions visited so far in the current class.
+     */
+    long instructions;
+
+    /**
+     * The time spent so far in the measured stage for the current class.
+     */
+    private long time;
+
+    /**
+     * The bytes allocated so far in the measured stage for the current class.
+     */
+    private long allocatedBytes;
+
+    /**
+     * Constructs a new {@link MetricsClassVisitor}.
+     *
+     * @param cv the class visitor to which this adapter must delegate calls.
+     * @param stage the metrics of the measured stage.
+     */
+    public MetricsClassVisitor(final ClassVisitor cv, final StageMetrics stage)
+    {
+        super(Opcodes.ASM4, cv);
+        this.stage = stage;
+    }
+
+    /**
+     * Starts a measure.
+     *
+     * @return a value to be passed to {@link #exit exit}.
+     */
+    long enterTime() {
+        return System.nanoTime() - clock[0];
+    }
+
+    /**
+     * Starts a measure of the allocated bytes.
+     *
+     * @return a value to be passed to {@link #exit exit}.
+     */
+    long enterAllocation() {
+        return allocation ? VisitorMetrics.getAllocatedBytes() - clock[1] : 0;
+    }
+
+    /**
+     * Ends a measure. The time and bytes attributed to the stages that were
+     * measured since the corresponding enter calls are subtracted from the
+     * elapsed time and allocated bytes, and the result is attributed to the
+     * measured stage.
+     *
+     * @param t the value returned by {@link #enterTime enterTime}.
+     * @param a the value returned by {@link #enterAllocation enterAllocation}.
+     */
+    void exit(final long t, final long a) {
+        long dt = System.nanoTime() - clock[0] - t;
+        clock[0] += dt;
+        time += dt;
+        if (allocation) {
+            long da = VisitorMetrics.getAllocatedBytes() - clock[1] - a;
+            clock[1] += da;
+            allocatedBytes += da;
+        }
+    }
+
+    @Override
+    public void visit(
+        final int version,
+        final int access,
+        final String name,
+        final String signature,
+        final String superName,
+        final String[] interfaces)
+    {
+        VisitorMetrics metrics = stage.metrics;
+        measuring = metrics.isEnabled();
+        if (!measuring) {
+            super.visit(version,
+                    access,
+                    name,
+                    signature,
+                    superName,
+                    interfaces);
+            return;
+        }
+        allocation = metrics.isAllocationTracking();
+        clock = metrics.clock();
+        long t = enterTime();
+        long a = enterAllocation();
+        try {
+            super.visit(version,
+                    access,
+                    name,
+                    signature,
+                    superName,
+                    interfaces);
+        } finally {
+            exit(t, a);
+        }
+    }
+
+    @Override
+    public void visitSource(final String source, final String debug) {
+        if (!measuring) {
+            super.visitSource(source, debug);
+            return;
+        }
+        long t = enterTime();
+        long a = enterAllocation();
+        try {
+            super.visitSource(source, debug);
+        } finally {
+            exit(t, a);
+        }
+    }
+
+    @Override
+    public void visitOuterClass(
+        final String owner,
+        final String name,
+        final String desc)
+    {
+        if (!measuring) {
+            super.visitOuterClass(owner, name, desc);
+            return;
+        }
+        long t = enterTime();
+        long a = enterAllocation();
+        try {
+            super.visitOuterClass(owner, name, desc);
+        } finally {
+            exit(t, a);
+        }
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(
+        final String desc,
+        final boolean visible)
+    {
+        if (!measuring) {
+            return super.visitAnnotation(desc, visible);
+        }
+        long t = enterTime();
+        long a = enterAllocation();
+        try {
+            return super.visitAnnotation(desc, visible);
+        } finally {
+            exit(t, a);
+        }
+    }
+
+    @Override
+    public void visitAttribute(final Attribute attr) {
+        if (!measuring) {
+            super.visitAttribute(attr);
+            return;
+        }
+        long t = enterTime();
+        long a = enterAllocation();
+        try {
+            super.visitAttribute(attr);
+        } finally {
+            exit(t, a);
+        }
+    }
+
+    @Override
+    public void visitInnerClass(
+        final String name,
+        final String outerName,
+        final String innerName,
+        final int access)
+    {
+        if (!measuring) {
+            super.visitInnerClass(name, outerName, innerName, access);
+            return;
+        }
+        long t = enterTime();
+        long a = enterAllocation();
+        try {
+            super.visitInnerClass(name, outerName, innerName, access);
+        } finally {
+            exit(t, a);
+        }
+    }
+
+    @Override
+    public FieldVisitor visitField(
+        final int access,
+        final String name,
+        final String desc,
+        final String signature,
+        final Object value)
+    {
+        if (!measuring) {
+            return super.visitField(access, name, desc, signature, value);
+        }
+        ++fields;
+        long t = enterTime();
+        long a = enterAllocation();
+        try {
+            return super.visitField(access, name, desc, signature, value);
+        } finally {
+            exit(t, a);
+        }
+    }
+
+    @Override
+    public MethodVisitor visitMethod(
+        final int access,
+        final String name,
+        final String desc,
+        final String signature,
+        final String[] exceptions)
+    {
+        if (!measuring) {
+            return super.visitMethod(access, name, desc, signature, exceptions);
+        }
+        ++methods;
+        long t = enterTime();
+        long a = enterAllocation();
+        MethodVisitor mv;
+        try {
+            mv = super.visitMethod(access, name, desc, signature, exceptions);
+        } finally {
+            exit(t, a);
+        }
+        return mv == null ? null : new MetricsMethodVisitor(mv, this);
+    }
+
+    @Override
+    public void visitEnd() {
+        if (!measuring) {
+            super.visitEnd();
+            return;
+        }
+        long t = enterTime();
+        long a = enterAllocation();
+        try {
+            super.visitEnd();
+        } finally {
+            exit(t, a);
+            stage.add(1, fields, methods, instructions, time, allocatedBytes);
+            fields = 0;
+            methods = 0;
+            instructions = 0;
+            time = 0;
+            allocatedBytes = 0;
+        }
+    }
+}
@@ -0,0 +1,401 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.util;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.Attribute;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * A {@link MethodVisitor} that measures the method visitor to which it
+ * delegates calls, on behalf of a {@link MetricsClassVisitor}.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+final class MetricsMethodVisitor extends MethodVisitor {
+
+    /**
+     * The class visitor that created this method visitor, where the metrics
+     * are accumulated.
+     */
+    private final MetricsClassVisitor cv;
+
+    /**
+     * Constructs a new {@link MetricsMethodVisitor}.
+     *
+     * @param mv the method visitor to which this adapter must delegate calls.
+     * @param cv the class visitor that created this method visitor.
+     */
+    MetricsMethodVisitor(final MethodVisitor mv, final MetricsClassVisitor cv)
+    {
+        super(Opcodes.ASM4, mv);
+        this.cv = cv;
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotationDefault() {
+        long t = cv.enterTime();
+        long a = cv.enterAllocation();
+        try {
+            return super.visitAnnotationDefault();
+        } finally {
+            cv.exit(t, a);
+        }
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(
+        final String desc,
+        final boolean visible)
+    {
+        long t = cv.enterTime();
+        long a = cv.enterAllocation();
+        try {
+            return super.visitAnnotation(desc, visible);
+        } finally {
+            cv.exit(t, a);
+        }
+    }
+
+    @Override
+    public AnnotationVisitor visitParameterAnnotation(
+        final int parameter,
+        final String desc,
+        final boolean visible)
+    {
+        long t = cv.enterTime();
+        long a = cv.enterAllocation();
+        try {
+            return super.visitParameterAnnotation(parameter, desc, visible);
+        } finally {
+            cv.exit(t, a);
+        }
+    }
+
+    @Override
+    public void visitAttribute(final Attribute attr) {
+        long t = cv.enterTime();
+        long a = cv.enterAllocation();
+        try {
+            super.visitAttribute(attr);
+        } finally {
+            cv.exit(t, a);
+        }
+    }
+
+    @Override
+    public void visitCode() {
+        long t = cv.enterTime();
+        long a = cv.enterAllocation();
+        try {
+            super.visitCode();
+        } finally {
+            cv.exit(t, a);
+        }
+    }
+
+    @Override
+    public void visitFrame(
+        final int type,
+        final int nLocal,
+        final Object[] local,
+        final int nStack,
+        final Object[] stack)
+    {
+        long t = cv.enterTime();
+        long a = cv.enterAllocation();
+        try {
+            super.visitFrame(type, nLocal, local, nStack, stack);
+        } finally {
+            cv.exit(t, a);
+        }
+    }
+
+    @Override
+    public void visitInsn(final int opcode) {
+        ++cv.instructions;
+        long t = cv.enterTime();
+        long a = cv.enterAllocation();
+        try {
+            super.visitInsn(opcode);
+        } finally {
+            cv.exit(t, a);
+        }
+    }
+
+    @Override
+    public void visitIntInsn(final int opcode, final int operand) {
+        ++cv.instructions;
+        long t = cv.enterTime();
+        long a = cv.enterAllocation();
+        try {
+            super.visitIntInsn(opcode, operand);
+        } finally {
+            cv.exit(t, a);
+        }
+    }
+
+    @Override
+    public void visitVarInsn(final int opcode, final int var) {
+        ++cv.instructions;
+        long t = cv.enterTime();
+        long a = cv.enterAllocation();
+        try {
+            super.visitVarInsn(opcode, var);
+        } finally {
+            cv.exit(t, a);
+        }
+    }
+
+    @Override
+    public void visitTypeInsn(final int opcode, final String type) {
+        ++cv.instructions;
+        long t = cv.enterTime();
+        long a = cv.enterAllocation();
+        try {
+            super.visitTypeInsn(opcode, type);
+        } finally {
+            cv.exit(t, a);
+        }
+    }
+
+    @Override
+    public void visitFieldInsn(
+        final int opcode,
+        final String owner,
+        final String name,
+        final String desc)
+    {
+        ++cv.instructions;
+        long t = cv.enterTime();
+        long a = cv.enterAllocation();
+        try {
+            super.visitFieldInsn(opcode, owner, name, desc);
+        } finally {
+            cv.exit(t, a);
+        }
+    }
+
+    @Override
+    public void visitMethodInsn(
+        final int opcode,
+        final String owner,
+        final String name,
+        final String desc)
+    {
+        ++cv.instructions;
+        long t = cv.enterTime();
+        long a = cv.enterAllocation();
+        try {
+            super.visitMethodInsn(opcode, owner, name, desc);
+        } finally {
+            cv.exit(t, a);
+        }
+    }
+
+    @Override
+    public void visitInvokeDynamicInsn(
+        final String name,
+        final String desc,
+        final Handle bsm,
+        final Object... bsmArgs)
+    {
+        ++cv.instructions;
+        long t = cv.enterTime();
+        long a = cv.enterAllocation();
+        try {
+            super.visitInvokeDynamicInsn(name, desc, bsm, bsmArgs);
+        } finally {
+            cv.exit(t, a);
+        }
+    }
+
+    @Override
+    public void visitJumpInsn(final int opcode, final Label label) {
+        ++cv.instructions;
+        long t = cv.enterTime();
+        long a = cv.enterAllocation();
+        try {
+            super.visitJumpInsn(opcode, label);
+        } finally {
+            cv.exit(t, a);
+        }
+    }
+
+    @Override
+    public void visitLabel(final Label label) {
+        long t = cv.enterTime();
+        long a = cv.enterAllocation();
+        try {
+            super.visitLabel(label);
+        } finally {
+            cv.exit(t, a);
+        }
+    }
+
+    @Override
+    public void visitLdcInsn(final Object cst) {
+        ++cv.instructions;
+        long t = cv.enterTime();
+        long a = cv.enterAllocation();
+        try {
+            super.visitLdcInsn(cst);
+        } finally {
+            cv.exit(t, a);
+        }
+    }
+
+    @Override
+    public void visitIincInsn(final int var, final int increment) {
+        ++cv.instructions;
+        long t = cv.enterTime();
+        long a = cv.enterAllocation();
+        try {
+            super.visitIincInsn(var, increment);
+        } finally {
+            cv.exit(t, a);
+        }
+    }
+
+    @Override
+    public void visitTableSwitchInsn(
+        final int min,
+        final int max,
+        final Label dflt,
+        final Label... labels)
+    {
+        ++cv.instructions;
+        long t = cv.enterTime();
+        long a = cv.enterAllocation();
+        try {
+            super.visitTableSwitchInsn(min, max, dflt, labels);
+        } finally {
+            cv.exit(t, a);
+        }
+    }
+
+    @Override
+    public void visitLookupSwitchInsn(
+        final Label dflt,
+        final int[] keys,
+        final Label[] labels)
+    {
+        ++cv.instructions;
+        long t = cv.enterTime();
+        long a = cv.enterAllocation();
+        try {
+            super.visitLookupSwitchInsn(dflt, keys, labels);
+        } finally {
+            cv.exit(t, a);
+        }
+    }
+
+    @Override
+    public void visitMultiANewArrayInsn(final String desc, final int dims) {
+        ++cv.instructions;
+        long t = cv.enterTime();
+        long a = cv.enterAllocation();
+        try {
+            super.visitMultiANewArrayInsn(desc, dims);
+        } finally {
+            cv.exit(t, a);
+        }
+    }
+
+    @Override
+    public void visitTryCatchBlock(
+        final Label start,
+        final Label end,
+        final Label handler,
+        final String type)
+    {
+        long t = cv.enterTime();
+        long a = cv.enterAllocation();
+        try {
+            super.visitTryCatchBlock(start, end, handler, type);
+        } finally {
+            cv.exit(t, a);
+        }
+    }
+
+    @Override
+    public void visitLocalVariable(
+        final String name,
+        final String desc,
+        final String signature,
+        final Label start,
+        final Label end,
+        final int index)
+    {
+        long t = cv.enterTime();
+        long a = cv.enterAllocation();
+        try {
+            super.visitLocalVariable(name, desc, signature, start, end, index);
+        } finally {
+            cv.exit(t, a);
+        }
+    }
+
+    @Override
+    public void visitLineNumber(final int line, final Label start) {
+        long t = cv.enterTime();
+        long a = cv.enterAllocation();
+        try {
+            super.visitLineNumber(line, start);
+        } finally {
+            cv.exit(t, a);
+        }
+    }
+
+    @Override
+    public void visitMaxs(final int maxStack, final int maxLocals) {
+        long t = cv.enterTime();
+        long a = cv.enterAllocation();
+        try {
+            super.visitMaxs(maxStack, maxLocals);
+        } finally {
+            cv.exit(t, a);
+        }
+    }
+
+    @Override
+    public void visitEnd() {
+        long t = cv.enterTime();
+        long a = cv.enterAllocation();
+        try {
+            super.visitEnd();
+        } finally {
+            cv.exit(t, a);
+        }
+    }
+}
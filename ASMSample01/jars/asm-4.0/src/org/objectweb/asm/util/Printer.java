@@ -503,6 +503,38 @@ public abstract class Printer {
         printList(pw, text);
     }
 
+    /**
+     * Prints the text constructed so far by this visitor, and removes it from
+     * {@link #text}. If <tt>all</tt> is <tt>false</tt>, only the elements
+     * before the first nested text list are printed, since the printers of
+     * nested text lists may still add text to them.
+     *
+     * @param pw the print writer to be used.
+     * @param all if all the text must be printed, i.e., if the nested text
+     *        lists are complete.
+     */
+    void flush(final PrintWriter pw, final boolean all) {
+        int n = text.size();
+        int i = 0;
+        while (i < n) {
+            Object o = text.get(i);
+            if (o instanceof List) {
+                if (!all) {
+                    break;
+                }
+                printList(pw, (List<?>) o);
+            } else {
+                pw.print(o.toString());
+            }
+            ++i;
+        }
+        if (i == n) {
+            text.clear();
+        } else {
+            text.subList(0, i).clear();
+        }
+    }
+
     /**
      * Appends a quoted string to a given buffer.
      *
@@ -511,8 +543,17 @@ public abstract class Printer {
      */
     public static void appendString(final StringBuffer buf, final String s) {
         buf.append('\"');
+        int start = 0;
         for (int i = 0; i < s.length(); ++i) {
             char c = s.charAt(i);
+            if (c >= 0x20 && c <= 0x7f && c != '\\' && c != '"') {
+                // appended below, with the other characters of the same run
+                continue;
+            }
+            if (start < i) {
+                buf.append(s, start, i);
+            }
+            start = i + 1;
             if (c == '\n') {
                 buf.append("\\n");
             } else if (c == '\r') {
@@ -521,7 +562,7 @@ public abstract class Printer {
                 buf.append("\\\\");
             } else if (c == '"') {
                 buf.append("\\\"");
-            } else if (c < 0x20 || c > 0x7f) {
+            } else {
                 buf.append("\\u");
                 if (c < 0x10) {
                     buf.append("000");
@@ -531,10 +572,11 @@ public abstract class Printer {
                     buf.append('0');
                 }
                 buf.append(Integer.toString(c, 16));
-            } else {
-                buf.append(c);
             }
         }
+        if (start < s.length()) {
+            buf.append(s, start, s.length());
+        }
         buf.append('\"');
     }
 
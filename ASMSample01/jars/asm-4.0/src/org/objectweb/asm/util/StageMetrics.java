@@ -0,0 +1,141 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The counters of a stage of a class visitor chain. These counters are
+ * updated by the {@link MetricsClassVisitor} placed in front of the stage,
+ * each time a class has been visited. This class is thread safe.
+ *
+ * @see VisitorMetrics
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class StageMetrics implements StageMetricsMBean {
+
+    /**
+     * The metrics to which this stage belongs.
+     */
+    final VisitorMetrics metrics;
+
+    /**
+     * The name of this stage.
+     */
+    private final String name;
+
+    private final AtomicLong classCount = new AtomicLong();
+
+    private final AtomicLong fieldCount = new AtomicLong();
+
+    private final AtomicLong methodCount = new AtomicLong();
+
+    private final AtomicLong instructionCount = new AtomicLong();
+
+    private final AtomicLong time = new AtomicLong();
+
+    private final AtomicLong allocatedBytes = new AtomicLong();
+
+    /**
+     * Constructs a new {@link StageMetrics}.
+     *
+     * @param metrics the metrics to which this stage belongs.
+     * @param name the name of this stage.
+     */
+    StageMetrics(final VisitorMetrics metrics, final String name) {
+        this.metrics = metrics;
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getClassCount() {
+        return classCount.get();
+    }
+
+    public long getFieldCount() {
+        return fieldCount.get();
+    }
+
+    public long getMethodCount() {
+        return methodCount.get();
+    }
+
+    public long getInstructionCount() {
+        return instructionCount.get();
+    }
+
+    public long getTime() {
+        return time.get();
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    public void reset() {
+        classCount.set(0);
+        fieldCount.set(0);
+        methodCount.set(0);
+        instructionCount.set(0);
+        time.set(0);
+        allocatedBytes.set(0);
+    }
+
+    /**
+     * Adds the given values to the counters of this stage.
+     */
+    void add(
+        final long classes,
+        final long fields,
+        final long methods,
+        final long instructions,
+        final long time,
+        final long allocatedBytes)
+    {
+        classCount.addAndGet(classes);
+        fieldCount.addAndGet(fields);
+        methodCount.addAndGet(methods);
+        instructionCount.addAndGet(instructions);
+        this.time.addAndGet(time);
+        this.allocatedBytes.addAndGet(allocatedBytes);
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + getClassCount() + " classes, " + getFieldCount()
+                + " fields, " + getMethodCount() + " methods, "
+                + getInstructionCount() + " instructions, " + getTime()
+                + " ns, " + getAllocatedBytes() + " bytes";
+    }
+}
@@ -0,0 +1,95 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.util;
+
+/**
+ * The management interface of {@link StageMetrics}.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public interface StageMetricsMBean {
+
+    /**
+     * Returns the name of the stage.
+     *
+     * @return the name of the stage.
+     */
+    String getName();
+
+    /**
+     * Returns the number of classes visited by the stage.
+     *
+     * @return the number of classes visited by the stage.
+     */
+    long getClassCount();
+
+    /**
+     * Returns the number of fields visited by the stage.
+     *
+     * @return the number of fields visited by the stage.
+     */
+    long getFieldCount();
+
+    /**
+     * Returns the number of methods visited by the stage.
+     *
+     * @return the number of methods visited by the stage.
+     */
+    long getMethodCount();
+
+    /**
+     * Returns the number of instructions visited by the stage.
+     *
+     * @return the number of instructions visited by the stage.
+     */
+    long getInstructionCount();
+
+    /**
+     * Returns the time spent in the stage, excluding the time spent in the
+     * following measured stages.
+     *
+     * @return the time spent in the stage, in nanoseconds.
+     */
+    long getTime();
+
+    /**
+     * Returns the number of bytes allocated in the stage, excluding the bytes
+     * allocated in the following measured stages.
+     *
+     * @return the number of bytes allocated in the stage, or 0 if allocation
+     *         tracking is disabled.
+     */
+    long getAllocatedBytes();
+
+    /**
+     * Resets the counters of the stage to 0.
+     */
+    void reset();
+}
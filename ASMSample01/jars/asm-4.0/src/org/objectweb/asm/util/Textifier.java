@@ -195,8 +195,9 @@ public class Textifier extends Printer {
         } else {
             cr = new ClassReader(args[i]);
         }
-        cr.accept(new TraceClassVisitor(new PrintWriter(System.out)),
-                flags);
+        cr.accept(new TraceClassVisitor(null,
+                new Textifier(),
+                new PrintWriter(System.out), true), flags);
     }
 
     // ------------------------------------------------------------------------
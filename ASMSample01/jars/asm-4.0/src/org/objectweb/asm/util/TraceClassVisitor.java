@@ -66,6 +66,11 @@ import org.objectweb.asm.Opcodes;
  * System.out.println(&quot;hello&quot;); } } </pre>
  * 
  * </blockquote>
+ * <p>
+ * By default the whole trace is built in memory and printed at the end of the
+ * class. In streaming mode, the trace is printed as the class is visited, and
+ * only the text of the current field or method is kept in memory. The text
+ * list of the {@link Printer} is then empty at the end of the visit.
  * 
  * @author Eric Bruneton
  * @author Eugene Kuleshov
@@ -82,6 +87,11 @@ public final class TraceClassVisitor extends ClassVisitor {
      */
     public final Printer p;
 
+    /**
+     * If the trace must be printed as the class is visited.
+     */
+    private final boolean streaming;
+
     /**
      * Constructs a new {@link TraceClassVisitor}.
      * 
@@ -116,10 +126,35 @@ public final class TraceClassVisitor extends ClassVisitor {
         final ClassVisitor cv,
         final Printer p,
         final PrintWriter pw)
+    {
+        this(cv, p, pw, false);
+    }
+
+    /**
+     * Constructs a new {@link TraceClassVisitor}.
+     * 
+     * @param cv the {@link ClassVisitor} to which this visitor delegates calls.
+     *        May be <tt>null</tt>.
+     * @param p the object that actually converts visit events into text.
+     * @param pw the print writer to be used to print the class. May be
+     *        <tt>null</tt> if <tt>streaming</tt> is <tt>false</tt>.
+     * @param streaming if the trace must be printed as the class is visited,
+     *        instead of being printed at the end of the class.
+     */
+    public TraceClassVisitor(
+        final ClassVisitor cv,
+        final Printer p,
+        final PrintWriter pw,
+        final boolean streaming)
     {
         super(Opcodes.ASM4, cv);
+        if (streaming && pw == null) {
+            throw new IllegalArgumentException(
+                    "A print writer is required in streaming mode");
+        }
         this.pw = pw;
         this.p = p;
+        this.streaming = streaming;
     }
 
     @Override
@@ -131,13 +166,17 @@ public final class TraceClassVisitor extends ClassVisitor {
         final String superName,
         final String[] interfaces)
     {
+        begin();
         p.visit(version, access, name, signature, superName, interfaces);
+        end();
         super.visit(version, access, name, signature, superName, interfaces);
     }
 
     @Override
     public void visitSource(final String file, final String debug) {
+        begin();
         p.visitSource(file, debug);
+        end();
         super.visitSource(file, debug);
     }
 
@@ -147,7 +186,9 @@ public final class TraceClassVisitor extends ClassVisitor {
         final String name,
         final String desc)
     {
+        begin();
         p.visitOuterClass(owner, name, desc);
+        end();
         super.visitOuterClass(owner, name, desc);
     }
 
@@ -156,7 +197,9 @@ public final class TraceClassVisitor extends ClassVisitor {
         final String desc,
         final boolean visible)
     {
+        begin();
         Printer p = this.p.visitClassAnnotation(desc, visible);
+        end();
         AnnotationVisitor av = cv == null ? null : cv.visitAnnotation(desc,
                 visible);
         return new TraceAnnotationVisitor(av, p);
@@ -164,7 +207,9 @@ public final class TraceClassVisitor extends ClassVisitor {
 
     @Override
     public void visitAttribute(final Attribute attr) {
+        begin();
         p.visitClassAttribute(attr);
+        end();
         super.visitAttribute(attr);
     }
 
@@ -175,7 +220,9 @@ public final class TraceClassVisitor extends ClassVisitor {
         final String innerName,
         final int access)
     {
+        begin();
         p.visitInnerClass(name, outerName, innerName, access);
+        end();
         super.visitInnerClass(name, outerName, innerName, access);
     }
 
@@ -187,11 +234,13 @@ public final class TraceClassVisitor extends ClassVisitor {
         final String signature,
         final Object value)
     {
+        begin();
         Printer p = this.p.visitField(access,
                 name,
                 desc,
                 signature,
                 value);
+        end();
         FieldVisitor fv = cv == null ? null : cv.visitField(access,
                 name,
                 desc,
@@ -208,11 +257,13 @@ public final class TraceClassVisitor extends ClassVisitor {
         final String signature,
         final String[] exceptions)
     {
+        begin();
         Printer p = this.p.visitMethod(access,
                 name,
                 desc,
                 signature,
                 exceptions);
+        end();
         MethodVisitor mv = cv == null ? null : cv.visitMethod(access,
                 name,
                 desc,
@@ -223,11 +274,37 @@ public final class TraceClassVisitor extends ClassVisitor {
 
     @Override
     public void visitEnd() {
+        begin();
         p.visitClassEnd();
-        if (pw != null) {
+        if (streaming) {
+            p.flush(pw, true);
+            pw.flush();
+        } else if (pw != null) {
             p.print(pw);
             pw.flush();
         }
         super.visitEnd();
     }
+
+    /**
+     * In streaming mode, prints the text of the previous events. This text is
+     * complete since the visitors returned for previous fields, methods and
+     * annotations must have been fully visited before this visitor receives a
+     * new event.
+     */
+    private void begin() {
+        if (streaming) {
+            p.flush(pw, true);
+        }
+    }
+
+    /**
+     * In streaming mode, prints the text of the current event, up to the text
+     * of its field, method or annotation, if any, which is not complete yet.
+     */
+    private void end() {
+        if (streaming) {
+            p.flush(pw, false);
+        }
+    }
 }
@@ -0,0 +1,401 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+
+/**
+ * Metrics of the stages of class visitor chains. Each stage to be measured is
+ * preceded, in the chain, with a {@link MetricsClassVisitor} created with
+ * {@link #wrap wrap}. This visitor counts the classes, fields, methods and
+ * instructions visited by the stage, and measures the time spent and,
+ * optionally, the bytes allocated in this stage. This time and these bytes
+ * exclude those of the following measured stages, but include those of the
+ * following stages that are not measured. The time spent in a
+ * {@link ClassReader} can be measured in the same way with
+ * {@link #accept accept}.
+ * <p>
+ * The metrics are available with {@link #getStages getStages}, or through
+ * JMX, with one {@link StageMetricsMBean} per stage (see
+ * {@link #registerMBeans registerMBeans}). They are disabled by default,
+ * unless the <tt>asm.metrics</tt> system property is set to <tt>true</tt>.
+ * When they are disabled, {@link #wrap wrap} returns the stage unchanged, so
+ * that the chain has no overhead at all, and the visitors that were created
+ * while the metrics were enabled forward the classes they visit without
+ * measuring them. This class is thread safe.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class VisitorMetrics {
+
+    /**
+     * The name of the stage used by {@link #accept accept}.
+     */
+    public static final String CLASS_READER = "ClassReader";
+
+    /**
+     * If the stages must be measured.
+     */
+    private volatile boolean enabled;
+
+    /**
+     * If the allocated bytes must be measured.
+     */
+    private volatile boolean allocationTracking;
+
+    /**
+     * The stages, indexed by name, in creation order. Guarded by this object.
+     */
+    private final LinkedHashMap<String, StageMetrics> stages;
+
+    /**
+     * The time and the allocated bytes already attributed to a stage, in the
+     * current thread. These values are used to subtract the time and bytes of
+     * the nested stages from those of the enclosing ones.
+     */
+    private final ThreadLocal<long[]> clocks = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[2];
+        }
+    };
+
+    /**
+     * The MBean server where the stages are registered, or <tt>null</tt>.
+     * Guarded by this object.
+     */
+    private MBeanServer server;
+
+    /**
+     * The domain of the names of the registered MBeans. Guarded by this
+     * object.
+     */
+    private String domain;
+
+    /**
+     * Constructs a new {@link VisitorMetrics}, enabled if the
+     * <tt>asm.metrics</tt> system property is <tt>true</tt>.
+     */
+    public VisitorMetrics() {
+        this(Boolean.getBoolean("asm.metrics"));
+    }
+
+    /**
+     * Constructs a new {@link VisitorMetrics}.
+     *
+     * @param enabled if the stages must be measured.
+     */
+    public VisitorMetrics(final boolean enabled) {
+        this.enabled = enabled;
+        this.stages = new LinkedHashMap<String, StageMetrics>();
+    }
+
+    /**
+     * Returns <tt>true</tt> if the stages are measured.
+     *
+     * @return <tt>true</tt> if the stages are measured.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables the measure of the stages. This takes effect at the
+     * next visited class.
+     *
+     * @param enabled if the stages must be measured.
+     */
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Returns <tt>true</tt> if the bytes allocated in the stages are
+     * measured.
+     *
+     * @return <tt>true</tt> if the bytes allocated in the stages are
+     *         measured.
+     */
+    public boolean isAllocationTracking() {
+        return allocationTracking;
+    }
+
+    /**
+     * Enables or disables the measure of the bytes allocated in the stages.
+     * This requires a JVM that can measure the bytes allocated by each thread,
+     * and has a higher overhead than the other metrics. It is disabled by
+     * default.
+     *
+     * @param allocationTracking if the bytes allocated in the stages must be
+     *        measured.
+     * @throws UnsupportedOperationException if the JVM cannot measure the
+     *         allocated bytes.
+     */
+    public void setAllocationTracking(final boolean allocationTracking) {
+        if (allocationTracking && !isAllocationTrackingSupported()) {
+            throw new UnsupportedOperationException("Allocation tracking is "
+                    + "not supported");
+        }
+        this.allocationTracking = allocationTracking;
+    }
+
+    /**
+     * Returns <tt>true</tt> if the JVM can measure the bytes allocated by
+     * each thread.
+     *
+     * @return <tt>true</tt> if the JVM can measure the bytes allocated by
+     *         each thread.
+     */
+    public static boolean isAllocationTrackingSupported() {
+        try {
+            return Allocation.SUPPORTED;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the metrics of the given stage. The stage is created if it does
+     * not exist yet.
+     *
+     * @param name the name of a stage.
+     * @return the metrics of the given stage.
+     */
+    public synchronized StageMetrics getStage(final String name) {
+        StageMetrics stage = stages.get(name);
+        if (stage == null) {
+            stage = new StageMetrics(this, name);
+            stages.put(name, stage);
+            if (server != null) {
+                try {
+                    server.registerMBean(stage, getObjectName(name));
+                } catch (JMException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+        return stage;
+    }
+
+    /**
+     * Returns the metrics of all the stages.
+     *
+     * @return the metrics of all the stages, in creation order.
+     */
+    public synchronized List<StageMetrics> getStages() {
+        return new ArrayList<StageMetrics>(stages.values());
+    }
+
+    /**
+     * Resets the counters of all the stages to 0.
+     */
+    public synchronized void reset() {
+        Iterator<StageMetrics> i = stages.values().iterator();
+        while (i.hasNext()) {
+            i.next().reset();
+        }
+    }
+
+    /**
+     * Returns a class visitor that measures the given stage.
+     *
+     * @param name the name of the stage.
+     * @param cv the first class visitor of the stage.
+     * @return a {@link MetricsClassVisitor} delegating to <tt>cv</tt>, or
+     *         <tt>cv</tt> itself if the metrics are disabled.
+     */
+    public ClassVisitor wrap(final String name, final ClassVisitor cv) {
+        if (!enabled) {
+            return cv;
+        }
+        return new MetricsClassVisitor(cv, getStage(name));
+    }
+
+    /**
+     * Makes the given visitor visit the given class, and measures the time
+     * spent in the class reader, in the {@link #CLASS_READER} stage.
+     *
+     * @param cr a class reader.
+     * @param cv the visitor that must visit the class.
+     * @param flags option flags that can be used to modify the default
+     *        behavior of the class reader.
+     */
+    public void accept(
+        final ClassReader cr,
+        final ClassVisitor cv,
+        final int flags)
+    {
+        if (!enabled) {
+            cr.accept(cv, flags);
+            return;
+        }
+        StageMetrics stage = getStage(CLASS_READER);
+        boolean allocation = allocationTracking;
+        long[] clock = clock();
+        long t = System.nanoTime() - clock[0];
+        long a = allocation ? getAllocatedBytes() - clock[1] : 0;
+        try {
+            cr.accept(cv, flags);
+        } finally {
+            t = System.nanoTime() - clock[0] - t;
+            clock[0] += t;
+            if (allocation) {
+                a = getAllocatedBytes() - clock[1] - a;
+                clock[1] += a;
+            }
+            stage.add(1, 0, 0, 0, t, a);
+        }
+    }
+
+    /**
+     * Registers the metrics of the stages in the given MBean server. Their
+     * object names are
+     * <tt><i>domain</i>:type=VisitorMetrics,name=<i>stage</i></tt>. The
+     * stages created after this call are registered as well.
+     *
+     * @param server an MBean server, such as the platform MBean server (see
+     *        {@link ManagementFactory#getPlatformMBeanServer}).
+     * @param domain the domain of the object names of the MBeans.
+     * @throws JMException if an MBean cannot be registered.
+     */
+    public synchronized void registerMBeans(
+        final MBeanServer server,
+        final String domain) throws JMException
+    {
+        unregisterMBeans();
+        this.server = server;
+        this.domain = domain;
+        Iterator<StageMetrics> i = stages.values().iterator();
+        while (i.hasNext()) {
+            StageMetrics stage = i.next();
+            server.registerMBean(stage, getObjectName(stage.getName()));
+        }
+    }
+
+    /**
+     * Unregisters the metrics of the stages from the MBean server where they
+     * were registered, if any.
+     *
+     * @throws JMException if an MBean cannot be unregistered.
+     */
+    public synchronized void unregisterMBeans() throws JMException {
+        if (server == null) {
+            return;
+        }
+        MBeanServer server = this.server;
+        this.server = null;
+        Iterator<String> i = stages.keySet().iterator();
+        while (i.hasNext()) {
+            ObjectName name = getObjectName(i.next());
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        }
+    }
+
+    private ObjectName getObjectName(final String stage) throws JMException {
+        return new ObjectName(domain + ":type=VisitorMetrics,name="
+                + ObjectName.quote(stage));
+    }
+
+    /**
+     * Returns the time and allocated bytes already attributed to a stage in
+     * the current thread.
+     *
+     * @return the time and allocated bytes already attributed to a stage in
+     *         the current thread.
+     */
+    long[] clock() {
+        return clocks.get();
+    }
+
+    /**
+     * Returns the number of bytes allocated so far by the current thread.
+     *
+     * @return the number of bytes allocated so far by the current thread.
+     */
+    static long getAllocatedBytes() {
+        return Allocation.BEAN.getThreadAllocatedBytes(Thread.currentThread()
+                .getId());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        Iterator<StageMetrics> i = getStages().iterator();
+        while (i.hasNext()) {
+            sb.append(i.next()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The measure of the allocated bytes. This class is only loaded when
+     * needed, since it depends on a JVM specific API.
+     */
+    private static final class Allocation {
+
+        static final com.sun.management.ThreadMXBean BEAN;
+
+        static final boolean SUPPORTED;
+
+        static {
+            Object bean = ManagementFactory.getThreadMXBean();
+            boolean supported = false;
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean b;
+                b = (com.sun.management.ThreadMXBean) bean;
+                try {
+                    if (b.isThreadAllocatedMemorySupported()) {
+                        if (!b.isThreadAllocatedMemoryEnabled()) {
+                            b.setThreadAllocatedMemoryEnabled(true);
+                        }
+                        supported = true;
+                    }
+                } catch (SecurityException e) {
+                    // not supported
+                }
+            }
+            BEAN = supported ? (com.sun.management.ThreadMXBean) bean : null;
+            SUPPORTED = supported;
+        }
+    }
+}
@@ -31,6 +31,8 @@ package org.objectweb.asm;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import junit.framework.TestCase;
 
@@ -86,4 +88,74 @@ public class ClassReaderUnitTest extends TestCase implements Opcodes {
         interfaces = new ClassReader(Opcodes.class.getName()).getInterfaces();
         assertNotNull(interfaces);
     }
+
+    public void testByteBuffer() throws IOException {
+        byte[] b = new ClassReader(getClass().getName()).b;
+        ClassWriter cw = new ClassWriter(0);
+        new ClassReader(b).accept(cw, 0);
+        byte[] expected = cw.toByteArray();
+
+        // heap buffer, with a non zero offset: no copy
+        byte[] c = new byte[b.length + 16];
+        System.arraycopy(b, 0, c, 8, b.length);
+        ByteBuffer heap = ByteBuffer.wrap(c, 8, b.length).slice();
+        ReusableClassReader rcr = new ReusableClassReader();
+        ClassReader cr = rcr.read(heap);
+        assertSame(c, cr.b);
+        cw = new ClassWriter(0);
+        cr.accept(cw, 0);
+        assertTrue(Arrays.equals(expected, cw.toByteArray()));
+
+        // direct and read-only buffers
+        ByteBuffer direct = ByteBuffer.allocateDirect(b.length + 8);
+        direct.position(8);
+        direct.put(b);
+        direct.position(8);
+        ByteBuffer[] buffers = { direct, heap.asReadOnlyBuffer() };
+        for (int i = 0; i < buffers.length; ++i) {
+            int position = buffers[i].position();
+            cr = rcr.read(buffers[i]);
+            assertEquals(getClass().getName().replace('.', '/'),
+                    cr.getClassName());
+            cw = new ClassWriter(0);
+            cr.accept(cw, 0);
+            assertTrue(Arrays.equals(expected, cw.toByteArray()));
+            assertEquals(position, buffers[i].position());
+        }
+    }
+
+    public void testHeaderBeforeAndAfterAccept() {
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(V1_5, ACC_PUBLIC, "pkg/C\u00e9\u20ac", null, "pkg/S",
+                new String[] { "pkg/I", "pkg/J" });
+        cw.visitField(ACC_PUBLIC, "f", "Ljava/lang/String;", null,
+                "a long constant string").visitEnd();
+        cw.visitEnd();
+        byte[] b = cw.toByteArray();
+
+        ReusableClassReader rcr = new ReusableClassReader();
+        ClassReader cr = rcr.read(b);
+        for (int i = 0; i < 2; ++i) {
+            assertEquals(ACC_PUBLIC, cr.getAccess());
+            assertEquals("pkg/C\u00e9\u20ac", cr.getClassName());
+            assertEquals("pkg/S", cr.getSuperName());
+            String[] itfs = cr.getInterfaces();
+            assertEquals(2, itfs.length);
+            assertEquals("pkg/I", itfs[0]);
+            assertEquals("pkg/J", itfs[1]);
+            cw = new ClassWriter(0);
+            cr.accept(cw, 0);
+            assertTrue(Arrays.equals(b, cw.toByteArray()));
+        }
+
+        cr = rcr.read(new ClassWriter(0) {
+            {
+                visit(V1_5, ACC_PUBLIC, "D", null, "java/lang/Object", null);
+                visitEnd();
+            }
+        }.toByteArray());
+        assertEquals("D", cr.getClassName());
+        assertEquals("java/lang/Object", cr.getSuperName());
+        assertEquals(0, cr.getInterfaces().length);
+    }
 }
@@ -29,6 +29,9 @@
  */
 package org.objectweb.asm;
 
+import java.io.IOException;
+import java.util.Arrays;
+
 import junit.framework.TestCase;
 
 /**
@@ -65,4 +68,86 @@ public class ClassWriterUnitTest extends TestCase {
         } catch (RuntimeException e) {
         }
     }
+
+    public void testResizeWithSwitchesAndUnreachableCode() throws Exception {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        cw.visit(Opcodes.V1_7, Opcodes.ACC_PUBLIC, "C", null,
+                "java/lang/Object", null);
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC
+                | Opcodes.ACC_STATIC, "m", "(I)I", null, null);
+        mv.visitCode();
+        Label l0 = new Label();
+        Label l1 = new Label();
+        Label l2 = new Label();
+        Label end = new Label();
+        mv.visitVarInsn(Opcodes.ILOAD, 0);
+        mv.visitTableSwitchInsn(0, 1, l2, new Label[] { l0, l1 });
+        mv.visitLabel(l0);
+        // forward jumps over more than 32767 bytes, which must be widened
+        mv.visitVarInsn(Opcodes.ILOAD, 0);
+        mv.visitJumpInsn(Opcodes.IFEQ, end);
+        for (int i = 0; i < 35000; ++i) {
+            mv.visitInsn(Opcodes.NOP);
+        }
+        mv.visitJumpInsn(Opcodes.GOTO, end);
+        // unreachable code
+        mv.visitInsn(Opcodes.ICONST_0);
+        mv.visitInsn(Opcodes.IRETURN);
+        mv.visitLabel(l1);
+        mv.visitVarInsn(Opcodes.ILOAD, 0);
+        mv.visitLookupSwitchInsn(l2, new int[] { 1 }, new Label[] { end });
+        // unreachable code
+        mv.visitInsn(Opcodes.ICONST_0);
+        mv.visitInsn(Opcodes.IRETURN);
+        mv.visitLabel(l2);
+        mv.visitInsn(Opcodes.ICONST_M1);
+        mv.visitInsn(Opcodes.IRETURN);
+        mv.visitLabel(end);
+        mv.visitInsn(Opcodes.ICONST_1);
+        mv.visitInsn(Opcodes.IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+        final byte[] b = cw.toByteArray();
+
+        // the class must be accepted by the verifier of the JVM
+        Class<?> c = new ClassLoader(getClass().getClassLoader()) {
+            @Override
+            protected Class<?> findClass(final String name)
+                    throws ClassNotFoundException
+            {
+                if (name.equals("C")) {
+                    return defineClass(name, b, 0, b.length);
+                }
+                throw new ClassNotFoundException(name);
+            }
+        }.loadClass("C");
+        java.lang.reflect.Method m = c.getMethod("m", new Class[] { int.class });
+        assertEquals(new Integer(1), m.invoke(null, new Object[] { new Integer(0) }));
+        assertEquals(new Integer(1), m.invoke(null, new Object[] { new Integer(1) }));
+        assertEquals(new Integer(-1), m.invoke(null, new Object[] { new Integer(2) }));
+    }
+
+    public void testReset() throws IOException {
+        String[] classes = { "org.objectweb.asm.ClassWriter",
+            "org.objectweb.asm.Type",
+            "org.objectweb.asm.MethodWriter",
+            "org.objectweb.asm.Frame",
+            "org.objectweb.asm.Label" };
+        int[] flags = { 0, ClassWriter.COMPUTE_MAXS, ClassWriter.COMPUTE_FRAMES };
+        for (int i = 0; i < flags.length; ++i) {
+            ReusableClassReader rcr = new ReusableClassReader();
+            ClassWriter cw = new ClassWriter(flags[i]);
+            for (int j = 0; j < 2 * classes.length; ++j) {
+                byte[] b = new ClassReader(classes[j % classes.length]).b;
+                ClassReader cr = rcr.read(b);
+                cw.reset();
+                cr.accept(cw, 0);
+                ClassWriter expected = new ClassWriter(flags[i]);
+                new ClassReader(b).accept(expected, 0);
+                assertTrue(Arrays.equals(expected.toByteArray(),
+                        cw.toByteArray()));
+            }
+        }
+    }
 }
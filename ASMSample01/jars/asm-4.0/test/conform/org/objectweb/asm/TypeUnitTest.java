@@ -110,4 +110,46 @@ public class TypeUnitTest extends TestCase implements Opcodes {
         assertEquals(t2.getClassName(), t1.getClassName());
         assertEquals(t2.getDescriptor(), t1.getDescriptor());
     }
+
+    public void testInterning() {
+        String desc = "(I[JLjava/lang/String;)[D";
+        assertSame(Type.getType("Ljava/lang/Object;"),
+                Type.getType(new String("Ljava/lang/Object;")));
+        assertSame(Type.getObjectType("java/lang/Object"),
+                Type.getObjectType(new String("java/lang/Object")));
+        assertSame(Type.getType(desc), Type.getMethodType(new String(desc)));
+        assertSame(Type.getReturnType(desc), Type.getReturnType(desc));
+        assertEquals(Type.getType("[D"), Type.getReturnType(desc));
+        assertEquals(Type.METHOD, Type.getType(desc).getSort());
+        assertEquals(desc, Type.getType(desc).getDescriptor());
+        assertEquals((4 << 2) | 1, Type.getArgumentsAndReturnSizes(desc));
+    }
+
+    public void testArgumentTypesCopy() {
+        String desc = "(ILjava/lang/Object;)V";
+        Type[] args = Type.getArgumentTypes(desc);
+        assertEquals(2, args.length);
+        assertEquals(Type.INT_TYPE, args[0]);
+        assertEquals(Type.getObjectType("java/lang/Object"), args[1]);
+        args[0] = null;
+        assertTrue(Arrays.equals(Type.getArgumentTypes(desc),
+                Type.getMethodType(desc).getArgumentTypes()));
+        assertEquals(Type.INT_TYPE, Type.getArgumentTypes(desc)[0]);
+    }
+
+    public void testMalformedMethodDescriptors() {
+        assertEquals(Type.INT_TYPE, Type.getReturnType("I"));
+        assertEquals(Type.getObjectType("java/lang/String"),
+                Type.getReturnType("Ljava/lang/String;"));
+        assertEquals(Type.METHOD, Type.getType("(").getSort());
+        assertEquals("(", Type.getType("(").getDescriptor());
+        try {
+            Type.getArgumentTypes("I");
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+        }
+        // malformed descriptors are not cached
+        assertEquals(Type.INT_TYPE, Type.getReturnType("I"));
+        assertEquals(Type.VOID_TYPE, Type.getReturnType("()V"));
+    }
 }
@@ -0,0 +1,171 @@
+/***
+ * ASM tests
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.commons;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * BytecodeTypeHierarchy unit tests.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class BytecodeTypeHierarchyUnitTest extends TestCase implements Opcodes
+{
+
+    private final Map<String, byte[]> classes = new HashMap<String, byte[]>();
+
+    private BytecodeTypeHierarchy hierarchy;
+
+    @Override
+    protected void setUp() {
+        define(ACC_INTERFACE | ACC_ABSTRACT, "I", "java/lang/Object");
+        define(ACC_INTERFACE | ACC_ABSTRACT, "J", "java/lang/Object", "I");
+        define(ACC_PUBLIC, "A", "java/lang/Object");
+        define(ACC_PUBLIC, "B", "A", "J");
+        define(ACC_PUBLIC, "C", "A");
+        define(ACC_PUBLIC, "D", "C");
+        hierarchy = new BytecodeTypeHierarchy() {
+            @Override
+            protected InputStream getClassFile(final String type) {
+                byte[] b = classes.get(type);
+                return b == null ? null : new ByteArrayInputStream(b);
+            }
+        };
+    }
+
+    private void define(
+        final int access,
+        final String name,
+        final String superName,
+        final String... interfaces)
+    {
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(V1_5, access, name, null, superName, interfaces);
+        cw.visitEnd();
+        classes.put(name, cw.toByteArray());
+    }
+
+    public void testHeaders() {
+        assertTrue(hierarchy.isInterface("J"));
+        assertFalse(hierarchy.isInterface("B"));
+        assertEquals("A", hierarchy.getSuperClass("B"));
+        assertNull(hierarchy.getSuperClass("java/lang/Object"));
+        assertEquals(1, hierarchy.getInterfaces("B").length);
+        assertEquals("J", hierarchy.getInterfaces("B")[0]);
+    }
+
+    public void testIsAssignableFrom() {
+        assertTrue(hierarchy.isAssignableFrom("A", "D"));
+        assertTrue(hierarchy.isAssignableFrom("I", "B"));
+        assertTrue(hierarchy.isAssignableFrom("java/lang/Object", "I"));
+        assertFalse(hierarchy.isAssignableFrom("D", "A"));
+        assertFalse(hierarchy.isAssignableFrom("I", "C"));
+    }
+
+    public void testGetCommonSuperClass() {
+        assertEquals("A", hierarchy.getCommonSuperClass("B", "D"));
+        assertEquals("C", hierarchy.getCommonSuperClass("D", "C"));
+        assertEquals("I", hierarchy.getCommonSuperClass("I", "B"));
+        assertEquals("java/lang/Object", hierarchy.getCommonSuperClass("J",
+                "C"));
+    }
+
+    public void testUnknownClass() {
+        try {
+            hierarchy.getSuperClass("Z");
+            fail();
+        } catch (RuntimeException e) {
+        }
+    }
+
+    public void testComputeFrames() {
+        // none of the types used below can be loaded with Class.forName
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES, hierarchy);
+        cw.visit(V1_6, ACC_PUBLIC, "E", null, "java/lang/Object", null);
+        MethodVisitor mv = cw.visitMethod(ACC_STATIC,
+                "m",
+                "(ZLB;LD;)Ljava/lang/Object;",
+                null,
+                null);
+        mv.visitCode();
+        Label l0 = new Label();
+        Label l1 = new Label();
+        mv.visitVarInsn(ILOAD, 0);
+        mv.visitJumpInsn(IFEQ, l0);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitJumpInsn(GOTO, l1);
+        mv.visitLabel(l0);
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitLabel(l1);
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+        final Object[] stack = new Object[1];
+        new ClassReader(cw.toByteArray()).accept(new ClassVisitor(ASM4) {
+            @Override
+            public MethodVisitor visitMethod(
+                final int access,
+                final String name,
+                final String desc,
+                final String signature,
+                final String[] exceptions)
+            {
+                return new MethodVisitor(ASM4) {
+                    @Override
+                    public void visitFrame(
+                        final int type,
+                        final int nLocal,
+                        final Object[] local,
+                        final int nStack,
+                        final Object[] stack1)
+                    {
+                        if (nStack == 1) {
+                            stack[0] = stack1[0];
+                        }
+                    }
+                };
+            }
+        }, ClassReader.EXPAND_FRAMES);
+        assertEquals("A", stack[0]);
+    }
+}
@@ -0,0 +1,73 @@
+/***
+ * ASM tests
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.commons;
+
+import java.util.Arrays;
+
+import junit.framework.TestSuite;
+
+import org.objectweb.asm.AbstractTest;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+
+/**
+ * CachingRemapper tests.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class CachingRemapperTest extends AbstractTest {
+
+    private static final Remapper REMAPPER = new Remapper() {
+        @Override
+        public String map(final String typeName) {
+            return typeName.startsWith("java/")
+                    ? null
+                    : "shaded/" + typeName;
+        }
+    };
+
+    private static final CachingRemapper CACHING_REMAPPER = new CachingRemapper(REMAPPER);
+
+    public static TestSuite suite() throws Exception {
+        return new CachingRemapperTest().getSuite();
+    }
+
+    @Override
+    public void test() throws Exception {
+        ClassReader cr = new ClassReader(is);
+        ClassWriter cw1 = new ClassWriter(0);
+        cr.accept(new RemappingClassAdapter(cw1, REMAPPER),
+                ClassReader.EXPAND_FRAMES);
+        ClassWriter cw2 = new ClassWriter(0);
+        cr.accept(new RemappingClassAdapter(cw2, CACHING_REMAPPER),
+                ClassReader.EXPAND_FRAMES);
+        assertTrue(Arrays.equals(cw1.toByteArray(), cw2.toByteArray()));
+    }
+}
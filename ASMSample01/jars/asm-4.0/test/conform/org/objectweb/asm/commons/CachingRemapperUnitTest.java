@@ -0,0 +1,199 @@
+/***
+ * ASM tests
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.commons;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.Type;
+
+/**
+ * CachingRemapper unit tests.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class CachingRemapperUnitTest extends TestCase {
+
+    private Map<String, Integer> calls;
+
+    private CachingRemapper remapper;
+
+    @Override
+    protected void setUp() {
+        calls = new HashMap<String, Integer>();
+        Map<String, String> mapping = new HashMap<String, String>();
+        mapping.put("a/A", "b/B");
+        mapping.put("a/A.f", "g");
+        remapper = new CachingRemapper(new SimpleRemapper(mapping) {
+            @Override
+            public String map(final String key) {
+                count("map " + key);
+                return super.map(key);
+            }
+
+            @Override
+            public String mapType(final String type) {
+                count("mapType " + type);
+                return super.mapType(type);
+            }
+
+            @Override
+            public String mapDesc(final String desc) {
+                count("mapDesc " + desc);
+                return super.mapDesc(desc);
+            }
+
+            @Override
+            public String mapMethodDesc(final String desc) {
+                count("mapMethodDesc " + desc);
+                return super.mapMethodDesc(desc);
+            }
+
+            @Override
+            public String mapSignature(
+                final String signature,
+                final boolean typeSignature)
+            {
+                count("mapSignature " + signature);
+                return super.mapSignature(signature, typeSignature);
+            }
+        }, 4);
+    }
+
+    private void count(final String call) {
+        Integer n = calls.get(call);
+        calls.put(call, new Integer(n == null ? 1 : n.intValue() + 1));
+    }
+
+    private int calls(final String call) {
+        Integer n = calls.get(call);
+        return n == null ? 0 : n.intValue();
+    }
+
+    public void testMap() {
+        for (int i = 0; i < 3; ++i) {
+            assertEquals("b/B", remapper.map("a/A"));
+            assertNull(remapper.map("a/C"));
+            assertEquals("b/B", remapper.mapType("a/A"));
+            assertEquals("a/C", remapper.mapType("a/C"));
+        }
+        assertEquals(1, calls("mapType a/A"));
+        assertEquals(1, calls("mapType a/C"));
+        // once by map, and once by the mapType method of the remapper
+        assertEquals(2, calls("map a/A"));
+        assertEquals(2, calls("map a/C"));
+    }
+
+    public void testMapDesc() {
+        for (int i = 0; i < 3; ++i) {
+            assertEquals("[[Lb/B;", remapper.mapDesc("[[La/A;"));
+            assertEquals("[Lb/B;", remapper.mapType("[La/A;"));
+            assertEquals("I", remapper.mapDesc("I"));
+            assertEquals("(JLb/B;)Lb/B;",
+                    remapper.mapMethodDesc("(JLa/A;)La/A;"));
+        }
+        // the calls made by the remapper to itself are not memoized
+        assertEquals(1, calls("mapDesc [[La/A;"));
+        assertEquals(1, calls("mapType [La/A;"));
+        assertEquals(1, calls("mapDesc I"));
+        assertEquals(1, calls("mapMethodDesc (JLa/A;)La/A;"));
+    }
+
+    public void testMapSignature() {
+        String s = "<T:La/A;>Ljava/lang/Object;";
+        String t = "Ljava/util/List<La/A;>;";
+        for (int i = 0; i < 3; ++i) {
+            assertEquals("<T:Lb/B;>Ljava/lang/Object;",
+                    remapper.mapSignature(s, false));
+            assertEquals("Ljava/util/List<Lb/B;>;",
+                    remapper.mapSignature(t, true));
+            assertNull(remapper.mapSignature(null, false));
+        }
+        assertEquals(1, calls("mapSignature " + s));
+        assertEquals(1, calls("mapSignature " + t));
+    }
+
+    public void testNames() {
+        assertEquals("g", remapper.mapFieldName("a/A", "f", "I"));
+        assertEquals("h", remapper.mapFieldName("a/A", "h", "I"));
+        assertEquals("m", remapper.mapMethodName("a/A", "m", "()V"));
+    }
+
+    public void testOverriddenMethods() {
+        Map<String, String> mapping = new HashMap<String, String>();
+        mapping.put("a/A", "b/B");
+        CachingRemapper r = new CachingRemapper(new SimpleRemapper(mapping) {
+            @Override
+            public Object mapValue(final Object value) {
+                return "a.A".equals(value) ? "b.B" : super.mapValue(value);
+            }
+
+            @Override
+            public String mapType(final String type) {
+                return "a/I".equals(type) ? "b/I" : super.mapType(type);
+            }
+
+            @Override
+            public String[] mapTypes(final String[] types) {
+                String[] newTypes = new String[types.length];
+                for (int i = 0; i < types.length; ++i) {
+                    newTypes[i] = mapType(types[i]);
+                }
+                return newTypes;
+            }
+        });
+        for (int i = 0; i < 2; ++i) {
+            assertEquals("b.B", r.mapValue("a.A"));
+            assertEquals(Type.getType("Lb/B;"),
+                    r.mapValue(Type.getType("La/A;")));
+            assertEquals("b/I", r.mapType("a/I"));
+            assertEquals("b/B", r.mapType("a/A"));
+            assertEquals("[Lb/B;", r.mapType("[La/A;"));
+            String[] types = r.mapTypes(new String[] { "a/I", "a/A" });
+            assertEquals("b/I", types[0]);
+            assertEquals("b/B", types[1]);
+        }
+    }
+
+    public void testCacheSize() {
+        for (int i = 0; i < 10; ++i) {
+            remapper.map("a/C" + i);
+        }
+        remapper.map("a/C9");
+        assertEquals(1, calls("map a/C9"));
+        remapper.map("a/C0");
+        assertEquals(2, calls("map a/C0"));
+        remapper.clear();
+        remapper.map("a/C9");
+        assertEquals(2, calls("map a/C9"));
+    }
+}
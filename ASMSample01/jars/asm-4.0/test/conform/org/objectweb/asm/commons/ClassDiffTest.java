@@ -0,0 +1,109 @@
+/***
+ * ASM tests
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.commons;
+
+import junit.framework.TestSuite;
+
+import org.objectweb.asm.AbstractTest;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * ClassDiff and ClassPatcher tests.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class ClassDiffTest extends AbstractTest {
+
+    public static TestSuite suite() throws Exception {
+        return new ClassDiffTest().getSuite();
+    }
+
+    @Override
+    public void test() throws Exception {
+        ClassReader cr = new ClassReader(is);
+        byte[] b = cr.b;
+        // removes the first field and every other method
+        ClassWriter cw = new ClassWriter(0);
+        cr.accept(new ClassVisitor(Opcodes.ASM4, cw) {
+
+            private int field;
+
+            private int method;
+
+            @Override
+            public FieldVisitor visitField(
+                final int access,
+                final String name,
+                final String desc,
+                final String signature,
+                final Object value)
+            {
+                if (field++ == 0) {
+                    return null;
+                }
+                return super.visitField(access, name, desc, signature, value);
+            }
+
+            @Override
+            public MethodVisitor visitMethod(
+                final int access,
+                final String name,
+                final String desc,
+                final String signature,
+                final String[] exceptions)
+            {
+                if (method++ % 2 == 1) {
+                    return null;
+                }
+                return super.visitMethod(access,
+                        name,
+                        desc,
+                        signature,
+                        exceptions);
+            }
+        }, 0);
+        byte[] modified = cw.toByteArray();
+        String expected = ClassDiffUnitTest.toString(b);
+        assertEquals(expected,
+                ClassDiffUnitTest.toString(ClassPatcher.patch(b,
+                        ClassDiff.diff(b, b))));
+        assertEquals(expected,
+                ClassDiffUnitTest.toString(ClassPatcher.patch(modified,
+                        ClassDiff.diff(modified, b))));
+        assertEquals(ClassDiffUnitTest.toString(modified),
+                ClassDiffUnitTest.toString(ClassPatcher.patch(b,
+                        ClassDiff.diff(b, modified))));
+    }
+}
@@ -0,0 +1,200 @@
+/***
+ * ASM tests
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.commons;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.util.TraceClassVisitor;
+
+/**
+ * ClassDiff and ClassPatcher unit tests.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class ClassDiffUnitTest extends TestCase implements Opcodes {
+
+    /**
+     * Generates a class with int fields and with methods returning an int.
+     *
+     * @param fields the names of the fields, separated with spaces.
+     * @param methods the methods, separated with spaces, in the form
+     *        name=value. Values larger than 5 are loaded with a constant pool
+     *        entry.
+     * @return the generated class.
+     */
+    private static byte[] generate(final String fields, final String methods)
+    {
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(V1_6, ACC_PUBLIC, "C", null, "java/lang/Object", null);
+        cw.visitSource("C.java", null);
+        if (fields.length() > 0) {
+            String[] f = fields.split(" ");
+            for (int i = 0; i < f.length; ++i) {
+                cw.visitField(ACC_PUBLIC, f[i], "I", null, null).visitEnd();
+            }
+        }
+        if (methods.length() > 0) {
+            String[] m = methods.split(" ");
+            for (int i = 0; i < m.length; ++i) {
+                int eq = m[i].indexOf('=');
+                int value = Integer.parseInt(m[i].substring(eq + 1));
+                MethodVisitor mv = cw.visitMethod(ACC_PUBLIC + ACC_STATIC,
+                        m[i].substring(0, eq),
+                        "()I",
+                        null,
+                        null);
+                mv.visitCode();
+                if (value > 5) {
+                    mv.visitLdcInsn(new Integer(value));
+                } else {
+                    mv.visitInsn(ICONST_0 + value);
+                }
+                mv.visitInsn(IRETURN);
+                mv.visitMaxs(1, 0);
+                mv.visitEnd();
+            }
+        }
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    static String toString(final byte[] b) {
+        StringWriter sw = new StringWriter();
+        new ClassReader(b).accept(new TraceClassVisitor(new PrintWriter(sw)),
+                0);
+        return sw.toString();
+    }
+
+    /**
+     * Computes the patch between two classes, checks that it reproduces the
+     * new class, and returns the class stored in the patch.
+     */
+    private static ClassNode check(final byte[] oldClass, final byte[] newClass)
+    {
+        byte[] patch = ClassDiff.diff(oldClass, newClass);
+        assertEquals(toString(newClass),
+                toString(ClassPatcher.patch(oldClass, patch)));
+        ClassNode cn = new ClassNode();
+        int u = 14 + 2 * ((patch[12] & 0xFF) << 8 | (patch[13] & 0xFF));
+        u += 2 + 2 * ((patch[u] & 0xFF) << 8 | (patch[u + 1] & 0xFF));
+        new ClassReader(patch, u, patch.length - u).accept(cn, 0);
+        return cn;
+    }
+
+    private static String getNames(final ClassNode cn) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < cn.fields.size(); ++i) {
+            sb.append(cn.fields.get(i).name).append(' ');
+        }
+        for (int i = 0; i < cn.methods.size(); ++i) {
+            sb.append(cn.methods.get(i).name).append(' ');
+        }
+        return sb.toString().trim();
+    }
+
+    public void testIdentical() {
+        byte[] b = generate("a b", "m=1 n=7 p=8");
+        assertEquals("", getNames(check(b, b)));
+    }
+
+    public void testChangedMethodSamePool() {
+        byte[] b1 = generate("a b", "m=1 n=7 p=8");
+        byte[] b2 = generate("a b", "m=2 n=7 p=8");
+        assertEquals("m", getNames(check(b1, b2)));
+    }
+
+    public void testChangedMethodNewPool() {
+        byte[] b1 = generate("a b", "m=1 n=7 p=8");
+        byte[] b2 = generate("a b", "m=1 n=9 p=8");
+        ClassNode cn = check(b1, b2);
+        assertEquals("n", getNames(cn));
+        assertEquals("C.java", cn.sourceFile);
+    }
+
+    public void testAddedAndRemovedMembers() {
+        byte[] b1 = generate("a b", "m=1 n=7 p=8");
+        byte[] b2 = generate("a c b", "m=1 q=9 p=8");
+        assertEquals("c q", getNames(check(b1, b2)));
+        assertEquals("n", getNames(check(b2, b1)));
+    }
+
+    public void testReorderedMembers() {
+        byte[] b1 = generate("a b", "m=1 n=7 p=8");
+        byte[] b2 = generate("b a", "n=7 p=8 m=1");
+        assertEquals("a m", getNames(check(b1, b2)));
+    }
+
+    public void testPatchSize() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; ++i) {
+            sb.append(" m").append(i).append('=').append(1000 + i);
+        }
+        String methods = sb.toString().trim();
+        byte[] b1 = generate("", methods);
+        byte[] b2 = generate("", methods.replace("m50=1050", "m50=2050"));
+        byte[] patch = ClassDiff.diff(b1, b2);
+        assertTrue(patch.length < b2.length / 10);
+        assertEquals(toString(b2), toString(ClassPatcher.patch(b1, patch)));
+    }
+
+    public void testWrongClass() {
+        byte[] b1 = generate("a b", "m=1");
+        byte[] b2 = generate("a b", "m=2");
+        byte[] patch = ClassDiff.diff(b1, b2);
+        try {
+            ClassPatcher.patch(b2, patch);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        ClassWriter cw = new ClassWriter(0);
+        try {
+            new ClassReader(generate("a", "m=1")).accept(new ClassPatcher(cw,
+                    patch), 0);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    public void testInvalidPatch() {
+        try {
+            new ClassPatcher(null, new byte[16]);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+}
@@ -0,0 +1,239 @@
+/***
+ * ASM tests
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.commons;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.BasicValue;
+import org.objectweb.asm.tree.analysis.Frame;
+import org.objectweb.asm.tree.analysis.SimpleVerifier;
+
+/**
+ * ClasspathTypeHierarchy unit tests.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class ClasspathTypeHierarchyUnitTest extends TestCase implements Opcodes
+{
+
+    private File dir;
+
+    private File jar;
+
+    private ClasspathTypeHierarchy hierarchy;
+
+    @Override
+    protected void setUp() throws IOException {
+        dir = File.createTempFile("classes", "");
+        dir.delete();
+        dir.mkdir();
+        new File(dir, "p").mkdir();
+        write(new File(dir, "p/A.class"), define(ACC_PUBLIC, "p/A", "java/lang/Object"));
+        write(new File(dir, "p/I.class"), define(ACC_INTERFACE | ACC_ABSTRACT, "p/I", "java/lang/Object"));
+        jar = File.createTempFile("classes", ".jar");
+        ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(jar));
+        try {
+            zos.putNextEntry(new ZipEntry("p/B.class"));
+            zos.write(define(ACC_PUBLIC, "p/B", "p/A", "p/I"));
+            zos.putNextEntry(new ZipEntry("p/C.class"));
+            zos.write(define(ACC_PUBLIC, "p/C", "p/A"));
+            // hidden by the class in the directory
+            zos.putNextEntry(new ZipEntry("p/A.class"));
+            zos.write(define(ACC_PUBLIC, "p/A", "p/C"));
+        } finally {
+            zos.close();
+        }
+        hierarchy = new ClasspathTypeHierarchy(new File[] {
+            new File(dir, "missing"),
+            dir,
+            jar });
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        hierarchy.close();
+        new File(dir, "p/A.class").delete();
+        new File(dir, "p/I.class").delete();
+        new File(dir, "p").delete();
+        dir.delete();
+        jar.delete();
+    }
+
+    private static byte[] define(
+        final int access,
+        final String name,
+        final String superName,
+        final String... interfaces)
+    {
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(V1_5, access, name, null, superName, interfaces);
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void write(final File f, final byte[] b)
+            throws IOException
+    {
+        OutputStream os = new FileOutputStream(f);
+        try {
+            os.write(b);
+        } finally {
+            os.close();
+        }
+    }
+
+    public void testParse() {
+        File[] files = ClasspathTypeHierarchy.parse("a" + File.pathSeparator
+                + File.pathSeparator + "b.jar");
+        assertEquals(2, files.length);
+        assertEquals("a", files[0].getPath());
+        assertEquals("b.jar", files[1].getPath());
+    }
+
+    public void testClasspath() {
+        assertEquals("java/lang/Object", hierarchy.getSuperClass("p/A"));
+        assertTrue(hierarchy.isInterface("p/I"));
+        assertEquals("p/A", hierarchy.getSuperClass("p/B"));
+        assertEquals("p/A", hierarchy.getCommonSuperClass("p/B", "p/C"));
+        assertTrue(hierarchy.isAssignableFrom("p/I", "p/B"));
+        assertFalse(hierarchy.isAssignableFrom("p/I", "p/C"));
+    }
+
+    public void testParentClassLoader() throws IOException {
+        ClassLoader parent = new ClassLoader(null) {
+            @Override
+            public InputStream getResourceAsStream(final String name) {
+                if (name.equals("q/P.class")) {
+                    return new ByteArrayInputStream(define(ACC_PUBLIC,
+                            "q/P",
+                            "p/C"));
+                }
+                return null;
+            }
+        };
+        ClasspathTypeHierarchy h = new ClasspathTypeHierarchy(new File[] { dir,
+            jar }, parent);
+        try {
+            assertEquals("p/C", h.getSuperClass("q/P"));
+            assertEquals("p/A", h.getCommonSuperClass("q/P", "p/B"));
+            try {
+                h.getSuperClass("p/Z");
+                fail();
+            } catch (RuntimeException e) {
+            }
+        } finally {
+            h.close();
+        }
+    }
+
+    public void testClose() throws IOException {
+        assertEquals("p/A", hierarchy.getSuperClass("p/B"));
+        hierarchy.close();
+        // already read classes remain available
+        assertEquals("p/A", hierarchy.getSuperClass("p/B"));
+        try {
+            hierarchy.getSuperClass("p/C");
+            fail();
+        } catch (RuntimeException e) {
+        }
+    }
+
+    private Frame<BasicValue>[] analyze(final MethodNode mn)
+            throws AnalyzerException
+    {
+        SimpleVerifier verifier = new SimpleVerifier(Type.getObjectType("p/E"),
+                Type.getObjectType("p/A"),
+                false);
+        verifier.setTypeHierarchy(hierarchy);
+        return new Analyzer<BasicValue>(verifier).analyze("p/E", mn);
+    }
+
+    public void testSimpleVerifier() throws AnalyzerException {
+        // none of the types used below can be loaded with Class.forName
+        MethodNode mn = new MethodNode(ACC_STATIC,
+                "m",
+                "(ZLp/B;Lp/C;[Lp/B;[Lp/E;)Lp/A;",
+                null,
+                null);
+        Label l0 = new Label();
+        Label l1 = new Label();
+        mn.visitVarInsn(ALOAD, 3);
+        mn.visitVarInsn(ALOAD, 3);
+        mn.visitVarInsn(ALOAD, 1);
+        mn.visitMethodInsn(INVOKESTATIC, "p/E", "n", "([Lp/A;[Ljava/lang/Object;Lp/I;)V");
+        mn.visitVarInsn(ALOAD, 4);
+        mn.visitVarInsn(ALOAD, 4);
+        mn.visitVarInsn(ALOAD, 4);
+        mn.visitMethodInsn(INVOKESTATIC, "p/E", "n", "([Lp/A;[Ljava/lang/Object;Lp/I;)V");
+        mn.visitVarInsn(ILOAD, 0);
+        mn.visitJumpInsn(IFEQ, l0);
+        mn.visitVarInsn(ALOAD, 1);
+        mn.visitJumpInsn(GOTO, l1);
+        mn.visitLabel(l0);
+        mn.visitVarInsn(ALOAD, 2);
+        mn.visitLabel(l1);
+        mn.visitInsn(ARETURN);
+        mn.visitMaxs(3, 5);
+        Frame<BasicValue>[] frames = analyze(mn);
+        assertEquals("Lp/A;", frames[frames.length - 1].getStack(0).toString());
+    }
+
+    public void testSimpleVerifierInvalid() {
+        MethodNode mn = new MethodNode(ACC_STATIC,
+                "m",
+                "([Lp/A;)[Lp/B;",
+                null,
+                null);
+        mn.visitVarInsn(ALOAD, 0);
+        mn.visitInsn(ARETURN);
+        mn.visitMaxs(1, 1);
+        try {
+            analyze(mn);
+            fail();
+        } catch (AnalyzerException e) {
+        }
+    }
+}
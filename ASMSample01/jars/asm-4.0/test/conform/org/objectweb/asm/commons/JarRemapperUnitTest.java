@@ -0,0 +1,124 @@
+/***
+ * ASM tests
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.commons;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * JarRemapper unit tests.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class JarRemapperUnitTest extends TestCase implements Opcodes {
+
+    private static final int N = 100;
+
+    private byte[] jar;
+
+    @Override
+    protected void setUp() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ZipOutputStream zos = new ZipOutputStream(bos);
+        zos.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+        zos.write("Manifest-Version: 1.0\n".getBytes("UTF-8"));
+        zos.closeEntry();
+        for (int i = 0; i < N; ++i) {
+            ClassWriter cw = new ClassWriter(0);
+            cw.visit(V1_5, ACC_PUBLIC, "pkg/C" + i, null, i == 0
+                    ? "java/lang/Object"
+                    : "pkg/C" + (i - 1), null);
+            cw.visitEnd();
+            zos.putNextEntry(new ZipEntry("pkg/C" + i + ".class"));
+            zos.write(cw.toByteArray());
+            zos.closeEntry();
+        }
+        zos.close();
+        jar = bos.toByteArray();
+    }
+
+    public void testRemap() throws IOException {
+        Map<String, String> mapping = new HashMap<String, String>();
+        for (int i = 0; i < N; i += 2) {
+            mapping.put("pkg/C" + i, "shaded/C" + i);
+        }
+        JarRemapper r = new JarRemapper(new SimpleRemapper(mapping), 0, 0, 3);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        r.transform(new ByteArrayInputStream(jar), bos);
+
+        List<String> names = new ArrayList<String>();
+        ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(bos.toByteArray()));
+        ZipEntry ze;
+        while ((ze = zis.getNextEntry()) != null) {
+            names.add(ze.getName());
+            if (ze.getName().endsWith(".class")) {
+                ClassReader cr = new ClassReader(zis);
+                assertEquals(ze.getName(), cr.getClassName() + ".class");
+                int i = names.size() - 2;
+                if (i > 0) {
+                    String s = (i - 1) % 2 == 0 ? "shaded/C" : "pkg/C";
+                    assertEquals(s + (i - 1), cr.getSuperName());
+                }
+            }
+        }
+        assertEquals(N + 1, names.size());
+        assertEquals("META-INF/MANIFEST.MF", names.get(0));
+        for (int i = 0; i < N; ++i) {
+            String s = i % 2 == 0 ? "shaded/C" : "pkg/C";
+            assertEquals(s + i + ".class", names.get(i + 1));
+        }
+        assertEquals(N, r.getClassCount());
+    }
+
+    public void testCachingRemapper() {
+        CachingRemapper remapper = new CachingRemapper(new SimpleRemapper("a",
+                "b"));
+        assertSame(remapper, new JarRemapper(remapper, 0, 0).getRemapper());
+        JarRemapper r = new JarRemapper(remapper.getRemapper(), 0, 0);
+        assertNotSame(remapper, r.getRemapper());
+        assertEquals("b.class", r.transformName("a.class"));
+        assertEquals("c.class", r.transformName("c.class"));
+        assertEquals("a", r.transformName("a"));
+    }
+}
@@ -0,0 +1,196 @@
+/***
+ * ASM tests
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.commons;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * JarTransformer unit tests.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class JarTransformerUnitTest extends TestCase implements Opcodes {
+
+    private static final int N = 100;
+
+    private byte[] jar;
+
+    @Override
+    protected void setUp() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ZipOutputStream zos = new ZipOutputStream(bos);
+        zos.putNextEntry(new ZipEntry("META-INF/"));
+        zos.closeEntry();
+        zos.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+        zos.write("Manifest-Version: 1.0\n".getBytes("UTF-8"));
+        zos.closeEntry();
+        for (int i = 0; i < N; ++i) {
+            ClassWriter cw = new ClassWriter(0);
+            cw.visit(V1_5, ACC_PUBLIC, "pkg/C" + i, null, "java/lang/Object", null);
+            cw.visitEnd();
+            zos.putNextEntry(new ZipEntry("pkg/C" + i + ".class"));
+            zos.write(cw.toByteArray());
+            zos.closeEntry();
+        }
+        zos.close();
+        jar = bos.toByteArray();
+    }
+
+    public void testTransform() throws IOException {
+        JarTransformer t = new JarTransformer(new JarTransformer.ClassVisitorFactory()
+        {
+            public ClassVisitor newClassVisitor(
+                final String name,
+                final ClassVisitor cv)
+            {
+                return new ClassVisitor(ASM4, cv) {
+                    @Override
+                    public void visitEnd() {
+                        cv.visitField(ACC_PUBLIC, "added", "I", null, null)
+                                .visitEnd();
+                        super.visitEnd();
+                    }
+                };
+            }
+        }, 0, 0, 3);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        t.transform(new ByteArrayInputStream(jar), bos);
+
+        List<String> names = new ArrayList<String>();
+        ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(bos.toByteArray()));
+        ZipEntry ze;
+        while ((ze = zis.getNextEntry()) != null) {
+            names.add(ze.getName());
+            if (ze.getName().endsWith(".class")) {
+                final int[] fields = new int[1];
+                new ClassReader(zis).accept(new ClassVisitor(ASM4) {
+                    @Override
+                    public FieldVisitor visitField(
+                        final int access,
+                        final String name,
+                        final String desc,
+                        final String signature,
+                        final Object value)
+                    {
+                        ++fields[0];
+                        return null;
+                    }
+                }, 0);
+                assertEquals(1, fields[0]);
+            }
+        }
+        assertEquals(N + 2, names.size());
+        assertEquals("META-INF/", names.get(0));
+        assertEquals("META-INF/MANIFEST.MF", names.get(1));
+        for (int i = 0; i < N; ++i) {
+            assertEquals("pkg/C" + i + ".class", names.get(i + 2));
+        }
+        assertEquals(N + 2, t.getEntryCount());
+        assertEquals(N, t.getClassCount());
+    }
+
+    public void testInvalidClassEntries() throws IOException {
+        byte[][] contents = {
+            new byte[0],
+            "not a class".getBytes("UTF-8"),
+            new byte[] { (byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE, 0 } };
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ZipOutputStream zos = new ZipOutputStream(bos);
+        for (int i = 0; i < contents.length; ++i) {
+            zos.putNextEntry(new ZipEntry("pkg/Invalid" + i + ".class"));
+            zos.write(contents[i]);
+            zos.closeEntry();
+        }
+        zos.close();
+        JarTransformer t = new JarTransformer(new JarTransformer.ClassVisitorFactory()
+        {
+            public ClassVisitor newClassVisitor(
+                final String name,
+                final ClassVisitor cv)
+            {
+                return cv;
+            }
+        }, 0, 0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        t.transform(new ByteArrayInputStream(bos.toByteArray()), out);
+
+        // the invalid class entries are copied as is
+        ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()));
+        for (int i = 0; i < contents.length; ++i) {
+            assertEquals("pkg/Invalid" + i + ".class", zis.getNextEntry().getName());
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            int b;
+            while ((b = zis.read()) != -1) {
+                content.write(b);
+            }
+            assertTrue(Arrays.equals(contents[i], content.toByteArray()));
+        }
+        assertNull(zis.getNextEntry());
+        assertEquals(contents.length, t.getEntryCount());
+        assertEquals(0, t.getClassCount());
+    }
+
+    public void testTransformError() throws IOException {
+        JarTransformer t = new JarTransformer(new JarTransformer.ClassVisitorFactory()
+        {
+            public ClassVisitor newClassVisitor(
+                final String name,
+                final ClassVisitor cv)
+            {
+                if (name.equals("pkg/C50.class")) {
+                    throw new IllegalStateException();
+                }
+                return cv;
+            }
+        }, 0, 0);
+        try {
+            t.transform(new ByteArrayInputStream(jar),
+                    new ByteArrayOutputStream());
+            fail();
+        } catch (IllegalStateException e) {
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/***
+ * ASM tests
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.commons;
+
+import java.util.Arrays;
+
+import junit.framework.TestSuite;
+
+import org.objectweb.asm.AbstractTest;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.TypeHierarchy;
+import org.objectweb.asm.tree.ClassNode;
+
+/**
+ * ParallelClassWriter tests.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class ParallelClassWriterTest extends AbstractTest {
+
+    static final TypeHierarchy HIERARCHY = new BytecodeTypeHierarchy(ParallelClassWriterTest.class.getClassLoader());
+
+    public static TestSuite suite() throws Exception {
+        return new ParallelClassWriterTest().getSuite();
+    }
+
+    @Override
+    public void test() throws Exception {
+        ClassReader cr = new ClassReader(is);
+        ClassNode cn = new ClassNode();
+        cr.accept(cn, 0);
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES, HIERARCHY);
+        cn.accept(cw);
+        ParallelClassWriter pcw = new ParallelClassWriter(ClassWriter.COMPUTE_FRAMES,
+                ParallelClassWriterUnitTest.EXECUTOR)
+        {
+            @Override
+            protected ClassWriter newClassWriter(final int flags) {
+                return new ClassWriter(flags, HIERARCHY);
+            }
+        };
+        cr.accept(pcw, 0);
+        assertTrue(Arrays.equals(cw.toByteArray(), pcw.toByteArray()));
+    }
+}
@@ -0,0 +1,199 @@
+/***
+ * ASM tests
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.commons;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+
+/**
+ * ParallelClassWriter unit tests.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class ParallelClassWriterUnitTest extends TestCase implements Opcodes {
+
+    static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(4,
+            new ThreadFactory() {
+                public Thread newThread(final Runnable r) {
+                    Thread t = new Thread(r);
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+
+    private static void generate(final ClassVisitor cv) {
+        cv.visit(V1_6, ACC_PUBLIC, "C", null, "java/lang/Object", null);
+
+        // fills the constant pool, so that the following LDC instructions
+        // are LDC_W instructions in the class, but not in a class containing
+        // a single method
+        MethodVisitor mv = cv.visitMethod(ACC_STATIC, "pool", "()V", null, null);
+        mv.visitCode();
+        for (int i = 0; i < 300; ++i) {
+            mv.visitLdcInsn("s" + i);
+            mv.visitInsn(POP);
+        }
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        for (int i = 0; i < 2; ++i) {
+            // uninitialized types, dead code and merged types
+            mv = cv.visitMethod(ACC_STATIC, "m" + i, "(ZJ)Ljava/lang/Object;", null, null);
+            mv.visitCode();
+            Label l0 = new Label();
+            Label l1 = new Label();
+            Label l2 = new Label();
+            Label l3 = new Label();
+            Label l4 = new Label();
+            Label l5 = new Label();
+            Label l6 = new Label();
+            mv.visitTryCatchBlock(l4, l5, l6, "java/lang/RuntimeException");
+            mv.visitLdcInsn("m" + i);
+            mv.visitInsn(POP);
+            mv.visitTypeInsn(NEW, "java/lang/Integer");
+            mv.visitInsn(DUP);
+            mv.visitVarInsn(ILOAD, 0);
+            mv.visitJumpInsn(IFEQ, l0);
+            mv.visitInsn(ICONST_1);
+            mv.visitJumpInsn(GOTO, l1);
+            mv.visitLabel(l0);
+            mv.visitInsn(ICONST_2);
+            mv.visitLabel(l1);
+            mv.visitMethodInsn(INVOKESPECIAL, "java/lang/Integer", "<init>", "(I)V");
+            mv.visitVarInsn(ASTORE, 3);
+            mv.visitVarInsn(ILOAD, 0);
+            mv.visitJumpInsn(IFEQ, l2);
+            mv.visitTypeInsn(NEW, "java/lang/StringBuilder");
+            mv.visitInsn(DUP);
+            mv.visitMethodInsn(INVOKESPECIAL, "java/lang/StringBuilder", "<init>", "()V");
+            mv.visitVarInsn(ASTORE, 4);
+            mv.visitJumpInsn(GOTO, l3);
+            mv.visitLabel(l2);
+            mv.visitTypeInsn(NEW, "java/lang/StringBuffer");
+            mv.visitInsn(DUP);
+            mv.visitMethodInsn(INVOKESPECIAL, "java/lang/StringBuffer", "<init>", "()V");
+            mv.visitVarInsn(ASTORE, 4);
+            mv.visitLabel(l3);
+            mv.visitLabel(l4);
+            mv.visitVarInsn(ALOAD, 4);
+            mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Object", "toString", "()Ljava/lang/String;");
+            mv.visitLabel(l5);
+            mv.visitInsn(ARETURN);
+            mv.visitLabel(l6);
+            mv.visitVarInsn(ALOAD, 3);
+            mv.visitInsn(ARETURN);
+            mv.visitInsn(ACONST_NULL);
+            mv.visitInsn(ARETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+
+        mv = cv.visitMethod(ACC_ABSTRACT, "a", "()V", null, null);
+        mv.visitEnd();
+        cv.visitEnd();
+    }
+
+    public void testToByteArray() {
+        ClassNode cn = new ClassNode();
+        generate(cn);
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        cn.accept(cw);
+
+        final List<ClassWriter> writers = new ArrayList<ClassWriter>();
+        final Set<ClassWriter> merges = new HashSet<ClassWriter>();
+        ParallelClassWriter pcw = new ParallelClassWriter(ClassWriter.COMPUTE_FRAMES,
+                EXECUTOR)
+        {
+            @Override
+            protected ClassWriter newClassWriter(final int flags) {
+                ClassWriter cw = new ClassWriter(flags) {
+                    @Override
+                    protected String getCommonSuperClass(
+                        final String type1,
+                        final String type2)
+                    {
+                        synchronized (merges) {
+                            merges.add(this);
+                        }
+                        return super.getCommonSuperClass(type1, type2);
+                    }
+                };
+                synchronized (writers) {
+                    writers.add(cw);
+                }
+                return cw;
+            }
+        };
+        generate(pcw);
+        assertTrue(Arrays.equals(cw.toByteArray(), pcw.toByteArray()));
+        // one class writer per method with code, plus the final one
+        assertEquals(4, writers.size());
+        // the frames are copied, and not computed, in the final class writer
+        assertEquals(2, merges.size());
+        assertFalse(merges.contains(writers.get(0)));
+    }
+
+    public void testSetFrameSourcesMismatch() {
+        ClassNode cn = new ClassNode();
+        generate(cn);
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        cn.accept(cw);
+
+        // frame sources that do not contain the same methods are ignored
+        ClassWriter source = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        source.visit(V1_6, ACC_PUBLIC, "C", null, "java/lang/Object", null);
+        MethodVisitor mv = source.visitMethod(ACC_STATIC, "m0", "(ZJ)Ljava/lang/Object;", null, null);
+        mv.visitCode();
+        mv.visitInsn(ACONST_NULL);
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        ClassWriter cw2 = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        cw2.setFrameSources(new ClassWriter[] { source, source, source });
+        cn.accept(cw2);
+        assertTrue(Arrays.equals(cw.toByteArray(), cw2.toByteArray()));
+    }
+}
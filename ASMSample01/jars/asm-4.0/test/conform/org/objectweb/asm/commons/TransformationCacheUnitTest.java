@@ -0,0 +1,213 @@
+/***
+ * ASM tests
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.commons;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * TransformationCache unit tests.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class TransformationCacheUnitTest extends TestCase implements Opcodes {
+
+    private File dir;
+
+    @Override
+    protected void setUp() throws IOException {
+        dir = File.createTempFile("cache", null);
+        dir.delete();
+    }
+
+    @Override
+    protected void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (int i = 0; i < files.length; ++i) {
+                files[i].delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private static byte[] data(final int value, final int length) {
+        byte[] b = new byte[length];
+        Arrays.fill(b, (byte) value);
+        return b;
+    }
+
+    public void testGetPut() throws IOException {
+        TransformationCache c = new TransformationCache(dir, "v1", 1000);
+        assertNull(c.get(data(1, 10)));
+        c.put(data(1, 10), data(2, 20));
+        assertTrue(Arrays.equals(data(2, 20), c.get(data(1, 10))));
+        assertNull(c.get(data(1, 11)));
+        assertEquals(1, c.getHitCount());
+        assertEquals(2, c.getMissCount());
+        assertEquals(20, c.getSize());
+
+        // the cache is persistent, but depends on the version
+        c = new TransformationCache(dir, "v1", 1000);
+        assertTrue(Arrays.equals(data(2, 20), c.get(data(1, 10))));
+        c = new TransformationCache(dir, "v2", 1000);
+        assertNull(c.get(data(1, 10)));
+    }
+
+    public void testEviction() throws IOException {
+        TransformationCache c = new TransformationCache(dir, "v1", 100);
+        c.put(data(1, 1), data(1, 40));
+        c.put(data(2, 1), data(2, 40));
+        assertNotNull(c.get(data(1, 1)));
+        c.put(data(3, 1), data(3, 40));
+        assertEquals(80, c.getSize());
+        assertEquals(2, dir.listFiles().length);
+        assertNotNull(c.get(data(1, 1)));
+        assertNull(c.get(data(2, 1)));
+        assertNotNull(c.get(data(3, 1)));
+
+        // too large to be cached
+        c.put(data(4, 1), data(4, 101));
+        assertNull(c.get(data(4, 1)));
+
+        // a smaller bound evicts existing classes
+        c = new TransformationCache(dir, "v1", 50);
+        assertEquals(40, c.getSize());
+        assertEquals(1, dir.listFiles().length);
+    }
+
+    public void testVersionsSharingDirectory() throws IOException {
+        TransformationCache c1 = new TransformationCache(dir, "v1", 100);
+        c1.put(data(1, 1), data(1, 40));
+        c1.put(data(2, 1), data(2, 40));
+        TransformationCache c2 = new TransformationCache(dir, "v2", 50);
+        assertEquals(0, c2.getSize());
+        c2.put(data(1, 1), data(3, 40));
+        assertEquals(40, c2.getSize());
+        assertEquals(3, dir.listFiles().length);
+
+        // the classes of other versions are neither counted nor evicted
+        c1 = new TransformationCache(dir, "v1", 100);
+        assertEquals(80, c1.getSize());
+        assertTrue(Arrays.equals(data(1, 40), c1.get(data(1, 1))));
+        assertTrue(Arrays.equals(data(3, 40), c2.get(data(1, 1))));
+    }
+
+    public void testStaleTemporaryFiles() throws IOException {
+        new TransformationCache(dir, "v1", 100);
+        File stale = File.createTempFile("tmp", null, dir);
+        stale.setLastModified(System.currentTimeMillis() - 2 * 60 * 60 * 1000L);
+        File recent = File.createTempFile("tmp", null, dir);
+        TransformationCache c = new TransformationCache(dir, "v1", 100);
+        assertFalse(stale.exists());
+        assertTrue(recent.exists());
+        assertEquals(0, c.getSize());
+    }
+
+    public void testCorruptedFiles() throws IOException {
+        int[] lengths = { 10, 50 };
+        for (int i = 0; i < lengths.length; ++i) {
+            TransformationCache c = new TransformationCache(dir, "v" + i, 100);
+            c.put(data(1, 1), data(1, 40));
+            File f = dir.listFiles()[0];
+            FileOutputStream os = new FileOutputStream(f);
+            os.write(data(1, lengths[i]));
+            os.close();
+            // a truncated or too long file is a cache miss, and is removed
+            assertNull(c.get(data(1, 1)));
+            assertFalse(f.exists());
+            assertEquals(0, c.getSize());
+            assertEquals(1, c.getMissCount());
+            c.put(data(1, 1), data(1, 40));
+            assertTrue(Arrays.equals(data(1, 40), c.get(data(1, 1))));
+            f.delete();
+        }
+    }
+
+    public void testJarTransformer() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ZipOutputStream zos = new ZipOutputStream(bos);
+        for (int i = 0; i < 10; ++i) {
+            ClassWriter cw = new ClassWriter(0);
+            cw.visit(V1_5, ACC_PUBLIC, "pkg/C" + i, null, "java/lang/Object", null);
+            cw.visitEnd();
+            zos.putNextEntry(new ZipEntry("pkg/C" + i + ".class"));
+            zos.write(cw.toByteArray());
+            zos.closeEntry();
+        }
+        zos.close();
+        byte[] jar = bos.toByteArray();
+
+        final int[] count = new int[1];
+        JarTransformer.ClassVisitorFactory factory = new JarTransformer.ClassVisitorFactory()
+        {
+            public ClassVisitor newClassVisitor(
+                final String name,
+                final ClassVisitor cv)
+            {
+                synchronized (count) {
+                    ++count[0];
+                }
+                return new ClassVisitor(ASM4, cv) {
+                    @Override
+                    public void visitEnd() {
+                        cv.visitField(ACC_PUBLIC, "added", "I", null, null)
+                                .visitEnd();
+                        super.visitEnd();
+                    }
+                };
+            }
+        };
+        byte[][] results = new byte[2][];
+        for (int i = 0; i < 2; ++i) {
+            JarTransformer t = new JarTransformer(factory, 0, 0);
+            t.setCache(new TransformationCache(dir, "added", 1 << 20));
+            bos = new ByteArrayOutputStream();
+            t.transform(new ByteArrayInputStream(jar), bos);
+            results[i] = bos.toByteArray();
+            assertEquals(10, count[0]);
+            assertEquals(i == 0 ? 10 : 0, t.getClassCount());
+            assertEquals(i == 0 ? 0 : 10, t.getCache().getHitCount());
+        }
+        assertTrue(Arrays.equals(results[0], results[1]));
+    }
+}
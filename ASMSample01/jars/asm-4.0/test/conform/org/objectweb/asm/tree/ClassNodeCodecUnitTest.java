@@ -0,0 +1,389 @@
+/***
+ * ASM tests
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.tree;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.Attribute;
+import org.objectweb.asm.ByteVector;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * ClassNodeCodec unit tests.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class ClassNodeCodecUnitTest extends TestCase implements Opcodes {
+
+    private static final Handle BSM = new Handle(H_INVOKESTATIC,
+            "C",
+            "bsm",
+            "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;"
+                    + "Ljava/lang/invoke/MethodType;[Ljava/lang/Object;)"
+                    + "Ljava/lang/invoke/CallSite;");
+
+    private static byte[] generate() {
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(V1_7,
+                ACC_PUBLIC + ACC_DEPRECATED,
+                "C",
+                "<T:Ljava/lang/Object;>Ljava/lang/Object;",
+                "java/lang/Object",
+                new String[] { "java/lang/Runnable" });
+        cw.visitSource("C.java", "debug");
+        cw.visitOuterClass("D", "m", "()V");
+        AnnotationVisitor av = cw.visitAnnotation("LA;", true);
+        av.visit("byte", new Byte((byte) -1));
+        av.visit("boolean", Boolean.TRUE);
+        av.visit("char", new Character('\u20ac'));
+        av.visit("short", new Short((short) -300));
+        av.visit("int", new Integer(Integer.MIN_VALUE));
+        av.visit("long", new Long(Long.MAX_VALUE));
+        av.visit("float", new Float(-1.5f));
+        av.visit("double", new Double(Double.NaN));
+        av.visit("string", "\u0000\u00e9\uffff");
+        av.visit("type", Type.getType("[[LC;"));
+        av.visit("bytes", new byte[] { 1, -2 });
+        av.visit("booleans", new boolean[] { true, false });
+        av.visit("chars", new char[] { 'a', '\u1234' });
+        av.visit("shorts", new short[] { 3, -4 });
+        av.visit("ints", new int[] { 5, -6 });
+        av.visit("longs", new long[] { 7L, Long.MIN_VALUE });
+        av.visit("floats", new float[] { 8f, Float.NaN });
+        av.visit("doubles", new double[] { 9d, -0d });
+        av.visitEnum("enum", "LE;", "V");
+        av.visitAnnotation("annotation", "LB;").visitEnd();
+        AnnotationVisitor array = av.visitArray("array");
+        array.visit(null, "a");
+        array.visitEnum(null, "LE;", "W");
+        array.visitEnd();
+        av.visitEnd();
+        cw.visitAnnotation("LB;", false).visitEnd();
+        cw.visitAttribute(new Content(new byte[] { 1, 2, 3 }));
+        cw.visitInnerClass("C$I", "C", "I", ACC_STATIC);
+        cw.visitInnerClass("C$1", null, null, 0);
+
+        FieldVisitor fv = cw.visitField(ACC_STATIC, "f", "J", null, new Long(-1));
+        fv.visitAnnotation("LA;", false).visitEnd();
+        fv.visitAttribute(new Content(new byte[0]));
+        fv.visitEnd();
+        cw.visitField(0, "g", "Ljava/util/List;", "Ljava/util/List<TT;>;",
+                null).visitEnd();
+
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC + ACC_ABSTRACT,
+                "a",
+                "(II)V",
+                null,
+                new String[] { "java/lang/Exception" });
+        mv.visitParameterAnnotation(1, "LA;", true).visitEnd();
+        mv.visitParameterAnnotation(0, "LB;", false).visitEnd();
+        mv.visitEnd();
+        mv = cw.visitMethod(ACC_PUBLIC + ACC_ABSTRACT, "b", "()I", null, null);
+        av = mv.visitAnnotationDefault();
+        av.visit(null, new Integer(3));
+        av.visitEnd();
+        mv.visitEnd();
+
+        mv = cw.visitMethod(ACC_STATIC, "m", "(IJ)Ljava/lang/Object;", null, null);
+        mv.visitAttribute(new Content(new byte[] { 4 }));
+        mv.visitCode();
+        Label l0 = new Label();
+        Label l1 = new Label();
+        Label l2 = new Label();
+        Label l3 = new Label();
+        Label l4 = new Label();
+        mv.visitTryCatchBlock(l0, l1, l2, "java/lang/Exception");
+        mv.visitTryCatchBlock(l0, l1, l2, null);
+        mv.visitLabel(l0);
+        mv.visitLineNumber(10, l0);
+        mv.visitInsn(NOP);
+        mv.visitIntInsn(SIPUSH, -1000);
+        mv.visitIntInsn(NEWARRAY, T_INT);
+        mv.visitInsn(POP);
+        mv.visitVarInsn(LLOAD, 1);
+        mv.visitInsn(POP2);
+        mv.visitIincInsn(0, -128);
+        mv.visitLdcInsn(new Integer(100000));
+        mv.visitLdcInsn(new Float(1f));
+        mv.visitInsn(POP2);
+        mv.visitLdcInsn(new Long(-100000));
+        mv.visitInsn(POP2);
+        mv.visitLdcInsn(new Double(1e100));
+        mv.visitInsn(POP2);
+        mv.visitLdcInsn("s");
+        mv.visitInsn(POP);
+        mv.visitLdcInsn(Type.getType("LC;"));
+        mv.visitInsn(POP);
+        mv.visitLdcInsn(Type.getMethodType("()V"));
+        mv.visitInsn(POP);
+        mv.visitLdcInsn(BSM);
+        mv.visitInsn(POP);
+        mv.visitInvokeDynamicInsn("d", "()V", BSM, new Object[] {
+            new Integer(1),
+            "s",
+            Type.getType("()I"),
+            BSM });
+        mv.visitFieldInsn(GETSTATIC, "C", "f", "J");
+        mv.visitInsn(POP2);
+        mv.visitMethodInsn(INVOKESTATIC, "C", "m", "()V");
+        mv.visitTypeInsn(NEW, "C");
+        mv.visitInsn(POP);
+        mv.visitMultiANewArrayInsn("[[I", 2);
+        mv.visitInsn(POP);
+        mv.visitVarInsn(ILOAD, 0);
+        mv.visitTableSwitchInsn(-1, 1, l3, new Label[] { l3, l4, l3 });
+        mv.visitLabel(l4);
+        mv.visitFrame(F_APPEND, 1, new Object[] { "C" }, 0, null);
+        mv.visitVarInsn(ILOAD, 0);
+        mv.visitLookupSwitchInsn(l3, new int[] { -5, 70000 }, new Label[] {
+            l3,
+            l1 });
+        mv.visitLabel(l3);
+        mv.visitFrame(F_CHOP, 1, null, 0, null);
+        mv.visitJumpInsn(GOTO, l1);
+        mv.visitLabel(l1);
+        mv.visitFrame(F_SAME, 0, null, 0, null);
+        mv.visitInsn(ACONST_NULL);
+        mv.visitInsn(ARETURN);
+        mv.visitLabel(l2);
+        mv.visitFrame(F_FULL, 3, new Object[] {
+            INTEGER,
+            LONG,
+            "java/lang/Object" }, 1, new Object[] { "java/lang/Throwable" });
+        mv.visitInsn(NOP);
+        mv.visitFrame(F_SAME1, 0, null, 1, new Object[] { l0 });
+        mv.visitInsn(NOP);
+        mv.visitFrame(F_FULL, 2, new Object[] { TOP, UNINITIALIZED_THIS }, 3,
+                new Object[] { NULL, FLOAT, DOUBLE });
+        mv.visitInsn(ATHROW);
+        mv.visitLocalVariable("i", "I", null, l0, l2, 0);
+        mv.visitLocalVariable("j", "J", "J", l0, l2, 1);
+        mv.visitMaxs(4, 5);
+        mv.visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static byte[] toByteArray(final ClassNode cn) {
+        ClassWriter cw = new ClassWriter(0);
+        cn.accept(cw);
+        return cw.toByteArray();
+    }
+
+    public void testEncodeDecode() {
+        ClassNode cn = new ClassNode();
+        new ClassReader(generate()).accept(cn, 0);
+        byte[] b = ClassNodeCodec.encode(cn);
+        ClassNode decoded = ClassNodeCodec.decode(b);
+        assertTrue(Arrays.equals(toByteArray(cn), toByteArray(decoded)));
+        AbstractInsnNode insn = decoded.methods.get(2).instructions.getFirst();
+        while (!(insn instanceof FrameNode) || ((FrameNode) insn).type != F_FULL)
+        {
+            insn = insn.getNext();
+        }
+        assertSame(INTEGER, ((FrameNode) insn).local.get(0));
+    }
+
+    public void testEncodeDecodeExpandedFrames() {
+        ClassNode cn = new ClassNode();
+        new ClassReader(generate()).accept(cn, ClassReader.EXPAND_FRAMES);
+        ClassNode decoded = ClassNodeCodec.decode(ClassNodeCodec.encode(cn));
+        assertTrue(Arrays.equals(toByteArray(cn), toByteArray(decoded)));
+    }
+
+    public void testConstantPoolAttribute() {
+        ClassNode cn = new ClassNode();
+        cn.visit(V1_5, ACC_PUBLIC, "C", null, "java/lang/Object", null);
+        cn.visitAttribute(new Ref("a constant pool string"));
+        cn.visitEnd();
+        byte[] b = ClassNodeCodec.encode(cn);
+
+        // the prototype is needed to decode the attribute
+        try {
+            ClassNodeCodec.decode(b);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+
+        // the decoded attribute is written in the constant pool of a class
+        // that differs from the one it was encoded from
+        cn = ClassNodeCodec.decode(b, new Attribute[] { new Ref(null) });
+        ClassWriter cw = new ClassWriter(0);
+        cw.newUTF8("another string");
+        cn.accept(cw);
+        final Attribute[] attr = new Attribute[1];
+        new ClassReader(cw.toByteArray()).accept(new ClassVisitor(ASM4) {
+            @Override
+            public void visitAttribute(final Attribute a) {
+                attr[0] = a;
+            }
+        }, new Attribute[] { new Ref(null) }, 0);
+        assertEquals("a constant pool string", ((Ref) attr[0]).value);
+    }
+
+    public void testLabelNotInInstructions() {
+        MethodNode mn = new MethodNode(ACC_STATIC, "m", "()V", null, null);
+        mn.instructions.add(new JumpInsnNode(GOTO, new LabelNode()));
+        ClassNode cn = new ClassNode();
+        cn.methods.add(mn);
+        try {
+            ClassNodeCodec.encode(cn);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    public void testInvalid() {
+        ClassNode cn = new ClassNode();
+        cn.name = "C";
+        byte[] b = ClassNodeCodec.encode(cn);
+        assertEquals("C", ClassNodeCodec.decode(b).name);
+        try {
+            ClassNodeCodec.decode(new byte[] { 1, 2, 3, 4, 5 });
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        b[4] = (byte) (ClassNodeCodec.VERSION + 1);
+        try {
+            ClassNodeCodec.decode(b);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        b[4] = (byte) ClassNodeCodec.VERSION;
+        try {
+            ClassNodeCodec.decode(Arrays.copyOf(b, b.length - 1));
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    public void testTruncatedOrCorrupted() {
+        ClassNode cn = new ClassNode();
+        new ClassReader(generate()).accept(cn, 0);
+        byte[] b = ClassNodeCodec.encode(cn);
+        for (int i = 0; i < b.length; ++i) {
+            try {
+                ClassNodeCodec.decode(Arrays.copyOf(b, i));
+                fail();
+            } catch (IllegalArgumentException e) {
+            }
+        }
+        // corrupted data must either be decoded or be rejected with an
+        // IllegalArgumentException, without huge allocations
+        Random random = new Random(0);
+        for (int i = 0; i < 10000; ++i) {
+            byte[] c = b.clone();
+            for (int j = random.nextInt(4); j >= 0; --j) {
+                c[5 + random.nextInt(c.length - 5)] = (byte) random.nextInt();
+            }
+            try {
+                ClassNodeCodec.decode(c);
+            } catch (IllegalArgumentException e) {
+            }
+        }
+    }
+
+    /**
+     * A non standard attribute containing a constant pool index.
+     */
+    static class Ref extends Attribute {
+
+        final String value;
+
+        Ref(final String value) {
+            super("Ref");
+            this.value = value;
+        }
+
+        @Override
+        public boolean isUnknown() {
+            return false;
+        }
+
+        @Override
+        protected Attribute read(
+            final ClassReader cr,
+            final int off,
+            final int len,
+            final char[] buf,
+            final int codeOff,
+            final Label[] labels)
+        {
+            return new Ref(cr.readUTF8(off, buf));
+        }
+
+        @Override
+        protected ByteVector write(
+            final ClassWriter cw,
+            final byte[] code,
+            final int len,
+            final int maxStack,
+            final int maxLocals)
+        {
+            return new ByteVector().putShort(cw.newUTF8(value));
+        }
+    }
+
+    /**
+     * A non standard attribute with a fixed content.
+     */
+    static class Content extends Attribute {
+
+        private final byte[] content;
+
+        Content(final byte[] content) {
+            super("Content");
+            this.content = content;
+        }
+
+        @Override
+        protected ByteVector write(
+            final ClassWriter cw,
+            final byte[] code,
+            final int len,
+            final int maxStack,
+            final int maxLocals)
+        {
+            return new ByteVector().putByteArray(content, 0, content.length);
+        }
+    }
+}
@@ -650,6 +650,61 @@ public class InsnListUnitTest extends TestCase {
         assertEquals(null, insn.getNext());
     }
 
+    public void testCacheAfterModifications() {
+        InsnNode[] insns = new InsnNode[8];
+        for (int i = 0; i < insns.length; ++i) {
+            insns[i] = new InsnNode(i);
+            l1.add(insns[i]);
+        }
+        assertEquals(insns[5], l1.get(5));
+        l1.remove(insns[6]);
+        assertEquals(insns[5], l1.get(5));
+        assertEquals(insns[7], l1.get(6));
+        assertEquals(6, l1.indexOf(insns[7]));
+        InsnNode insn = new InsnNode(0);
+        l1.insertBefore(insns[2], insn);
+        assertEquals(insns[1], l1.get(1));
+        assertEquals(insn, l1.get(2));
+        assertEquals(3, l1.indexOf(insns[2]));
+        assertEquals(7, l1.indexOf(insns[7]));
+        l1.insert(insns[7], new InsnNode(0));
+        l1.insert(new InsnNode(0));
+        assertEquals(8, l1.indexOf(insns[7]));
+        assertEquals(10, l1.size());
+    }
+
+    public void testCacheRandomModifications() {
+        java.util.Random random = new java.util.Random(0);
+        for (int i = 0; i < 1000; ++i) {
+            int n = l1.size();
+            int k = random.nextInt(6);
+            if (n == 0 || k == 0) {
+                l1.add(new InsnNode(0));
+            } else {
+                AbstractInsnNode location = l1.get(random.nextInt(n));
+                if (k == 1) {
+                    l1.remove(location);
+                } else if (k == 2) {
+                    l1.insert(location, new InsnNode(0));
+                } else if (k == 3) {
+                    l1.insertBefore(location, new InsnNode(0));
+                } else if (k == 4) {
+                    l1.set(location, new InsnNode(0));
+                } else {
+                    l1.insert(new InsnNode(0));
+                }
+            }
+            AbstractInsnNode[] expected = l1.toArray();
+            if (expected.length > 0) {
+                int j = random.nextInt(expected.length);
+                assertEquals(expected[j], l1.get(j));
+            }
+            for (int j = 0; j < expected.length; ++j) {
+                assertEquals(j, l1.indexOf(expected[j]));
+            }
+        }
+    }
+
     public void testAcceptor1() {
         l1.add(new InsnNode(55));
         l1.add(new InsnNode(77));
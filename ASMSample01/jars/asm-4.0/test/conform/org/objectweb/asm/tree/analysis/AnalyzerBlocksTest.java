@@ -0,0 +1,76 @@
+/***
+ * ASM tests
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.tree.analysis;
+
+import java.util.List;
+
+import junit.framework.TestSuite;
+
+import org.objectweb.asm.AbstractTest;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * Analysis tests for {@link Analyzer#analyzeBlocks analyzeBlocks}. Checks
+ * that the frames computed with this method are the same as those computed
+ * with {@link Analyzer#analyze analyze}.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class AnalyzerBlocksTest extends AbstractTest {
+
+    public static TestSuite suite() throws Exception {
+        return new AnalyzerBlocksTest().getSuite();
+    }
+
+    @Override
+    public void test() throws Exception {
+        ClassReader cr = new ClassReader(is);
+        ClassNode cn = new ClassNode();
+        cr.accept(cn, 0);
+        List<MethodNode> methods = cn.methods;
+        for (int i = 0; i < methods.size(); ++i) {
+            MethodNode method = methods.get(i);
+            Analyzer<BasicValue> a = new Analyzer<BasicValue>(new BasicVerifier());
+            Frame<BasicValue>[] frames = a.analyze(cn.name, method);
+            Analyzer<BasicValue> b = new Analyzer<BasicValue>(new BasicVerifier());
+            b.analyzeBlocks(cn.name, method);
+            for (int j = 0; j < frames.length; ++j) {
+                Frame<BasicValue> f = b.getFrame(j);
+                String expected = frames[j] == null ? null : frames[j].toString();
+                String actual = f == null ? null : f.toString();
+                assertEquals(method.name + method.desc + " " + j,
+                        expected,
+                        actual);
+            }
+        }
+    }
+}
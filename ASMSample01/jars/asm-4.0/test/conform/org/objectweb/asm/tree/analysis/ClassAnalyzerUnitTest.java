@@ -0,0 +1,176 @@
+/***
+ * ASM tests
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.tree.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * ClassAnalyzer unit tests.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class ClassAnalyzerUnitTest extends TestCase implements Opcodes {
+
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(4,
+            new ThreadFactory() {
+                public Thread newThread(final Runnable r) {
+                    Thread t = new Thread(r);
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+
+    private static final ClassAnalyzer<BasicValue> ANALYZER = new ClassAnalyzer<BasicValue>(EXECUTOR)
+    {
+        @Override
+        protected Interpreter<BasicValue> newInterpreter(final ClassNode cn) {
+            return new SimpleVerifier(Type.getObjectType(cn.name),
+                    Type.getObjectType(cn.superName),
+                    false);
+        }
+    };
+
+    private static ClassNode generate(final String name, final int methods) {
+        ClassNode cn = new ClassNode();
+        cn.visit(V1_6, ACC_PUBLIC, name, null, "java/lang/Object", null);
+        for (int i = 0; i < methods; ++i) {
+            MethodVisitor mv = cn.visitMethod(ACC_STATIC,
+                    "m" + i,
+                    "(Z)Ljava/lang/Object;",
+                    null,
+                    null);
+            mv.visitCode();
+            Label l0 = new Label();
+            Label l1 = new Label();
+            mv.visitVarInsn(ILOAD, 0);
+            mv.visitJumpInsn(IFEQ, l0);
+            mv.visitTypeInsn(NEW, "java/lang/Integer");
+            mv.visitInsn(DUP);
+            mv.visitLdcInsn(new Integer(i));
+            mv.visitMethodInsn(INVOKESPECIAL, "java/lang/Integer", "<init>", "(I)V");
+            mv.visitJumpInsn(GOTO, l1);
+            mv.visitLabel(l0);
+            mv.visitTypeInsn(NEW, "java/lang/Long");
+            mv.visitInsn(DUP);
+            mv.visitLdcInsn(new Long(i));
+            mv.visitMethodInsn(INVOKESPECIAL, "java/lang/Long", "<init>", "(J)V");
+            mv.visitLabel(l1);
+            mv.visitInsn(ARETURN);
+            mv.visitMaxs(4, 1);
+            mv.visitEnd();
+        }
+        MethodVisitor mv = cn.visitMethod(ACC_ABSTRACT, "a", "()V", null, null);
+        mv.visitEnd();
+        cn.visitEnd();
+        return cn;
+    }
+
+    private static void assertFrames(
+        final ClassNode cn,
+        final Map<MethodNode, Frame<BasicValue>[]> frames)
+            throws AnalyzerException
+    {
+        assertEquals(cn.methods.size(), frames.size());
+        Iterator<MethodNode> i = frames.keySet().iterator();
+        for (int j = 0; j < cn.methods.size(); ++j) {
+            MethodNode mn = cn.methods.get(j);
+            assertSame(mn, i.next());
+            Analyzer<BasicValue> a = new Analyzer<BasicValue>(ANALYZER.newInterpreter(cn));
+            Frame<BasicValue>[] expected = a.analyze(cn.name, mn);
+            Frame<BasicValue>[] actual = frames.get(mn);
+            assertEquals(expected.length, actual.length);
+            for (int k = 0; k < expected.length; ++k) {
+                assertEquals(String.valueOf(expected[k]),
+                        String.valueOf(actual[k]));
+            }
+        }
+    }
+
+    public void testAnalyzeClass() throws AnalyzerException {
+        ClassNode cn = generate("C", 16);
+        Map<MethodNode, Frame<BasicValue>[]> frames = ANALYZER.analyze(cn);
+        assertFrames(cn, frames);
+        // checks that the merged types have been computed
+        Frame<BasicValue> f = frames.get(cn.methods.get(0))[13];
+        assertEquals("Ljava/lang/Number;", f.getStack(0).toString());
+        try {
+            frames.clear();
+            fail();
+        } catch (UnsupportedOperationException e) {
+        }
+    }
+
+    public void testAnalyzeClasses() throws AnalyzerException {
+        List<ClassNode> classes = new ArrayList<ClassNode>();
+        for (int i = 0; i < 8; ++i) {
+            classes.add(generate("C" + i, i));
+        }
+        Map<ClassNode, Map<MethodNode, Frame<BasicValue>[]>> result = ANALYZER.analyze(classes);
+        assertEquals(classes, new ArrayList<ClassNode>(result.keySet()));
+        for (int i = 0; i < classes.size(); ++i) {
+            assertFrames(classes.get(i), result.get(classes.get(i)));
+        }
+        try {
+            result.remove(classes.get(0));
+            fail();
+        } catch (UnsupportedOperationException e) {
+        }
+    }
+
+    public void testAnalyzeInvalidClass() {
+        ClassNode cn = generate("C", 4);
+        MethodNode mn = cn.methods.get(2);
+        mn.instructions.insert(new InsnNode(POP));
+        try {
+            ANALYZER.analyze(Arrays.asList(generate("D", 1), cn));
+            fail();
+        } catch (AnalyzerException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("C.m2(Z)Ljava/lang/Object;: "));
+            assertSame(mn.instructions.getFirst(), e.node);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/***
+ * ASM tests
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.util;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * CheckPolicy unit tests.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class CheckPolicyUnitTest extends TestCase implements Opcodes {
+
+    public void testIllegalArguments() {
+        try {
+            new CheckPolicy(3);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            new CheckPolicy(CheckPolicy.DATA_FLOW, 0, 0);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    public void testStructureLevel() {
+        CheckPolicy policy = new CheckPolicy(CheckPolicy.STRUCTURE);
+        ClassVisitor cv = new CheckClassAdapter(null, policy);
+        cv.visit(V1_5, ACC_PUBLIC, "C", null, "java/lang/Object", null);
+        cv.visitField(ACC_PUBLIC, "f", "X", null, null);
+        try {
+            cv.visitField(ACC_PUBLIC, "g", null, null, null);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            cv.visitField(ACC_PUBLIC + ACC_PRIVATE, "h", "I", null, null);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        assertEquals(0, policy.getCachedCount());
+    }
+
+    public void testDescriptorsLevel() {
+        CheckPolicy policy = new CheckPolicy(CheckPolicy.DESCRIPTORS);
+        ClassVisitor cv = new CheckClassAdapter(null, policy);
+        cv.visit(V1_5, ACC_PUBLIC, "C", null, "java/lang/Object", null);
+        cv.visitField(ACC_PUBLIC, "f", "LC;", null, null);
+        cv.visitField(ACC_PUBLIC, "g", "LC;", null, null);
+        try {
+            cv.visitField(ACC_PUBLIC, "h", "X", null, null);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            cv.visitField(ACC_PUBLIC, "i", "X", null, null);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        // "C", "java/lang/Object" and "LC;"
+        assertEquals(3, policy.getCachedCount());
+    }
+
+    public void testMemoizedKinds() {
+        CheckPolicy policy = new CheckPolicy(CheckPolicy.DESCRIPTORS);
+        policy.checkInternalName("java/lang/String", "class name");
+        policy.checkDesc("LC;", false);
+        try {
+            policy.checkMethodDesc("LC;");
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            policy.checkDesc("java/lang/String", false);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        policy.checkDesc("V", true);
+        try {
+            policy.checkDesc("V", false);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    public void testCacheSize() {
+        CheckPolicy policy = new CheckPolicy(CheckPolicy.DESCRIPTORS, 1, 2);
+        policy.checkDesc("I", false);
+        policy.checkDesc("J", false);
+        policy.checkDesc("F", false);
+        policy.checkMethodDesc("()V");
+        try {
+            policy.checkMethodDesc("I");
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        assertEquals(2, policy.getCachedCount());
+    }
+
+    public void testDataFlowSampling() {
+        CheckPolicy policy = new CheckPolicy(CheckPolicy.DATA_FLOW, 3, 0);
+        int failures = 0;
+        for (int i = 0; i < 9; ++i) {
+            try {
+                visitInvalidCode(new CheckClassAdapter(null, policy));
+            } catch (RuntimeException e) {
+                ++failures;
+            }
+        }
+        assertEquals(3, failures);
+        assertEquals(9, policy.getClassCount());
+    }
+
+    public void testDataFlowLevelOnly() {
+        CheckPolicy policy = new CheckPolicy(CheckPolicy.DESCRIPTORS);
+        visitInvalidCode(new CheckClassAdapter(null, policy));
+        try {
+            visitInvalidCode(new CheckClassAdapter(null, true));
+            fail();
+        } catch (RuntimeException e) {
+        }
+        visitInvalidCode(new CheckClassAdapter(null, false));
+    }
+
+    private static void visitInvalidCode(final ClassVisitor cv) {
+        cv.visit(V1_5, ACC_PUBLIC, "C", null, "java/lang/Object", null);
+        MethodVisitor mv = cv.visitMethod(ACC_PUBLIC, "m", "()V", null, null);
+        mv.visitCode();
+        mv.visitInsn(IRETURN);
+        mv.visitMaxs(1, 1);
+        mv.visitEnd();
+        cv.visitEnd();
+    }
+}
@@ -0,0 +1,202 @@
+/***
+ * ASM tests
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * JarPrinter unit tests.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class JarPrinterUnitTest extends TestCase implements Opcodes {
+
+    private static final int N = 50;
+
+    private byte[][] classes;
+
+    private byte[] jar;
+
+    private ExecutorService executor;
+
+    @Override
+    protected void setUp() throws IOException {
+        classes = new byte[N][];
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ZipOutputStream zos = new ZipOutputStream(bos);
+        zos.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+        zos.write("Manifest-Version: 1.0\n".getBytes("UTF-8"));
+        zos.closeEntry();
+        for (int i = 0; i < N; ++i) {
+            ClassWriter cw = new ClassWriter(0);
+            cw.visit(V1_5, ACC_PUBLIC, "pkg/C" + i, null, "java/lang/Object", null);
+            MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "m", "()I", null, null);
+            mv.visitCode();
+            mv.visitLdcInsn(new Integer(i * 1000));
+            mv.visitInsn(IRETURN);
+            mv.visitMaxs(1, 1);
+            mv.visitEnd();
+            cw.visitEnd();
+            classes[i] = cw.toByteArray();
+            zos.putNextEntry(new ZipEntry("pkg/C" + i + ".class"));
+            zos.write(classes[i]);
+            zos.closeEntry();
+        }
+        zos.close();
+        jar = bos.toByteArray();
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @Override
+    protected void tearDown() {
+        executor.shutdownNow();
+    }
+
+    public void testPrintStream() throws IOException {
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < N; ++i) {
+            StringWriter sw = new StringWriter();
+            new ClassReader(classes[i]).accept(new TraceClassVisitor(new PrintWriter(sw)),
+                    0);
+            expected.append("// pkg/C" + i + ".class\n").append(sw);
+        }
+        for (int maxPending = 1; maxPending <= 8; maxPending *= 2) {
+            JarPrinter p = new JarPrinter(false, 0, maxPending);
+            StringWriter sw = new StringWriter();
+            p.print(new ByteArrayInputStream(jar), sw, executor);
+            assertEquals(expected.toString(), sw.toString());
+            assertEquals(N, p.getClassCount());
+            assertEquals(expected.length(), p.getTextSize());
+        }
+    }
+
+    public void testPrintFiles() throws IOException {
+        File dir = new File(System.getProperty("java.io.tmpdir"),
+                "JarPrinterUnitTest" + System.nanoTime());
+        try {
+            new JarPrinter(true, 0).print(new ByteArrayInputStream(jar),
+                    dir,
+                    executor);
+            for (int i = 0; i < N; ++i) {
+                File f = new File(dir, "pkg/C" + i + ".java");
+                assertTrue(f.exists());
+                StringWriter sw = new StringWriter();
+                new ClassReader(classes[i]).accept(new TraceClassVisitor(null,
+                        new ASMifier(),
+                        new PrintWriter(sw)), 0);
+                assertEquals(sw.toString(), read(f));
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    public void testEntryOutsideDirectory() throws IOException {
+        File dir = new File(System.getProperty("java.io.tmpdir"),
+                "JarPrinterUnitTest" + System.nanoTime());
+        File out = new File(dir, "out");
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ZipOutputStream zos = new ZipOutputStream(bos);
+        zos.putNextEntry(new ZipEntry("../C.class"));
+        zos.write(classes[0]);
+        zos.closeEntry();
+        zos.close();
+        try {
+            new JarPrinter(false, 0).print(new ByteArrayInputStream(bos.toByteArray()),
+                    out,
+                    executor);
+            fail();
+        } catch (IOException e) {
+        } finally {
+            assertFalse(new File(dir, "C.txt").exists());
+            delete(dir);
+        }
+    }
+
+    public void testInvalidClass() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ZipOutputStream zos = new ZipOutputStream(bos);
+        zos.putNextEntry(new ZipEntry("pkg/Invalid.class"));
+        zos.write(new byte[] { 1, 2, 3 });
+        zos.closeEntry();
+        zos.close();
+        try {
+            new JarPrinter(false, 0).print(new ByteArrayInputStream(bos.toByteArray()),
+                    new StringWriter(),
+                    executor);
+            fail();
+        } catch (RuntimeException e) {
+            // expected
+        }
+    }
+
+    private static String read(final File f) throws IOException {
+        InputStream is = new FileInputStream(f);
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            byte[] buff = new byte[4096];
+            int n;
+            while ((n = is.read(buff)) != -1) {
+                bos.write(buff, 0, n);
+            }
+            return new String(bos.toByteArray(), "UTF-8");
+        } finally {
+            is.close();
+        }
+    }
+
+    private static void delete(final File f) {
+        File[] files = f.listFiles();
+        if (files != null) {
+            for (int i = 0; i < files.length; ++i) {
+                delete(files[i]);
+            }
+        }
+        f.delete();
+    }
+}
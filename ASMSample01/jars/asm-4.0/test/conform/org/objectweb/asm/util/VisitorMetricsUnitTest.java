@@ -0,0 +1,189 @@
+/***
+ * ASM tests
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.util;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * VisitorMetrics unit tests.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class VisitorMetricsUnitTest extends TestCase implements Opcodes {
+
+    private static final byte[] CLASS = generate();
+
+    private static byte[] generate() {
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(V1_6, ACC_PUBLIC, "C", null, "java/lang/Object", null);
+        cw.visitField(ACC_PUBLIC, "f", "I", null, null).visitEnd();
+        cw.visitField(ACC_PUBLIC, "g", "I", null, null).visitEnd();
+        for (int i = 0; i < 2; ++i) {
+            MethodVisitor mv = cw.visitMethod(ACC_STATIC, "m" + i, "()V", null, null);
+            mv.visitCode();
+            for (int j = 0; j < 10; ++j) {
+                mv.visitInsn(NOP);
+            }
+            mv.visitInsn(RETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * A class visitor that spends some time in visitEnd, and allocates some
+     * memory.
+     */
+    static class Slow extends ClassVisitor {
+
+        byte[] buffer;
+
+        Slow(final ClassVisitor cv) {
+            super(ASM4, cv);
+        }
+
+        @Override
+        public void visitEnd() {
+            buffer = new byte[1000000];
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                fail();
+            }
+            super.visitEnd();
+        }
+    }
+
+    public void testDisabled() {
+        VisitorMetrics metrics = new VisitorMetrics(false);
+        ClassWriter cw = new ClassWriter(0);
+        assertSame(cw, metrics.wrap("writer", cw));
+        metrics.accept(new ClassReader(CLASS), cw, 0);
+        assertEquals(0, metrics.getStages().size());
+    }
+
+    public void testCounts() {
+        VisitorMetrics metrics = new VisitorMetrics(true);
+        for (int i = 0; i < 2; ++i) {
+            ClassVisitor cv = metrics.wrap("writer", new ClassWriter(0));
+            cv = metrics.wrap("adapter", new ClassVisitor(ASM4, cv) {
+            });
+            metrics.accept(new ClassReader(CLASS), cv, 0);
+        }
+        assertEquals(3, metrics.getStages().size());
+        StageMetrics stage = metrics.getStage(VisitorMetrics.CLASS_READER);
+        assertEquals(2, stage.getClassCount());
+        assertEquals(0, stage.getMethodCount());
+        assertTrue(stage.getTime() > 0);
+        for (int i = 0; i < 2; ++i) {
+            stage = metrics.getStages().get(i);
+            assertEquals(i == 0 ? "writer" : "adapter", stage.getName());
+            assertEquals(2, stage.getClassCount());
+            assertEquals(4, stage.getFieldCount());
+            assertEquals(4, stage.getMethodCount());
+            assertEquals(44, stage.getInstructionCount());
+            assertTrue(stage.getTime() > 0);
+            assertEquals(0, stage.getAllocatedBytes());
+        }
+        metrics.reset();
+        assertEquals(0, stage.getClassCount());
+        assertEquals(0, stage.getTime());
+    }
+
+    public void testExclusiveTime() {
+        VisitorMetrics metrics = new VisitorMetrics(true);
+        ClassVisitor cv = metrics.wrap("slow", new Slow(new ClassWriter(0)));
+        cv = metrics.wrap("fast", new ClassVisitor(ASM4, cv) {
+        });
+        metrics.accept(new ClassReader(CLASS), cv, 0);
+        long slow = metrics.getStage("slow").getTime();
+        long fast = metrics.getStage("fast").getTime();
+        long reader = metrics.getStage(VisitorMetrics.CLASS_READER).getTime();
+        assertTrue(slow >= 20000000L);
+        assertTrue(fast < 20000000L);
+        assertTrue(reader < 20000000L);
+    }
+
+    public void testAllocation() {
+        if (!VisitorMetrics.isAllocationTrackingSupported()) {
+            return;
+        }
+        VisitorMetrics metrics = new VisitorMetrics(true);
+        metrics.setAllocationTracking(true);
+        ClassVisitor cv = metrics.wrap("slow", new Slow(null));
+        cv = metrics.wrap("fast", new ClassVisitor(ASM4, cv) {
+        });
+        metrics.accept(new ClassReader(CLASS), cv, 0);
+        assertTrue(metrics.getStage("slow").getAllocatedBytes() >= 1000000);
+        assertTrue(metrics.getStage("fast").getAllocatedBytes() < 1000000);
+    }
+
+    public void testToggle() {
+        VisitorMetrics metrics = new VisitorMetrics(true);
+        ClassVisitor cv = metrics.wrap("writer", new ClassWriter(0));
+        metrics.setEnabled(false);
+        new ClassReader(CLASS).accept(cv, 0);
+        assertEquals(0, metrics.getStage("writer").getClassCount());
+        metrics.setEnabled(true);
+        cv = metrics.wrap("writer", new ClassWriter(0));
+        new ClassReader(CLASS).accept(cv, 0);
+        assertEquals(1, metrics.getStage("writer").getClassCount());
+    }
+
+    public void testMBeans() throws Exception {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        VisitorMetrics metrics = new VisitorMetrics(true);
+        metrics.getStage("a");
+        metrics.registerMBeans(server, "test");
+        ObjectName a = new ObjectName("test:type=VisitorMetrics,name=\"a\"");
+        ObjectName b = new ObjectName("test:type=VisitorMetrics,name=\"b\"");
+        assertTrue(server.isRegistered(a));
+        new ClassReader(CLASS).accept(metrics.wrap("b", null), 0);
+        assertTrue(server.isRegistered(b));
+        assertEquals(new Long(2), server.getAttribute(b, "MethodCount"));
+        server.invoke(b, "reset", null, null);
+        assertEquals(new Long(0), server.getAttribute(b, "MethodCount"));
+        metrics.unregisterMBeans();
+        assertFalse(server.isRegistered(a));
+        assertFalse(server.isRegistered(b));
+    }
+}
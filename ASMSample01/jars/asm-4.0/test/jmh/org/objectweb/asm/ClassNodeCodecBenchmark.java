@@ -0,0 +1,101 @@
+/***
+ * ASM performance test: measures the performances of asm package
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.ClassNodeCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks of the loading of {@link ClassNode} trees, either from the
+ * bytecode of the classes, or from their {@link ClassNodeCodec} form. The
+ * corpus is the same as in {@link ClassReaderWriterBenchmark}, and each
+ * benchmark invocation also loads exactly one class.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(2)
+@State(Scope.Thread)
+public class ClassNodeCodecBenchmark {
+
+    private byte[][] classes;
+
+    private byte[][] encodedClasses;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void loadCorpus() throws IOException {
+        classes = ClassReaderWriterBenchmark.readCorpus();
+        encodedClasses = new byte[classes.length][];
+        for (int i = 0; i < classes.length; ++i) {
+            ClassNode cn = new ClassNode();
+            new ClassReader(classes[i]).accept(cn, 0);
+            encodedClasses[i] = ClassNodeCodec.encode(cn);
+        }
+    }
+
+    private int nextIndex() {
+        int i = next;
+        if (++next == classes.length) {
+            next = 0;
+        }
+        return i;
+    }
+
+    @Benchmark
+    public ClassNode read() {
+        ClassNode cn = new ClassNode();
+        new ClassReader(classes[nextIndex()]).accept(cn, 0);
+        return cn;
+    }
+
+    @Benchmark
+    public ClassNode decode() {
+        return ClassNodeCodec.decode(encodedClasses[nextIndex()]);
+    }
+}
@@ -0,0 +1,210 @@
+/***
+ * ASM performance test: measures the performances of asm package
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks of {@link ClassReader} / {@link ClassWriter} round-trips.
+ * Each benchmark invocation processes exactly one class of a fixed corpus,
+ * cycling through it, so that the reported throughput is in classes per
+ * second and the <tt>gc.alloc.rate.norm</tt> metric of the <tt>gc</tt>
+ * profiler is in bytes allocated per class.
+ * <p>
+ * The corpus is read from the jar file or directory given by the
+ * <tt>asm.bench.corpus</tt> system property, restricted to the classes whose
+ * name contains the <tt>asm.test.class</tt> system property, if set.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(2)
+@State(Scope.Thread)
+public class ClassReaderWriterBenchmark {
+
+    private byte[][] classes;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void loadCorpus() throws IOException {
+        classes = readCorpus();
+    }
+
+    private byte[] nextClass() {
+        byte[] b = classes[next];
+        if (++next == classes.length) {
+            next = 0;
+        }
+        return b;
+    }
+
+    @Benchmark
+    public ClassReader read() {
+        ClassReader cr = new ClassReader(nextClass());
+        cr.accept(new ClassVisitor(Opcodes.ASM4) {
+        }, 0);
+        return cr;
+    }
+
+    @Benchmark
+    public byte[] copy() {
+        ClassReader cr = new ClassReader(nextClass());
+        ClassWriter cw = new ClassWriter(0);
+        cr.accept(cw, 0);
+        return cw.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] copyPool() {
+        ClassReader cr = new ClassReader(nextClass());
+        ClassWriter cw = new ClassWriter(cr, 0);
+        cr.accept(cw, 0);
+        return cw.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] computeMaxs() {
+        ClassReader cr = new ClassReader(nextClass());
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cr.accept(cw, 0);
+        return cw.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] computeFrames() {
+        ClassReader cr = new ClassReader(nextClass());
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        cr.accept(cw, ClassReader.SKIP_FRAMES);
+        return cw.toByteArray();
+    }
+
+    // ------------------------------------------------------------------------
+    // Corpus loading
+    // ------------------------------------------------------------------------
+
+    /**
+     * Reads the classes of the corpus.
+     *
+     * @return the bytecode of the classes of the corpus.
+     * @throws IOException if the corpus cannot be read.
+     */
+    static byte[][] readCorpus() throws IOException {
+        String corpus = System.getProperty("asm.bench.corpus");
+        if (corpus == null) {
+            throw new IllegalStateException("asm.bench.corpus is not set");
+        }
+        List<byte[]> found = new ArrayList<byte[]>();
+        File f = new File(corpus);
+        if (f.isDirectory()) {
+            loadDirectory(f, found);
+        } else {
+            loadJar(f, found);
+        }
+        if (found.isEmpty()) {
+            throw new IllegalStateException("No classes found in " + corpus);
+        }
+        return found.toArray(new byte[found.size()][]);
+    }
+
+    private static boolean accept(final String name) {
+        String clazz = System.getProperty("asm.test.class");
+        return name.endsWith(".class")
+                && (clazz == null || clazz.length() == 0 || name.replace('/',
+                        '.').indexOf(clazz) != -1);
+    }
+
+    private static void loadDirectory(final File dir, final List<byte[]> found)
+            throws IOException
+    {
+        File[] files = dir.listFiles();
+        Arrays.sort(files);
+        for (int i = 0; i < files.length; ++i) {
+            File file = files[i];
+            if (file.isDirectory()) {
+                loadDirectory(file, found);
+            } else if (accept(file.getPath())) {
+                InputStream is = new FileInputStream(file);
+                try {
+                    found.add(new ClassReader(is).b);
+                } finally {
+                    is.close();
+                }
+            }
+        }
+    }
+
+    private static void loadJar(final File jar, final List<byte[]> found)
+            throws IOException
+    {
+        ZipFile zip = new ZipFile(jar);
+        try {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry e = entries.nextElement();
+                if (accept(e.getName())) {
+                    InputStream is = zip.getInputStream(e);
+                    try {
+                        found.add(new ClassReader(is).b);
+                    } finally {
+                        is.close();
+                    }
+                }
+            }
+        } finally {
+            zip.close();
+        }
+    }
+}
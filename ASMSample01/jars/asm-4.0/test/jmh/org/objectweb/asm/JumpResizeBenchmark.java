@@ -0,0 +1,128 @@
+/***
+ * ASM performance test: measures the performances of asm package
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks of the resizing of jump instructions by {@link ClassWriter}
+ * (see <tt>MethodWriter.resizeInstructions</tt>). Each benchmark invocation
+ * generates a class with a single method containing <tt>branches</tt> forward
+ * conditional jumps. The offset of each jump is just below 32768, except for
+ * the last one, whose offset is just above. Resizing the last jump makes all
+ * the other jumps overflow, so that all of them must be resized, in cascade.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(2)
+@State(Scope.Thread)
+public class JumpResizeBenchmark {
+
+    /**
+     * The offset of the jumps that do not need to be resized initially.
+     */
+    private static final int OFFSET = Short.MAX_VALUE - 4;
+
+    @Param({ "100", "1000", "3000" })
+    public int branches;
+
+    private void generate(final ClassVisitor cv) {
+        cv.visit(Opcodes.V1_6,
+                Opcodes.ACC_PUBLIC,
+                "Jumps",
+                null,
+                "java/lang/Object",
+                null);
+        MethodVisitor mv = cv.visitMethod(Opcodes.ACC_STATIC,
+                "m",
+                "(I)V",
+                null,
+                null);
+        mv.visitCode();
+        Label[] labels = new Label[branches];
+        // each block takes 4 bytes: ILOAD (1 byte) and IFEQ (3 bytes)
+        for (int i = 0; i < branches; ++i) {
+            labels[i] = new Label();
+            mv.visitVarInsn(Opcodes.ILOAD, 0);
+            mv.visitJumpInsn(Opcodes.IFEQ, labels[i]);
+        }
+        // the IFEQ of block i is at offset 4 * i + 1, and jumps to
+        // 4 * i + 1 + OFFSET, or 4 * i + 1 + OFFSET + 5 for the last block
+        int offset = 4 * branches;
+        for (int i = 0; i < branches; ++i) {
+            int target = 4 * i + 1 + OFFSET + (i == branches - 1 ? 5 : 0);
+            while (offset < target) {
+                mv.visitInsn(Opcodes.NOP);
+                ++offset;
+            }
+            mv.visitLabel(labels[i]);
+        }
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(1, 1);
+        mv.visitEnd();
+        cv.visitEnd();
+    }
+
+    @Benchmark
+    public byte[] write() {
+        ClassWriter cw = new ClassWriter(0);
+        generate(cw);
+        return cw.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] computeMaxs() {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        generate(cw);
+        return cw.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] computeFrames() {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        generate(cw);
+        return cw.toByteArray();
+    }
+}
@@ -0,0 +1,151 @@
+package eu.mihosoft.vrl.asm;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+
+/**
+ * Defines generated classes. Two backends are available:
+ * <ul>
+ * <li>hidden classes, defined with
+ * <code>MethodHandles.Lookup.defineHiddenClass</code> (Java 15 or later).
+ * Hidden classes are not registered in any class loader, so each of them can
+ * be unloaded as soon as it is no longer referenced, and their definition
+ * skips the class loader bookkeeping. They can only be defined in the package
+ * of the lookup class, and cannot be found by name: they must be used through
+ * their {@link Class} object, e.g., to instantiate {@link ASMInterface}
+ * implementations.</li>
+ * <li>a {@link Sample01.DynamicClassLoader}, used when hidden classes are not
+ * supported by the running VM, and for classes in other packages.</li>
+ * </ul>
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class ClassDefiner {
+
+    /**
+     * The <code>Lookup.defineHiddenClass(byte[], boolean,
+     * ClassOption...)</code> method, with the option array type erased to
+     * <code>Object</code>, or <code>null</code> if hidden classes are not
+     * supported.
+     */
+    private static final MethodHandle DEFINE_HIDDEN_CLASS;
+
+    /**
+     * An empty <code>ClassOption</code> array.
+     */
+    private static final Object NO_OPTIONS;
+
+    static {
+        MethodHandle defineHiddenClass = null;
+        Object noOptions = null;
+        try {
+            Class<?> option = Class.forName(
+                    "java.lang.invoke.MethodHandles$Lookup$ClassOption");
+            noOptions = Array.newInstance(option, 0);
+            defineHiddenClass = MethodHandles.publicLookup().findVirtual(
+                    MethodHandles.Lookup.class, "defineHiddenClass",
+                    MethodType.methodType(MethodHandles.Lookup.class,
+                    byte[].class, boolean.class, noOptions.getClass()));
+            defineHiddenClass = defineHiddenClass.asFixedArity().asType(
+                    MethodType.methodType(MethodHandles.Lookup.class,
+                    MethodHandles.Lookup.class, byte[].class, boolean.class,
+                    Object.class));
+        } catch (ReflectiveOperationException ex) {
+            // hidden classes are not supported
+            defineHiddenClass = null;
+        }
+        DEFINE_HIDDEN_CLASS = defineHiddenClass;
+        NO_OPTIONS = noOptions;
+    }
+
+    private final MethodHandles.Lookup lookup;
+    private final String packageName;
+    private final Sample01.DynamicClassLoader loader;
+    private final boolean hidden;
+
+    /**
+     * Creates a class definer that defines hidden classes if possible.
+     *
+     * @param lookup lookup with full privilege access, whose lookup class is
+     * in the package of the hidden classes, e.g.,
+     * <code>MethodHandles.lookup()</code>
+     * @param loader loader used for the classes that cannot be defined as
+     * hidden classes
+     */
+    public ClassDefiner(MethodHandles.Lookup lookup,
+            Sample01.DynamicClassLoader loader) {
+        this(lookup, loader, true);
+    }
+
+    /**
+     * Creates a class definer.
+     *
+     * @param lookup lookup with full privilege access, whose lookup class is
+     * in the package of the hidden classes, e.g.,
+     * <code>MethodHandles.lookup()</code>
+     * @param loader loader used for the classes that cannot be defined as
+     * hidden classes
+     * @param hidden <code>false</code> to always use the loader
+     */
+    public ClassDefiner(MethodHandles.Lookup lookup,
+            Sample01.DynamicClassLoader loader, boolean hidden) {
+        String name = lookup.lookupClass().getName();
+        this.lookup = lookup;
+        this.packageName = name.substring(0, name.lastIndexOf('.') + 1)
+                .replace('.', '/');
+        this.loader = loader;
+        this.hidden = hidden && DEFINE_HIDDEN_CLASS != null;
+    }
+
+    /**
+     * Indicates whether hidden classes are supported by the running VM.
+     *
+     * @return <code>true</code> if hidden classes are supported;
+     * <code>false</code> otherwise
+     */
+    public static boolean isHiddenClassSupported() {
+        return DEFINE_HIDDEN_CLASS != null;
+    }
+
+    /**
+     * Indicates whether the specified class would be defined as a hidden
+     * class.
+     *
+     * @param className internal name of the class, e.g.,
+     * <code>eu/mihosoft/vrl/asm/ASMClass</code>
+     * @return <code>true</code> if the class would be defined as a hidden
+     * class; <code>false</code> otherwise
+     */
+    public boolean isHidden(String className) {
+        return hidden && className.startsWith(packageName)
+                && className.indexOf('/', packageName.length()) < 0;
+    }
+
+    /**
+     * Defines and initializes a class.
+     *
+     * @param className internal name of the class, e.g.,
+     * <code>eu/mihosoft/vrl/asm/ASMClass</code>
+     * @param bytecode bytecode of the class
+     * @return the defined class
+     */
+    public Class<?> define(String className, byte[] bytecode) {
+        if (!isHidden(className)) {
+            return loader.define(className.replace('/', '.'), bytecode);
+        }
+        try {
+            MethodHandles.Lookup l = (MethodHandles.Lookup)
+                    DEFINE_HIDDEN_CLASS.invokeExact(
+                    lookup, bytecode, true, NO_OPTIONS);
+            return l.lookupClass();
+        } catch (RuntimeException ex) {
+            throw ex;
+        } catch (Error ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+}
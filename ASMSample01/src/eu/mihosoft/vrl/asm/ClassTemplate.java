@@ -0,0 +1,363 @@
+package eu.mihosoft.vrl.asm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.objectweb.asm.ClassReader;
+
+/**
+ * A compiled class whose constants can be replaced without generating the
+ * class again. The template is compiled once, with placeholder values for the
+ * parameters, e.g., with {@link Sample01#compile()}. The constant pool slots
+ * that contain these placeholders are located once, when the template is
+ * created. {@link #instantiate instantiate} then copies the template bytecode
+ * and patches these slots, which is much faster than visiting a class writer.
+ * <p>
+ * Two kinds of placeholders are supported:
+ * <ul>
+ * <li>{@link Integer}, {@link Long}, {@link Float} and {@link Double}
+ * values: the constant pool entry with this value is patched. Small
+ * <code>int</code> values that are pushed with <code>ICONST</code>,
+ * <code>BIPUSH</code> or <code>SIPUSH</code> instructions are not in the
+ * constant pool, so such placeholders must be pushed with
+ * <code>visitLdcInsn</code>, or must be large values. The placeholder value
+ * must not be used for any other purpose in the template.</li>
+ * <li>{@link String} values: every occurrence of the placeholder in the UTF8
+ * constant pool entries is replaced. This can be used to rename the class
+ * (its internal name also occurs in descriptors), or to change string
+ * constants, member names, etc.</li>
+ * </ul>
+ * Instances of this class are immutable and can be used concurrently.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class ClassTemplate {
+
+    private static final int UTF8 = 1;
+    private static final int INT = 3;
+    private static final int FLOAT = 4;
+    private static final int LONG = 5;
+    private static final int DOUBLE = 6;
+
+    /**
+     * The bytecode of the template.
+     */
+    private final byte[] template;
+
+    /**
+     * The placeholders of the parameters.
+     */
+    private final Object[] placeholders;
+
+    /**
+     * The slots to patch, sorted by offset.
+     */
+    private final Slot[] slots;
+
+    /**
+     * Creates a template.
+     *
+     * @param template bytecode of the template class
+     * @param placeholders placeholder values of the parameters
+     * @throws IllegalArgumentException if a placeholder has an unsupported
+     * type, is duplicated, or does not occur in the constant pool
+     */
+    public ClassTemplate(byte[] template, Object... placeholders) {
+        this.template = template.clone();
+        this.placeholders = placeholders.clone();
+
+        Set<Object> distinct = new HashSet<Object>();
+        for (Object placeholder : placeholders) {
+            if (!(placeholder instanceof String
+                    || placeholder instanceof Integer
+                    || placeholder instanceof Long
+                    || placeholder instanceof Float
+                    || placeholder instanceof Double)
+                    || "".equals(placeholder)) {
+                throw new IllegalArgumentException(
+                        "Unsupported placeholder: " + placeholder);
+            }
+            if (!distinct.add(placeholder)) {
+                throw new IllegalArgumentException(
+                        "Duplicate placeholder: " + placeholder);
+            }
+        }
+
+        ClassReader cr = new ClassReader(this.template);
+        boolean[] found = new boolean[placeholders.length];
+        List<Slot> slotList = new ArrayList<Slot>();
+
+        for (int i = 1; i < cr.getItemCount(); ++i) {
+            int offset = cr.getItem(i);
+            if (offset == 0) {
+                // second slot of a long or double
+                continue;
+            }
+            int tag = this.template[offset - 1];
+            if (tag == UTF8) {
+                String value = readUTF8(offset);
+                List<Integer> params = new ArrayList<Integer>();
+                for (int p = 0; p < placeholders.length; ++p) {
+                    if (placeholders[p] instanceof String
+                            && value.contains((String) placeholders[p])) {
+                        params.add(p);
+                        found[p] = true;
+                    }
+                }
+                if (!params.isEmpty()) {
+                    slotList.add(new Slot(offset, UTF8, value, params));
+                }
+            } else if (tag == INT || tag == FLOAT
+                    || tag == LONG || tag == DOUBLE) {
+                for (int p = 0; p < placeholders.length; ++p) {
+                    if (matches(cr, offset, tag, placeholders[p])) {
+                        slotList.add(new Slot(offset, tag, null,
+                                Arrays.asList(p)));
+                        found[p] = true;
+                    }
+                }
+            }
+        }
+
+        for (int p = 0; p < placeholders.length; ++p) {
+            Object placeholder = placeholders[p];
+            if (!found[p]) {
+                throw new IllegalArgumentException(
+                        "Placeholder not found in constant pool: "
+                        + placeholder);
+            }
+        }
+
+        this.slots = slotList.toArray(new Slot[slotList.size()]);
+    }
+
+    /**
+     * Returns the number of parameters of this template.
+     *
+     * @return the number of parameters of this template
+     */
+    public int getParameterCount() {
+        return placeholders.length;
+    }
+
+    /**
+     * Creates a class from this template.
+     *
+     * @param values values of the parameters, with the same types as the
+     * placeholders
+     * @return the bytecode of the new class
+     * @throws IllegalArgumentException if the values do not match the
+     * placeholders
+     */
+    public byte[] instantiate(Object... values) {
+        if (values.length != placeholders.length) {
+            throw new IllegalArgumentException("Expected "
+                    + placeholders.length + " values, got " + values.length);
+        }
+        for (int p = 0; p < values.length; ++p) {
+            if (values[p] == null
+                    || values[p].getClass() != placeholders[p].getClass()) {
+                throw new IllegalArgumentException("Value " + p
+                        + " must be a " + placeholders[p].getClass().getName());
+            }
+        }
+
+        // encodes the new UTF8 entries, and computes the new size
+        byte[][] utf8 = new byte[slots.length][];
+        int length = template.length;
+        for (int i = 0; i < slots.length; ++i) {
+            Slot slot = slots[i];
+            if (slot.tag == UTF8) {
+                String value = slot.value;
+                for (int p : slot.params) {
+                    value = value.replace(
+                            (String) placeholders[p], (String) values[p]);
+                }
+                utf8[i] = encodeUTF8(value);
+                length += utf8[i].length - slot.length;
+            }
+        }
+
+        // copies the template and patches the slots
+        byte[] b = new byte[length];
+        int src = 0;
+        int dst = 0;
+        for (int i = 0; i < slots.length; ++i) {
+            Slot slot = slots[i];
+            int n = slot.offset - src;
+            System.arraycopy(template, src, b, dst, n);
+            src += n;
+            dst += n;
+            if (slot.tag == UTF8) {
+                System.arraycopy(utf8[i], 0, b, dst, utf8[i].length);
+                dst += utf8[i].length;
+            } else {
+                writeConstant(b, dst, slot.tag, values[slot.params[0]]);
+                dst += slot.length;
+            }
+            src += slot.length;
+        }
+        System.arraycopy(template, src, b, dst, template.length - src);
+        return b;
+    }
+
+    private static boolean matches(
+            ClassReader cr, int offset, int tag, Object placeholder) {
+        switch (tag) {
+            case INT:
+                return placeholder instanceof Integer
+                        && cr.readInt(offset) == (Integer) placeholder;
+            case FLOAT:
+                return placeholder instanceof Float
+                        && cr.readInt(offset) == Float.floatToRawIntBits(
+                        (Float) placeholder);
+            case LONG:
+                return placeholder instanceof Long
+                        && cr.readLong(offset) == (Long) placeholder;
+            default:
+                return placeholder instanceof Double
+                        && cr.readLong(offset) == Double.doubleToRawLongBits(
+                        (Double) placeholder);
+        }
+    }
+
+    private static void writeConstant(
+            byte[] b, int offset, int tag, Object value) {
+        long v;
+        int n;
+        switch (tag) {
+            case INT:
+                v = (Integer) value;
+                n = 4;
+                break;
+            case FLOAT:
+                v = Float.floatToRawIntBits((Float) value);
+                n = 4;
+                break;
+            case LONG:
+                v = (Long) value;
+                n = 8;
+                break;
+            default:
+                v = Double.doubleToRawLongBits((Double) value);
+                n = 8;
+                break;
+        }
+        for (int i = n - 1; i >= 0; --i) {
+            b[offset + i] = (byte) v;
+            v >>>= 8;
+        }
+    }
+
+    /**
+     * Decodes the UTF8 constant pool entry at the given offset.
+     *
+     * @param offset offset of the length of the entry
+     * @return the decoded string
+     */
+    private String readUTF8(int offset) {
+        int end = offset + 2 + (((template[offset] & 0xFF) << 8)
+                | (template[offset + 1] & 0xFF));
+        StringBuilder sb = new StringBuilder();
+        int i = offset + 2;
+        while (i < end) {
+            int c = template[i++] & 0xFF;
+            if (c < 0x80) {
+                sb.append((char) c);
+            } else if (c < 0xE0) {
+                sb.append((char) (((c & 0x1F) << 6)
+                        | (template[i++] & 0x3F)));
+            } else {
+                sb.append((char) (((c & 0x0F) << 12)
+                        | ((template[i++] & 0x3F) << 6)
+                        | (template[i++] & 0x3F)));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Encodes a UTF8 constant pool entry, including its length.
+     *
+     * @param s the string to encode
+     * @return the encoded entry
+     * @throws IllegalArgumentException if the encoded string is too long
+     */
+    private static byte[] encodeUTF8(String s) {
+        int n = 0;
+        for (int i = 0; i < s.length(); ++i) {
+            char c = s.charAt(i);
+            n += c >= 0x01 && c <= 0x7F ? 1 : c > 0x7FF ? 3 : 2;
+        }
+        if (n > 65535) {
+            throw new IllegalArgumentException("String too long: " + n);
+        }
+        byte[] b = new byte[n + 2];
+        b[0] = (byte) (n >>> 8);
+        b[1] = (byte) n;
+        int j = 2;
+        for (int i = 0; i < s.length(); ++i) {
+            char c = s.charAt(i);
+            if (c >= 0x01 && c <= 0x7F) {
+                b[j++] = (byte) c;
+            } else if (c > 0x7FF) {
+                b[j++] = (byte) (0xE0 | ((c >> 12) & 0x0F));
+                b[j++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                b[j++] = (byte) (0x80 | (c & 0x3F));
+            } else {
+                b[j++] = (byte) (0xC0 | ((c >> 6) & 0x1F));
+                b[j++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return b;
+    }
+
+    /**
+     * A constant pool entry that depends on the parameters.
+     */
+    private final class Slot {
+
+        /**
+         * Offset of the entry content, after its tag.
+         */
+        final int offset;
+        /**
+         * Length of the entry content in the template.
+         */
+        final int length;
+        final int tag;
+        /**
+         * Template value of a UTF8 entry.
+         */
+        final String value;
+        /**
+         * Indexes of the parameters used in this entry.
+         */
+        final int[] params;
+
+        Slot(int offset, int tag, String value, List<Integer> params) {
+            this.offset = offset;
+            this.tag = tag;
+            this.value = value;
+            this.params = new int[params.size()];
+            for (int i = 0; i < this.params.length; ++i) {
+                this.params[i] = params.get(i);
+            }
+            switch (tag) {
+                case UTF8:
+                    this.length = 2 + (((template[offset] & 0xFF) << 8)
+                            | (template[offset + 1] & 0xFF));
+                    break;
+                case LONG:
+                case DOUBLE:
+                    this.length = 8;
+                    break;
+                default:
+                    this.length = 4;
+                    break;
+            }
+        }
+    }
+}
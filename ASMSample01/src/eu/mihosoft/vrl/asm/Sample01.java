@@ -1,5 +1,9 @@
 package eu.mihosoft.vrl.asm;
 
+import java.lang.invoke.MethodHandles;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
@@ -167,10 +171,27 @@ public class Sample01 implements Opcodes {
     }
 
     /**
-     * The dynamic class loader that will load our handcrafted class.
+     * The dynamic class loader that will load our handcrafted class. Classes
+     * can either be defined immediately with {@link #define define}, or be
+     * added in batches with {@link #addClasses addClasses}, in which case
+     * they are only defined when they are first loaded. This allows generated
+     * classes to reference each other in any order, and avoids defining (and
+     * linking) classes that are never used. This loader is parallel capable:
+     * classes with different names are loaded concurrently.
      */
     public static class DynamicClassLoader extends ClassLoader {
 
+        static {
+            registerAsParallelCapable();
+        }
+
+        /**
+         * The bytecode of the added classes that are not defined yet, indexed
+         * by binary class name.
+         */
+        private final ConcurrentMap<String, byte[]> pending =
+                new ConcurrentHashMap<String, byte[]>();
+
         public DynamicClassLoader(ClassLoader parent) {
             super(parent);
         }
@@ -178,7 +199,65 @@ public class Sample01 implements Opcodes {
         public Class<?> define(String className, byte[] bytecode) {
             return super.defineClass(className, bytecode, 0, bytecode.length);
         }
-    };
+
+        /**
+         * Adds a class that will be defined when it is first loaded.
+         *
+         * @param className binary name of the class, e.g.
+         * <code>eu.mihosoft.vrl.asm.ASMClass</code>
+         * @param bytecode bytecode of the class
+         * @throws IllegalArgumentException if a class with the same name has
+         * already been added
+         */
+        public void addClass(String className, byte[] bytecode) {
+            if (pending.putIfAbsent(className, bytecode) != null) {
+                throw new IllegalArgumentException(
+                        "Class already added: " + className);
+            }
+        }
+
+        /**
+         * Adds several classes that will be defined when they are first
+         * loaded.
+         *
+         * @param classes bytecode of the classes, indexed by binary class
+         * name
+         * @throws IllegalArgumentException if a class with the same name has
+         * already been added
+         */
+        public void addClasses(Map<String, byte[]> classes) {
+            for (Map.Entry<String, byte[]> e : classes.entrySet()) {
+                addClass(e.getKey(), e.getValue());
+            }
+        }
+
+        /**
+         * Indicates whether the specified class has been added and is not
+         * defined yet.
+         *
+         * @param className binary name of the class
+         * @return <code>true</code> if the class is pending;
+         * <code>false</code> otherwise
+         */
+        public boolean isPending(String className) {
+            return pending.containsKey(className);
+        }
+
+        @Override
+        protected Class<?> findClass(String className)
+                throws ClassNotFoundException {
+            // loadClass holds the lock of this class name, so only one thread
+            // can define it; the bytecode is released only once defined, so
+            // that a failed definition can be reported again by later loads
+            byte[] bytecode = pending.get(className);
+            if (bytecode == null) {
+                throw new ClassNotFoundException(className);
+            }
+            Class<?> c = defineClass(className, bytecode, 0, bytecode.length);
+            pending.remove(className);
+            return c;
+        }
+    }
 
     public static void main(String[] args) throws Exception {
 
@@ -189,7 +268,8 @@ public class Sample01 implements Opcodes {
 
         System.out.println(">> Create the handcrafted class");
 
-        Class<?> testClass = loader.define((CLASS_NAME).replace("/", "."), compile());
+        loader.addClass(CLASS_NAME.replace("/", "."), compile());
+        Class<?> testClass = loader.loadClass(CLASS_NAME.replace("/", "."));
         ASMInterface asmClass = (ASMInterface) testClass.newInstance();
         
         System.out.println(">> Test the instance:\n");
@@ -205,5 +285,42 @@ public class Sample01 implements Opcodes {
         System.out.println("\n--- (2) READING CLASS Byte Array ---\n");
 
         readClass(compile());
+
+        // creating classes from a template
+
+        System.out.println("--- (3) CLASS TEMPLATE & Test ---\n");
+
+        ClassTemplate template = new ClassTemplate(compile(), CLASS_NAME, 123);
+
+        for (int i = 1; i <= 3; i++) {
+            String name = CLASS_NAME + i;
+            loader.addClass(name.replace("/", "."),
+                    template.instantiate(name, 123 * i));
+            asmClass = (ASMInterface) loader.loadClass(
+                    name.replace("/", ".")).newInstance();
+
+            System.out.println(" --> " + asmClass.getClass().getName()
+                    + ", Get-Field: " + asmClass.get());
+        }
+
+        // defining hidden classes
+
+        System.out.println("\n--- (4) HIDDEN CLASS & Test ---\n");
+
+        ClassDefiner definer = new ClassDefiner(
+                MethodHandles.lookup(), loader);
+
+        System.out.println(">> Hidden classes supported: "
+                + ClassDefiner.isHiddenClassSupported());
+
+        for (int i = 1; i <= 3; i++) {
+            String name = CLASS_NAME + "Hidden" + i;
+            testClass = definer.define(name,
+                    template.instantiate(name, 1000 * i));
+            asmClass = (ASMInterface) testClass.newInstance();
+
+            System.out.println(" --> " + testClass.getName()
+                    + ", Get-Field: " + asmClass.get());
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+package eu.mihosoft.vrl.asm.agent;
+
+import org.objectweb.asm.ClassReader;
+
+/**
+ * Decides whether a class must be transformed by a {@link WeavingTransformer},
+ * before the class is parsed. Filters must only use the header of the class,
+ * i.e., {@link ClassReader#getAccess()}, {@link ClassReader#getClassName()},
+ * {@link ClassReader#getSuperName()} and {@link ClassReader#getInterfaces()},
+ * and must be thread safe.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public interface ClassFilter {
+
+    /**
+     * Indicates whether the given class must be transformed.
+     *
+     * @param loader the defining loader of the class, <code>null</code> for
+     * the bootstrap loader
+     * @param header the class reader of the class, only to be used to read the
+     * class header
+     * @return <code>true</code> if the class must be transformed;
+     * <code>false</code> otherwise
+     */
+    boolean accept(ClassLoader loader, ClassReader header);
+}
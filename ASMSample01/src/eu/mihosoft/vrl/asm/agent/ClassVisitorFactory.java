@@ -0,0 +1,26 @@
+package eu.mihosoft.vrl.asm.agent;
+
+import org.objectweb.asm.ClassVisitor;
+
+/**
+ * Creates one stage of the class visitor chain of a
+ * {@link WeavingTransformer}. Factories are called concurrently, for classes
+ * that are loaded in parallel, and must therefore be thread safe. The visitors
+ * they create are only used for one class, by one thread.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public interface ClassVisitorFactory {
+
+    /**
+     * Creates a class visitor for the given class.
+     *
+     * @param loader the defining loader of the class, <code>null</code> for
+     * the bootstrap loader
+     * @param className the internal name of the class
+     * @param next the visitor to which the created visitor must delegate
+     * @return a class visitor delegating to <code>next</code>, or
+     * <code>next</code> itself if this stage does not apply to the class
+     */
+    ClassVisitor create(ClassLoader loader, String className, ClassVisitor next);
+}
@@ -0,0 +1,34 @@
+package eu.mihosoft.vrl.asm.agent;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+
+/**
+ * A class writer that computes common super classes with the
+ * {@link LoaderTypeHierarchy} of a class loader, from the bytecode of the
+ * classes, instead of loading them.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+class LoaderClassWriter extends ClassWriter {
+
+    private final LoaderTypeHierarchy hierarchy;
+
+    /**
+     * Constructor.
+     *
+     * @param classReader the class reader of the original class
+     * @param flags the class writer flags
+     * @param loader the loader used to read the bytecode of the classes,
+     * <code>null</code> for the bootstrap loader
+     */
+    LoaderClassWriter(ClassReader classReader, int flags, ClassLoader loader) {
+        super(classReader, flags);
+        this.hierarchy = LoaderTypeHierarchy.get(loader);
+    }
+
+    @Override
+    protected String getCommonSuperClass(String type1, String type2) {
+        return hierarchy.getCommonSuperClass(type1, type2);
+    }
+}
@@ -0,0 +1,167 @@
+package eu.mihosoft.vrl.asm.agent;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * The class hierarchy of a class loader, read from the bytecode of the
+ * classes, as resources of this loader, instead of loading them. This is
+ * required in a class file transformer, where loading classes may cause
+ * circularity errors, or load classes before they can be transformed.
+ * <p>
+ * There is one instance per class loader, shared by all the transformations
+ * of the classes defined by this loader, so that the header of each class is
+ * read only once. The super class chain of each class is also computed only
+ * once. The loader is only weakly referenced, so that the instances do not
+ * prevent class loaders from being garbage collected. This class is thread
+ * safe.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+class LoaderTypeHierarchy {
+
+    private static final Map<ClassLoader, LoaderTypeHierarchy> HIERARCHIES =
+            Collections.synchronizedMap(
+            new WeakHashMap<ClassLoader, LoaderTypeHierarchy>());
+    private final WeakReference<ClassLoader> loader;
+    private final ConcurrentHashMap<String, Node> nodes =
+            new ConcurrentHashMap<String, Node>();
+
+    private LoaderTypeHierarchy(ClassLoader loader) {
+        this.loader = new WeakReference<ClassLoader>(loader);
+        nodes.put("java/lang/Object", new Node(false, null));
+    }
+
+    /**
+     * Returns the class hierarchy of the given class loader.
+     *
+     * @param loader the loader used to read the bytecode of the classes,
+     * <code>null</code> for the bootstrap loader
+     * @return the class hierarchy of the given class loader
+     */
+    static LoaderTypeHierarchy get(ClassLoader loader) {
+        synchronized (HIERARCHIES) {
+            LoaderTypeHierarchy hierarchy = HIERARCHIES.get(loader);
+            if (hierarchy == null) {
+                hierarchy = new LoaderTypeHierarchy(loader);
+                HIERARCHIES.put(loader, hierarchy);
+            }
+            return hierarchy;
+        }
+    }
+
+    /**
+     * Returns the common super class of the two given types, as required by
+     * <code>ClassWriter.getCommonSuperClass</code>.
+     *
+     * @param type1 the internal name of a class
+     * @param type2 the internal name of another class
+     * @return the internal name of the common super class of the two types,
+     * <code>java/lang/Object</code> if one of them is an interface
+     */
+    String getCommonSuperClass(String type1, String type2) {
+        Node n1 = getNode(type1);
+        Node n2 = getNode(type2);
+        if (n1.itf || n2.itf) {
+            return "java/lang/Object";
+        }
+        // both chains end with java/lang/Object: compares them from the end
+        String[] c1 = getSuperClasses(type1, n1);
+        String[] c2 = getSuperClasses(type2, n2);
+        int i = c1.length - 1;
+        int j = c2.length - 1;
+        while (i > 0 && j > 0 && c1[i - 1].equals(c2[j - 1])) {
+            --i;
+            --j;
+        }
+        return c1[i];
+    }
+
+    /**
+     * Returns the given type and its super classes, up to
+     * <code>java/lang/Object</code> inclusive, computing them if needed.
+     */
+    private String[] getSuperClasses(String type, Node n) {
+        String[] chain = n.superClasses;
+        if (chain == null) {
+            List<String> types = new ArrayList<String>();
+            types.add(type);
+            String superName = n.superName;
+            while (superName != null) {
+                Node m = getNode(superName);
+                if (m.superClasses != null) {
+                    types.addAll(Arrays.asList(m.superClasses));
+                    break;
+                }
+                types.add(superName);
+                superName = m.superName;
+            }
+            chain = types.toArray(new String[types.size()]);
+            n.superClasses = chain;
+        }
+        return chain;
+    }
+
+    private Node getNode(String type) {
+        Node n = nodes.get(type);
+        if (n == null) {
+            n = read(type);
+            Node m = nodes.putIfAbsent(type, n);
+            if (m != null) {
+                n = m;
+            }
+        }
+        return n;
+    }
+
+    private Node read(String type) {
+        String resource = type + ".class";
+        ClassLoader l = loader.get();
+        InputStream is = l == null
+                ? ClassLoader.getSystemResourceAsStream(resource)
+                : l.getResourceAsStream(resource);
+        if (is == null) {
+            throw new RuntimeException("Class not found: " + type);
+        }
+        try {
+            try {
+                ClassReader cr = new ClassReader(is);
+                return new Node((cr.getAccess() & Opcodes.ACC_INTERFACE) != 0,
+                        cr.getSuperName());
+            } finally {
+                is.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot read class " + type, e);
+        }
+    }
+
+    /**
+     * The header information of a class or interface.
+     */
+    private static final class Node {
+
+        final boolean itf;
+        final String superName;
+        /**
+         * The class and its super classes, or <code>null</code> if not
+         * computed yet. Computing it twice concurrently is harmless.
+         */
+        volatile String[] superClasses;
+
+        Node(boolean itf, String superName) {
+            this.itf = itf;
+            this.superName = superName;
+        }
+    }
+}
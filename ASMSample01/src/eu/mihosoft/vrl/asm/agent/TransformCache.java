@@ -0,0 +1,147 @@
+package eu.mihosoft.vrl.asm.agent;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-memory cache of transformed classes, indexed by the content of the
+ * original classes. It avoids transforming the same bytecode again when it is
+ * defined by several class loaders, or retransformed. The cache is bounded
+ * by the total size of the original and transformed classes it contains: once
+ * this bound is reached, new classes are no longer cached. This class is
+ * thread safe.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class TransformCache {
+
+    /**
+     * The value cached for the classes that are not modified by the
+     * transformation.
+     */
+    static final byte[] UNCHANGED = new byte[0];
+
+    private final ConcurrentHashMap<Key, byte[]> entries =
+            new ConcurrentHashMap<Key, byte[]>();
+    private final long maxSize;
+    private final AtomicLong size = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param maxSize the maximum total size of the cached classes, in bytes
+     */
+    public TransformCache(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the cached transformation of the given class.
+     *
+     * @param className the internal name of the class
+     * @param original the original bytecode of the class
+     * @return the transformed bytecode, {@link #UNCHANGED} if the
+     * transformation does not modify the class, or <code>null</code> if the
+     * class is not in the cache
+     */
+    byte[] get(String className, byte[] original) {
+        byte[] result = entries.get(new Key(className, original));
+        if (result == null) {
+            missCount.incrementAndGet();
+        } else {
+            hitCount.incrementAndGet();
+        }
+        return result;
+    }
+
+    /**
+     * Adds the transformation of the given class to the cache, if the size
+     * bound allows it.
+     *
+     * @param className the internal name of the class
+     * @param original the original bytecode of the class
+     * @param transformed the transformed bytecode of the class, or
+     * {@link #UNCHANGED}
+     */
+    void put(String className, byte[] original, byte[] transformed) {
+        long entrySize = original.length + transformed.length;
+        if (size.addAndGet(entrySize) > maxSize) {
+            size.addAndGet(-entrySize);
+            return;
+        }
+        if (entries.putIfAbsent(new Key(className, original), transformed)
+                != null) {
+            size.addAndGet(-entrySize);
+        }
+    }
+
+    /**
+     * Removes all the classes from the cache.
+     */
+    public void clear() {
+        entries.clear();
+        size.set(0);
+    }
+
+    /**
+     * @return the number of cached classes
+     */
+    public int getCount() {
+        return entries.size();
+    }
+
+    /**
+     * @return the total size of the cached classes, in bytes
+     */
+    public long getSize() {
+        return size.get();
+    }
+
+    /**
+     * @return the number of lookups that found a cached class
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return the number of lookups that did not find a cached class
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * A cache key, made of the name and bytecode of a class.
+     */
+    private static final class Key {
+
+        private final String className;
+        private final byte[] bytecode;
+        private final int hash;
+
+        Key(String className, byte[] bytecode) {
+            this.className = className;
+            this.bytecode = bytecode;
+            this.hash = 31 * className.hashCode() + Arrays.hashCode(bytecode);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return hash == k.hash && className.equals(k.className)
+                    && Arrays.equals(bytecode, k.bytecode);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package eu.mihosoft.vrl.asm.agent;
+
+import java.lang.instrument.Instrumentation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * A Java agent that installs a {@link WeavingTransformer}. The agent arguments
+ * are a list of <code>key=value</code> options separated by <code>;</code>,
+ * where list values are separated by <code>,</code>:
+ * <ul>
+ * <li><code>chain</code>: the names of the {@link ClassVisitorFactory}
+ * classes, which must have a public no-argument constructor;</li>
+ * <li><code>include</code>: the internal name prefixes of the classes to
+ * transform;</li>
+ * <li><code>exclude</code>: additional internal name prefixes of the classes
+ * that must not be transformed;</li>
+ * <li><code>compute</code>: <code>none</code>, <code>maxs</code> or
+ * <code>frames</code> (default <code>maxs</code>);</li>
+ * <li><code>skip</code>: some of <code>interface</code>,
+ * <code>annotation</code>, <code>enum</code> and <code>synthetic</code>;</li>
+ * <li><code>cache</code>: the maximum size of the transform cache in bytes,
+ * <code>0</code> to disable it (default 16 MB).</li>
+ * </ul>
+ * Example:
+ * <code>-javaagent:ASMSample01.jar=chain=com.acme.Tracer;include=com/acme/</code>
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class WeavingAgent {
+
+    /**
+     * The classes that are never transformed: the JDK, ASM and the agent
+     * itself.
+     */
+    static final String[] DEFAULT_EXCLUDES = {
+        "java/", "javax/", "sun/", "com/sun/", "jdk/",
+        "org/objectweb/asm/", "eu/mihosoft/vrl/asm/agent/"
+    };
+
+    private static volatile WeavingTransformer transformer;
+
+    private WeavingAgent() {
+        throw new AssertionError(); // don't instantiate
+    }
+
+    /**
+     * Entry point used when the agent is started with the
+     * <code>-javaagent</code> option.
+     *
+     * @param args the agent arguments
+     * @param inst the instrumentation instance
+     */
+    public static void premain(String args, Instrumentation inst) {
+        install(args, inst);
+    }
+
+    /**
+     * Entry point used when the agent is attached to a running virtual
+     * machine. Already loaded classes are not transformed.
+     *
+     * @param args the agent arguments
+     * @param inst the instrumentation instance
+     */
+    public static void agentmain(String args, Instrumentation inst) {
+        install(args, inst);
+    }
+
+    /**
+     * @return the installed transformer, or <code>null</code> if the agent is
+     * not started
+     */
+    public static WeavingTransformer getTransformer() {
+        return transformer;
+    }
+
+    private static synchronized void install(String args,
+            Instrumentation inst) {
+        if (transformer != null) {
+            inst.removeTransformer(transformer);
+        }
+        WeavingTransformer t = createTransformer(args);
+        inst.addTransformer(t);
+        transformer = t;
+    }
+
+    /**
+     * Creates a transformer from the given agent arguments.
+     *
+     * @param args the agent arguments, may be <code>null</code>
+     * @return the transformer
+     * @throws IllegalArgumentException if an argument is invalid
+     */
+    static WeavingTransformer createTransformer(String args) {
+        WeavingTransformer t = new WeavingTransformer();
+        List<String> excludes =
+                new ArrayList<String>(Arrays.asList(DEFAULT_EXCLUDES));
+        int writerFlags = ClassWriter.COMPUTE_MAXS;
+        long cacheSize = 16 * 1024 * 1024;
+        if (args != null) {
+            for (String option : args.split(";")) {
+                option = option.trim();
+                if (option.length() == 0) {
+                    continue;
+                }
+                int i = option.indexOf('=');
+                if (i < 0) {
+                    throw new IllegalArgumentException(
+                            "Invalid agent option: " + option);
+                }
+                String key = option.substring(0, i).trim();
+                String[] values = split(option.substring(i + 1));
+                if ("chain".equals(key)) {
+                    for (String name : values) {
+                        t.addFactory(newFactory(name));
+                    }
+                } else if ("include".equals(key)) {
+                    t.setIncludes(values);
+                } else if ("exclude".equals(key)) {
+                    excludes.addAll(Arrays.asList(values));
+                } else if ("compute".equals(key)) {
+                    writerFlags = parseCompute(option.substring(i + 1).trim());
+                } else if ("skip".equals(key)) {
+                    t.setSkippedAccess(parseSkip(values));
+                } else if ("cache".equals(key)) {
+                    cacheSize = Long.parseLong(option.substring(i + 1).trim());
+                } else {
+                    throw new IllegalArgumentException(
+                            "Unknown agent option: " + key);
+                }
+            }
+        }
+        t.setExcludes(excludes.toArray(new String[excludes.size()]));
+        t.setFlags(0, writerFlags);
+        if (cacheSize > 0) {
+            t.setCache(new TransformCache(cacheSize));
+        }
+        return t;
+    }
+
+    private static String[] split(String value) {
+        List<String> result = new ArrayList<String>();
+        for (String s : value.split(",")) {
+            s = s.trim();
+            if (s.length() > 0) {
+                result.add(s);
+            }
+        }
+        return result.toArray(new String[result.size()]);
+    }
+
+    private static ClassVisitorFactory newFactory(String name) {
+        try {
+            return (ClassVisitorFactory) Class.forName(name).newInstance();
+        } catch (Exception e) {
+            throw new IllegalArgumentException(
+                    "Cannot create class visitor factory " + name, e);
+        }
+    }
+
+    private static int parseCompute(String value) {
+        if ("none".equals(value)) {
+            return 0;
+        } else if ("maxs".equals(value)) {
+            return ClassWriter.COMPUTE_MAXS;
+        } else if ("frames".equals(value)) {
+            return ClassWriter.COMPUTE_FRAMES;
+        }
+        throw new IllegalArgumentException("Invalid compute option: " + value);
+    }
+
+    private static int parseSkip(String[] values) {
+        int access = 0;
+        for (String value : values) {
+            if ("interface".equals(value)) {
+                access |= Opcodes.ACC_INTERFACE;
+            } else if ("annotation".equals(value)) {
+                access |= Opcodes.ACC_ANNOTATION;
+            } else if ("enum".equals(value)) {
+                access |= Opcodes.ACC_ENUM;
+            } else if ("synthetic".equals(value)) {
+                access |= Opcodes.ACC_SYNTHETIC;
+            } else {
+                throw new IllegalArgumentException(
+                        "Invalid skip option: " + value);
+            }
+        }
+        return access;
+    }
+}
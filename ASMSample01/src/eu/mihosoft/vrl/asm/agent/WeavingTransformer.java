@@ -0,0 +1,240 @@
+package eu.mihosoft.vrl.asm.agent;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+
+/**
+ * A class file transformer that applies a chain of class visitors to the
+ * classes loaded by the virtual machine. Classes are selected in three steps,
+ * from the cheapest to the most expensive one: by the prefix of their
+ * internal name, before parsing anything, then by their access flags and by
+ * the configured {@link ClassFilter}s, using only the class header. Only the
+ * selected classes are fully parsed and transformed.
+ * <p>
+ * Transformations may be requested concurrently by several class loaders:
+ * each transformation uses its own class reader, visitor chain and class
+ * writer. Only the type hierarchy used to compute stack map frames is shared
+ * by the transformations of the classes of a given loader. The optional
+ * {@link TransformCache} returns the transformed bytecode of classes that were
+ * already transformed, e.g., when the same class is defined by several
+ * loaders. Errors during a transformation are reported on
+ * <code>System.err</code> and leave the class unchanged.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class WeavingTransformer implements ClassFileTransformer {
+
+    private final List<ClassVisitorFactory> factories =
+            new CopyOnWriteArrayList<ClassVisitorFactory>();
+    private final List<ClassFilter> filters =
+            new CopyOnWriteArrayList<ClassFilter>();
+    private volatile String[] includes = new String[0];
+    private volatile String[] excludes = new String[0];
+    private volatile int skippedAccess;
+    private volatile int writerFlags;
+    private volatile int readerFlags;
+    private volatile TransformCache cache;
+    private final AtomicLong transformedCount = new AtomicLong();
+    private final AtomicLong skippedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    /**
+     * Adds a class visitor factory at the end of the visitor chain. The first
+     * factory creates the visitor that receives the events of the class
+     * reader.
+     *
+     * @param factory the factory to add
+     */
+    public void addFactory(ClassVisitorFactory factory) {
+        factories.add(factory);
+    }
+
+    /**
+     * Adds a class filter. A class is transformed only if it is accepted by
+     * all the filters.
+     *
+     * @param filter the filter to add
+     */
+    public void addFilter(ClassFilter filter) {
+        filters.add(filter);
+    }
+
+    /**
+     * Defines the classes to transform. If this list is not empty, only the
+     * classes whose internal name starts with one of these prefixes are
+     * transformed.
+     *
+     * @param prefixes internal name prefixes, e.g., <code>com/acme/</code>
+     */
+    public void setIncludes(String... prefixes) {
+        this.includes = prefixes.clone();
+    }
+
+    /**
+     * Defines the classes that must not be transformed, whose internal name
+     * starts with one of the given prefixes. Excludes have precedence over
+     * includes.
+     *
+     * @param prefixes internal name prefixes, e.g., <code>java/</code>
+     */
+    public void setExcludes(String... prefixes) {
+        this.excludes = prefixes.clone();
+    }
+
+    /**
+     * Defines the classes that must not be transformed, from their access
+     * flags.
+     *
+     * @param access the access flags of the classes that must not be
+     * transformed, e.g., <code>Opcodes.ACC_INTERFACE</code>
+     */
+    public void setSkippedAccess(int access) {
+        this.skippedAccess = access;
+    }
+
+    /**
+     * Defines the flags of the class readers and writers.
+     *
+     * @param readerFlags the flags passed to {@link ClassReader#accept}
+     * @param writerFlags the flags of the class writers, e.g.,
+     * {@link ClassWriter#COMPUTE_MAXS}
+     */
+    public void setFlags(int readerFlags, int writerFlags) {
+        this.readerFlags = readerFlags;
+        this.writerFlags = writerFlags;
+    }
+
+    /**
+     * Defines the cache of transformed classes.
+     *
+     * @param cache the cache to use, <code>null</code> to disable caching
+     */
+    public void setCache(TransformCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * @return the cache of transformed classes, or <code>null</code>
+     */
+    public TransformCache getCache() {
+        return cache;
+    }
+
+    /**
+     * @return the number of transformed classes
+     */
+    public long getTransformedCount() {
+        return transformedCount.get();
+    }
+
+    /**
+     * @return the number of classes skipped by the name, access or class
+     * filters
+     */
+    public long getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    /**
+     * @return the number of classes whose transformation failed
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    @Override
+    public byte[] transform(ClassLoader loader, String className,
+            Class<?> classBeingRedefined, ProtectionDomain protectionDomain,
+            byte[] classfileBuffer) {
+        if (className == null || !acceptName(className)
+                || factories.isEmpty()) {
+            skippedCount.incrementAndGet();
+            return null;
+        }
+        try {
+            TransformCache c = cache;
+            if (c != null) {
+                byte[] cached = c.get(className, classfileBuffer);
+                if (cached != null) {
+                    return cached == TransformCache.UNCHANGED ? null : cached;
+                }
+            }
+            ClassReader cr = new ClassReader(classfileBuffer);
+            if (!acceptHeader(loader, cr)) {
+                skippedCount.incrementAndGet();
+                return null;
+            }
+            byte[] result = transform(loader, className, cr);
+            if (c != null) {
+                c.put(className, classfileBuffer,
+                        result == null ? TransformCache.UNCHANGED : result);
+            }
+            return result;
+        } catch (Throwable t) {
+            failedCount.incrementAndGet();
+            System.err.println(">> cannot transform " + className + ": " + t);
+            return null;
+        }
+    }
+
+    /**
+     * Transforms the given class with the visitor chain.
+     *
+     * @param loader the defining loader of the class
+     * @param className the internal name of the class
+     * @param cr the class reader of the class
+     * @return the transformed class, or <code>null</code> if it is unchanged
+     */
+    private byte[] transform(ClassLoader loader, String className,
+            ClassReader cr) {
+        ClassWriter cw = new LoaderClassWriter(cr, writerFlags, loader);
+        List<ClassVisitorFactory> chain =
+                new ArrayList<ClassVisitorFactory>(factories);
+        ClassVisitor cv = cw;
+        for (int i = chain.size() - 1; i >= 0; --i) {
+            cv = chain.get(i).create(loader, className, cv);
+        }
+        cr.accept(cv, readerFlags);
+        byte[] result = cw.toByteArray();
+        transformedCount.incrementAndGet();
+        return Arrays.equals(result, cr.b) ? null : result;
+    }
+
+    private boolean acceptName(String className) {
+        for (String prefix : excludes) {
+            if (className.startsWith(prefix)) {
+                return false;
+            }
+        }
+        String[] in = includes;
+        if (in.length == 0) {
+            return true;
+        }
+        for (String prefix : in) {
+            if (className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean acceptHeader(ClassLoader loader, ClassReader cr) {
+        if ((cr.getAccess() & skippedAccess) != 0) {
+            return false;
+        }
+        for (ClassFilter filter : filters) {
+            if (!filter.accept(loader, cr)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}